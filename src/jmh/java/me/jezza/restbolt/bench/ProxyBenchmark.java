@@ -0,0 +1,274 @@
+package me.jezza.restbolt.bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import me.jezza.restbolt.RestBolt;
+import me.jezza.restbolt.SyncException;
+import me.jezza.restbolt.annotations.Body;
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.POST;
+import me.jezza.restbolt.annotations.Path;
+import me.jezza.restbolt.annotations.Query;
+import me.jezza.restbolt.form.multipart.MultipartBuilder;
+
+/**
+ * Compares the generated proxies against the hand-written shape they're based on (See {@link me.jezza.restbolt.Main.ServiceImpl}),
+ * and against just using the {@link HttpClient} directly.
+ * <p>
+ * Everything runs against a loopback {@link Stub}, so the numbers are mostly the cost of building and sending the request.
+ * Run with "gradle jmh", the GC profiler is enabled in the build script, so you'll get allocations per op as well.
+ *
+ * @author Jezza
+ */
+@State(Scope.Benchmark)
+public class ProxyBenchmark {
+	public interface Service {
+		@GET("/ping")
+		String ping() throws SyncException;
+
+		@GET("/ping")
+		CompletableFuture<HttpResponse<String>> pingAsync();
+
+		@GET("/users/{id}/name")
+		String name(@Path("id") String id, @Query("active") boolean active) throws SyncException;
+
+		@POST("/users/create")
+		void create(@Body("first_name") String firstName, @Body("last_name") String lastName) throws SyncException;
+
+		@POST(value = "/users/create", publisher = RestBolt.PUBLISHER_MULTIPART)
+		void upload(@Body("first_name") String firstName, @Body("last_name") String lastName) throws SyncException;
+	}
+
+	// The proxies can only be defined once per class loader, and JMH will happily create multiple states per fork.
+	private static Service proxy;
+	private static Service metered;
+
+	private Stub stub;
+	private Service generated;
+	private Service generatedMetered;
+	private Service handWritten;
+	private HttpClient client;
+	private HttpRequest ping;
+
+	@Setup
+	public void setup() throws IOException {
+		stub = Stub.start();
+		String uri = stub.uri();
+		generated = generated(uri);
+		generatedMetered = metered(uri);
+		handWritten = new HandWritten(URI.create(uri));
+		client = HttpClient.newHttpClient();
+		ping = HttpRequest.newBuilder(URI.create(uri).resolve("/ping")).build();
+	}
+
+	private static synchronized Service generated(String uri) {
+		if (proxy == null) {
+			proxy = RestBolt.bind(uri, Service.class, MethodHandles.lookup());
+		}
+		return proxy;
+	}
+
+	private static synchronized Service metered(String uri) {
+		if (metered == null) {
+			metered = RestBolt.binder(Service.class, MethodHandles.lookup())
+					.metrics()
+					.bind(uri);
+		}
+		return metered;
+	}
+
+	@TearDown
+	public void tearDown() {
+		stub.close();
+	}
+
+	// Static GET
+
+	@Benchmark
+	public String staticGetGenerated() throws SyncException {
+		return generated.ping();
+	}
+
+	@Benchmark
+	public String staticGetMetered() throws SyncException {
+		return generatedMetered.ping();
+	}
+
+	@Benchmark
+	public String staticGetHandWritten() throws SyncException {
+		return handWritten.ping();
+	}
+
+	@Benchmark
+	public String staticGetRaw() throws IOException, InterruptedException {
+		return client.send(ping, BodyHandlers.ofString(StandardCharsets.UTF_8)).body();
+	}
+
+	// Static GET, but through the CompletableFuture path
+
+	@Benchmark
+	public String asyncGetGenerated() {
+		return generated.pingAsync().join().body();
+	}
+
+	@Benchmark
+	public String asyncGetHandWritten() {
+		return handWritten.pingAsync().join().body();
+	}
+
+	@Benchmark
+	public String asyncGetRaw() {
+		return client.sendAsync(ping, BodyHandlers.ofString(StandardCharsets.UTF_8)).join().body();
+	}
+
+	// @Path + @Query
+
+	@Benchmark
+	public String pathQueryGenerated() throws SyncException {
+		return generated.name("jezza", true);
+	}
+
+	@Benchmark
+	public String pathQueryHandWritten() throws SyncException {
+		return handWritten.name("jezza", true);
+	}
+
+	// Bodies
+
+	@Benchmark
+	public void urlEncodedGenerated() throws SyncException {
+		generated.create("Jezza", "Bolt & Co");
+	}
+
+	@Benchmark
+	public void urlEncodedHandWritten() throws SyncException {
+		handWritten.create("Jezza", "Bolt & Co");
+	}
+
+	@Benchmark
+	public void multipartGenerated() throws SyncException {
+		generated.upload("Jezza", "Bolt & Co");
+	}
+
+	@Benchmark
+	public void multipartHandWritten() throws SyncException {
+		handWritten.upload("Jezza", "Bolt & Co");
+	}
+
+	/**
+	 * Roughly what the generator writes out, just done by hand.
+	 * If the generated version starts drifting away from this, something's gone wrong in the bytecode.
+	 */
+	static final class HandWritten implements Service {
+		private final URI host;
+		private volatile HttpClient client;
+
+		HandWritten(URI host) {
+			this.host = host;
+		}
+
+		private HttpClient client() {
+			HttpClient client = this.client;
+			if (client == null) {
+				synchronized (this) {
+					client = this.client;
+					if (client == null) {
+						this.client = client = HttpClient.newBuilder()
+								.build();
+					}
+				}
+			}
+			return client;
+		}
+
+		@Override
+		public String ping() throws SyncException {
+			HttpRequest request = HttpRequest.newBuilder(host.resolve("/ping"))
+					.method("GET", BodyPublishers.noBody())
+					.build();
+			try {
+				return client().send(request, BodyHandlers.ofString(StandardCharsets.UTF_8)).body();
+			} catch (IOException | InterruptedException e) {
+				throw new SyncException(e);
+			}
+		}
+
+		@Override
+		public CompletableFuture<HttpResponse<String>> pingAsync() {
+			HttpRequest request = HttpRequest.newBuilder(host.resolve("/ping"))
+					.method("GET", BodyPublishers.noBody())
+					.build();
+			return client().sendAsync(request, BodyHandlers.ofString(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public String name(String id, boolean active) throws SyncException {
+			String path = new StringBuilder(32)
+					.append("/users/")
+					.append(id)
+					.append("/name")
+					.append("?active=")
+					.append(active)
+					.toString();
+			HttpRequest request = HttpRequest.newBuilder(host.resolve(path))
+					.method("GET", BodyPublishers.noBody())
+					.build();
+			try {
+				return client().send(request, BodyHandlers.ofString(StandardCharsets.UTF_8)).body();
+			} catch (IOException | InterruptedException e) {
+				throw new SyncException(e);
+			}
+		}
+
+		@Override
+		public void create(String firstName, String lastName) throws SyncException {
+			String body = new StringBuilder(32)
+					.append("&first_name=")
+					.append(URLEncoder.encode(firstName, StandardCharsets.UTF_8))
+					.append("&last_name=")
+					.append(URLEncoder.encode(lastName, StandardCharsets.UTF_8))
+					.toString();
+			HttpRequest request = HttpRequest.newBuilder(host.resolve("/users/create"))
+					.header("Content-Type", "application/x-www-form-urlencoded")
+					.method("POST", BodyPublishers.ofString(body))
+					.build();
+			try {
+				client().send(request, BodyHandlers.discarding());
+			} catch (IOException | InterruptedException e) {
+				throw new SyncException(e);
+			}
+		}
+
+		@Override
+		public void upload(String firstName, String lastName) throws SyncException {
+			MultipartBuilder builder = new MultipartBuilder(2);
+			builder.add(0, "first_name", firstName);
+			builder.add(1, "last_name", lastName);
+			HttpRequest request = HttpRequest.newBuilder(host.resolve("/users/create"))
+					.header("Content-Type", builder.contentType())
+					.method("POST", builder.build())
+					.build();
+			try {
+				client().send(request, BodyHandlers.discarding());
+			} catch (IOException | InterruptedException e) {
+				throw new SyncException(e);
+			}
+		}
+	}
+}
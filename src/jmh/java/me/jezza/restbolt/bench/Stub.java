@@ -0,0 +1,69 @@
+package me.jezza.restbolt.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A tiny loopback server that the benchmarks can hammer.
+ * It doesn't care about the request, it just drains it and writes back a small canned response.
+ *
+ * @author Jezza
+ */
+final class Stub implements AutoCloseable {
+	private static final byte[] PONG = "pong".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] NAME = "jezza".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] CREATED = "created".getBytes(StandardCharsets.UTF_8);
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private Stub(HttpServer server, ExecutorService executor) {
+		this.server = server;
+		this.executor = executor;
+	}
+
+	static Stub start() throws IOException {
+		// Without this, every response sits behind Nagle + delayed ACKs on loopback, and all you end up measuring is ~40ms of nothing.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		server.createContext("/ping", exchange -> respond(exchange, PONG));
+		server.createContext("/users/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			respond(exchange, path.endsWith("/create") ? CREATED : NAME);
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		server.setExecutor(executor);
+		server.start();
+		return new Stub(server, executor);
+	}
+
+	String uri() {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ':' + address.getPort();
+	}
+
+	private static void respond(HttpExchange exchange, byte[] data) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+		exchange.sendResponseHeaders(200, data.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(data);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,405 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Method;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.objectweb.asm.Type;
+
+import me.jezza.restbolt.annotations.Hedge;
+import me.jezza.restbolt.annotations.Retry;
+
+/**
+ * The runtime half of {@link Retry} and {@link Hedge}.
+ * <p>
+ * Every proxy gets one of these per method, as the budget and latencies only make sense for a single endpoint on a single host.
+ * Everything is done asynchronously, (The waits between the attempts are just scheduled) and the synchronous methods just wait for the end result.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class Attempts {
+	/**
+	 * Only ever used to kick off the hedges and retries, the requests themselves are async, so one thread is plenty.
+	 */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "RestBolt-Attempts");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * What the body is replaced with when the status says it's worth trying again, so we never bother reading it.
+	 */
+	private static final Object RETRY = new Object();
+
+	/**
+	 * The tokens are kept in thousandths, so the fractional deposits don't need a lock.
+	 */
+	private static final long TOKEN = 1000;
+
+	private final Spec spec;
+	private final AtomicLong tokens;
+	private final Latencies latencies;
+
+	private Attempts(Spec spec) {
+		this.spec = spec;
+		tokens = new AtomicLong(spec.burst);
+		latencies = spec.percentile > 0 ? new Latencies(spec.percentile) : null;
+	}
+
+	/**
+	 * Everything about a method that doesn't change between proxies.
+	 */
+	public static final class Spec {
+		final int attempts;
+		final long backoff;
+		final long maxBackoff;
+		final boolean[] statuses;
+		final long deposit;
+		final long burst;
+		final double percentile;
+		final long delay;
+
+		Spec(Retry retry, Hedge hedge) {
+			if (retry != null) {
+				if (retry.attempts() < 1 || retry.backoff() < 0 || retry.maxBackoff() < retry.backoff() || retry.budget() < 0 || retry.burst() < 0) {
+					throw new IllegalStateException("Invalid @Retry settings.");
+				}
+				attempts = retry.attempts();
+				backoff = retry.backoff();
+				maxBackoff = retry.maxBackoff();
+				statuses = new boolean[600];
+				for (int status : retry.statuses()) {
+					if (status < 100 || status >= 600) {
+						throw new IllegalStateException("Invalid status in @Retry: " + status);
+					}
+					statuses[status] = true;
+				}
+				deposit = (long) (retry.budget() * TOKEN);
+				burst = retry.burst() * TOKEN;
+			} else {
+				attempts = 1;
+				backoff = 0;
+				maxBackoff = 0;
+				statuses = new boolean[600];
+				// Hedges still need something to be paid out of, so they get the same as the default @Retry.
+				deposit = TOKEN / 10;
+				burst = 10 * TOKEN;
+			}
+			if (hedge != null) {
+				if (!(hedge.percentile() > 0 && hedge.percentile() < 100) || hedge.delay() < 0) {
+					throw new IllegalStateException("Invalid @Hedge settings.");
+				}
+				percentile = hedge.percentile();
+				delay = TimeUnit.MILLISECONDS.toNanos(hedge.delay());
+			} else {
+				percentile = 0;
+				delay = 0;
+			}
+		}
+
+		boolean retries(int status) {
+			return status >= 0 && status < statuses.length && statuses[status];
+		}
+
+		public Attempts create() {
+			return new Attempts(this);
+		}
+	}
+
+	/**
+	 * The bootstrap for the specs of the methods with a {@link Retry} and/or {@link Hedge}.
+	 */
+	public static Spec spec(Lookup caller, String name, Class<?> type, Class<?> service, String descriptor) {
+		for (Method method : service.getDeclaredMethods()) {
+			if (method.getName().equals(name) && Type.getMethodDescriptor(method).equals(descriptor)) {
+				return new Spec(method.getDeclaredAnnotation(Retry.class), method.getDeclaredAnnotation(Hedge.class));
+			}
+		}
+		throw new IllegalStateException("Unknown method on interface: " + name + descriptor);
+	}
+
+	public HttpResponse<?> send(HttpClient client, HttpRequest request, BodyHandler<?> handler) throws IOException, InterruptedException {
+		CompletableFuture<HttpResponse<?>> future = sendAsync(client, request, handler);
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	public CompletableFuture<HttpResponse<?>> sendAsync(HttpClient client, HttpRequest request, BodyHandler<?> handler) {
+		deposit();
+		CompletableFuture<HttpResponse<?>> result = new CompletableFuture<>();
+		attempt(client, request, handler, 1, result);
+		return result;
+	}
+
+	private void attempt(HttpClient client, HttpRequest request, BodyHandler<?> handler, int attempt, CompletableFuture<HttpResponse<?>> result) {
+		if (result.isDone()) {
+			// Cancelled while we were waiting.
+			return;
+		}
+		// The status can only be checked before the body's been read, so if it's not the last attempt, (and there's a chance we can afford another one) we skip the body.
+		boolean retryable = attempt < spec.attempts && tokens.get() >= TOKEN;
+		@SuppressWarnings("unchecked")
+		BodyHandler<Object> original = (BodyHandler<Object>) handler;
+		BodyHandler<Object> attemptHandler = retryable
+				? info -> spec.retries(info.statusCode()) ? BodySubscribers.replacing(RETRY) : original.apply(info)
+				: original;
+		CompletableFuture<HttpResponse<?>> call = hedged(client, request, attemptHandler);
+		// If the caller gives up, so do we.
+		result.whenComplete((response, t) -> {
+			if (t instanceof CancellationException) {
+				call.cancel(true);
+			}
+		});
+		call.whenComplete((response, t) -> {
+			if (t == null && response.body() != RETRY) {
+				result.complete(response);
+				return;
+			}
+			Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+			if (retryable && (cause == null || cause instanceof IOException) && withdraw()) {
+				long bound = Math.min(spec.maxBackoff, spec.backoff << Math.min(attempt - 1, 30));
+				long wait = bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+				TIMER.schedule(() -> attempt(client, request, handler, attempt + 1, result), wait, TimeUnit.MILLISECONDS);
+			} else if (cause != null) {
+				result.completeExceptionally(cause);
+			} else {
+				// Someone else spent the token we were counting on.
+				result.completeExceptionally(new IOException("Retry budget exhausted after a " + response.statusCode() + " from " + request.uri()));
+			}
+		});
+	}
+
+	private void deposit() {
+		long deposit = spec.deposit;
+		long burst = spec.burst;
+		long current;
+		do {
+			current = tokens.get();
+			if (current >= burst) {
+				return;
+			}
+		} while (!tokens.compareAndSet(current, Math.min(current + deposit, burst)));
+	}
+
+	private boolean withdraw() {
+		long current;
+		do {
+			current = tokens.get();
+			if (current < TOKEN) {
+				return false;
+			}
+		} while (!tokens.compareAndSet(current, current - TOKEN));
+		return true;
+	}
+
+	/**
+	 * Sends the request, and if it's taking longer than usual, (and we can afford it) sends it again, and takes whichever comes back first.
+	 */
+	private CompletableFuture<HttpResponse<?>> hedged(HttpClient client, HttpRequest request, BodyHandler<?> handler) {
+		long start = System.nanoTime();
+		@SuppressWarnings("unchecked")
+		CompletableFuture<HttpResponse<?>> first = (CompletableFuture<HttpResponse<?>>) (CompletableFuture<?>) client.sendAsync(request, handler);
+		if (latencies == null) {
+			return first;
+		}
+		first.whenComplete((response, t) -> {
+			if (t == null) {
+				latencies.record(System.nanoTime() - start);
+			}
+		});
+		long threshold = latencies.threshold();
+		if (threshold < 0) {
+			return first;
+		}
+		Race race = new Race(first);
+		race.timer = TIMER.schedule(() -> {
+			if (race.winner.isDone() || !withdraw()) {
+				return;
+			}
+			@SuppressWarnings("unchecked")
+			CompletableFuture<HttpResponse<?>> second = (CompletableFuture<HttpResponse<?>>) (CompletableFuture<?>) client.sendAsync(request, handler);
+			race.enter(second);
+		}, Math.max(threshold, spec.delay), TimeUnit.NANOSECONDS);
+		race.enter(first);
+		return race.winner;
+	}
+
+	/**
+	 * The first response wins, the other request is cancelled. (If it's already too late for that, its body is closed, if it can be)
+	 * It only fails if everyone that entered did.
+	 */
+	private static final class Race {
+		final CompletableFuture<HttpResponse<?>> winner = new CompletableFuture<>();
+		final AtomicReference<CompletableFuture<HttpResponse<?>>> other = new AtomicReference<>();
+		final AtomicInteger running = new AtomicInteger(1);
+		final CompletableFuture<HttpResponse<?>> first;
+		volatile ScheduledFuture<?> timer;
+
+		Race(CompletableFuture<HttpResponse<?>> first) {
+			this.first = first;
+			// If the caller gives up, everyone does.
+			winner.whenComplete((response, t) -> {
+				if (t instanceof CancellationException) {
+					first.cancel(true);
+					CompletableFuture<HttpResponse<?>> second = other.get();
+					if (second != null) {
+						second.cancel(true);
+					}
+				}
+			});
+		}
+
+		void enter(CompletableFuture<HttpResponse<?>> attempt) {
+			if (attempt != first) {
+				running.incrementAndGet();
+				other.set(attempt);
+			}
+			attempt.whenComplete((response, t) -> {
+				if (t == null) {
+					if (winner.complete(response)) {
+						ScheduledFuture<?> timer = this.timer;
+						if (timer != null) {
+							timer.cancel(false);
+						}
+						CompletableFuture<HttpResponse<?>> loser = attempt == first ? other.get() : first;
+						if (loser != null) {
+							loser.cancel(true);
+						}
+					} else {
+						close(response);
+					}
+				} else if (running.decrementAndGet() == 0 && (attempt != first || timer == null || timer.isDone())) {
+					winner.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+				} else if (attempt == first && other.get() == null) {
+					// The hedge never went out, so there's nothing left to wait for.
+					ScheduledFuture<?> timer = this.timer;
+					if (timer != null) {
+						timer.cancel(false);
+					}
+					winner.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+				}
+			});
+		}
+
+		private static void close(HttpResponse<?> response) {
+			if (response.body() instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) response.body()).close();
+				} catch (Exception ignored) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * A rough, decaying histogram of how long the requests take, with four buckets to every doubling, from a microsecond up to a couple of minutes.
+	 * The threshold is only worked out every so often, as it's a walk over all of the buckets.
+	 */
+	private static final class Latencies {
+		private static final int BUCKETS = 28 * 4;
+		private static final int MINIMUM = 100;
+		private static final int DECAY = 4096;
+
+		private final double percentile;
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final AtomicLong total = new AtomicLong();
+		private volatile long threshold = -1;
+
+		Latencies(double percentile) {
+			this.percentile = percentile;
+		}
+
+		void record(long nanos) {
+			counts.incrementAndGet(bucket(nanos));
+			long total = this.total.incrementAndGet();
+			if ((total & 31) == 0) {
+				update(total);
+			}
+		}
+
+		long threshold() {
+			return threshold;
+		}
+
+		private static int bucket(long nanos) {
+			long micros = Math.max(nanos / 1000, 1);
+			int octave = 63 - Long.numberOfLeadingZeros(micros);
+			// The two bits after the leading one pick the quarter.
+			int quarter = octave >= 2 ? (int) (micros >>> (octave - 2)) & 3 : (int) (micros << (2 - octave)) & 3;
+			return Math.min(octave * 4 + quarter, BUCKETS - 1);
+		}
+
+		/**
+		 * @return the upper bound of the bucket, in nanoseconds.
+		 */
+		private static long upper(int bucket) {
+			int octave = bucket >> 2;
+			int quarter = bucket & 3;
+			return ((4L + quarter + 1) << octave) / 4 * 1000;
+		}
+
+		private void update(long total) {
+			if (total < MINIMUM) {
+				return;
+			}
+			long[] snapshot = new long[BUCKETS];
+			long sum = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				sum += snapshot[i] = counts.get(i);
+			}
+			long target = (long) Math.ceil(sum * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += snapshot[i];
+				if (seen >= target) {
+					threshold = upper(i);
+					break;
+				}
+			}
+			if (total >= DECAY) {
+				// Halve everything, so it follows the endpoint as it speeds up or slows down.
+				for (int i = 0; i < BUCKETS; i++) {
+					long count;
+					do {
+						count = counts.get(i);
+					} while (!counts.compareAndSet(i, count, count >> 1));
+				}
+				this.total.addAndGet(-(total >> 1));
+			}
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package me.jezza.restbolt;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.Type;
+
+import me.jezza.restbolt.annotations.Batch;
+import me.jezza.restbolt.annotations.Header;
+import me.jezza.restbolt.annotations.Path;
+import me.jezza.restbolt.annotations.Query;
+import me.jezza.restbolt.form.FormEncoder;
+import me.jezza.restbolt.json.Decoder;
+import me.jezza.restbolt.json.Decoders;
+import me.jezza.restbolt.json.Json;
+import me.jezza.restbolt.json.JsonReader;
+
+/**
+ * The runtime half of {@link Batch}.
+ * <p>
+ * Every proxy gets one of these per batched method. (The hosts could differ, so they can't be shared)
+ * The first call of a batch schedules it to be sent once the window is up, every call after that just adds its key, until it's either sent, or full.
+ * Calls with the same key in the same batch share the result.
+ * The keys are kept as they were given, and the ones that come back are converted to the same type, so "5" and "5.0" are never mixed up.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class Batcher {
+	/**
+	 * Only ever used to send off the batches once their window is up, the requests themselves are async, so one thread is plenty.
+	 */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "RestBolt-Batch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Spec spec;
+
+	/**
+	 * The full URI of the bulk endpoint, up to where the keys go.
+	 */
+	private final String prefix;
+
+	private final Object lock = new Object();
+	private Pending pending;
+
+	private Batcher(Spec spec, String base) {
+		this.spec = spec;
+		prefix = base.concat(spec.path);
+	}
+
+	/**
+	 * Everything about a batched method that doesn't change between proxies.
+	 */
+	public static final class Spec {
+		final String path;
+
+		/**
+		 * The (already encoded) name of the query parameter, complete with the '?' or '&amp;' that goes before the first key.
+		 */
+		final String first;
+		final String query;
+
+		/**
+		 * The static headers of the method, as name, value, name, value...
+		 */
+		final String[] headers;
+
+		final BodyHandler<List<Object>> handler;
+		final MethodHandle key;
+		final long window;
+		final int max;
+
+		Spec(String path, String query, String[] headers, BodyHandler<List<Object>> handler, MethodHandle key, long window, int max) {
+			this.path = path;
+			this.first = (path.indexOf('?') == -1 ? '?' : '&') + query + '=';
+			this.query = '&' + query + '=';
+			this.headers = headers;
+			this.handler = handler;
+			this.key = key;
+			this.window = window;
+			this.max = max;
+		}
+
+		public Batcher create(String base) {
+			return new Batcher(this, base);
+		}
+	}
+
+	private static final class Pending {
+		final HttpClient client;
+		final Map<Object, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+		ScheduledFuture<?> timer;
+
+		Pending(HttpClient client) {
+			this.client = client;
+		}
+	}
+
+	/**
+	 * The bootstrap for the specs of the batched methods.
+	 * The decoder is built here, so just like everything else, if it can't be, the proxy fails when it's bound.
+	 */
+	public static Spec spec(Lookup caller, String name, Class<?> type, Class<?> service, String descriptor) {
+		for (Method method : service.getDeclaredMethods()) {
+			if (method.getName().equals(name) && Type.getMethodDescriptor(method).equals(descriptor)) {
+				return spec(method, caller);
+			}
+		}
+		throw new IllegalStateException("Unknown method on interface: " + name + descriptor);
+	}
+
+	private static Spec spec(Method method, Lookup lookup) {
+		Batch batch = method.getDeclaredAnnotation(Batch.class);
+		String name = keyName(method);
+		String query = batch.query().isEmpty() ? name : batch.query();
+		String key = batch.key().isEmpty() ? name : batch.key();
+
+		java.lang.reflect.Type elementType = elementType(method);
+		if (!(elementType instanceof Class)) {
+			throw new IllegalStateException("A batched method needs to return a plain class: " + method);
+		}
+		Decoder<?> element = Decoders.of(elementType, lookup);
+		Decoder<List<Object>> list = new Decoder<>() {
+			@Override
+			public List<Object> decode(JsonReader reader) throws IOException {
+				if (reader.nextNull()) {
+					return null;
+				}
+				List<Object> values = new ArrayList<>();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					values.add(element.decode(reader));
+				}
+				reader.endArray();
+				return values;
+			}
+		};
+		Header[] annotations = method.getDeclaredAnnotationsByType(Header.class);
+		String[] headers = new String[annotations.length * 2];
+		for (int i = 0; i < annotations.length; i++) {
+			headers[i * 2] = annotations[i].value();
+			headers[i * 2 + 1] = annotations[i].data();
+		}
+		Class<?> keyType = method.getParameterTypes()[0];
+		return new Spec(batch.value(), URLEncoder.encode(query, StandardCharsets.UTF_8), headers, Json.handler(list), key((Class<?>) elementType, key, keyType, lookup), batch.window(), batch.max());
+	}
+
+	static String keyName(Method method) {
+		var parameters = method.getParameters();
+		if (parameters.length == 1) {
+			Path path = parameters[0].getDeclaredAnnotation(Path.class);
+			if (path != null) {
+				return path.value();
+			}
+			Query query = parameters[0].getDeclaredAnnotation(Query.class);
+			if (query != null) {
+				return query.value();
+			}
+		}
+		throw new IllegalStateException("A batched method needs a single @Path or @Query parameter: " + method);
+	}
+
+	/**
+	 * @return the T out of either T, or CompletableFuture&lt;T&gt;
+	 */
+	static java.lang.reflect.Type elementType(Method method) {
+		java.lang.reflect.Type returnType = method.getGenericReturnType();
+		if (returnType instanceof ParameterizedType && ((ParameterizedType) returnType).getRawType() == CompletableFuture.class) {
+			return ((ParameterizedType) returnType).getActualTypeArguments()[0];
+		}
+		return returnType;
+	}
+
+	/**
+	 * A getter for the key of an element, that gives it back as the same type as the key that was passed in, (boxed) so the two can just be compared.
+	 * So a long can be matched on an int field, but not on a double, or a String.
+	 */
+	private static MethodHandle key(Class<?> type, String name, Class<?> keyType, Lookup lookup) {
+		if (keyType.isArray()) {
+			throw new IllegalStateException("A batched key can't be an array, as there'd be no way to match it up again: " + keyType.getName());
+		}
+		for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+			Field field;
+			try {
+				field = current.getDeclaredField(name);
+			} catch (NoSuchFieldException e) {
+				continue;
+			}
+			MethodHandle getter;
+			try {
+				getter = MethodHandles.privateLookupIn(current, lookup).unreflectGetter(field);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Unable to read \"" + name + "\" of " + type.getName(), e);
+			}
+			try {
+				if (keyType.isPrimitive()) {
+					Class<?> primitive = methodType(field.getType()).unwrap().returnType();
+					if (!primitive.isPrimitive()) {
+						throw new WrongMethodTypeException();
+					}
+					// Widened, (int to long, but never the other way) and then boxed.
+					getter = getter.asType(methodType(primitive, Object.class)).asType(methodType(keyType, Object.class));
+				} else if (!keyType.isAssignableFrom(methodType(field.getType()).wrap().returnType())) {
+					throw new WrongMethodTypeException();
+				}
+				return getter.asType(methodType(Object.class, Object.class));
+			} catch (WrongMethodTypeException e) {
+				throw new IllegalStateException("\"" + name + "\" of " + type.getName() + " is a " + field.getType().getName() + ", which can't be matched with a " + keyType.getName() + " key.");
+			}
+		}
+		throw new IllegalStateException("There's no \"" + name + "\" on " + type.getName() + " to match the batched responses with.");
+	}
+
+	public CompletableFuture<Object> submit(HttpClient client, Object key) {
+		CompletableFuture<Object> future;
+		Pending full = null;
+		synchronized (lock) {
+			Pending batch = pending;
+			if (batch == null) {
+				Pending created = batch = pending = new Pending(client);
+				created.timer = TIMER.schedule(() -> expire(created), spec.window, TimeUnit.MILLISECONDS);
+			}
+			future = batch.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+			if (batch.futures.size() >= spec.max) {
+				pending = null;
+				full = batch;
+			}
+		}
+		if (full != null) {
+			full.timer.cancel(false);
+			send(full);
+		}
+		// Everyone gets their own copy, so one of them cancelling it doesn't take everyone else down with it.
+		return future.copy();
+	}
+
+	private void expire(Pending batch) {
+		synchronized (lock) {
+			if (pending != batch) {
+				// It filled up before the timer got to it.
+				return;
+			}
+			pending = null;
+		}
+		send(batch);
+	}
+
+	private void send(Pending batch) {
+		Map<Object, CompletableFuture<Object>> futures = batch.futures;
+		StringBuilder b = new StringBuilder(prefix.length() + futures.size() * 16);
+		b.append(prefix);
+		boolean first = true;
+		for (Object key : futures.keySet()) {
+			b.append(first ? spec.first : spec.query);
+			FormEncoder.encode(b, String.valueOf(key));
+			first = false;
+		}
+		HttpRequest request;
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(b.toString()));
+			String[] headers = spec.headers;
+			for (int i = 0; i < headers.length; i += 2) {
+				builder.header(headers[i], headers[i + 1]);
+			}
+			request = builder.build();
+		} catch (IllegalArgumentException e) {
+			fail(futures, e);
+			return;
+		}
+		batch.client.sendAsync(request, spec.handler).whenComplete((response, t) -> {
+			if (t != null) {
+				fail(futures, t);
+			} else if (response.statusCode() / 100 != 2) {
+				fail(futures, new IOException("Batch request to " + request.uri() + " failed with status " + response.statusCode()));
+			} else {
+				complete(futures, response);
+			}
+		});
+	}
+
+	private void complete(Map<Object, CompletableFuture<Object>> futures, HttpResponse<List<Object>> response) {
+		List<Object> values = response.body();
+		if (values != null) {
+			for (Object value : values) {
+				if (value == null) {
+					continue;
+				}
+				Object key;
+				try {
+					key = spec.key.invokeExact(value);
+				} catch (Throwable t) {
+					fail(futures, t);
+					return;
+				}
+				CompletableFuture<Object> future = futures.remove(key);
+				if (future != null) {
+					future.complete(value);
+				}
+			}
+		}
+		// Anything that wasn't sent back doesn't exist.
+		for (Iterator<CompletableFuture<Object>> it = futures.values().iterator(); it.hasNext(); ) {
+			it.next().complete(null);
+			it.remove();
+		}
+	}
+
+	private static void fail(Map<Object, CompletableFuture<Object>> futures, Throwable t) {
+		for (CompletableFuture<Object> future : futures.values()) {
+			future.completeExceptionally(t);
+		}
+	}
+
+	/**
+	 * Used by the synchronous batched methods.
+	 */
+	public static Object join(CompletableFuture<Object> future) throws SyncException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new SyncException(e.getCause());
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			throw new SyncException(e);
+		}
+	}
+}
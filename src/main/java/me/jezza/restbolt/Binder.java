@@ -2,15 +2,54 @@ package me.jezza.restbolt;
 
 import java.lang.invoke.MethodHandle;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.function.Supplier;
 
 /**
  * @author Jezza
  */
 public final class Binder<T> {
+	/**
+	 * (URI, Transport)Object
+	 */
 	private final MethodHandle handle;
+	private final Transport transport;
 
-	Binder(MethodHandle handle) {
+	Binder(MethodHandle handle, Transport transport) {
 		this.handle = handle;
+		this.transport = transport;
+	}
+
+	/**
+	 * Every proxy bound from the returned binder uses the given client.
+	 * So, a single connection pool, no matter how many hosts you bind to.
+	 */
+	public Binder<T> using(HttpClient client) {
+		return new Binder<>(handle, Transport.shared(client).metrics(transport.metered()));
+	}
+
+	/**
+	 * Every proxy bound from the returned binder asks the factory for its client.
+	 */
+	public Binder<T> using(Supplier<HttpClient> factory) {
+		return new Binder<>(handle, Transport.factory(factory).metrics(transport.metered()));
+	}
+
+	/**
+	 * Every proxy bound from the returned binder builds its client on virtual threads.
+	 * (See {@link me.jezza.restbolt.annotations.Client#virtualThreads()})
+	 * Same as the annotation, it can't be mixed with a {@link me.jezza.restbolt.annotations.Client#executor()}.
+	 */
+	public Binder<T> virtualThreads() {
+		return new Binder<>(handle, transport.virtualThreads());
+	}
+
+	/**
+	 * Every proxy bound from the returned binder records the requests its methods send. (See {@link Metrics})
+	 * They can be read back through {@link me.jezza.restbolt.annotations.RestService#metrics()}, so the interface needs to extend it.
+	 */
+	public Binder<T> metrics() {
+		return new Binder<>(handle, transport.metrics(true));
 	}
 
 	public T bind(String uri) {
@@ -19,10 +58,6 @@ public final class Binder<T> {
 	}
 
 	public T bind(URI uri) {
-		try {
-			return (T) handle.invoke(uri);
-		} catch (Throwable t) {
-			throw new IllegalStateException("Failed to instantiate class", t);
-		}
+		return RestBolt.bind(handle, uri, transport);
 	}
 }
@@ -0,0 +1,66 @@
+package me.jezza.restbolt;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.util.Locale;
+
+/**
+ * The runtime half of {@link me.jezza.restbolt.annotations.Compress}.
+ * <p>
+ * Everything is streamed through {@link java.util.zip.Deflater} and {@link java.util.zip.Inflater}, so neither side ever has the whole body (compressed or not) in memory.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class Compression {
+	/**
+	 * What's sent with every request, the server can pick whichever one it likes.
+	 */
+	public static final String ACCEPT = "gzip, deflate";
+
+	private Compression() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Compresses the body, (and says so in the headers) if it's at least the threshold, or if it doesn't know how big it is.
+	 * An empty body is always left alone.
+	 */
+	public static BodyPublisher body(HttpRequest.Builder builder, BodyPublisher publisher, int threshold, String encoding) {
+		long length = publisher.contentLength();
+		if (length == 0 || (length > 0 && length < threshold)) {
+			return publisher;
+		}
+		builder.header("Content-Encoding", encoding);
+		return new Deflating(publisher, "gzip".equals(encoding));
+	}
+
+	/**
+	 * Inflates the body before the handler sees it, if the server decided to compress it.
+	 */
+	public static <T> BodyHandler<T> decoding(BodyHandler<T> handler) {
+		return info -> {
+			BodySubscriber<T> subscriber = handler.apply(info);
+			String encoding = info.headers().firstValue("Content-Encoding").orElse(null);
+			if (encoding == null) {
+				return subscriber;
+			}
+			switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+				case "gzip":
+				case "x-gzip":
+					return new Inflating<>(subscriber, true);
+				case "deflate":
+					return new Inflating<>(subscriber, false);
+				default:
+					// "identity", or something we never asked for, either way, it's not ours to touch.
+					return subscriber;
+			}
+		};
+	}
+
+	static boolean supported(String encoding) {
+		return "gzip".equals(encoding) || "deflate".equals(encoding);
+	}
+}
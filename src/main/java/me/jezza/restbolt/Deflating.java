@@ -0,0 +1,213 @@
+package me.jezza.restbolt;
+
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses another publisher's body on the way through.
+ * <p>
+ * It only ever asks the original for one buffer at a time, and only when the subscriber wants more than what's already been compressed,
+ * so a big (or slow) body never piles up in here.
+ * The output is batched into {@link #CHUNK} sized buffers, as the deflater hands it back in lots of tiny pieces.
+ *
+ * @author Jezza
+ */
+final class Deflating implements BodyPublisher {
+	private static final int CHUNK = 16 * 1024;
+
+	/**
+	 * The magic, the method (deflate), no flags, no time, no extra flags, and an unknown OS.
+	 */
+	private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+	private final BodyPublisher publisher;
+	private final boolean gzip;
+
+	Deflating(BodyPublisher publisher, boolean gzip) {
+		this.publisher = publisher;
+		this.gzip = gzip;
+	}
+
+	@Override
+	public long contentLength() {
+		// No idea until it's done.
+		return -1;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+		publisher.subscribe(new Compressor(subscriber, gzip));
+	}
+
+	/**
+	 * Sits between the two, it's the original's subscriber, and the subscriber's subscription.
+	 * <p>
+	 * The deflater is only ever touched from the original's signals, which are already serialised, so it doesn't need a lock.
+	 * Everything that goes downstream is sent from {@link #drain()}, which only ever has one thread in it.
+	 */
+	private static final class Compressor implements Flow.Subscriber<ByteBuffer>, Flow.Subscription {
+		private final Flow.Subscriber<? super ByteBuffer> downstream;
+		private final boolean gzip;
+		private final Deflater deflater;
+		private final CRC32 crc;
+
+		private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private Flow.Subscription upstream;
+		private ByteBuffer chunk;
+
+		private volatile boolean pending;
+		private volatile boolean finished;
+		private volatile boolean cancelled;
+		private volatile Throwable error;
+
+		Compressor(Flow.Subscriber<? super ByteBuffer> downstream, boolean gzip) {
+			this.downstream = downstream;
+			this.gzip = gzip;
+			// gzip has its own header and trailer, so the deflater only needs to produce the raw stream.
+			deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+			crc = gzip ? new CRC32() : null;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			upstream = subscription;
+			if (gzip) {
+				chunk = ByteBuffer.allocate(CHUNK).put(GZIP_HEADER);
+			}
+			downstream.onSubscribe(this);
+		}
+
+		@Override
+		public void onNext(ByteBuffer item) {
+			if (!cancelled) {
+				if (gzip) {
+					crc.update(item.duplicate());
+				}
+				deflater.setInput(item);
+				deflate(false);
+			}
+			pending = false;
+			drain();
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			deflater.end();
+			error = throwable;
+			drain();
+		}
+
+		@Override
+		public void onComplete() {
+			if (!cancelled) {
+				deflater.finish();
+				deflate(true);
+				if (gzip) {
+					ensure(8);
+					chunk.order(ByteOrder.LITTLE_ENDIAN)
+							.putInt((int) crc.getValue())
+							.putInt((int) deflater.getBytesRead())
+							.order(ByteOrder.BIG_ENDIAN);
+				}
+				if (chunk != null && chunk.position() > 0) {
+					output.add(chunk.flip());
+				}
+				chunk = null;
+			}
+			deflater.end();
+			finished = true;
+			drain();
+		}
+
+		/**
+		 * Pulls everything it can out of the deflater, only the full chunks are sent, the rest waits for the next lot of input. (Or the end)
+		 */
+		private void deflate(boolean finishing) {
+			while (true) {
+				ensure(1);
+				deflater.deflate(chunk);
+				if (!chunk.hasRemaining()) {
+					output.add(chunk.flip());
+					chunk = null;
+				} else if (deflater.finished() || (!finishing && deflater.needsInput())) {
+					return;
+				}
+			}
+		}
+
+		private void ensure(int space) {
+			if (chunk == null) {
+				chunk = ByteBuffer.allocate(CHUNK);
+			} else if (chunk.remaining() < space) {
+				output.add(chunk.flip());
+				chunk = ByteBuffer.allocate(CHUNK);
+			}
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				cancel();
+				downstream.onError(new IllegalArgumentException("Non-positive request: " + n));
+				return;
+			}
+			demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			// The deflater's left to the cleaner, as the original might still be halfway through a signal.
+			cancelled = true;
+			upstream.cancel();
+			output.clear();
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				if (cancelled) {
+					output.clear();
+					return;
+				}
+				Throwable error = this.error;
+				if (error != null) {
+					cancelled = true;
+					output.clear();
+					downstream.onError(error);
+					return;
+				}
+				while (demand.get() > 0 && !output.isEmpty()) {
+					demand.decrementAndGet();
+					downstream.onNext(output.poll());
+				}
+				if (output.isEmpty()) {
+					if (finished) {
+						cancelled = true;
+						downstream.onComplete();
+						return;
+					}
+					if (demand.get() > 0 && !pending) {
+						pending = true;
+						upstream.request(1);
+					}
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package me.jezza.restbolt;
+
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * A client that hands everything but the sending over to the proxy's real client.
+ * (See {@link MeteredClient} and {@link LimitedClient})
+ *
+ * @author Jezza
+ */
+abstract class DelegatingClient extends HttpClient {
+	final HttpClient delegate;
+
+	DelegatingClient(HttpClient delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Optional<CookieHandler> cookieHandler() {
+		return delegate.cookieHandler();
+	}
+
+	@Override
+	public Optional<Duration> connectTimeout() {
+		return delegate.connectTimeout();
+	}
+
+	@Override
+	public Redirect followRedirects() {
+		return delegate.followRedirects();
+	}
+
+	@Override
+	public Optional<ProxySelector> proxy() {
+		return delegate.proxy();
+	}
+
+	@Override
+	public SSLContext sslContext() {
+		return delegate.sslContext();
+	}
+
+	@Override
+	public SSLParameters sslParameters() {
+		return delegate.sslParameters();
+	}
+
+	@Override
+	public Optional<Authenticator> authenticator() {
+		return delegate.authenticator();
+	}
+
+	@Override
+	public Version version() {
+		return delegate.version();
+	}
+
+	@Override
+	public Optional<Executor> executor() {
+		return delegate.executor();
+	}
+
+	@Override
+	public WebSocket.Builder newWebSocketBuilder() {
+		return delegate.newWebSocketBuilder();
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+}
@@ -0,0 +1,245 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The runtime half of {@link me.jezza.restbolt.annotations.Download}.
+ * <p>
+ * The file is split into chunks, and a fixed number of "lanes" keep pulling the next chunk off a counter until there's none left.
+ * Each chunk is written straight into the file at its own offset as the buffers come in, so nothing is ever held onto.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class Downloads {
+	private static final Logger log = LoggerFactory.getLogger(Downloads.class);
+
+	private Downloads() {
+		throw new IllegalStateException();
+	}
+
+	public static Path download(HttpClient client, HttpRequest request, Path destination, long chunkSize, int parallelism, int retries) throws IOException, InterruptedException {
+		Path file = destination != null
+				? destination
+				: Files.createTempFile("restbolt-", ".tmp");
+
+		HttpResponse<Void> head = client.send(copy(request, "HEAD"), BodyHandlers.discarding());
+		long length = head.headers().firstValueAsLong("Content-Length").orElse(-1);
+		boolean ranges = head.headers().allValues("Accept-Ranges").contains("bytes");
+		if (head.statusCode() / 100 != 2 || !ranges || length <= chunkSize) {
+			// Either it's small enough, or the server can't do it, so just grab the whole thing in one go.
+			HttpResponse<Path> response = client.send(request, BodyHandlers.ofFile(file));
+			if (response.statusCode() / 100 != 2) {
+				throw new IOException("Download of " + request.uri() + " failed with status " + response.statusCode());
+			}
+			return file;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			State state = new State(client, request, channel, chunkSize, length, retries);
+			int lanes = (int) Math.min(parallelism, state.chunks);
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[lanes];
+			for (int i = 0; i < lanes; i++) {
+				futures[i] = lane(state);
+			}
+			// Either everything finished, or one of the chunks ran out of retries, whichever comes first.
+			try {
+				CompletableFuture.anyOf(CompletableFuture.allOf(futures), state.failed).get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				throw new IOException("Download of " + request.uri() + " failed", cause);
+			} finally {
+				// Stop anything that's still going, as the channel is about to be closed out from underneath it.
+				state.failed.complete(null);
+				for (CompletableFuture<?> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+		return file;
+	}
+
+	private static final class State {
+		final HttpClient client;
+		final HttpRequest request;
+		final FileChannel channel;
+		final long chunkSize;
+		final long length;
+		final int retries;
+		final long chunks;
+
+		final AtomicInteger next = new AtomicInteger();
+
+		/**
+		 * Completed exceptionally as soon as a chunk gives up, and normally when the download's over (one way or another).
+		 */
+		final CompletableFuture<Void> failed = new CompletableFuture<>();
+
+		State(HttpClient client, HttpRequest request, FileChannel channel, long chunkSize, long length, int retries) {
+			this.client = client;
+			this.request = request;
+			this.channel = channel;
+			this.chunkSize = chunkSize;
+			this.length = length;
+			this.retries = retries;
+			this.chunks = (length + chunkSize - 1) / chunkSize;
+		}
+	}
+
+	private static CompletableFuture<Void> lane(State state) {
+		int chunk = state.next.getAndIncrement();
+		if (chunk >= state.chunks || state.failed.isDone()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		long start = chunk * state.chunkSize;
+		long end = Math.min(start + state.chunkSize, state.length) - 1;
+		return fetch(state, start, end, state.retries).thenCompose(v -> lane(state));
+	}
+
+	private static CompletableFuture<Void> fetch(State state, long start, long end, int retries) {
+		RangeWriter writer = new RangeWriter(state.channel, start, end - start + 1);
+		HttpRequest ranged = copy(state.request, "GET", "Range", "bytes=" + start + '-' + end);
+		return state.client.sendAsync(ranged, info -> info.statusCode() == 206 ? writer : BodySubscribers.replacing(null))
+				.handle((response, t) -> {
+					if (t == null && response.statusCode() != 206) {
+						t = new IOException("Expected a partial response for bytes " + start + '-' + end + " of " + state.request.uri() + ", but got " + response.statusCode());
+					}
+					if (t == null) {
+						return CompletableFuture.<Void>completedFuture(null);
+					}
+					if (retries > 0 && !state.failed.isDone()) {
+						// Only ask for what we didn't get.
+						long resume = start + writer.written;
+						log.warn("Range " + start + '-' + end + " of " + state.request.uri() + " failed, retrying from " + resume + ": " + t);
+						return resume > end
+								? CompletableFuture.<Void>completedFuture(null)
+								: fetch(state, resume, end, retries - 1);
+					}
+					state.failed.completeExceptionally(t);
+					return CompletableFuture.<Void>failedFuture(t);
+				})
+				.thenCompose(f -> f);
+	}
+
+	/**
+	 * Copies the request, but with a different method, no body, and whatever extra headers were given.
+	 */
+	private static HttpRequest copy(HttpRequest request, String method, String... extra) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri()).method(method, BodyPublishers.noBody());
+		String[] headers = headers(request);
+		if (headers.length != 0) {
+			builder.headers(headers);
+		}
+		if (extra.length != 0) {
+			builder.headers(extra);
+		}
+		request.timeout().ifPresent(builder::timeout);
+		request.version().ifPresent(builder::version);
+		return builder.build();
+	}
+
+	private static String[] headers(HttpRequest request) {
+		List<String> headers = new ArrayList<>();
+		request.headers().map().forEach((name, values) -> {
+			for (String value : values) {
+				headers.add(name);
+				headers.add(value);
+			}
+		});
+		return headers.toArray(new String[0]);
+	}
+
+	/**
+	 * Writes a single range into its place in the file, as it arrives.
+	 */
+	private static final class RangeWriter implements BodySubscriber<Void> {
+		private final CompletableFuture<Void> body = new CompletableFuture<>();
+		private final FileChannel channel;
+		private long position;
+		private long remaining;
+		private Flow.Subscription subscription;
+
+		/**
+		 * How much of the range made it into the file, so a retry can pick up where this left off.
+		 */
+		volatile long written;
+
+		RangeWriter(FileChannel channel, long position, long length) {
+			this.channel = channel;
+			this.position = position;
+			this.remaining = length;
+		}
+
+		@Override
+		public CompletionStage<Void> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			try {
+				for (ByteBuffer buffer : buffers) {
+					if (buffer.remaining() > remaining) {
+						throw new IOException("Server sent more than the range it was asked for");
+					}
+					while (buffer.hasRemaining()) {
+						int count = channel.write(buffer, position);
+						position += count;
+						remaining -= count;
+						written += count;
+					}
+				}
+			} catch (IOException e) {
+				subscription.cancel();
+				body.completeExceptionally(e);
+				return;
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			if (remaining != 0) {
+				body.completeExceptionally(new IOException("Range ended " + remaining + " bytes early"));
+			} else {
+				body.complete(null);
+			}
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package me.jezza.restbolt;
+
+/**
+ * A single Server-Sent Event. (See {@link me.jezza.restbolt.annotations.SSE})
+ *
+ * @author Jezza
+ */
+public final class Event {
+	private final String id;
+	private final String type;
+	private final String data;
+
+	Event(String id, String type, String data) {
+		this.id = id;
+		this.type = type;
+		this.data = data;
+	}
+
+	/**
+	 * @return the last id the server sent, (it carries over to the events after it) or null if it's never sent one.
+	 */
+	public String id() {
+		return id;
+	}
+
+	/**
+	 * @return the "event" field, or "message" if there wasn't one.
+	 */
+	public String type() {
+		return type;
+	}
+
+	/**
+	 * @return the "data" fields, joined with a newline.
+	 */
+	public String data() {
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "Event(id=" + id + ", type=" + type + ", data=" + data + ')';
+	}
+}
@@ -0,0 +1,443 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The runtime half of {@link me.jezza.restbolt.annotations.SSE}.
+ * <p>
+ * Every subscriber gets its own connection, (and its own Last-Event-ID) which is only asked for more of the body once everything it's already parsed has been taken.
+ * The parsing follows the spec, (the "data", "event", "id" and "retry" fields, comments, and any of the three line endings) and doesn't care how the lines are split across the buffers.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class EventSource implements Flow.Publisher<Event> {
+	/**
+	 * Only ever used to schedule the reconnects.
+	 */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "RestBolt-Events");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final HttpClient client;
+	private final HttpRequest request;
+	private final long retry;
+	private final int reconnects;
+
+	private EventSource(HttpClient client, HttpRequest request, long retry, int reconnects) {
+		this.client = client;
+		this.request = request;
+		this.retry = retry;
+		this.reconnects = reconnects;
+	}
+
+	/**
+	 * What the generated methods return, nothing is sent until it's subscribed to.
+	 */
+	public static Flow.Publisher<Event> publisher(HttpClient client, HttpRequest request, long retry, int reconnects) {
+		return new EventSource(client, request, retry, reconnects);
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Event> subscriber) {
+		Connection connection = new Connection(subscriber, this);
+		subscriber.onSubscribe(connection);
+		connection.connect();
+	}
+
+	/**
+	 * The same request, just with the id of the last event we saw.
+	 */
+	private static HttpRequest resume(HttpRequest request, String lastId) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+				.expectContinue(request.expectContinue());
+		request.timeout().ifPresent(builder::timeout);
+		request.version().ifPresent(builder::version);
+		request.headers().map().forEach((name, values) -> {
+			if (!"Last-Event-ID".equalsIgnoreCase(name)) {
+				for (String value : values) {
+					builder.header(name, value);
+				}
+			}
+		});
+		builder.header("Last-Event-ID", lastId);
+		return builder.method(request.method(), request.bodyPublisher().orElse(BodyPublishers.noBody())).build();
+	}
+
+	// How the last connection went.
+	private static final int FAILED = 0;
+	private static final int STREAMED = 1;
+	private static final int FINISHED = 2;
+	private static final int REJECTED = 3;
+
+	/**
+	 * A single subscription, which lives across any number of connections.
+	 * <p>
+	 * Everything that goes to the subscriber is sent from {@link #drain()}, which only ever has one thread in it.
+	 */
+	private static final class Connection implements Flow.Subscription {
+		private final Flow.Subscriber<? super Event> subscriber;
+		private final EventSource source;
+
+		private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile Flow.Subscription upstream;
+		private volatile boolean pending;
+		private volatile boolean cancelled;
+		private volatile Throwable error;
+		private volatile boolean completed;
+
+		private volatile CompletableFuture<?> exchange;
+		private volatile ScheduledFuture<?> reconnect;
+
+		// Carried over from one connection to the next.
+		private volatile String lastId;
+		private volatile long retry;
+		private volatile int failures;
+
+		// How the current connection went, written before the exchange completes.
+		private volatile int outcome;
+		private volatile Throwable rejection;
+
+		Connection(Flow.Subscriber<? super Event> subscriber, EventSource source) {
+			this.subscriber = subscriber;
+			this.source = source;
+			retry = source.retry;
+		}
+
+		void connect() {
+			if (cancelled) {
+				return;
+			}
+			outcome = FAILED;
+			String lastId = this.lastId;
+			HttpRequest request = lastId == null ? source.request : resume(source.request, lastId);
+			CompletableFuture<HttpResponse<Void>> exchange;
+			try {
+				exchange = source.client.sendAsync(request, this::handle);
+			} catch (RuntimeException e) {
+				fail(e);
+				return;
+			}
+			this.exchange = exchange;
+			exchange.whenComplete(this::ended);
+			if (cancelled) {
+				exchange.cancel(true);
+			}
+		}
+
+		private BodySubscriber<Void> handle(ResponseInfo info) {
+			int status = info.statusCode();
+			String type = info.headers().firstValue("Content-Type").orElse("");
+			if (status == 200 && type.toLowerCase(Locale.ROOT).startsWith("text/event-stream")) {
+				outcome = STREAMED;
+				failures = 0;
+				return new Parser(this);
+			}
+			if (status == 204) {
+				// The server's telling us to stop.
+				outcome = FINISHED;
+			} else if (status == 200) {
+				outcome = REJECTED;
+				rejection = new IOException("Expected a text/event-stream from " + source.request.uri() + ", but got \"" + type + "\".");
+			} else if (status != 429 && status < 500) {
+				outcome = REJECTED;
+				rejection = new IOException("Event stream " + source.request.uri() + " failed with a " + status + '.');
+			}
+			// Otherwise, it's worth trying again.
+			return BodySubscribers.replacing(null);
+		}
+
+		private void ended(HttpResponse<Void> response, Throwable t) {
+			upstream = null;
+			if (cancelled) {
+				return;
+			}
+			int outcome = this.outcome;
+			if (outcome == FINISHED) {
+				completed = true;
+				drain();
+				return;
+			}
+			if (outcome == REJECTED) {
+				fail(rejection);
+				return;
+			}
+			// The stream itself going away (normally or not) is just a reconnect, it's the failures to connect that count.
+			if (outcome == FAILED && ++failures > source.reconnects) {
+				fail(t != null ? unwrap(t) : new IOException("Gave up on " + source.request.uri() + " after " + source.reconnects + " reconnects."));
+				return;
+			}
+			reconnect = TIMER.schedule(this::connect, retry, TimeUnit.MILLISECONDS);
+			if (cancelled) {
+				reconnect.cancel(false);
+			}
+		}
+
+		private static Throwable unwrap(Throwable t) {
+			return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+		}
+
+		private void fail(Throwable t) {
+			error = t;
+			drain();
+		}
+
+		void subscribed(Flow.Subscription subscription) {
+			pending = false;
+			upstream = subscription;
+			if (cancelled) {
+				subscription.cancel();
+				return;
+			}
+			drain();
+		}
+
+		void parsed(Event event) {
+			events.add(event);
+		}
+
+		void received() {
+			pending = false;
+			drain();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				cancel();
+				subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+				return;
+			}
+			demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			Flow.Subscription upstream = this.upstream;
+			if (upstream != null) {
+				upstream.cancel();
+			}
+			CompletableFuture<?> exchange = this.exchange;
+			if (exchange != null) {
+				exchange.cancel(true);
+			}
+			ScheduledFuture<?> reconnect = this.reconnect;
+			if (reconnect != null) {
+				reconnect.cancel(false);
+			}
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				if (cancelled) {
+					events.clear();
+					return;
+				}
+				Event event;
+				while (demand.get() > 0 && (event = events.poll()) != null) {
+					demand.decrementAndGet();
+					subscriber.onNext(event);
+				}
+				if (events.isEmpty()) {
+					Throwable error = this.error;
+					if (error != null || completed) {
+						cancel();
+						if (error != null) {
+							subscriber.onError(error);
+						} else {
+							subscriber.onComplete();
+						}
+						return;
+					}
+					// Only ask for more once everything we've already got has been taken.
+					Flow.Subscription upstream = this.upstream;
+					if (upstream != null && demand.get() > 0 && !pending) {
+						pending = true;
+						upstream.request(1);
+					}
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+
+	/**
+	 * Turns the bytes into lines, and the lines into events.
+	 * The client never calls it from more than one thread at a time, so none of this needs to be guarded.
+	 */
+	private static final class Parser implements BodySubscriber<Void> {
+		private final Connection connection;
+		private final CompletableFuture<Void> body = new CompletableFuture<>();
+
+		private byte[] line = new byte[256];
+		private int length;
+		private boolean cr;
+		private boolean first = true;
+
+		private final StringBuilder data = new StringBuilder();
+		private boolean hasData;
+		private String type;
+
+		Parser(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public CompletionStage<Void> getBody() {
+			// Only done once the stream is.
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			connection.subscribed(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> item) {
+			for (int i = 0, l = item.size(); i < l; i++) {
+				ByteBuffer buffer = item.get(i);
+				while (buffer.hasRemaining()) {
+					byte b = buffer.get();
+					if (b == '\n') {
+						if (cr) {
+							// The second half of a \r\n.
+							cr = false;
+							continue;
+						}
+						line();
+					} else if (b == '\r') {
+						cr = true;
+						line();
+					} else {
+						cr = false;
+						if (length == line.length) {
+							line = Arrays.copyOf(line, length << 1);
+						}
+						line[length++] = b;
+					}
+				}
+			}
+			connection.received();
+		}
+
+		private void line() {
+			int start = 0;
+			if (first) {
+				first = false;
+				// A BOM at the very start is just ignored.
+				if (length >= 3 && line[0] == (byte) 0xEF && line[1] == (byte) 0xBB && line[2] == (byte) 0xBF) {
+					start = 3;
+				}
+			}
+			int end = length;
+			length = 0;
+			if (start == end) {
+				dispatch();
+				return;
+			}
+			if (line[start] == ':') {
+				// Comment. (Usually a keep-alive)
+				return;
+			}
+			int colon = start;
+			while (colon < end && line[colon] != ':') {
+				colon++;
+			}
+			String field = new String(line, start, colon - start, StandardCharsets.UTF_8);
+			String value;
+			if (colon == end) {
+				value = "";
+			} else {
+				int from = colon + 1;
+				if (from < end && line[from] == ' ') {
+					from++;
+				}
+				value = new String(line, from, end - from, StandardCharsets.UTF_8);
+			}
+			switch (field) {
+				case "data":
+					data.append(value).append('\n');
+					hasData = true;
+					break;
+				case "event":
+					type = value;
+					break;
+				case "id":
+					if (value.indexOf('\0') == -1) {
+						connection.lastId = value;
+					}
+					break;
+				case "retry":
+					if (!value.isEmpty() && value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+						try {
+							connection.retry = Long.parseLong(value);
+						} catch (NumberFormatException e) {
+							// Too big to be serious.
+						}
+					}
+					break;
+				default:
+					// Anything else is ignored.
+					break;
+			}
+		}
+
+		private void dispatch() {
+			if (hasData) {
+				// Minus the last newline.
+				data.setLength(data.length() - 1);
+				connection.parsed(new Event(connection.lastId, type == null || type.isEmpty() ? "message" : type, data.toString()));
+			}
+			data.setLength(0);
+			hasData = false;
+			type = null;
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			// An incomplete event is just dropped.
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			body.complete(null);
+		}
+	}
+}
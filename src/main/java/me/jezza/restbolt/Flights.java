@@ -0,0 +1,83 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The requests of a {@link me.jezza.restbolt.annotations.SingleFlight} method that are currently in flight.
+ * <p>
+ * The request itself is the key, as {@link HttpRequest#equals(Object)} already compares the verb, URI and headers, which is exactly what we're after.
+ * Every proxy gets one of these per method, so the body handler (and the client) is always the same for a given key.
+ * <p>
+ * The entry is removed before the response is handed out, so anything that comes in after that sends a fresh request.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class Flights {
+	private final ConcurrentMap<HttpRequest, CompletableFuture<HttpResponse<?>>> flights = new ConcurrentHashMap<>();
+
+	/**
+	 * One per method of each proxy, made in the proxy's constructor.
+	 */
+	public Flights() {
+	}
+
+	public CompletableFuture<HttpResponse<?>> sendAsync(HttpClient client, HttpRequest request, BodyHandler<?> handler) {
+		// Everyone gets their own copy, so one of them cancelling it doesn't take everyone else down with it.
+		return join(client, request, handler).copy();
+	}
+
+	public HttpResponse<?> send(HttpClient client, HttpRequest request, BodyHandler<?> handler) throws IOException, InterruptedException {
+		CompletableFuture<HttpResponse<?>> future = join(client, request, handler);
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private CompletableFuture<HttpResponse<?>> join(HttpClient client, HttpRequest request, BodyHandler<?> handler) {
+		CompletableFuture<HttpResponse<?>> existing = flights.get(request);
+		if (existing != null) {
+			return existing;
+		}
+		CompletableFuture<HttpResponse<?>> created = new CompletableFuture<>();
+		existing = flights.putIfAbsent(request, created);
+		if (existing != null) {
+			return existing;
+		}
+		try {
+			client.sendAsync(request, handler).whenComplete((response, t) -> {
+				flights.remove(request, created);
+				if (t instanceof CompletionException && t.getCause() != null) {
+					created.completeExceptionally(t.getCause());
+				} else if (t != null) {
+					created.completeExceptionally(t);
+				} else {
+					created.complete(response);
+				}
+			});
+		} catch (RuntimeException e) {
+			flights.remove(request, created);
+			created.completeExceptionally(e);
+		}
+		return created;
+	}
+}
@@ -0,0 +1,59 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The body handlers the JDK doesn't have out of the box.
+ * Everything else maps straight onto {@link java.net.http.HttpResponse.BodyHandlers}.
+ *
+ * @author Jezza
+ */
+public final class Handlers {
+	private static final BodyHandler<ByteBuffer> BYTE_BUFFER = info -> BodySubscribers.mapping(BodySubscribers.ofByteArray(), ByteBuffer::wrap);
+
+	private static final BodyHandler<Path> TEMP_FILE = info -> {
+		try {
+			return BodySubscribers.ofFile(Files.createTempFile("restbolt-", ".tmp"));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	};
+
+	private Handlers() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Just wraps the array the body was collected into, so there's no extra copy.
+	 */
+	public static BodyHandler<ByteBuffer> ofByteBuffer() {
+		return BYTE_BUFFER;
+	}
+
+	/**
+	 * Writes the body to a fresh temp file. (One per response)
+	 */
+	public static BodyHandler<Path> ofTempFile() {
+		return TEMP_FILE;
+	}
+
+	/**
+	 * The body of a response that's about to be unboxed into a primitive.
+	 * A null means it wasn't a 2xx, (or it was literally a null) and there's no sensible primitive to hand back, so it's thrown instead.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 */
+	public static Object primitive(HttpResponse<?> response) throws SyncException {
+		Object body = response.body();
+		if (body == null) {
+			throw new SyncException(response.request().method() + ' ' + response.uri() + " returned a " + response.statusCode() + " with no value.");
+		}
+		return body;
+	}
+}
@@ -0,0 +1,80 @@
+package me.jezza.restbolt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A log-linear histogram, in the same vein as HdrHistogram.
+ * <p>
+ * Anything below 64 gets a bucket to itself, and past that, every doubling is split into 32 buckets, so a value is never more than ~3% away from the bucket it lands in.
+ * The values are in microseconds, and go up to 2^37 (a day and a half, give or take), anything past that just lands in the last bucket.
+ * <p>
+ * Recording is an atomic increment, (and a couple of adders) so it's lock-free, and never allocates.
+ *
+ * @author Jezza
+ */
+final class Histogram {
+	private static final int SUB_BUCKETS = 64;
+	private static final int HALF = SUB_BUCKETS >> 1;
+	private static final int SHIFTS = 31;
+
+	static final int BUCKETS = SUB_BUCKETS + SHIFTS * HALF;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	void record(long micros) {
+		if (micros < 0) {
+			micros = 0;
+		}
+		counts.incrementAndGet(index(micros));
+		total.add(micros);
+		max.accumulate(micros);
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		// The shift that leaves the top 6 bits, so (value >>> shift) is somewhere in [32, 64).
+		int shift = 58 - Long.numberOfLeadingZeros(value);
+		if (shift > SHIFTS) {
+			return BUCKETS - 1;
+		}
+		return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+	}
+
+	/**
+	 * @return the largest value that would land in the given bucket.
+	 */
+	static long highest(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int offset = index - SUB_BUCKETS;
+		int shift = offset / HALF + 1;
+		long sub = offset % HALF + HALF;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * @return a copy of the counts, which isn't an atomic view of everything, but it doesn't need to be.
+	 */
+	long[] counts() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return copy;
+	}
+
+	long total() {
+		return total.sum();
+	}
+
+	long max() {
+		return max.get();
+	}
+}
@@ -0,0 +1,321 @@
+package me.jezza.restbolt;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates the body before it reaches the real subscriber.
+ * <p>
+ * Every list of buffers that comes in is turned into exactly one list going out, (even if it's empty, as the header ate all of it)
+ * so the subscriber's demand can just be handed straight through.
+ * A "deflate" body could be either a zlib stream, (what the spec says) or a raw one, (what a lot of servers actually send) so the first two bytes decide.
+ *
+ * @author Jezza
+ */
+final class Inflating<T> implements BodySubscriber<T> {
+	private static final int CHUNK = 16 * 1024;
+
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	// gzip
+	private static final int HEADER = 0;
+	private static final int EXTRA_LENGTH = 1;
+	private static final int EXTRA = 2;
+	private static final int NAME = 3;
+	private static final int COMMENT = 4;
+	private static final int HEADER_CRC = 5;
+	private static final int TRAILER = 6;
+	// deflate
+	private static final int SNIFF = 7;
+	// both
+	private static final int BODY = 8;
+	private static final int DONE = 9;
+	private static final int FAILED = 10;
+
+	private final BodySubscriber<T> subscriber;
+	private final boolean gzip;
+	private final CRC32 crc;
+
+	private Flow.Subscription subscription;
+	private Inflater inflater;
+
+	private int state;
+	private int flags;
+	/**
+	 * How many more bytes the current state needs.
+	 */
+	private int needed;
+	private final byte[] scratch = new byte[10];
+	private int scratched;
+	private long size;
+	/**
+	 * What's been inflated from the current item.
+	 */
+	private List<ByteBuffer> output;
+
+	Inflating(BodySubscriber<T> subscriber, boolean gzip) {
+		this.subscriber = subscriber;
+		this.gzip = gzip;
+		crc = gzip ? new CRC32() : null;
+		state = gzip ? HEADER : SNIFF;
+		needed = gzip ? 10 : 2;
+	}
+
+	@Override
+	public CompletionStage<T> getBody() {
+		return subscriber.getBody();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		subscriber.onSubscribe(subscription);
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> item) {
+		if (state == FAILED) {
+			return;
+		}
+		output = null;
+		try {
+			for (int i = 0, l = item.size(); i < l; i++) {
+				ByteBuffer input = item.get(i);
+				while (input.hasRemaining()) {
+					if (state == BODY) {
+						inflate(input);
+					} else {
+						read(input);
+					}
+				}
+			}
+		} catch (IOException | DataFormatException e) {
+			fail(e instanceof IOException ? (IOException) e : new ZipException(e.getMessage()));
+			return;
+		}
+		List<ByteBuffer> output = this.output;
+		this.output = null;
+		subscriber.onNext(output != null ? output : Collections.emptyList());
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		if (state == FAILED) {
+			return;
+		}
+		end();
+		state = FAILED;
+		subscriber.onError(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (state == FAILED) {
+			return;
+		}
+		// Nothing at all is fine, (a HEAD, a 204, etc) and so is the end of a gzip member, anything else means it was cut off.
+		boolean empty = (state == HEADER || state == SNIFF) && scratched == 0;
+		if (state != DONE && !empty) {
+			fail(new EOFException("Compressed body ended early."));
+			return;
+		}
+		end();
+		subscriber.onComplete();
+	}
+
+	private void fail(IOException e) {
+		end();
+		state = FAILED;
+		subscription.cancel();
+		subscriber.onError(e);
+	}
+
+	private void end() {
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+	}
+
+	private void inflate(ByteBuffer input) throws IOException, DataFormatException {
+		inflater.setInput(input);
+		ByteBuffer chunk = null;
+		while (true) {
+			if (chunk == null) {
+				chunk = ByteBuffer.allocate(CHUNK);
+			}
+			inflater.inflate(chunk);
+			if (!chunk.hasRemaining()) {
+				emit(chunk);
+				chunk = null;
+				continue;
+			}
+			if (inflater.finished()) {
+				if (gzip) {
+					state = TRAILER;
+					needed = 8;
+				} else {
+					state = DONE;
+				}
+				break;
+			}
+			if (inflater.needsDictionary()) {
+				throw new ZipException("Compressed body needs a preset dictionary.");
+			}
+			if (inflater.needsInput()) {
+				break;
+			}
+		}
+		if (chunk.position() > 0) {
+			emit(chunk);
+		}
+	}
+
+	private void emit(ByteBuffer chunk) {
+		chunk.flip();
+		if (gzip) {
+			crc.update(chunk.duplicate());
+			size += chunk.remaining();
+		}
+		if (output == null) {
+			output = new ArrayList<>(2);
+		}
+		output.add(chunk);
+	}
+
+	/**
+	 * Everything that isn't the compressed body itself, which can be split up across any number of buffers.
+	 */
+	private void read(ByteBuffer input) throws IOException, DataFormatException {
+		switch (state) {
+			case HEADER:
+				if (!fill(input)) {
+					return;
+				}
+				if ((scratch[0] & 0xFF) != 0x1f || (scratch[1] & 0xFF) != 0x8b || scratch[2] != 8) {
+					throw new ZipException("Not in gzip format.");
+				}
+				flags = scratch[3] & 0xFF;
+				next(EXTRA_LENGTH);
+				return;
+			case EXTRA_LENGTH:
+				if ((flags & FEXTRA) == 0) {
+					next(NAME);
+				} else if (fill(input)) {
+					int length = (scratch[0] & 0xFF) | (scratch[1] & 0xFF) << 8;
+					state = EXTRA;
+					needed = length;
+				}
+				return;
+			case EXTRA: {
+				int skipped = Math.min(needed, input.remaining());
+				input.position(input.position() + skipped);
+				needed -= skipped;
+				if (needed == 0) {
+					next(NAME);
+				}
+				return;
+			}
+			case NAME:
+			case COMMENT:
+				if ((flags & (state == NAME ? FNAME : FCOMMENT)) != 0) {
+					// Zero terminated.
+					while (input.hasRemaining()) {
+						if (input.get() == 0) {
+							next(state + 1);
+							return;
+						}
+					}
+					return;
+				}
+				next(state + 1);
+				return;
+			case HEADER_CRC:
+				if ((flags & FHCRC) == 0 || fill(input)) {
+					next(BODY);
+				}
+				return;
+			case TRAILER:
+				if (!fill(input)) {
+					return;
+				}
+				long expected = (scratch[0] & 0xFFL) | (scratch[1] & 0xFFL) << 8 | (scratch[2] & 0xFFL) << 16 | (scratch[3] & 0xFFL) << 24;
+				long length = (scratch[4] & 0xFFL) | (scratch[5] & 0xFFL) << 8 | (scratch[6] & 0xFFL) << 16 | (scratch[7] & 0xFFL) << 24;
+				if (expected != crc.getValue() || length != (size & 0xFFFFFFFFL)) {
+					throw new ZipException("Corrupt gzip trailer.");
+				}
+				// There could be another member straight after this one.
+				crc.reset();
+				size = 0;
+				end();
+				next(HEADER);
+				return;
+			case SNIFF: {
+				if (!fill(input)) {
+					return;
+				}
+				// CM is 8, and the first two bytes (as a big endian number) are a multiple of 31.
+				int header = (scratch[0] & 0xFF) << 8 | (scratch[1] & 0xFF);
+				boolean zlib = (scratch[0] & 0x0F) == 8 && header % 31 == 0;
+				inflater = new Inflater(!zlib);
+				state = BODY;
+				scratched = 0;
+				inflate(ByteBuffer.wrap(scratch, 0, 2));
+				return;
+			}
+			case DONE:
+				// Some servers pad the end, no point failing over it.
+				input.position(input.limit());
+				return;
+			default:
+				throw new IllegalStateException("Unknown state: " + state);
+		}
+	}
+
+	private void next(int state) {
+		this.state = state;
+		scratched = 0;
+		switch (state) {
+			case HEADER:
+				needed = 10;
+				break;
+			case EXTRA_LENGTH:
+			case HEADER_CRC:
+				needed = 2;
+				break;
+			case BODY:
+				inflater = new Inflater(true);
+				break;
+		}
+	}
+
+	/**
+	 * Copies what it can into the scratch buffer.
+	 *
+	 * @return true once it has all the bytes it needs.
+	 */
+	private boolean fill(ByteBuffer input) {
+		int count = Math.min(needed - scratched, input.remaining());
+		input.get(scratch, scratched, count);
+		scratched += count;
+		if (scratched < needed) {
+			return false;
+		}
+		scratched = 0;
+		return true;
+	}
+}
@@ -1,8 +1,10 @@
 package me.jezza.restbolt;
 
+import static java.lang.invoke.MethodType.methodType;
 import static org.objectweb.asm.Opcodes.ARETURN;
 import static org.objectweb.asm.Opcodes.DRETURN;
 import static org.objectweb.asm.Opcodes.FRETURN;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.IRETURN;
 import static org.objectweb.asm.Opcodes.ISTORE;
@@ -10,6 +12,9 @@ import static org.objectweb.asm.Opcodes.LRETURN;
 
 import java.io.File;
 import java.io.InputStream;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -22,8 +27,12 @@ import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Type;
 
+import me.jezza.restbolt.cache.HttpCache;
+import me.jezza.restbolt.cache.ResponseCache;
+
 /**
  * @author Jezza
  */
@@ -39,7 +48,11 @@ public final class Internals {
 	public static final String URI_INTERNAL = URI_TYPE.getInternalName();
 	public static final String URI_DESCRIPTOR = URI_TYPE.getDescriptor();
 
-	public static final String CONSTRUCTOR_DESCRIPTOR = '(' + URI_DESCRIPTOR + ")V";
+	private static final Type TRANSPORT_TYPE = Type.getType(Transport.class);
+	public static final String TRANSPORT_INTERNAL = TRANSPORT_TYPE.getInternalName();
+	public static final String TRANSPORT_DESCRIPTOR = TRANSPORT_TYPE.getDescriptor();
+
+	public static final String CONSTRUCTOR_DESCRIPTOR = '(' + URI_DESCRIPTOR + TRANSPORT_DESCRIPTOR + ")V";
 
 	private static final Type CLIENT_TYPE = Type.getType(HttpClient.class);
 	public static final String CLIENT_INTERNAL = CLIENT_TYPE.getInternalName();
@@ -78,6 +91,43 @@ public final class Internals {
 	public static final String URL_ENCODER_INTERNAL = Type.getInternalName(URLEncoder.class);
 	public static final String STRINGBUILDER_INTERNAL = Type.getInternalName(StringBuilder.class);
 
+	// The bootstraps (and types) the generated classes point at. Only RestBolt needs them, so they're not public.
+	// They live here and not in RestBolt, so RestBolt can be loaded without ASM. (Which is the whole point of pregenerating the proxies)
+	static final Handle LINK = new Handle(H_INVOKESTATIC, Type.getInternalName(RestBolt.class), "link", methodType(CallSite.class, Lookup.class, String.class, MethodType.class).toMethodDescriptorString(), false);
+
+	static final Handle JSON = new Handle(H_INVOKESTATIC, Type.getInternalName(RestBolt.class), "json", methodType(BodyHandler.class, Lookup.class, String.class, Class.class, Class.class, String.class).toMethodDescriptorString(), false);
+
+	static final Handle URI_CACHE = new Handle(H_INVOKESTATIC, Type.getInternalName(Uris.class), "cache", methodType(Uris.Cache.class, Lookup.class, String.class, Class.class, int.class).toMethodDescriptorString(), false);
+
+	static final String QUERIES_INTERNAL = Type.getInternalName(Queries.class);
+
+	static final String BATCHER_INTERNAL = Type.getInternalName(Batcher.class);
+	static final String BATCHER_DESCRIPTOR = Type.getDescriptor(Batcher.class);
+	static final Handle BATCH = new Handle(H_INVOKESTATIC, BATCHER_INTERNAL, "spec", methodType(Batcher.Spec.class, Lookup.class, String.class, Class.class, Class.class, String.class).toMethodDescriptorString(), false);
+
+	static final String FLIGHTS_INTERNAL = Type.getInternalName(Flights.class);
+	static final String FLIGHTS_DESCRIPTOR = Type.getDescriptor(Flights.class);
+
+	static final String HTTP_CACHE_INTERNAL = Type.getInternalName(HttpCache.class);
+	static final String HTTP_CACHE_DESCRIPTOR = Type.getDescriptor(HttpCache.class);
+	static final Handle CACHE_STORE = new Handle(H_INVOKESTATIC, HTTP_CACHE_INTERNAL, "store", methodType(ResponseCache.class, Lookup.class, String.class, Class.class, String.class).toMethodDescriptorString(), false);
+
+	static final String ATTEMPTS_INTERNAL = Type.getInternalName(Attempts.class);
+	static final String ATTEMPTS_DESCRIPTOR = Type.getDescriptor(Attempts.class);
+	static final Handle ATTEMPTS = new Handle(H_INVOKESTATIC, ATTEMPTS_INTERNAL, "spec", methodType(Attempts.Spec.class, Lookup.class, String.class, Class.class, Class.class, String.class).toMethodDescriptorString(), false);
+
+	static final String METRICS_INTERNAL = Type.getInternalName(Metrics.class);
+	static final String METRICS_DESCRIPTOR = Type.getDescriptor(Metrics.class);
+	static final String METER_DESCRIPTOR = Type.getDescriptor(Metrics.Meter.class);
+
+	static final String LIMITER_INTERNAL = Type.getInternalName(Limiter.class);
+	static final String LIMITER_DESCRIPTOR = Type.getDescriptor(Limiter.class);
+
+	static final String COMPRESSION_INTERNAL = Type.getInternalName(Compression.class);
+
+	static final String PAGES_SPEC_INTERNAL = Type.getInternalName(Pages.Spec.class);
+	static final Handle PAGES = new Handle(H_INVOKESTATIC, Type.getInternalName(Pages.class), "spec", methodType(Pages.Spec.class, Lookup.class, String.class, Class.class, Class.class, String.class).toMethodDescriptorString(), false);
+
 	// Type layout:
 	// 00000000_00000000_00000000_00001111 = META_INFO
 	// 00000000_00000000_00000000_11110000 = SORT_INFO
@@ -232,6 +282,8 @@ public final class Internals {
 			case LIST:
 			case STRING:
 			case OBJECT:
+			case FILE:
+			case INPUT_STREAM:
 				if (opcode != ILOAD && opcode != ISTORE && opcode != IRETURN) {
 					throw new UnsupportedOperationException();
 				}
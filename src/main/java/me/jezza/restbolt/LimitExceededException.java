@@ -0,0 +1,17 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a method with a {@link me.jezza.restbolt.annotations.Limit} is already at its limit, and there's no room left in the queue.
+ * The request never left, so it's safe to try again later.
+ *
+ * @author Jezza
+ */
+public final class LimitExceededException extends IOException {
+	private static final long serialVersionUID = -6281745096385612389L;
+
+	public LimitExceededException(String message) {
+		super(message);
+	}
+}
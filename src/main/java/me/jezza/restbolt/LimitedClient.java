@@ -0,0 +1,133 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Makes every exchange take a slot from a {@link Limiter} before it's sent, and gives it back once it's done.
+ * <p>
+ * Whatever's past the limit waits in the limiter's queue, the synchronous calls block, and the asynchronous ones get a future that's only sent once there's a slot.
+ * Cancelling that future while it's waiting just takes it out of the queue.
+ *
+ * @author Jezza
+ */
+final class LimitedClient extends DelegatingClient {
+	private final Limiter limiter;
+
+	LimitedClient(HttpClient delegate, Limiter limiter) {
+		super(delegate);
+		this.limiter = limiter;
+	}
+
+	@Override
+	public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> handler) throws IOException, InterruptedException {
+		CompletableFuture<Void> permit = limiter.acquire();
+		if (permit == null) {
+			throw limiter.rejected();
+		}
+		if (permit != Limiter.GRANTED) {
+			try {
+				permit.get();
+			} catch (InterruptedException e) {
+				if (!limiter.withdraw(permit)) {
+					limiter.release(System.nanoTime(), Limiter.IGNORED);
+				}
+				throw e;
+			} catch (ExecutionException e) {
+				// Only ever completed normally, or cancelled by us.
+				throw new IllegalStateException(e);
+			}
+		}
+		long start = System.nanoTime();
+		HttpResponse<T> response;
+		try {
+			response = delegate.send(request, handler);
+		} catch (IOException e) {
+			limiter.release(start, Limiter.DROPPED);
+			throw e;
+		} catch (InterruptedException | RuntimeException | Error e) {
+			limiter.release(start, Limiter.IGNORED);
+			throw e;
+		}
+		limiter.release(start, Limiter.outcome(response.statusCode()));
+		return response;
+	}
+
+	@Override
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler) {
+		return sendAsync(request, handler, null);
+	}
+
+	@Override
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler, PushPromiseHandler<T> pushPromiseHandler) {
+		CompletableFuture<Void> permit = limiter.acquire();
+		if (permit == null) {
+			return CompletableFuture.failedFuture(limiter.rejected());
+		}
+		if (permit == Limiter.GRANTED) {
+			return exchange(request, handler, pushPromiseHandler);
+		}
+		CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+		permit.whenComplete((ignored, t) -> {
+			if (t != null) {
+				// Withdrawn, the result was already cancelled.
+				return;
+			}
+			if (result.isDone()) {
+				// Cancelled just as it got a slot.
+				limiter.release(System.nanoTime(), Limiter.IGNORED);
+				return;
+			}
+			CompletableFuture<HttpResponse<T>> exchange = exchange(request, handler, pushPromiseHandler);
+			exchange.whenComplete((response, e) -> {
+				if (e != null) {
+					result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+				} else {
+					result.complete(response);
+				}
+			});
+			result.whenComplete((response, e) -> {
+				if (e instanceof CancellationException) {
+					exchange.cancel(true);
+				}
+			});
+		});
+		result.whenComplete((response, t) -> {
+			if (t instanceof CancellationException) {
+				// If it's already been granted, whoever's holding it gives it back.
+				limiter.withdraw(permit);
+			}
+		});
+		return result;
+	}
+
+	private <T> CompletableFuture<HttpResponse<T>> exchange(HttpRequest request, BodyHandler<T> handler, PushPromiseHandler<T> pushPromiseHandler) {
+		long start = System.nanoTime();
+		CompletableFuture<HttpResponse<T>> future;
+		try {
+			future = pushPromiseHandler == null
+					? delegate.sendAsync(request, handler)
+					: delegate.sendAsync(request, handler, pushPromiseHandler);
+		} catch (RuntimeException e) {
+			limiter.release(start, Limiter.IGNORED);
+			return CompletableFuture.failedFuture(e);
+		}
+		future.whenComplete((response, t) -> {
+			if (t == null) {
+				limiter.release(start, Limiter.outcome(response.statusCode()));
+			} else {
+				Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+				limiter.release(start, cause instanceof IOException ? Limiter.DROPPED : Limiter.IGNORED);
+			}
+		});
+		return future;
+	}
+}
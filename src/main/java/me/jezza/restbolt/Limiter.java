@@ -0,0 +1,215 @@
+package me.jezza.restbolt;
+
+import java.net.http.HttpClient;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The runtime half of {@link me.jezza.restbolt.annotations.Limit}.
+ * <p>
+ * The limit is worked out the same way as a gradient limiter: there's a short-term average of the latency, and a long-term one.
+ * As long as the short one stays within a bit (50%) of the long one, the limit keeps growing, by roughly its square root.
+ * Once it doesn't, the limit is scaled down by how far off it is, (never more than half) as that means the requests are being queued somewhere.
+ * A failed request (connection failures, a 429 or a 503) knocks 10% off straight away.
+ * Either way, it's smoothed out, so a single slow request doesn't do much.
+ * <p>
+ * Everything is behind the one lock, as it's only ever held for a few arithmetic operations.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class Limiter {
+	/**
+	 * What everyone who gets a slot straight away is handed.
+	 */
+	static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+
+	/**
+	 * The request finished normally, and its latency should be used.
+	 */
+	static final int SAMPLE = 0;
+
+	/**
+	 * The request failed in a way that says the server (or the network) is struggling.
+	 */
+	static final int DROPPED = 1;
+
+	/**
+	 * The slot was given back, but there's nothing to learn from it. (Cancelled, or it never really went anywhere)
+	 */
+	static final int IGNORED = 2;
+
+	private static final double SMOOTHING = 0.2;
+	private static final double TOLERANCE = 1.5;
+	private static final double BACKOFF = 0.9;
+	private static final int SHORT_WINDOW = 10;
+	private static final int LONG_WINDOW = 600;
+
+	private final String name;
+	private final int min;
+	private final int max;
+	private final int queue;
+
+	// Guarded by this
+	private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+	private double estimate;
+	private int inFlight;
+	private double shortRtt;
+	private double longRtt;
+
+	/**
+	 * The estimate, rounded down, so it can be read without the lock.
+	 */
+	private volatile int limit;
+
+	/**
+	 * The proxy only ever has the one client, so this is only ever written once.
+	 */
+	private volatile LimitedClient client;
+
+	Limiter(String name, int initial, int min, int max, int queue) {
+		if (min < 1 || initial < min || max < initial || queue < 0) {
+			throw new IllegalStateException("Invalid @Limit settings on \"" + name + "\": initial=" + initial + ", min=" + min + ", max=" + max + ", queue=" + queue);
+		}
+		this.name = name;
+		this.min = min;
+		this.max = max;
+		this.queue = queue;
+		estimate = initial;
+		limit = initial;
+	}
+
+	/**
+	 * @return how many requests are currently allowed to be in flight.
+	 */
+	public int limit() {
+		return limit;
+	}
+
+	public synchronized int inFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return how many calls are waiting for a slot.
+	 */
+	public synchronized int queued() {
+		return waiting.size();
+	}
+
+	/**
+	 * What the generated methods send their requests through.
+	 */
+	public HttpClient client(HttpClient delegate) {
+		LimitedClient client = this.client;
+		if (client == null || client.delegate != delegate) {
+			this.client = client = new LimitedClient(delegate, this);
+		}
+		return client;
+	}
+
+	/**
+	 * @return {@link #GRANTED} if there was a slot, a future that completes once there is one, or null, if the queue's full.
+	 */
+	CompletableFuture<Void> acquire() {
+		synchronized (this) {
+			if (inFlight < limit && waiting.isEmpty()) {
+				inFlight++;
+				return GRANTED;
+			}
+			if (waiting.size() >= queue) {
+				return null;
+			}
+			CompletableFuture<Void> permit = new CompletableFuture<>();
+			waiting.add(permit);
+			return permit;
+		}
+	}
+
+	/**
+	 * Gives up on a permit that's still waiting.
+	 *
+	 * @return true if it was still waiting, false if it had already been granted, in which case the slot has to be given back.
+	 */
+	boolean withdraw(CompletableFuture<Void> permit) {
+		if (!permit.cancel(false)) {
+			return false;
+		}
+		synchronized (this) {
+			waiting.remove(permit);
+		}
+		return true;
+	}
+
+	LimitExceededException rejected() {
+		return new LimitExceededException("\"" + name + "\" is at its limit of " + limit + " requests, with " + queue + " more waiting.");
+	}
+
+	static int outcome(int status) {
+		return status == 429 || status == 503 ? DROPPED : SAMPLE;
+	}
+
+	/**
+	 * Gives back a slot, and hands it (and any others the new limit allows) to whoever's been waiting the longest.
+	 *
+	 * @param start - When the request was sent, from {@link System#nanoTime()}.
+	 */
+	void release(long start, int outcome) {
+		long rtt = System.nanoTime() - start;
+		List<CompletableFuture<Void>> granted = null;
+		synchronized (this) {
+			inFlight--;
+			update(rtt, outcome);
+			while (inFlight < limit && !waiting.isEmpty()) {
+				CompletableFuture<Void> next = waiting.poll();
+				if (next.isDone()) {
+					// Gave up waiting.
+					continue;
+				}
+				inFlight++;
+				if (granted == null) {
+					granted = new ArrayList<>();
+				}
+				granted.add(next);
+			}
+		}
+		if (granted != null) {
+			for (CompletableFuture<Void> permit : granted) {
+				if (!permit.complete(null)) {
+					// It gave up just after we picked it, so it goes to the next in line.
+					release(System.nanoTime(), IGNORED);
+				}
+			}
+		}
+	}
+
+	private void update(long rtt, int outcome) {
+		if (outcome == IGNORED) {
+			return;
+		}
+		if (outcome == DROPPED) {
+			estimate = Math.max(estimate * BACKOFF, min);
+		} else {
+			if (longRtt == 0) {
+				shortRtt = longRtt = Math.max(rtt, 1);
+			} else {
+				shortRtt += (rtt - shortRtt) / SHORT_WINDOW;
+				longRtt += (rtt - longRtt) / LONG_WINDOW;
+				// The long-term average is way behind, (the latency's dropped, and it's stayed there) so let it catch up a bit quicker.
+				if (longRtt > shortRtt * 2) {
+					longRtt *= 0.95;
+				}
+			}
+			double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+			// No point growing a limit that isn't being used. (The one that just finished still counts)
+			if (gradient == 1.0 && (inFlight + 1) * 2 < estimate) {
+				return;
+			}
+			double next = estimate * gradient + Math.sqrt(estimate);
+			estimate = Math.max(min, Math.min(max, estimate * (1 - SMOOTHING) + next * SMOOTHING));
+		}
+		limit = (int) estimate;
+	}
+}
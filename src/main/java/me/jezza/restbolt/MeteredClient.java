@@ -0,0 +1,144 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.BiConsumer;
+
+/**
+ * Hands everything over to the proxy's real client, but records every exchange that goes through it into a {@link Metrics.Meter}.
+ * <p>
+ * Everything that sits on top of the client (the retries, downloads, batches, caches, etc) just sees another client, so they're all measured the same way, without knowing about it.
+ * The futures are handed back as is, (and not the one that does the recording) so cancelling them still reaches the real exchange.
+ *
+ * @author Jezza
+ */
+final class MeteredClient extends DelegatingClient {
+	private final Metrics.Meter meter;
+
+	MeteredClient(HttpClient delegate, Metrics.Meter meter) {
+		super(delegate);
+		this.meter = meter;
+	}
+
+	@Override
+	public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> handler) throws IOException, InterruptedException {
+		meter.sent(request);
+		Exchange<T> exchange = new Exchange<>(handler, meter);
+		HttpResponse<T> response;
+		try {
+			response = delegate.send(request, exchange);
+		} catch (IOException | InterruptedException | RuntimeException | Error e) {
+			meter.failed(exchange.start);
+			throw e;
+		}
+		meter.received(exchange.start, response.statusCode());
+		return response;
+	}
+
+	@Override
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler) {
+		meter.sent(request);
+		Exchange<T> exchange = new Exchange<>(handler, meter);
+		CompletableFuture<HttpResponse<T>> future = delegate.sendAsync(request, exchange);
+		future.whenComplete(exchange);
+		return future;
+	}
+
+	@Override
+	public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> handler, PushPromiseHandler<T> pushPromiseHandler) {
+		meter.sent(request);
+		Exchange<T> exchange = new Exchange<>(handler, meter);
+		CompletableFuture<HttpResponse<T>> future = delegate.sendAsync(request, exchange, pushPromiseHandler);
+		future.whenComplete(exchange);
+		return future;
+	}
+
+	/**
+	 * Counts the bytes on their way past.
+	 */
+	private static class Counting<T> implements BodySubscriber<T> {
+		final Metrics.Meter meter;
+		BodySubscriber<T> subscriber;
+
+		Counting(BodySubscriber<T> subscriber, Metrics.Meter meter) {
+			this.subscriber = subscriber;
+			this.meter = meter;
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return subscriber.getBody();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscriber.onSubscribe(subscription);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> item) {
+			long bytes = 0;
+			for (int i = 0, l = item.size(); i < l; i++) {
+				bytes += item.get(i).remaining();
+			}
+			meter.bytesIn.add(bytes);
+			subscriber.onNext(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			subscriber.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			subscriber.onComplete();
+		}
+	}
+
+	/**
+	 * Everything a single exchange needs to be recorded, all in the one object.
+	 * It's the handler that's given to the client, the subscriber that handler hands back, and what's called once the response is in,
+	 * so the only thing a request costs on top of that, is the node the future needs to call it at all.
+	 */
+	private static final class Exchange<T> extends Counting<T> implements BodyHandler<T>, BiConsumer<HttpResponse<T>, Throwable> {
+		private final BodyHandler<T> handler;
+		final long start = System.nanoTime();
+
+		Exchange(BodyHandler<T> handler, Metrics.Meter meter) {
+			super(null, meter);
+			this.handler = handler;
+		}
+
+		@Override
+		public BodySubscriber<T> apply(ResponseInfo info) {
+			BodySubscriber<T> subscriber = handler.apply(info);
+			if (this.subscriber != null) {
+				// The client's free to ask for more than one, but we can only be the one.
+				return new Counting<>(subscriber, meter);
+			}
+			this.subscriber = subscriber;
+			return this;
+		}
+
+		@Override
+		public void accept(HttpResponse<T> response, Throwable t) {
+			if (t != null) {
+				meter.failed(start);
+			} else {
+				meter.received(start, response.statusCode());
+			}
+		}
+	}
+}
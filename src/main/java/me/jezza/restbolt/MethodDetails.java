@@ -2,8 +2,17 @@ package me.jezza.restbolt;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
 import org.objectweb.asm.Type;
 
@@ -29,13 +38,40 @@ final class MethodDetails {
 	 */
 	final java.lang.reflect.Type responseType;
 
-	private MethodDetails(boolean async, boolean response, java.lang.reflect.Type responseType) {
+	/**
+	 * {@link Stream}, {@link Iterator} or {@link Flow.Publisher}, if the body is a sequence of JSON values that's decoded one at a time, otherwise null.
+	 * (A Flow.Publisher&lt;List&lt;ByteBuffer&gt;&gt; is just the raw body, so it's not one of these)
+	 */
+	final Class<?> elements;
+
+	/**
+	 * What each of the {@link #elements} is decoded into.
+	 */
+	final java.lang.reflect.Type elementType;
+
+	private MethodDetails(boolean async, boolean response, java.lang.reflect.Type responseType, Class<?> elements, java.lang.reflect.Type elementType) {
 		this.async = async;
 		this.response = response;
 		this.responseType = responseType;
+		this.elements = elements;
+		this.elementType = elementType;
 	}
 
+	/**
+	 * Keyed by the interface, and then the method, as the details can't change once the class has been loaded.
+	 */
+	private static final ClassValue<Map<Method, MethodDetails>> DETAILS = new ClassValue<>() {
+		@Override
+		protected Map<Method, MethodDetails> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
 	static MethodDetails discover(Method method) {
+		return DETAILS.get(method.getDeclaringClass()).computeIfAbsent(method, MethodDetails::inspect);
+	}
+
+	private static MethodDetails inspect(Method method) {
 		boolean async;
 		boolean response;
 		java.lang.reflect.Type responseType;
@@ -105,6 +141,28 @@ final class MethodDetails {
 					? returnType
 					: null;
 		}
-		return new MethodDetails(async, response, responseType);
+
+		Class<?> elements = null;
+		java.lang.reflect.Type elementType = null;
+		if (responseType instanceof ParameterizedType) {
+			ParameterizedType parameterisedType = (ParameterizedType) responseType;
+			var raw = parameterisedType.getRawType();
+			if (raw == Stream.class || raw == Iterator.class || raw == Flow.Publisher.class) {
+				java.lang.reflect.Type argument = parameterisedType.getActualTypeArguments()[0];
+				boolean bytes = raw == Flow.Publisher.class
+						&& argument instanceof ParameterizedType
+						&& ((ParameterizedType) argument).getRawType() == List.class
+						&& ((ParameterizedType) argument).getActualTypeArguments()[0] == ByteBuffer.class;
+				if (!bytes) {
+					if (argument instanceof WildcardType || argument instanceof TypeVariable) {
+						String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+						throw new IllegalStateException("[ERROR] The elements of \"" + methodDescription + "\" need a concrete type to be decoded into.");
+					}
+					elements = (Class<?>) raw;
+					elementType = argument;
+				}
+			}
+		}
+		return new MethodDetails(async, response, responseType, elements, elementType);
 	}
 }
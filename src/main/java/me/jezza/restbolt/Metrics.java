@@ -0,0 +1,287 @@
+package me.jezza.restbolt;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What a proxy's endpoints have been up to. (See {@link me.jezza.restbolt.annotations.RestService#metrics()})
+ * <p>
+ * Every method gets its own {@link Meter}, which counts the requests, errors, and bytes that go over the wire, and keeps a {@link Histogram} of how long they took.
+ * It's measured at the client, so a retry is another request, and a cache hit isn't one at all.
+ * <p>
+ * It's off by default, (See {@link Binder#metrics()} and {@link me.jezza.restbolt.annotations.Client#metrics()})
+ * in which case none of the methods have a meter, and all the generated code does is skip over a null.
+ * <p>
+ * The {@link Limiter}s of the methods with a {@link me.jezza.restbolt.annotations.Limit} live here as well, (whether or not the metrics are enabled) so you can see where their limits are at.
+ *
+ * @author Jezza
+ */
+public final class Metrics {
+	private final boolean enabled;
+
+	/**
+	 * Only ever added to while the proxy is being constructed, so it's safely published along with it.
+	 */
+	private final Map<String, Meter> meters;
+
+	/**
+	 * Same deal as the meters.
+	 */
+	private final Map<String, Limiter> limiters = new LinkedHashMap<>();
+
+	Metrics(boolean enabled) {
+		this.enabled = enabled;
+		meters = enabled ? new LinkedHashMap<>() : Collections.emptyMap();
+	}
+
+	public boolean enabled() {
+		return enabled;
+	}
+
+	/**
+	 * Called by the generated constructors, once per method.
+	 * Overloads are the same endpoint as far as we're concerned, so they share a meter.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 *
+	 * @return the meter for the method, or null, if the metrics are disabled.
+	 */
+	public Meter meter(String method) {
+		return enabled
+				? meters.computeIfAbsent(method, Meter::new)
+				: null;
+	}
+
+	/**
+	 * Called by the generated constructors, once per method with a {@link me.jezza.restbolt.annotations.Limit}.
+	 * Just like the meters, overloads share a limiter, (and the first one's settings) as they're the same endpoint.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 */
+	public Limiter limiter(String method, int initial, int min, int max, int queue) {
+		return limiters.computeIfAbsent(method, name -> new Limiter(name, initial, min, max, queue));
+	}
+
+	/**
+	 * @return the limiter of the given method, or null, if it doesn't have a {@link me.jezza.restbolt.annotations.Limit}.
+	 */
+	public Limiter limiter(String method) {
+		return limiters.get(method);
+	}
+
+	/**
+	 * What the generated methods send their requests through.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 *
+	 * @return the client, as is, if there's no meter, otherwise one that records into it.
+	 */
+	public static HttpClient client(Meter meter, HttpClient client) {
+		return meter != null
+				? meter.client(client)
+				: client;
+	}
+
+	/**
+	 * @return a snapshot of every endpoint, in the order they were declared.
+	 */
+	public Map<String, Snapshot> snapshot() {
+		Map<String, Snapshot> snapshots = new LinkedHashMap<>();
+		for (Meter meter : meters.values()) {
+			snapshots.put(meter.name, meter.snapshot());
+		}
+		return Collections.unmodifiableMap(snapshots);
+	}
+
+	/**
+	 * @return a snapshot of the given method, or null, if there's no such method, or the metrics are disabled.
+	 */
+	public Snapshot snapshot(String method) {
+		Meter meter = meters.get(method);
+		return meter != null ? meter.snapshot() : null;
+	}
+
+	@Override
+	public String toString() {
+		return enabled ? snapshot().values().toString() : "Metrics(disabled)";
+	}
+
+	/**
+	 * Everything about a single method.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 */
+	public static final class Meter {
+		final String name;
+		final LongAdder requests = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder bytesIn = new LongAdder();
+		final LongAdder bytesOut = new LongAdder();
+		final Histogram latencies = new Histogram();
+
+		/**
+		 * The proxy only ever has the one client, so this is only ever written once. (Unless someone's doing something weird with the transport)
+		 */
+		private volatile MeteredClient client;
+
+		Meter(String name) {
+			this.name = name;
+		}
+
+		HttpClient client(HttpClient delegate) {
+			MeteredClient client = this.client;
+			if (client == null || client.delegate != delegate) {
+				this.client = client = new MeteredClient(delegate, this);
+			}
+			return client;
+		}
+
+		void sent(HttpRequest request) {
+			requests.increment();
+			// Only the bodies that know how big they are get counted, we'd have to get between the client and the publisher otherwise.
+			BodyPublisher publisher = request.bodyPublisher().orElse(null);
+			if (publisher != null) {
+				long length = publisher.contentLength();
+				if (length > 0) {
+					bytesOut.add(length);
+				}
+			}
+		}
+
+		void received(long start, int status) {
+			latencies.record((System.nanoTime() - start) / 1000);
+			if (status >= 400) {
+				errors.increment();
+			}
+		}
+
+		void failed(long start) {
+			latencies.record((System.nanoTime() - start) / 1000);
+			errors.increment();
+		}
+
+		Snapshot snapshot() {
+			return new Snapshot(name, requests.sum(), errors.sum(), bytesIn.sum(), bytesOut.sum(), latencies.counts(), latencies.total(), latencies.max());
+		}
+	}
+
+	/**
+	 * A copy of a {@link Meter} at some point in time.
+	 * The counters are read one after another, so it's not exact while there are requests in flight, but it's close enough.
+	 */
+	public static final class Snapshot {
+		private final String name;
+		private final long requests;
+		private final long errors;
+		private final long bytesIn;
+		private final long bytesOut;
+		private final long[] counts;
+		private final long count;
+		private final long total;
+		private final long max;
+
+		Snapshot(String name, long requests, long errors, long bytesIn, long bytesOut, long[] counts, long total, long max) {
+			this.name = name;
+			this.requests = requests;
+			this.errors = errors;
+			this.bytesIn = bytesIn;
+			this.bytesOut = bytesOut;
+			this.counts = counts;
+			long count = 0;
+			for (long c : counts) {
+				count += c;
+			}
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+
+		/**
+		 * @return the name of the method.
+		 */
+		public String name() {
+			return name;
+		}
+
+		public long requests() {
+			return requests;
+		}
+
+		/**
+		 * @return how many of the requests failed outright, or came back with a 4xx/5xx.
+		 */
+		public long errors() {
+			return errors;
+		}
+
+		/**
+		 * @return the bytes of the response bodies. (As they came over the wire, so before anything's decoded)
+		 */
+		public long bytesIn() {
+			return bytesIn;
+		}
+
+		/**
+		 * @return the bytes of the request bodies, at least the ones that knew how long they were up front.
+		 */
+		public long bytesOut() {
+			return bytesOut;
+		}
+
+		/**
+		 * @return how many latencies have been recorded, which is every request that's finished, one way or another.
+		 */
+		public long count() {
+			return count;
+		}
+
+		/**
+		 * @param percentile - Between 0 and 100.
+		 * @return the latency that the given percentage of the requests came in under, (Rounded up to the end of its bucket) or zero, if there's nothing recorded yet.
+		 */
+		public Duration percentile(double percentile) {
+			if (!(percentile >= 0 && percentile <= 100)) {
+				throw new IllegalStateException("Percentile must be between 0 and 100: " + percentile);
+			}
+			if (count == 0) {
+				return Duration.ZERO;
+			}
+			long target = Math.max((long) Math.ceil(count * percentile / 100), 1);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= target) {
+					return micros(Math.min(Histogram.highest(i), max));
+				}
+			}
+			return micros(max);
+		}
+
+		public Duration p50() {
+			return percentile(50);
+		}
+
+		public Duration p99() {
+			return percentile(99);
+		}
+
+		public Duration max() {
+			return micros(max);
+		}
+
+		public Duration mean() {
+			return count == 0 ? Duration.ZERO : micros(total / count);
+		}
+
+		private static Duration micros(long micros) {
+			return Duration.ofNanos(micros * 1000);
+		}
+
+		@Override
+		public String toString() {
+			return name + "(requests=" + requests + ", errors=" + errors + ", in=" + bytesIn + ", out=" + bytesOut + ", p50=" + p50().toNanos() / 1000 + "us, p99=" + p99().toNanos() / 1000 + "us, max=" + max + "us)";
+		}
+	}
+}
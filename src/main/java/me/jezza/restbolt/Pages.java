@@ -0,0 +1,412 @@
+package me.jezza.restbolt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.objectweb.asm.Type;
+
+import me.jezza.restbolt.annotations.Compress;
+import me.jezza.restbolt.annotations.Paginated;
+import me.jezza.restbolt.json.Decoder;
+import me.jezza.restbolt.json.Decoders;
+import me.jezza.restbolt.json.Json;
+import me.jezza.restbolt.json.JsonReader;
+
+/**
+ * The runtime half of {@link Paginated}.
+ * <p>
+ * Each page is decoded as it comes in, (only the items and the cursor are kept, everything else is skipped)
+ * and as soon as it's done, the request for the next one is sent, as long as there's less than {@link Paginated#prefetch()} pages waiting to be consumed.
+ * Otherwise, it's held back until the consumer catches up.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class Pages<T> implements Iterator<T>, Closeable {
+	/**
+	 * Everything about a method that doesn't change between proxies.
+	 */
+	public static final class Spec {
+		final String cursor;
+		final String[] items;
+		final String[] next;
+		final int prefetch;
+		final BodyHandler<Page> handler;
+
+		Spec(Paginated paginated, Decoder<?> element, boolean compressed) {
+			if (paginated.cursor().isEmpty() || paginated.prefetch() < 0) {
+				throw new IllegalStateException("Invalid @Paginated settings: cursor=\"" + paginated.cursor() + "\", prefetch=" + paginated.prefetch());
+			}
+			cursor = paginated.cursor();
+			items = path(paginated.items());
+			next = path(paginated.next());
+			prefetch = paginated.prefetch();
+			BodyHandler<Page> handler = Json.handler(new PageDecoder(this, element));
+			this.handler = compressed ? Compression.decoding(handler) : handler;
+		}
+
+		private static String[] path(String path) {
+			return path.isEmpty() ? new String[0] : path.split("\\.");
+		}
+
+		/**
+		 * Fetches the first page, (and whatever it's allowed to fetch after it) before handing back the items.
+		 */
+		public Iterator<?> iterator(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+			Pages<?> pages = new Pages<>(this, client, request);
+			pages.first();
+			return pages;
+		}
+
+		public Stream<?> stream(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+			Pages<?> pages = new Pages<>(this, client, request);
+			pages.first();
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED), false).onClose(pages::close);
+		}
+	}
+
+	/**
+	 * The bootstrap for the specs of the methods with a {@link Paginated}.
+	 */
+	public static Spec spec(Lookup caller, String name, Class<?> type, Class<?> service, String descriptor) {
+		for (Method method : service.getDeclaredMethods()) {
+			if (method.getName().equals(name) && Type.getMethodDescriptor(method).equals(descriptor)) {
+				Decoder<?> element = Decoders.of(MethodDetails.discover(method).elementType, caller);
+				boolean compressed = method.isAnnotationPresent(Compress.class) || service.isAnnotationPresent(Compress.class);
+				return new Spec(method.getDeclaredAnnotation(Paginated.class), element, compressed);
+			}
+		}
+		throw new IllegalStateException("Unknown method on interface: " + name + descriptor);
+	}
+
+	/**
+	 * Just what we care about from a page.
+	 */
+	static final class Page {
+		List<?> items = Collections.emptyList();
+		String next;
+	}
+
+	/**
+	 * Walks down to the items and the cursor, and skips over everything else.
+	 */
+	private static final class PageDecoder extends Decoder<Page> {
+		private final Spec spec;
+		private final Decoder<?> element;
+
+		PageDecoder(Spec spec, Decoder<?> element) {
+			this.spec = spec;
+			this.element = element;
+		}
+
+		@Override
+		public Page decode(JsonReader reader) throws IOException {
+			Page page = new Page();
+			if (spec.items.length == 0) {
+				page.items = items(reader);
+			} else if (!reader.nextNull()) {
+				walk(reader, page, 0);
+			}
+			return page;
+		}
+
+		private void walk(JsonReader reader, Page page, int depth) throws IOException {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				boolean items = matches(spec.items, depth, name);
+				boolean next = matches(spec.next, depth, name);
+				if (items && spec.items.length == depth + 1) {
+					page.items = items(reader);
+				} else if (next && spec.next.length == depth + 1) {
+					// Numbers are fine as cursors too.
+					page.next = reader.peek() == JsonReader.NUMBER
+							? reader.nextNumber()
+							: reader.nextString();
+				} else if ((items || next) && reader.peek() == JsonReader.BEGIN_OBJECT) {
+					walk(reader, page, depth + 1);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		}
+
+		private static boolean matches(String[] path, int depth, String name) {
+			return depth < path.length && path[depth].equals(name);
+		}
+
+		private List<?> items(JsonReader reader) throws IOException {
+			if (reader.nextNull()) {
+				return Collections.emptyList();
+			}
+			List<Object> items = new ArrayList<>();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				items.add(element.decode(reader));
+			}
+			reader.endArray();
+			return items;
+		}
+	}
+
+	private final Spec spec;
+	private final HttpClient client;
+	private final HttpRequest first;
+
+	// Guarded by this
+	private final ArrayDeque<CompletableFuture<Page>> fetched = new ArrayDeque<>();
+	private HttpRequest held;
+	private boolean closed;
+
+	private Iterator<?> current = Collections.emptyIterator();
+
+	private Pages(Spec spec, HttpClient client, HttpRequest first) {
+		this.spec = spec;
+		this.client = client;
+		this.first = first;
+	}
+
+	private void first() throws IOException, InterruptedException {
+		CompletableFuture<Page> page;
+		synchronized (this) {
+			fetch(first);
+			page = fetched.poll();
+		}
+		try {
+			current = page.get().items.iterator();
+		} catch (InterruptedException e) {
+			close();
+			throw e;
+		} catch (ExecutionException e) {
+			close();
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+		release();
+	}
+
+	/**
+	 * Needs to be called with the lock.
+	 */
+	private void fetch(HttpRequest request) {
+		CompletableFuture<HttpResponse<Page>> response = client.sendAsync(request, spec.handler);
+		fetched.add(response.thenApply(r -> {
+			int status = r.statusCode();
+			if (status < 200 || status >= 300 || r.body() == null) {
+				throw new CompletionException(new IOException("Page " + r.uri() + " failed with a " + status + '.'));
+			}
+			Page page = r.body();
+			HttpRequest next = next(request, r.headers(), page.next);
+			if (next != null) {
+				synchronized (this) {
+					if (closed) {
+						return page;
+					}
+					if (fetched.size() < spec.prefetch) {
+						fetch(next);
+					} else {
+						held = next;
+					}
+				}
+			}
+			return page;
+		}));
+	}
+
+	/**
+	 * The consumer's moved on to the next page, so there might be room for the one that was held back.
+	 */
+	private synchronized void release() {
+		if (held != null && !closed && fetched.size() < spec.prefetch) {
+			HttpRequest next = held;
+			held = null;
+			fetch(next);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			CompletableFuture<Page> page;
+			synchronized (this) {
+				if (closed) {
+					return false;
+				}
+				if (fetched.isEmpty() && held != null) {
+					// Nothing's allowed to be fetched ahead, so it's only fetched once it's needed.
+					fetch(held);
+					held = null;
+				}
+				page = fetched.poll();
+			}
+			if (page == null) {
+				// Nothing left to fetch, and nothing's in flight, so that's the lot.
+				close();
+				return false;
+			}
+			release();
+			try {
+				current = page.join().items.iterator();
+			} catch (CompletionException | CancellationException e) {
+				close();
+				Throwable cause = e.getCause() != null ? e.getCause() : e;
+				throw new UncheckedIOException(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+			}
+		}
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return (T) current.next();
+	}
+
+	/**
+	 * Drops (and cancels) whatever's been fetched ahead.
+	 */
+	@Override
+	public void close() {
+		List<CompletableFuture<Page>> dropped;
+		synchronized (this) {
+			closed = true;
+			held = null;
+			dropped = new ArrayList<>(fetched);
+			fetched.clear();
+		}
+		for (CompletableFuture<Page> page : dropped) {
+			page.cancel(true);
+		}
+		current = Collections.emptyIterator();
+	}
+
+	/**
+	 * @return the request for the next page, or null if that was the last one.
+	 */
+	private HttpRequest next(HttpRequest request, HttpHeaders headers, String cursor) {
+		URI uri = null;
+		for (String link : headers.allValues("Link")) {
+			uri = link(request.uri(), link);
+			if (uri != null) {
+				break;
+			}
+		}
+		if (uri == null) {
+			if (cursor == null || cursor.isEmpty()) {
+				return null;
+			}
+			uri = cursor(request.uri(), spec.cursor, cursor);
+		}
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+				.expectContinue(request.expectContinue());
+		request.timeout().ifPresent(builder::timeout);
+		request.version().ifPresent(builder::version);
+		request.headers().map().forEach((name, values) -> {
+			for (String value : values) {
+				builder.header(name, value);
+			}
+		});
+		return builder.GET().build();
+	}
+
+	/**
+	 * Looks for a rel="next" in a Link header. (eg, &lt;https://api.example.com/users?page=2&gt;; rel="next", &lt;...&gt;; rel="last")
+	 */
+	private static URI link(URI base, String header) {
+		int i = 0;
+		int length = header.length();
+		while (i < length) {
+			int start = header.indexOf('<', i);
+			int end = start == -1 ? -1 : header.indexOf('>', start);
+			if (end == -1) {
+				return null;
+			}
+			// The parameters run until the next link.
+			int stop = header.indexOf('<', end);
+			if (stop == -1) {
+				stop = length;
+			}
+			String parameters = header.substring(end + 1, stop).trim();
+			if (parameters.endsWith(",")) {
+				parameters = parameters.substring(0, parameters.length() - 1);
+			}
+			for (String parameter : parameters.split(";")) {
+				String[] pair = parameter.trim().split("=", 2);
+				if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("rel")) {
+					String rel = pair[1].trim();
+					if (rel.length() >= 2 && rel.charAt(0) == '"' && rel.charAt(rel.length() - 1) == '"') {
+						rel = rel.substring(1, rel.length() - 1);
+					}
+					// It's a list of relations.
+					for (String relation : rel.split("\\s+")) {
+						if (relation.toLowerCase(Locale.ROOT).equals("next")) {
+							return base.resolve(header.substring(start + 1, end).trim());
+						}
+					}
+				}
+			}
+			i = stop;
+		}
+		return null;
+	}
+
+	/**
+	 * The same URI, with the cursor swapped out.
+	 */
+	private static URI cursor(URI uri, String name, String cursor) {
+		String raw = uri.toString();
+		int fragment = raw.indexOf('#');
+		if (fragment != -1) {
+			raw = raw.substring(0, fragment);
+		}
+		int query = raw.indexOf('?');
+		StringBuilder b = new StringBuilder(raw.length() + cursor.length() + 16);
+		b.append(raw, 0, query == -1 ? raw.length() : query);
+		String encodedName = URLEncoder.encode(name, StandardCharsets.UTF_8);
+		char separator = '?';
+		if (query != -1) {
+			for (String parameter : raw.substring(query + 1).split("&")) {
+				if (parameter.isEmpty() || parameter.equals(encodedName) || parameter.startsWith(encodedName + '=')) {
+					continue;
+				}
+				b.append(separator).append(parameter);
+				separator = '&';
+			}
+		}
+		b.append(separator).append(encodedName).append('=').append(URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+		return URI.create(b.toString());
+	}
+}
@@ -0,0 +1,395 @@
+package me.jezza.restbolt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import me.jezza.restbolt.form.FormEncoder;
+
+/**
+ * Writes out the arrays, lists and maps that are used as {@link me.jezza.restbolt.annotations.Query}s and {@link me.jezza.restbolt.annotations.Path}s.
+ * <p>
+ * Every array type gets its own overload, so nothing is ever boxed.
+ * The generated code just calls these, rather than writing out a loop of its own for each parameter.
+ * <p>
+ * An empty (or null) array doesn't write anything, so the generated code can't know if a '?' has been written after one.
+ * That's why {@link #separator(StringBuilder)} exists.
+ * <p>
+ * The names are encoded when the method is generated, so they're just written as is.
+ *
+ * @author Jezza
+ */
+public final class Queries {
+	private Queries() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * @return the character that needs to go before the next query parameter.
+	 */
+	public static char separator(StringBuilder b) {
+		return b.indexOf("?") == -1 ? '?' : '&';
+	}
+
+	private static StringBuilder start(StringBuilder b, char next, String name) {
+		return b.append(next).append(name).append('=');
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, boolean[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				b.append(values[i]);
+			}
+			return b;
+		}
+		for (boolean value : values) {
+			start(b, next, name);
+			b.append(value);
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, char[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				FormEncoder.encode(b, String.valueOf(values[i]));
+			}
+			return b;
+		}
+		for (char value : values) {
+			start(b, next, name);
+			FormEncoder.encode(b, String.valueOf(value));
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, byte[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				b.append(values[i]);
+			}
+			return b;
+		}
+		for (byte value : values) {
+			start(b, next, name);
+			b.append(value);
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, short[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				b.append(values[i]);
+			}
+			return b;
+		}
+		for (short value : values) {
+			start(b, next, name);
+			b.append(value);
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, int[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				b.append(values[i]);
+			}
+			return b;
+		}
+		for (int value : values) {
+			start(b, next, name);
+			b.append(value);
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, long[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				b.append(values[i]);
+			}
+			return b;
+		}
+		for (long value : values) {
+			start(b, next, name);
+			b.append(value);
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, float[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				b.append(values[i]);
+			}
+			return b;
+		}
+		for (float value : values) {
+			start(b, next, name);
+			b.append(value);
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, double[] values, String separator) {
+		if (values == null || values.length == 0) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					b.append(separator);
+				}
+				b.append(values[i]);
+			}
+			return b;
+		}
+		for (double value : values) {
+			start(b, next, name);
+			b.append(value);
+			next = '&';
+		}
+		return b;
+	}
+
+	public static StringBuilder append(StringBuilder b, char next, String name, Object[] values, String separator) {
+		return values == null ? b : append(b, next, name, Arrays.asList(values), separator);
+	}
+
+	/**
+	 * Null elements are skipped.
+	 */
+	public static StringBuilder append(StringBuilder b, char next, String name, List<?> values, String separator) {
+		if (values == null || values.isEmpty()) {
+			return b;
+		}
+		if (!separator.isEmpty()) {
+			start(b, next, name);
+			join(b, values, separator, true);
+			return b;
+		}
+		for (int i = 0, l = values.size(); i < l; i++) {
+			Object value = values.get(i);
+			if (value != null) {
+				start(b, next, name);
+				FormEncoder.encode(b, String.valueOf(value));
+				next = '&';
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * Every entry is its own parameter, so the name on the annotation isn't used. (Entries with a null value are skipped)
+	 */
+	public static StringBuilder append(StringBuilder b, char next, Map<?, ?> values) {
+		if (values == null) {
+			return b;
+		}
+		for (Entry<?, ?> entry : values.entrySet()) {
+			Object value = entry.getValue();
+			if (value != null) {
+				b.append(next);
+				FormEncoder.encode(b, String.valueOf(entry.getKey()));
+				b.append('=');
+				FormEncoder.encode(b, String.valueOf(value));
+				next = '&';
+			}
+		}
+		return b;
+	}
+
+	// Path segments, which (like every other path segment) are written as is.
+
+	public static StringBuilder join(StringBuilder b, boolean[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, char[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, byte[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, short[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, int[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, long[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, float[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, double[] values, String separator) {
+		if (values == null) {
+			return b;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				b.append(separator);
+			}
+			b.append(values[i]);
+		}
+		return b;
+	}
+
+	public static StringBuilder join(StringBuilder b, Object[] values, String separator) {
+		return values == null ? b : join(b, Arrays.asList(values), separator, false);
+	}
+
+	public static StringBuilder join(StringBuilder b, List<?> values, String separator) {
+		return values == null ? b : join(b, values, separator, false);
+	}
+
+	private static StringBuilder join(StringBuilder b, List<?> values, String separator, boolean encode) {
+		boolean first = true;
+		for (int i = 0, l = values.size(); i < l; i++) {
+			Object value = values.get(i);
+			if (value == null) {
+				continue;
+			}
+			if (!first) {
+				b.append(separator);
+			}
+			first = false;
+			if (encode) {
+				FormEncoder.encode(b, String.valueOf(value));
+			} else {
+				b.append(value);
+			}
+		}
+		return b;
+	}
+}
@@ -6,7 +6,10 @@ import static org.objectweb.asm.Opcodes.*;
 import static me.jezza.restbolt.Internals.*;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
@@ -14,42 +17,74 @@ import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
 import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import me.jezza.restbolt.annotations.Batch;
 import me.jezza.restbolt.annotations.Body;
 import me.jezza.restbolt.annotations.CUSTOM;
+import me.jezza.restbolt.annotations.Cacheable;
+import me.jezza.restbolt.annotations.Compress;
 import me.jezza.restbolt.annotations.DELETE;
+import me.jezza.restbolt.annotations.Destination;
+import me.jezza.restbolt.annotations.Download;
 import me.jezza.restbolt.annotations.GET;
 import me.jezza.restbolt.annotations.HEAD;
 import me.jezza.restbolt.annotations.Header;
+import me.jezza.restbolt.annotations.Hedge;
+import me.jezza.restbolt.annotations.Lazy;
+import me.jezza.restbolt.annotations.Limit;
 import me.jezza.restbolt.annotations.OPTIONS;
 import me.jezza.restbolt.annotations.POST;
 import me.jezza.restbolt.annotations.PUT;
+import me.jezza.restbolt.annotations.Paginated;
 import me.jezza.restbolt.annotations.Path;
 import me.jezza.restbolt.annotations.Query;
 import me.jezza.restbolt.annotations.RestService;
+import me.jezza.restbolt.annotations.Retry;
+import me.jezza.restbolt.annotations.SSE;
+import me.jezza.restbolt.annotations.SingleFlight;
 import me.jezza.restbolt.annotations.TRACE;
+import me.jezza.restbolt.annotations.UriCache;
+import me.jezza.restbolt.cache.HttpCache;
+import me.jezza.restbolt.cache.ResponseCache;
 import me.jezza.restbolt.form.multipart.Multipart;
+import me.jezza.restbolt.form.FormEncoder;
 import me.jezza.restbolt.form.UrlEncoded;
+import me.jezza.restbolt.json.Decoder;
+import me.jezza.restbolt.json.Decoders;
+import me.jezza.restbolt.json.Json;
 
 /**
  * @author Jezza
@@ -58,8 +93,6 @@ public final class RestBolt {
 	private static final Logger log = LoggerFactory.getLogger(RestBolt.class);
 	private static final String DEBUG_OUTPUT_FOLDER = RestBolt.class.getName().concat(".outputGenClass");
 
-	private static final MethodType PUBLISHER_FACTORY_SIGNATURE = methodType(void.class, Method.class, MethodVisitor.class, String[].class, int[].class, int.class);
-
 	public static final String PUBLISHER_NO_BODY = "me.jezza.restbolt.RestBolt.buildNoBody";
 	public static final String PUBLISHER_URL_ENCODED = UrlEncoded.PUBLISHER_PATH;
 	public static final String PUBLISHER_MULTIPART = Multipart.PUBLISHER_PATH;
@@ -68,133 +101,523 @@ public final class RestBolt {
 		throw new IllegalStateException();
 	}
 
+	/**
+	 * Kept out of RestBolt itself, so the ASM classes are only loaded once we actually need to generate something.
+	 * (If every proxy was pregenerated, ASM doesn't even need to be on the classpath.)
+	 */
+	private static final class Signatures {
+		static final MethodType PUBLISHER_FACTORY_SIGNATURE = methodType(void.class, Method.class, MethodVisitor.class, String[].class, int[].class, int.class);
+	}
+
 	public static <T> T bind(String uri, Class<T> type, Lookup lookup) {
-		URI hostUri = URI.create(uri);
-		MethodHandle constructor = createImpl(type, lookup);
+		Impl impl = impl(type, lookup);
+		return bind(impl.constructor, URI.create(uri), impl.transport);
+	}
+
+	/**
+	 * Binds the interface to the given host, and uses the given client for all of its requests.
+	 */
+	public static <T> T bind(String uri, Class<T> type, Lookup lookup, HttpClient client) {
+		Impl impl = impl(type, lookup);
+		return bind(impl.constructor, URI.create(uri), Transport.shared(client).metrics(impl.transport.metered()));
+	}
+
+	public static <T> Binder<T> binder(Class<T> type, Lookup lookup) {
+		Impl impl = impl(type, lookup);
+		return new Binder<>(impl.constructor, impl.transport);
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> T bind(MethodHandle constructor, URI uri, Transport transport) {
 		try {
-			return (T) constructor.invoke(hostUri);
+			// The constructor's been adapted to return Object, but it's always an instance of the interface it was generated for.
+			return (T) (Object) constructor.invokeExact(uri, transport);
 		} catch (Throwable t) {
 			throw new IllegalStateException("Failed to instantiate class", t);
 		}
 	}
 
-	public static <T> Binder<T> binder(Class<T> type, Lookup lookup) {
-		MethodHandle constructor = createImpl(type, lookup);
-		return new Binder<>(constructor);
+	/**
+	 * The generated classes, keyed by the interface they implement.
+	 * <p>
+	 * A class can only be defined once per loader, so we have to hang onto it anyway, and this way, binding the same interface to a bunch of hosts is just a constructor call.
+	 * Note: Whichever lookup gets there first is the one that defines the class.
+	 */
+	private static final ClassValue<Impl> IMPLS = new ClassValue<>() {
+		@Override
+		protected Impl computeValue(Class<?> type) {
+			return new Impl();
+		}
+	};
+
+	private static final class Impl {
+		/**
+		 * (URI, Transport)Object, so it can be called with invokeExact.
+		 * Written last, so if this is set, so is everything else.
+		 */
+		private volatile MethodHandle constructor;
+
+		/**
+		 * What the proxies use when they weren't given anything at bind time.
+		 */
+		private Transport transport;
+	}
+
+	private static Impl impl(Class<?> type, Lookup lookup) {
+		Impl impl = IMPLS.get(type);
+		if (impl.constructor == null) {
+			synchronized (impl) {
+				if (impl.constructor == null) {
+					MethodHandle constructor = createImpl(type, lookup).asType(methodType(Object.class, URI.class, Transport.class));
+					impl.transport = Transport.of(type, lookup);
+					impl.constructor = constructor;
+				}
+			}
+		}
+		return impl;
+	}
+
+	/**
+	 * The publisher factories that have been resolved, keyed by the class doing the looking up, as that's what determines if we could access them in the first place.
+	 */
+	private static final ClassValue<Map<String, MethodHandle>> PUBLISHERS = new ClassValue<>() {
+		@Override
+		protected Map<String, MethodHandle> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	private static MethodHandle publisher(Lookup lookup, String publisher) {
+		Map<String, MethodHandle> publishers = PUBLISHERS.get(lookup.lookupClass());
+		MethodHandle handle = publishers.get(publisher);
+		if (handle != null) {
+			return handle;
+		}
+
+		// Pull apart the publisher string into the component parts:
+		String owner;
+		String methodName;
+
+		int methodStart = publisher.lastIndexOf('.');
+		owner = publisher.substring(0, methodStart).replace('/', '.');
+		methodName = publisher.substring(methodStart + 1);
+
+		try {
+			// @MAYBE Jezza - 27 Nov. 2018: I think I've forgotten something here with module access...
+			Class<?> target = lookup.findClass(owner);
+			Lookup bypass = MethodHandles.privateLookupIn(target, lookup);
+			handle = bypass.findStatic(target, methodName, Signatures.PUBLISHER_FACTORY_SIGNATURE);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+		publishers.put(publisher, handle);
+		return handle;
 	}
 
 	private static MethodHandle createImpl(Class<?> type, Lookup lookup) {
 		if (!type.isInterface()) {
 			throw new IllegalStateException("Type (\"" + type.getName() + "\" not an interface.");
 		}
+		MethodHandle pregenerated = findPregenerated(type, lookup);
+		if (pregenerated != null) {
+			return pregenerated;
+		}
 		String internalName = Type.getInternalName(type);
 		String generatedName = internalName.concat("Proxy");
 
+		// In lazy mode, the methods are linked on their first call, and live in their own classes, so they need package access to the proxy's state.
+		boolean lazy = type.isAnnotationPresent(Lazy.class);
+		int access = lazy ? 0 : Modifier.PRIVATE;
+
 		ClassWriter writer = new ClassWriter(COMPUTE_FRAMES);
 
 		writer.visit(V11, Modifier.PUBLIC | Modifier.FINAL, generatedName, null, OBJECT_INTERNAL, new String[]{internalName});
 
-		// private final URI host;
-		writer.visitField(Modifier.PRIVATE | Modifier.FINAL, "host", URI_DESCRIPTOR, null, null);
+		// (private) final URI host;
+		writer.visitField(access | Modifier.FINAL, "host", URI_DESCRIPTOR, null, null);
 
-		// private volatile HttpClient client;
-		writer.visitField(Modifier.PRIVATE | Modifier.VOLATILE, "client", CLIENT_DESCRIPTOR, null, null);
+		// (private) final Transport transport;
+		writer.visitField(access | Modifier.FINAL, "transport", TRANSPORT_DESCRIPTOR, null, null);
 
-		// public Constructor(URI host);
+		// (private) volatile HttpClient client;
+		writer.visitField(access | Modifier.VOLATILE, "client", CLIENT_DESCRIPTOR, null, null);
+
+		// (private) final String base;
+		writer.visitField(access | Modifier.FINAL, "base", STRING_DESCRIPTOR, null, null);
+
+		// public Constructor(URI host, Transport transport);
 		MethodVisitor constructor = writer.visitMethod(Modifier.PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
 		constructor.visitVarInsn(ALOAD, 0);
 		constructor.visitMethodInsn(INVOKESPECIAL, OBJECT_INTERNAL, "<init>", "()V", false);
 		constructor.visitVarInsn(ALOAD, 0);
 		constructor.visitVarInsn(ALOAD, 1);
 		constructor.visitFieldInsn(PUTFIELD, generatedName, "host", URI_DESCRIPTOR);
-		constructor.visitInsn(RETURN);
-		constructor.visitMaxs(0, 0);
-
-		// (public | private) HttpClient client();
-		buildClient(writer, generatedName, RestService.class.isAssignableFrom(type));
-
-		long total = 0;
-		for (Method method : type.getDeclaredMethods()) {
-			String verb = null;
-			String path = null;
-			String publisher = null;
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitVarInsn(ALOAD, 2);
+		constructor.visitFieldInsn(PUTFIELD, generatedName, "transport", TRANSPORT_DESCRIPTOR);
+		// this.base = Uris.base(host);
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitVarInsn(ALOAD, 1);
+		constructor.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Uris.class), "base", '(' + URI_DESCRIPTOR + ')' + STRING_DESCRIPTOR, false);
+		constructor.visitFieldInsn(PUTFIELD, generatedName, "base", STRING_DESCRIPTOR);
 
-			Annotation[] annotations = method.getDeclaredAnnotations();
-			for (Annotation annotation : annotations) {
-				Class<? extends Annotation> annotationType = annotation.annotationType();
-				if (annotationType == GET.class) {
-					GET get = ((GET) annotation);
-					verb = "GET";
-					path = get.value();
-					publisher = PUBLISHER_NO_BODY;
-					break;
-				}
-				if (annotationType == HEAD.class) {
-					HEAD head = ((HEAD) annotation);
-					verb = "HEAD";
-					path = head.value();
-					publisher = PUBLISHER_NO_BODY;
-					break;
-				}
-				if (annotationType == POST.class) {
-					POST post = ((POST) annotation);
-					verb = "POST";
-					path = post.value();
-					publisher = post.publisher();
-					break;
-				}
-				if (annotationType == PUT.class) {
-					PUT put = ((PUT) annotation);
-					verb = "PUT";
-					path = put.value();
-					publisher = put.publisher();
-					break;
-				}
-				if (annotationType == DELETE.class) {
-					DELETE delete = ((DELETE) annotation);
-					verb = "DELETE";
-					path = delete.value();
-					publisher = PUBLISHER_NO_BODY;
-					break;
-				}
-				if (annotationType == OPTIONS.class) {
-					OPTIONS options = ((OPTIONS) annotation);
-					verb = "OPTIONS";
-					path = options.value();
-					publisher = options.publisher();
-					break;
-				}
-				if (annotationType == TRACE.class) {
-					TRACE trace = ((TRACE) annotation);
-					verb = "TRACE";
-					path = trace.value();
-					publisher = PUBLISHER_NO_BODY;
-					break;
+		// (private) final Metrics metrics;
+		// this.metrics = transport.metrics();
+		writer.visitField(access | Modifier.FINAL, "metrics", METRICS_DESCRIPTOR, null, null);
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitVarInsn(ALOAD, 2);
+		constructor.visitMethodInsn(INVOKEVIRTUAL, TRANSPORT_INTERNAL, "metrics", "()" + METRICS_DESCRIPTOR, false);
+		constructor.visitFieldInsn(PUTFIELD, generatedName, "metrics", METRICS_DESCRIPTOR);
+
+		Method[] methods = type.getDeclaredMethods();
+		String[][] endpoints = new String[methods.length][];
+		for (int i = 0; i < methods.length; i++) {
+			Method method = methods[i];
+			String[] endpoint = endpoints[i] = endpoint(method);
+			// (private) final Metrics.Meter meter$name$hash;
+			// this.meter$name$hash = this.metrics.meter(name);
+			String meter = meterField(method);
+			writer.visitField(access | Modifier.FINAL, meter, METER_DESCRIPTOR, null, null);
+			constructor.visitVarInsn(ALOAD, 0);
+			constructor.visitVarInsn(ALOAD, 0);
+			constructor.visitFieldInsn(GETFIELD, generatedName, "metrics", METRICS_DESCRIPTOR);
+			constructor.visitLdcInsn(method.getName());
+			constructor.visitMethodInsn(INVOKEVIRTUAL, METRICS_INTERNAL, "meter", '(' + STRING_DESCRIPTOR + ')' + METER_DESCRIPTOR, false);
+			constructor.visitFieldInsn(PUTFIELD, generatedName, meter, METER_DESCRIPTOR);
+			Limit limit = method.getDeclaredAnnotation(Limit.class);
+			if (limit != null) {
+				// (private) final Limiter limiter$name$hash;
+				// this.limiter$name$hash = this.metrics.limiter(name, initial, min, max, queue);
+				String field = limiterField(method);
+				writer.visitField(access | Modifier.FINAL, field, LIMITER_DESCRIPTOR, null, null);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitFieldInsn(GETFIELD, generatedName, "metrics", METRICS_DESCRIPTOR);
+				constructor.visitLdcInsn(method.getName());
+				constructor.visitLdcInsn(limit.initial());
+				constructor.visitLdcInsn(limit.min());
+				constructor.visitLdcInsn(limit.max());
+				constructor.visitLdcInsn(limit.queue());
+				constructor.visitMethodInsn(INVOKEVIRTUAL, METRICS_INTERNAL, "limiter", '(' + STRING_DESCRIPTOR + "IIII)" + LIMITER_DESCRIPTOR, false);
+				constructor.visitFieldInsn(PUTFIELD, generatedName, field, LIMITER_DESCRIPTOR);
+			}
+			if (constantUri(method, endpoint[1])) {
+				// (private) final URI uri$name$hash;
+				// this.uri$name$hash = Uris.resolve(base, path);
+				String field = uriField(method);
+				writer.visitField(access | Modifier.FINAL, field, URI_DESCRIPTOR, null, null);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitFieldInsn(GETFIELD, generatedName, "base", STRING_DESCRIPTOR);
+				constructor.visitLdcInsn(endpoint[1]);
+				constructor.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Uris.class), "resolve", '(' + STRING_DESCRIPTOR + STRING_DESCRIPTOR + ')' + URI_DESCRIPTOR, false);
+				constructor.visitFieldInsn(PUTFIELD, generatedName, field, URI_DESCRIPTOR);
+			}
+			if (method.isAnnotationPresent(Batch.class)) {
+				// (private) final Batcher batch$name$hash;
+				// this.batch$name$hash = <spec>.create(base);
+				String field = batchField(method);
+				writer.visitField(access | Modifier.FINAL, field, BATCHER_DESCRIPTOR, null, null);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitLdcInsn(new ConstantDynamic(method.getName(), Type.getDescriptor(Batcher.Spec.class), BATCH, Type.getType(method.getDeclaringClass()), Type.getMethodDescriptor(method)));
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitFieldInsn(GETFIELD, generatedName, "base", STRING_DESCRIPTOR);
+				constructor.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Batcher.Spec.class), "create", '(' + STRING_DESCRIPTOR + ')' + BATCHER_DESCRIPTOR, false);
+				constructor.visitFieldInsn(PUTFIELD, generatedName, field, BATCHER_DESCRIPTOR);
+			}
+			Cacheable cacheable = method.getDeclaredAnnotation(Cacheable.class);
+			if (cacheable != null) {
+				// (private) final HttpCache cache$name$hash = new HttpCache(<store>, "\nName: value...");
+				StringBuilder headers = new StringBuilder();
+				for (Header header : method.getDeclaredAnnotationsByType(Header.class)) {
+					headers.append('\n').append(header.value()).append(": ").append(header.data());
 				}
-				if (annotationType == CUSTOM.class) {
-					CUSTOM custom = ((CUSTOM) annotation);
-					verb = custom.verb();
-					path = custom.value();
-					publisher = custom.publisher();
-					break;
+				if (acceptsCompressed(method)) {
+					headers.append("\nAccept-Encoding: ").append(Compression.ACCEPT);
 				}
+				String field = cacheField(method);
+				writer.visitField(access | Modifier.FINAL, field, HTTP_CACHE_DESCRIPTOR, null, null);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitTypeInsn(NEW, HTTP_CACHE_INTERNAL);
+				constructor.visitInsn(DUP);
+				constructor.visitLdcInsn(new ConstantDynamic("store", Type.getDescriptor(ResponseCache.class), CACHE_STORE, cacheable.store()));
+				constructor.visitLdcInsn(headers.toString());
+				constructor.visitMethodInsn(INVOKESPECIAL, HTTP_CACHE_INTERNAL, "<init>", '(' + Type.getDescriptor(ResponseCache.class) + STRING_DESCRIPTOR + ")V", false);
+				constructor.visitFieldInsn(PUTFIELD, generatedName, field, HTTP_CACHE_DESCRIPTOR);
 			}
-
-			if (verb == null) {
-				throw new IllegalStateException("Unknown method on interface: " + method.getName() + Type.getMethodDescriptor(method));
+			if (method.isAnnotationPresent(SingleFlight.class)) {
+				// (private) final Flights flights$name$hash = new Flights();
+				String field = flightsField(method);
+				writer.visitField(access | Modifier.FINAL, field, FLIGHTS_DESCRIPTOR, null, null);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitTypeInsn(NEW, FLIGHTS_INTERNAL);
+				constructor.visitInsn(DUP);
+				constructor.visitMethodInsn(INVOKESPECIAL, FLIGHTS_INTERNAL, "<init>", "()V", false);
+				constructor.visitFieldInsn(PUTFIELD, generatedName, field, FLIGHTS_DESCRIPTOR);
+			}
+			if (method.isAnnotationPresent(Retry.class) || method.isAnnotationPresent(Hedge.class)) {
+				// (private) final Attempts attempts$name$hash = <spec>.create();
+				String field = attemptsField(method);
+				writer.visitField(access | Modifier.FINAL, field, ATTEMPTS_DESCRIPTOR, null, null);
+				constructor.visitVarInsn(ALOAD, 0);
+				constructor.visitLdcInsn(new ConstantDynamic(method.getName(), Type.getDescriptor(Attempts.Spec.class), ATTEMPTS, Type.getType(method.getDeclaringClass()), Type.getMethodDescriptor(method)));
+				constructor.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Attempts.Spec.class), "create", "()" + ATTEMPTS_DESCRIPTOR, false);
+				constructor.visitFieldInsn(PUTFIELD, generatedName, field, ATTEMPTS_DESCRIPTOR);
 			}
+		}
+		constructor.visitInsn(RETURN);
+		constructor.visitMaxs(0, 0);
+
+		// (public | private | package) HttpClient client();
+		buildClient(writer, generatedName, RestService.class.isAssignableFrom(type), lazy);
+
+		if (RestService.class.isAssignableFrom(type)) {
+			// public final Metrics metrics() {
+			//		return this.metrics;
+			// }
+			MethodVisitor metrics = writer.visitMethod(Modifier.PUBLIC | Modifier.FINAL, "metrics", "()" + METRICS_DESCRIPTOR, null, null);
+			metrics.visitVarInsn(ALOAD, 0);
+			metrics.visitFieldInsn(GETFIELD, generatedName, "metrics", METRICS_DESCRIPTOR);
+			metrics.visitInsn(ARETURN);
+			metrics.visitMaxs(0, 0);
+		}
+
+		long total = 0;
+		for (int i = 0; i < methods.length; i++) {
+			Method method = methods[i];
+			String[] endpoint = endpoints[i];
 
 			long start = System.nanoTime();
-			writeMethod(lookup, writer, method, generatedName, verb, path, publisher);
+			if (lazy) {
+				writeStub(writer, method, generatedName);
+			} else {
+				writeMethod(lookup, writer, method, generatedName, endpoint[0], endpoint[1], endpoint[2], false);
+			}
 			long end = System.nanoTime();
 			long time = end - start;
 			total += time;
-			log.info(time + " ns = " + method.getName() + Type.getMethodDescriptor(method));
+			log.debug(time + " ns = " + method.getName() + Type.getMethodDescriptor(method));
 		}
-		log.info(total + " ns = " + type.getName());
+		log.debug(total + " ns = " + type.getName());
 
 		byte[] classData = writer.toByteArray();
+		dump(generatedName, classData);
+
+		Class<?> clazz;
+		try {
+			clazz = lookup.defineClass(classData);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Failed to declare class", e);
+		}
+
+		try {
+			return lookup.findConstructor(clazz, methodType(void.class, URI.class, Transport.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			// Shouldn't happen as we build the class with a constructor with this exact signature...
+			throw new IllegalStateException("Failed to locate constructor", e);
+		}
+	}
+
+	/**
+	 * If there's nothing in the path to fill in, and no query parameters to add, the URI never changes, so the proxy builds it once and keeps it in a field.
+	 */
+	private static boolean constantUri(Method method, String path) {
+		if (path.indexOf('{') != -1) {
+			return false;
+		}
+		for (Parameter parameter : method.getParameters()) {
+			if (parameter.isAnnotationPresent(Query.class)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The descriptor of the overload in {@link Queries} that takes the given array or list.
+	 */
+	private static String sequenceDescriptor(Class<?> type) {
+		if (type.isArray()) {
+			Class<?> component = type.getComponentType();
+			return component.isPrimitive()
+					? Type.getDescriptor(type)
+					: "[Ljava/lang/Object;";
+		}
+		return "Ljava/util/List;";
+	}
+
+	private static String uriField(Method method) {
+		return "uri$" + method.getName() + '$' + Integer.toHexString(Type.getMethodDescriptor(method).hashCode());
+	}
+
+	private static String cacheField(Method method) {
+		return "cache$" + method.getName() + '$' + Integer.toHexString(Type.getMethodDescriptor(method).hashCode());
+	}
+
+	private static String flightsField(Method method) {
+		return "flights$" + method.getName() + '$' + Integer.toHexString(Type.getMethodDescriptor(method).hashCode());
+	}
+
+	private static String attemptsField(Method method) {
+		return "attempts$" + method.getName() + '$' + Integer.toHexString(Type.getMethodDescriptor(method).hashCode());
+	}
+
+	private static String meterField(Method method) {
+		return "meter$" + method.getName() + '$' + Integer.toHexString(Type.getMethodDescriptor(method).hashCode());
+	}
+
+	private static String limiterField(Method method) {
+		return "limiter$" + method.getName() + '$' + Integer.toHexString(Type.getMethodDescriptor(method).hashCode());
+	}
+
+	/**
+	 * The method's own @Compress, or the interface's, if it doesn't have one.
+	 */
+	private static Compress compress(Method method) {
+		Compress compress = method.getDeclaredAnnotation(Compress.class);
+		return compress != null ? compress : method.getDeclaringClass().getDeclaredAnnotation(Compress.class);
+	}
+
+	/**
+	 * Only if they didn't already ask for something else.
+	 */
+	private static boolean acceptsCompressed(Method method) {
+		if (compress(method) == null) {
+			return false;
+		}
+		for (Header header : method.getDeclaredAnnotationsByType(Header.class)) {
+			if ("Accept-Encoding".equalsIgnoreCase(header.value())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Pushes the proxy's client, which goes through the method's limiter and meter, if it has them.
+	 * (The meter's on the outside, so the time spent waiting for a slot, and the rejections, are measured as well)
+	 */
+	private static void writeClient(MethodVisitor impl, String generatedName, Method method, boolean detached) {
+		// Metrics.client(this.meter$name$hash, this.limiter$name$hash.client(client()));
+		impl.visitVarInsn(ALOAD, 0);
+		impl.visitFieldInsn(GETFIELD, generatedName, meterField(method), METER_DESCRIPTOR);
+		boolean limited = method.isAnnotationPresent(Limit.class);
+		if (limited) {
+			impl.visitVarInsn(ALOAD, 0);
+			impl.visitFieldInsn(GETFIELD, generatedName, limiterField(method), LIMITER_DESCRIPTOR);
+		}
+		impl.visitVarInsn(ALOAD, 0);
+		impl.visitMethodInsn(detached ? INVOKEVIRTUAL : INVOKESPECIAL, generatedName, "client", "()" + CLIENT_DESCRIPTOR, false);
+		if (limited) {
+			impl.visitMethodInsn(INVOKEVIRTUAL, LIMITER_INTERNAL, "client", '(' + CLIENT_DESCRIPTOR + ')' + CLIENT_DESCRIPTOR, false);
+		}
+		impl.visitMethodInsn(INVOKESTATIC, METRICS_INTERNAL, "client", '(' + METER_DESCRIPTOR + CLIENT_DESCRIPTOR + ')' + CLIENT_DESCRIPTOR, false);
+	}
+
+	private static String batchField(Method method) {
+		return "batch$" + method.getName() + '$' + Integer.toHexString(Type.getMethodDescriptor(method).hashCode());
+	}
+
+	/**
+	 * Pulls the verb, path, and publisher out of the method's annotation. (In that order...)
+	 */
+	private static String[] endpoint(Method method) {
+		String verb = null;
+		String path = null;
+		String publisher = null;
+
+		Annotation[] annotations = method.getDeclaredAnnotations();
+		for (Annotation annotation : annotations) {
+			Class<? extends Annotation> annotationType = annotation.annotationType();
+			if (annotationType == GET.class) {
+				GET get = ((GET) annotation);
+				verb = "GET";
+				path = get.value();
+				publisher = PUBLISHER_NO_BODY;
+				break;
+			}
+			if (annotationType == HEAD.class) {
+				HEAD head = ((HEAD) annotation);
+				verb = "HEAD";
+				path = head.value();
+				publisher = PUBLISHER_NO_BODY;
+				break;
+			}
+			if (annotationType == POST.class) {
+				POST post = ((POST) annotation);
+				verb = "POST";
+				path = post.value();
+				publisher = post.publisher();
+				break;
+			}
+			if (annotationType == PUT.class) {
+				PUT put = ((PUT) annotation);
+				verb = "PUT";
+				path = put.value();
+				publisher = put.publisher();
+				break;
+			}
+			if (annotationType == DELETE.class) {
+				DELETE delete = ((DELETE) annotation);
+				verb = "DELETE";
+				path = delete.value();
+				publisher = PUBLISHER_NO_BODY;
+				break;
+			}
+			if (annotationType == OPTIONS.class) {
+				OPTIONS options = ((OPTIONS) annotation);
+				verb = "OPTIONS";
+				path = options.value();
+				publisher = options.publisher();
+				break;
+			}
+			if (annotationType == TRACE.class) {
+				TRACE trace = ((TRACE) annotation);
+				verb = "TRACE";
+				path = trace.value();
+				publisher = PUBLISHER_NO_BODY;
+				break;
+			}
+			if (annotationType == CUSTOM.class) {
+				CUSTOM custom = ((CUSTOM) annotation);
+				verb = custom.verb();
+				path = custom.value();
+				publisher = custom.publisher();
+				break;
+			}
+		}
+
+		if (verb == null) {
+			throw new IllegalStateException("Unknown method on interface: " + method.getName() + Type.getMethodDescriptor(method));
+		}
+		return new String[]{verb, path, publisher};
+	}
+
+	/**
+	 * Looks for a "*Proxy" that was written out ahead of time by the {@link me.jezza.restbolt.processor.ProxyProcessor}.
+	 * <p>
+	 * Note: This has to stay clear of anything ASM related, as the whole point is that we don't need it if everything was pregenerated.
+	 */
+	private static MethodHandle findPregenerated(Class<?> type, Lookup lookup) {
+		Class<?> clazz;
+		try {
+			clazz = lookup.findClass(type.getName().concat("Proxy"));
+		} catch (ClassNotFoundException | IllegalAccessException e) {
+			return null;
+		}
+		if (!type.isAssignableFrom(clazz)) {
+			return null;
+		}
+		try {
+			MethodHandle constructor = lookup.findConstructor(clazz, methodType(void.class, URI.class, Transport.class));
+			log.debug("Using pregenerated \"" + clazz.getName() + "\".");
+			return constructor;
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalStateException("Pregenerated class doesn't match the expected shape: " + clazz.getName(), e);
+		}
+	}
 
+	private static void dump(String generatedName, byte[] classData) {
 		String folder = System.getProperty(DEBUG_OUTPUT_FOLDER);
 		if (folder != null) {
 			java.nio.file.Path file = Paths.get(folder, generatedName.substring(generatedName.lastIndexOf('/') + 1) + ".class");
@@ -205,33 +628,248 @@ public final class RestBolt {
 				log.warn("Failed to write generated class data to \"" + file + "\".", e);
 			}
 		}
+	}
 
-		Class<?> clazz;
-		try {
-			clazz = lookup.defineClass(classData);
-		} catch (IllegalAccessException e) {
-			throw new IllegalStateException("Failed to declare class", e);
+	/**
+	 * Writes a method that just forwards everything to an invokedynamic, that'll generate and link the real implementation on the first call.
+	 *
+	 * <pre>
+	 * public final R name(A a, B b) {
+	 *     return indy[link] name(this, a, b);
+	 * }
+	 * </pre>
+	 */
+	private static void writeStub(ClassWriter writer, Method method, String generatedName) {
+		String descriptor = Type.getMethodDescriptor(method);
+		MethodVisitor stub = writer.visitMethod(Modifier.PUBLIC | Modifier.FINAL, method.getName(), descriptor, null, null);
+		stub.visitVarInsn(ALOAD, 0);
+		int slot = 1;
+		for (Type argument : Type.getArgumentTypes(method)) {
+			stub.visitVarInsn(argument.getOpcode(ILOAD), slot);
+			slot += argument.getSize();
 		}
+		stub.visitInvokeDynamicInsn(method.getName(), "(L" + generatedName + ';' + descriptor.substring(1), LINK);
+		stub.visitInsn(Type.getReturnType(method).getOpcode(IRETURN));
+		stub.visitMaxs(0, 0);
+	}
 
-		try {
-			return lookup.findConstructor(clazz, methodType(void.class, URI.class));
-		} catch (NoSuchMethodException | IllegalAccessException e) {
-			// Shouldn't happen as we build the class with a constructor with this exact signature...
-			throw new IllegalStateException("Failed to locate constructor", e);
+	/**
+	 * The methods that have been linked, per proxy, keyed by name and descriptor.
+	 * <p>
+	 * Any number of threads can hit the same call site for the first time, and they all end up in the bootstrap.
+	 * The linked class has a fixed name, so it can only be defined the once, and everyone else just gets the same method.
+	 */
+	private static final ClassValue<Map<String, MethodHandle>> LINKED = new ClassValue<>() {
+		@Override
+		protected Map<String, MethodHandle> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/**
+	 * The bootstrap for the stubs written by {@link #writeStub(ClassWriter, Method, String)}.
+	 * <p>
+	 * Generates the method into its own class (next to the proxy), and permanently links the call site to it.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 */
+	public static CallSite link(Lookup caller, String name, MethodType type) throws ReflectiveOperationException {
+		Map<String, MethodHandle> linked = LINKED.get(caller.lookupClass());
+		String key = name + type.toMethodDescriptorString();
+		MethodHandle target = linked.get(key);
+		if (target == null) {
+			synchronized (linked) {
+				target = linked.get(key);
+				if (target == null) {
+					target = generateLinked(caller, name, type);
+					linked.put(key, target);
+				}
+			}
+		}
+		return new ConstantCallSite(target);
+	}
+
+	private static MethodHandle generateLinked(Lookup caller, String name, MethodType type) throws ReflectiveOperationException {
+		Class<?> proxy = caller.lookupClass();
+		Class<?> service = proxy.getInterfaces()[0];
+		Method method = service.getDeclaredMethod(name, type.dropParameterTypes(0, 1).parameterArray());
+		String[] endpoint = endpoint(method);
+
+		String generatedName = Type.getInternalName(proxy);
+		String linkedName = generatedName + '$' + name + '$' + Integer.toHexString(type.toMethodDescriptorString().hashCode());
+
+		ClassWriter writer = new ClassWriter(COMPUTE_FRAMES);
+		writer.visit(V11, Modifier.FINAL | ACC_SYNTHETIC, linkedName, null, OBJECT_INTERNAL, null);
+
+		long start = System.nanoTime();
+		writeMethod(caller, writer, method, generatedName, endpoint[0], endpoint[1], endpoint[2], true);
+		long end = System.nanoTime();
+		log.debug((end - start) + " ns = " + method.getName() + Type.getMethodDescriptor(method) + " (linked)");
+
+		byte[] classData = writer.toByteArray();
+		dump(linkedName, classData);
+
+		Class<?> linked = caller.defineClass(classData);
+		return caller.findStatic(linked, name, type);
+	}
+
+	/**
+	 * The bootstrap for the JSON handler constants.
+	 * <p>
+	 * The decoder itself was built when the method was generated, so this is just a lookup, and the constant is resolved once, on the first call.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 */
+	public static BodyHandler<?> json(Lookup caller, String name, Class<?> type, Class<?> service, String descriptor) {
+		for (Method method : service.getDeclaredMethods()) {
+			if (method.getName().equals(name) && Type.getMethodDescriptor(method).equals(descriptor)) {
+				MethodDetails details = MethodDetails.discover(method);
+				BodyHandler<?> handler;
+				if (details.elements == null) {
+					handler = Json.handler(Decoders.of(details.responseType, caller));
+				} else {
+					Decoder<?> decoder = Decoders.of(details.elementType, caller);
+					if (details.elements == Stream.class) {
+						handler = Json.stream(decoder);
+					} else if (details.elements == Iterator.class) {
+						handler = Json.iterator(decoder);
+					} else {
+						handler = Json.publisher(decoder);
+					}
+				}
+				// If they only get the body, a null would just be a NullPointerException waiting to happen, so they get the status instead.
+				return details.async || details.response
+						? handler
+						: Json.required(handler);
+			}
 		}
+		throw new IllegalStateException("Unknown method on interface: " + name + descriptor);
 	}
 
-	private static void writeMethod(Lookup lookup, ClassWriter writer, Method method, String generatedName, String verb, String path, String publisher) {
+	/**
+	 * A batched method doesn't build a request at all, it just hands its key over to the proxy's {@link Batcher}, which does the rest.
+	 */
+	private static void writeBatch(Lookup lookup, ClassWriter writer, Method method, String generatedName, String verb, boolean detached) {
+		String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+		if (!"GET".equals(verb)) {
+			throw new IllegalStateException("[ERROR] @Batch only works on a GET: \"" + methodDescription + "\".");
+		}
+		if (method.isAnnotationPresent(Retry.class) || method.isAnnotationPresent(Hedge.class)) {
+			throw new IllegalStateException("[ERROR] @Batch is shared by too many callers to @Retry or @Hedge: \"" + methodDescription + "\".");
+		}
+		if (method.isAnnotationPresent(Compress.class)) {
+			throw new IllegalStateException("[ERROR] @Batch builds its own requests, so it can't @Compress them: \"" + methodDescription + "\".");
+		}
+		// Throws if there isn't a single key.
+		Batcher.keyName(method);
+		Class<?> returnType = method.getReturnType();
+		boolean async = returnType == CompletableFuture.class;
+		java.lang.reflect.Type elementType = Batcher.elementType(method);
+		// The responses are matched up through a field, so it needs to be a plain class, which rules out collections, and responses, (There's only one of those per batch) and the like.
+		if (returnType.isPrimitive() || !(elementType instanceof Class) || elementType == HttpResponse.class || (!async && Future.class.isAssignableFrom(returnType))) {
+			throw new IllegalStateException("[ERROR] @Batch needs to return the decoded value, or a CompletableFuture of it: \"" + methodDescription + "\".");
+		}
+		if (!async && !Arrays.asList(method.getExceptionTypes()).contains(SyncException.class)) {
+			throw new IllegalStateException("[ERROR] " + SyncException.class.getName() + " is not declared on \"" + methodDescription + "\".");
+		}
+		// Build the decoder now, so if it can't be done, we find out at bind time, and not on the first response.
+		Decoders.of(elementType, lookup);
+
+		MethodVisitor impl;
+		if (detached) {
+			String descriptor = "(L" + generatedName + ';' + Type.getMethodDescriptor(method).substring(1);
+			impl = writer.visitMethod(Modifier.STATIC | Modifier.FINAL, method.getName(), descriptor, null, null);
+		} else {
+			impl = writer.visitMethod(Modifier.PUBLIC | Modifier.FINAL, method.getName(), Type.getMethodDescriptor(method), null, null);
+		}
+
+		// this.batch$name$hash.submit(client(), (Object) key);
+		impl.visitVarInsn(ALOAD, 0);
+		impl.visitFieldInsn(GETFIELD, generatedName, batchField(method), BATCHER_DESCRIPTOR);
+		writeClient(impl, generatedName, method, detached);
+		Class<?> keyType = method.getParameterTypes()[0];
+		Type key = Type.getType(keyType);
+		impl.visitVarInsn(key.getOpcode(ILOAD), 1);
+		if (keyType.isPrimitive()) {
+			// The keys are matched up as they are, so they're boxed, not turned into strings.
+			Class<?> boxed = methodType(keyType).wrap().returnType();
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(boxed), "valueOf", '(' + key.getDescriptor() + ')' + Type.getDescriptor(boxed), false);
+		}
+		String future = Type.getDescriptor(CompletableFuture.class);
+		impl.visitMethodInsn(INVOKEVIRTUAL, BATCHER_INTERNAL, "submit", '(' + CLIENT_DESCRIPTOR + "Ljava/lang/Object;)" + future, false);
+		if (!async) {
+			impl.visitMethodInsn(INVOKESTATIC, BATCHER_INTERNAL, "join", '(' + future + ")Ljava/lang/Object;", false);
+			impl.visitTypeInsn(CHECKCAST, Type.getInternalName(returnType));
+		}
+		impl.visitInsn(ARETURN);
+		impl.visitMaxs(0, 0);
+	}
+
+	/**
+	 * Pushes the handler that turns the body into whatever the method returns.
+	 */
+	private static void writeHandler(Lookup lookup, MethodVisitor impl, Method method, java.lang.reflect.Type responseType, int destination) {
+		MethodDetails details = MethodDetails.discover(method);
+		if (details.elements != null) {
+			// Same as below, just for the elements.
+			Decoders.of(details.elementType, lookup);
+			impl.visitLdcInsn(new ConstantDynamic(method.getName(), HANDLER_DESCRIPTOR, JSON, Type.getType(method.getDeclaringClass()), Type.getMethodDescriptor(method)));
+		} else if (responseType == String.class) {
+			impl.visitFieldInsn(GETSTATIC, Type.getInternalName(StandardCharsets.class), "UTF_8", Type.getDescriptor(Charset.class));
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "ofString", '(' + Type.getDescriptor(Charset.class) + ')' + HANDLER_DESCRIPTOR, false);
+		} else if (responseType == byte[].class) {
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "ofByteArray", "()" + HANDLER_DESCRIPTOR, false);
+		} else if (responseType == ByteBuffer.class) {
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Handlers.class), "ofByteBuffer", "()" + HANDLER_DESCRIPTOR, false);
+		} else if (responseType == InputStream.class) {
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "ofInputStream", "()" + HANDLER_DESCRIPTOR, false);
+		} else if (responseType == java.nio.file.Path.class) {
+			if (destination != -1) {
+				impl.visitVarInsn(ALOAD, destination);
+				impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "ofFile", "(Ljava/nio/file/Path;)" + HANDLER_DESCRIPTOR, false);
+			} else {
+				impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Handlers.class), "ofTempFile", "()" + HANDLER_DESCRIPTOR, false);
+			}
+		} else if (responseType instanceof ParameterizedType && ((ParameterizedType) responseType).getRawType() == Flow.Publisher.class) {
+			// The only publisher the client can give us is the raw one.
+			java.lang.reflect.Type argument = ((ParameterizedType) responseType).getActualTypeArguments()[0];
+			if (!(argument instanceof ParameterizedType)
+					|| ((ParameterizedType) argument).getRawType() != List.class
+					|| ((ParameterizedType) argument).getActualTypeArguments()[0] != ByteBuffer.class) {
+				String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+				throw new IllegalStateException("Only Flow.Publisher<List<ByteBuffer>> is supported: " + methodDescription);
+			}
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "ofPublisher", "()" + HANDLER_DESCRIPTOR, false);
+		} else if (responseType != null) {
+			// Build the decoder now, so if it can't be done, we find out at bind time, and not on the first response.
+			Decoders.of(responseType, lookup);
+			impl.visitLdcInsn(new ConstantDynamic(method.getName(), HANDLER_DESCRIPTOR, JSON, Type.getType(method.getDeclaringClass()), Type.getMethodDescriptor(method)));
+		} else {
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "discarding", "()" + HANDLER_DESCRIPTOR, false);
+		}
+	}
+
+	/**
+	 * @param detached - true, if the method is being written as a static method in a separate class.
+	 *                 The receiver is still the first parameter, so it's mostly the same, we just can't use any of the proxy's private members.
+	 */
+	private static void writeMethod(Lookup lookup, ClassWriter writer, Method method, String generatedName, String verb, String path, String publisher, boolean detached) {
 		if (path.charAt(0) != '/') {
 			// Yeah, we could patch it up for them, but I'd rather enforce a consistent style then have to read a mixture of the two in source...
 			throw new IllegalStateException("Path must start with a '/'");
 		}
 
+		if (method.isAnnotationPresent(Batch.class)) {
+			writeBatch(lookup, writer, method, generatedName, verb, detached);
+			return;
+		}
+
 		MethodDetails inspection = MethodDetails.discover(method);
 		boolean async = inspection.async;
 		boolean response = inspection.response;
 		java.lang.reflect.Type responseType = inspection.responseType;
 
+		// Nothing's sent until the publisher's subscribed to, so there's nothing to throw.
+		SSE events = method.getDeclaredAnnotation(SSE.class);
+
 		boolean found = false;
 		for (Class<?> exceptionType : method.getExceptionTypes()) {
 			if (exceptionType == SyncException.class) {
@@ -244,7 +882,7 @@ public final class RestBolt {
 				break;
 			}
 		}
-		if (!found && !async) {
+		if (!found && !async && events == null) {
 			String exception = SyncException.class.getName();
 			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
 			throw new IllegalStateException("[ERROR] " + exception + " is not declared on \"" + methodDescription + "\".");
@@ -254,31 +892,138 @@ public final class RestBolt {
 			throw new IllegalStateException("[ERROR] A \"HEAD\" request will never return a body with \"" + methodDescription + "\".");
 		}
 
+		Download download = method.getDeclaredAnnotation(Download.class);
+		if (download != null) {
+			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+			if (!"GET".equals(verb) || async || response || responseType != java.nio.file.Path.class) {
+				throw new IllegalStateException("[ERROR] @Download only works on a synchronous GET that returns a Path: \"" + methodDescription + "\".");
+			}
+			if (download.chunkSize() <= 0 || download.parallelism() <= 0 || download.retries() < 0) {
+				throw new IllegalStateException("[ERROR] Invalid @Download settings on \"" + methodDescription + "\".");
+			}
+		}
+
+		boolean cached = method.isAnnotationPresent(Cacheable.class);
+		if (cached) {
+			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+			if (!"GET".equals(verb)) {
+				throw new IllegalStateException("[ERROR] @Cacheable only works on a GET: \"" + methodDescription + "\".");
+			}
+			if (method.isAnnotationPresent(SingleFlight.class)) {
+				throw new IllegalStateException("[ERROR] @Cacheable already shares its misses, so @SingleFlight isn't needed on \"" + methodDescription + "\".");
+			}
+			for (Parameter parameter : method.getParameters()) {
+				if (parameter.isAnnotationPresent(Header.class)) {
+					throw new IllegalStateException("[ERROR] @Cacheable can't key on the dynamic headers of \"" + methodDescription + "\".");
+				}
+			}
+			// The body is decoded from memory, so it has to be something the handler builds up in one go.
+			if (download != null || inspection.elements != null || responseType == InputStream.class || responseType == ByteBuffer.class || responseType == java.nio.file.Path.class
+					|| (responseType instanceof ParameterizedType && ((ParameterizedType) responseType).getRawType() == Flow.Publisher.class)) {
+				throw new IllegalStateException("[ERROR] @Cacheable can't keep the body of \"" + methodDescription + "\".");
+			}
+		}
+
+		boolean shared = method.isAnnotationPresent(SingleFlight.class);
+		if (shared) {
+			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+			if (!"GET".equals(verb) && !"HEAD".equals(verb)) {
+				throw new IllegalStateException("[ERROR] @SingleFlight only works on a GET or HEAD: \"" + methodDescription + "\".");
+			}
+			// Everyone gets the same response, so the body can't be something that's consumed when it's read.
+			if (download != null || inspection.elements != null || responseType == InputStream.class || responseType == ByteBuffer.class || responseType == java.nio.file.Path.class
+					|| (responseType instanceof ParameterizedType && ((ParameterizedType) responseType).getRawType() == Flow.Publisher.class)) {
+				throw new IllegalStateException("[ERROR] @SingleFlight can't share the body of \"" + methodDescription + "\".");
+			}
+		}
+
+		boolean attempted = method.isAnnotationPresent(Retry.class) || method.isAnnotationPresent(Hedge.class);
+		if (attempted) {
+			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+			// Sending it twice has to be harmless.
+			if (!"GET".equals(verb) && !"HEAD".equals(verb) && !"PUT".equals(verb) && !"DELETE".equals(verb) && !"OPTIONS".equals(verb) && !"TRACE".equals(verb)) {
+				throw new IllegalStateException("[ERROR] @Retry and @Hedge only work on idempotent verbs: \"" + methodDescription + "\".");
+			}
+			if (download != null) {
+				throw new IllegalStateException("[ERROR] @Download already retries its own chunks: \"" + methodDescription + "\".");
+			}
+			if (cached || shared) {
+				throw new IllegalStateException("[ERROR] @Retry and @Hedge can't be mixed with a shared response: \"" + methodDescription + "\".");
+			}
+			for (Parameter parameter : method.getParameters()) {
+				// A stream can only be read once, so there'd be nothing to send the second time around.
+				if (InputStream.class.isAssignableFrom(parameter.getType())) {
+					throw new IllegalStateException("[ERROR] @Retry and @Hedge can't resend the InputStream of \"" + methodDescription + "\".");
+				}
+			}
+		}
+
+		if (events != null) {
+			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+			if (async || response || inspection.elements != Flow.Publisher.class || inspection.elementType != Event.class) {
+				throw new IllegalStateException("[ERROR] @SSE needs to return a Flow.Publisher<" + Event.class.getName() + ">: \"" + methodDescription + "\".");
+			}
+			if (cached || shared || attempted || method.isAnnotationPresent(Compress.class)) {
+				throw new IllegalStateException("[ERROR] @SSE can't be mixed with @Cacheable, @SingleFlight, @Retry, @Hedge or @Compress: \"" + methodDescription + "\".");
+			}
+			if (events.retry() < 0 || events.reconnects() < 0) {
+				throw new IllegalStateException("[ERROR] Invalid @SSE settings on \"" + methodDescription + "\".");
+			}
+		}
+
+		Paginated paginated = method.getDeclaredAnnotation(Paginated.class);
+		if (paginated != null) {
+			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+			if (!"GET".equals(verb) || async || response || (inspection.elements != Stream.class && inspection.elements != Iterator.class)) {
+				throw new IllegalStateException("[ERROR] @Paginated only works on a GET that returns a Stream or an Iterator: \"" + methodDescription + "\".");
+			}
+			if (cached || shared || attempted || events != null) {
+				throw new IllegalStateException("[ERROR] @Paginated can't be mixed with @Cacheable, @SingleFlight, @Retry, @Hedge or @SSE: \"" + methodDescription + "\".");
+			}
+			if (paginated.cursor().isEmpty() || paginated.prefetch() < 0) {
+				throw new IllegalStateException("[ERROR] Invalid @Paginated settings on \"" + methodDescription + "\".");
+			}
+			// Build the decoder now, so if it can't be done, we find out at bind time, and not on the first page.
+			Decoders.of(inspection.elementType, lookup);
+		}
+
+		// A download on a @Compress interface is just left alone, the ranges are of the compressed body, so it'd never line up.
+		// (Same goes for an event stream, as it's never really "done")
+		Compress compress = download == null && events == null ? compress(method) : null;
+		if (compress != null || method.isAnnotationPresent(Compress.class)) {
+			String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+			if (download != null) {
+				throw new IllegalStateException("[ERROR] @Download can't @Compress its ranges: \"" + methodDescription + "\".");
+			}
+			if (!Compression.supported(compress.encoding())) {
+				throw new IllegalStateException("[ERROR] @Compress only supports \"gzip\" or \"deflate\", not \"" + compress.encoding() + "\": \"" + methodDescription + "\".");
+			}
+		}
+
 		Parameter[] params = method.getParameters();
 		int count = params.length;
 
 		String[] names = new String[count];
+		String[] separators = new String[count];
 		int[] types = new int[count];
 		int max = 1; // Start at 1, because of the receiver ('this').
+		int destination = -1;
 
 		for (int i = 0, l = params.length; i < l; i++) {
 			Parameter parameter = params[i];
 			int sort = determineSort(parameter.getType());
-			if (sort == ARRAY || sort == MAP || sort == LIST || sort == FILE || sort == INPUT_STREAM) {
-				String methodDescription = method.getName() + Type.getMethodDescriptor(method);
-				String parameterType = parameter.getType().getName();
-				log.warn("[WARN] Not yet supported: " + methodDescription + " => " + parameterType);
-			}
 			int type = UNUSED;
 			for (Annotation annotation : parameter.getAnnotations()) {
 				Class<? extends Annotation> annotationType = annotation.annotationType();
 				if (annotationType == Path.class) {
 					Path segment = (Path) annotation;
 					names[i] = segment.value();
+					separators[i] = segment.separator();
 					type |= PATH;
 				} else if (annotationType == Query.class) {
 					Query query = (Query) annotation;
 					names[i] = query.value();
+					separators[i] = query.separator();
 					type |= QUERY;
 				} else if (annotationType == Header.class) {
 					Header header = (Header) annotation;
@@ -292,8 +1037,23 @@ public final class RestBolt {
 					Body body = (Body) annotation;
 					names[i] = body.value();
 					type |= BODY;
+				} else if (annotationType == Destination.class) {
+					if (parameter.getType() != java.nio.file.Path.class || responseType != java.nio.file.Path.class) {
+						String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+						throw new IllegalStateException("@Destination needs to be a Path, on a method that returns a Path: " + methodDescription);
+					}
+					destination = max;
 				}
 			}
+			// Files and streams are fine as bodies, the publishers know what to do with them.
+			boolean streamed = (sort == FILE || sort == INPUT_STREAM) && type == BODY;
+			// Arrays, lists and maps are fine as queries, and arrays and lists are fine as path segments. (See Queries)
+			boolean sequence = ((sort == ARRAY || sort == LIST || sort == MAP) && type == QUERY) || ((sort == ARRAY || sort == LIST) && type == PATH);
+			if ((sort == ARRAY || sort == MAP || sort == LIST || sort == FILE || sort == INPUT_STREAM) && !streamed && !sequence) {
+				String methodDescription = method.getName() + Type.getMethodDescriptor(method);
+				String parameterType = parameter.getType().getName();
+				log.warn("[WARN] Not yet supported: " + methodDescription + " => " + parameterType);
+			}
 			types[i] = max << SLOT_SHIFT | sort << SORT_SHIFT | type;
 			max += size(sort);
 		}
@@ -303,23 +1063,29 @@ public final class RestBolt {
 			log.debug("Types: " + Arrays.toString(types));
 		}
 
-		MethodVisitor impl = writer.visitMethod(Modifier.PUBLIC | Modifier.FINAL, method.getName(), Type.getMethodDescriptor(method), null, null);
-
-		// Load the host field for later. (I don't really use locals all that much...)
-		impl.visitVarInsn(ALOAD, 0);
-		impl.visitFieldInsn(GETFIELD, generatedName, "host", URI_DESCRIPTOR);
+		MethodVisitor impl;
+		if (detached) {
+			String descriptor = "(L" + generatedName + ';' + Type.getMethodDescriptor(method).substring(1);
+			impl = writer.visitMethod(Modifier.STATIC | Modifier.FINAL, method.getName(), descriptor, null, null);
+		} else {
+			impl = writer.visitMethod(Modifier.PUBLIC | Modifier.FINAL, method.getName(), Type.getMethodDescriptor(method), null, null);
+		}
 
 		// A bit of a quick and easy optimisation.
-		// If the path contains no tokens, then we know it's a bit static block, and we can just load it all at once.
-		// The only other thing standing in our way is the query parameters...
-		boolean dynamic = path.indexOf('{') != -1;
-		if (dynamic) {
+		// If the path contains no tokens, and there's no query parameters, the URI never changes, so the proxy built it when it was created.
+		boolean constant = constantUri(method, path);
+		if (!constant) {
 			// Construct the StringBuilder that's used to concat the path segments (static and dynamic).
+			// It starts off with the scheme and authority of the host, as that's all URI.resolve would have taken from it. (See Uris)
 			impl.visitTypeInsn(NEW, STRINGBUILDER_INTERNAL);
 			impl.visitInsn(DUP);
-			impl.visitLdcInsn(32);
-			impl.visitMethodInsn(INVOKESPECIAL, STRINGBUILDER_INTERNAL, "<init>", "(I)V", false);
-		
+			impl.visitVarInsn(ALOAD, 0);
+			impl.visitFieldInsn(GETFIELD, generatedName, "base", STRING_DESCRIPTOR);
+			impl.visitMethodInsn(INVOKESPECIAL, STRINGBUILDER_INTERNAL, "<init>", "(Ljava/lang/String;)V", false);
+		}
+
+		boolean dynamic = path.indexOf('{') != -1;
+		if (dynamic) {
 			// Start segmenting the path into sections that are either static or dynamic.
 			//
 			// 1) Static segments are sections that can be inserted directly into the path without issue.
@@ -353,12 +1119,16 @@ public final class RestBolt {
 						if (knownSegment != null && knownSegment.equals(param)) {
 							int sort = (type & SORT_MASK) >> SORT_SHIFT;
 							int slot = (type & SLOT_MASK) >> SLOT_SHIFT;
-							if (sort == ARRAY || sort == MAP || sort == LIST || sort == FILE || sort == INPUT_STREAM) {
+							if (sort == MAP || sort == FILE || sort == INPUT_STREAM) {
 								throw new IllegalStateException("Not yet supported");
 							}
 		
 							impl.visitVarInsn(op(ILOAD, sort), slot);
-							if (sort == STRING) {
+							if (sort == ARRAY || sort == LIST) {
+								// [StringBuilder, values] -> Queries.join(builder, values, separator)
+								impl.visitLdcInsn(separators[i]);
+								impl.visitMethodInsn(INVOKESTATIC, QUERIES_INTERNAL, "join", "(Ljava/lang/StringBuilder;" + sequenceDescriptor(params[i].getType()) + "Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+							} else if (sort == STRING) {
 								impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
 							} else if (sort == OBJECT) {
 								impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(Ljava/lang/Object;)Ljava/lang/StringBuilder;", false);
@@ -377,6 +1147,8 @@ public final class RestBolt {
 		}
 
 		boolean firstQuerySegment = path.indexOf('?') == -1;
+		// Arrays, lists and maps might not write anything at all, so if one of them was meant to write the '?', nobody knows if it did until the request is made.
+		boolean unknownQuerySegment = false;
 
 		// Insert the query parameters.
 		// While we were checking and adding the path segments, we also checked if there was a '?', if there was, the path contains a hardcoded query segment
@@ -386,7 +1158,7 @@ public final class RestBolt {
 				int sort = (type & SORT_MASK) >> SORT_SHIFT;
 				int slot = (type & SLOT_MASK) >> SLOT_SHIFT;
 
-				if (sort == ARRAY || sort == MAP || sort == LIST || sort == OBJECT || sort == FILE || sort == INPUT_STREAM) {
+				if (sort == OBJECT || sort == FILE || sort == INPUT_STREAM) {
 					log.warn("Support not yet added :: " + sort);
 					continue;
 				}
@@ -396,41 +1168,71 @@ public final class RestBolt {
 					log.debug("query: \"" + query + "\".");
 				}
 
-				char queryChar;
-				if (firstQuerySegment) {
+				boolean sequence = sort == ARRAY || sort == LIST || sort == MAP;
+				if (sequence) {
+					if (!dynamic) {
+						dynamic = true;
+						impl.visitLdcInsn(path);
+						impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+					}
+					// [StringBuilder, next]
+					if (unknownQuerySegment) {
+						impl.visitInsn(DUP);
+						impl.visitMethodInsn(INVOKESTATIC, QUERIES_INTERNAL, "separator", "(Ljava/lang/StringBuilder;)C", false);
+					} else if (firstQuerySegment) {
+						impl.visitLdcInsn((int) '?');
+						unknownQuerySegment = true;
+					} else {
+						impl.visitLdcInsn((int) '&');
+					}
 					firstQuerySegment = false;
-					queryChar = '?';
-				} else {
-					queryChar = '&';
-				}
 
-				if (!dynamic) {
-					dynamic = true;
-
-					// Welp, if the path was static, the rest of the url isn't, because we just found a query parameter.
-					// So, we need to reconstruct all of the previous stuff we would have done, had we done it normally.
-					// This means we need to put a StringBuilder on the stack, complete with the path.
+					if (sort == MAP) {
+						impl.visitVarInsn(ALOAD, slot);
+						impl.visitMethodInsn(INVOKESTATIC, QUERIES_INTERNAL, "append", "(Ljava/lang/StringBuilder;CLjava/util/Map;)Ljava/lang/StringBuilder;", false);
+					} else {
+						impl.visitLdcInsn(URLEncoder.encode(query, StandardCharsets.UTF_8));
+						impl.visitVarInsn(ALOAD, slot);
+						impl.visitLdcInsn(separators[i]);
+						impl.visitMethodInsn(INVOKESTATIC, QUERIES_INTERNAL, "append", "(Ljava/lang/StringBuilder;CLjava/lang/String;" + sequenceDescriptor(params[i].getType()) + "Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+					}
+					continue;
+				}
 
-					// Construct the StringBuilder that's used to concat the path segments (static and dynamic).
-					impl.visitTypeInsn(NEW, STRINGBUILDER_INTERNAL);
+				if (unknownQuerySegment) {
+					// Whatever happens, there's definitely a '?' after this one.
+					unknownQuerySegment = false;
 					impl.visitInsn(DUP);
-					impl.visitLdcInsn(32);
-					impl.visitMethodInsn(INVOKESPECIAL, STRINGBUILDER_INTERNAL, "<init>", "(I)V", false);
-
-					// We know all of the path is static at this point, so we can just dump it all into the StringBuilder in one go.
-					// We also already know the first query name, as we're processing it right now.
-					// So we smoosh the two into a constant, and load it all at once.
-					impl.visitLdcInsn(path + queryChar + URLEncoder.encode(query, StandardCharsets.UTF_8) + '=');
+					impl.visitMethodInsn(INVOKESTATIC, QUERIES_INTERNAL, "separator", "(Ljava/lang/StringBuilder;)C", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(C)Ljava/lang/StringBuilder;", false);
+					impl.visitLdcInsn(URLEncoder.encode(query, StandardCharsets.UTF_8) + '=');
 				} else {
-					impl.visitLdcInsn(queryChar + URLEncoder.encode(query, StandardCharsets.UTF_8) + '=');
+					char queryChar;
+					if (firstQuerySegment) {
+						firstQuerySegment = false;
+						queryChar = '?';
+					} else {
+						queryChar = '&';
+					}
+
+					if (!dynamic) {
+						dynamic = true;
+
+						// Welp, if the path was static, the rest of the url isn't, because we just found a query parameter.
+						// We know all of the path is static at this point, so we can just dump it all into the StringBuilder in one go.
+						// We also already know the first query name, as we're processing it right now.
+						// So we smoosh the two into a constant, and load it all at once.
+						impl.visitLdcInsn(path + queryChar + URLEncoder.encode(query, StandardCharsets.UTF_8) + '=');
+					} else {
+						impl.visitLdcInsn(queryChar + URLEncoder.encode(query, StandardCharsets.UTF_8) + '=');
+					}
 				}
 				impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
 
 				impl.visitVarInsn(op(ILOAD, sort), slot);
 				if (sort == STRING) {
-					impl.visitFieldInsn(GETSTATIC, STANDARD_CHARSETS_INTERNAL, "UTF_8", CHARSET_DESCRIPTOR);
-					impl.visitMethodInsn(INVOKESTATIC, URL_ENCODER_INTERNAL, "encode", "(Ljava/lang/String;Ljava/nio/charset/Charset;)Ljava/lang/String;", false);
-					impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+					// Encoded straight into the builder, rather than through a throwaway String.
+					impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(FormEncoder.class), "encode", "(Ljava/lang/StringBuilder;Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
 				} else {
 					char character = PRIMITIVE_DESCRIPTORS.charAt(sort);
 					impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(" + character + ")Ljava/lang/StringBuilder;", false);
@@ -438,15 +1240,67 @@ public final class RestBolt {
 			}
 		}
 
-		if (dynamic) {
-			// We've finished building the URI, and now we just convert it to a string, and resolve it against the host.
+		if (!constant) {
+			if (!dynamic) {
+				// The only query parameters were ones we can't deal with yet, so the path still needs to go in.
+				impl.visitLdcInsn(path);
+				impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+			}
+			// We've finished building the URI, so we just convert it to a string. (It's parsed below)
 			impl.visitMethodInsn(INVOKEVIRTUAL, STRINGBUILDER_INTERNAL, "toString", "()Ljava/lang/String;", false);
+		}
+
+		if (cached) {
+			// The cache is keyed on the URI as a String, so we can check it before we've built anything else.
+			if (constant) {
+				impl.visitVarInsn(ALOAD, 0);
+				impl.visitFieldInsn(GETFIELD, generatedName, uriField(method), URI_DESCRIPTOR);
+				impl.visitMethodInsn(INVOKEVIRTUAL, URI_INTERNAL, "toString", "()" + STRING_DESCRIPTOR, false);
+			}
+			impl.visitVarInsn(ASTORE, max + 3);
+			writeHandler(lookup, impl, method, responseType, destination);
+			if (compress != null) {
+				impl.visitMethodInsn(INVOKESTATIC, COMPRESSION_INTERNAL, "decoding", '(' + HANDLER_DESCRIPTOR + ')' + HANDLER_DESCRIPTOR, false);
+			}
+			impl.visitVarInsn(ASTORE, max + 2);
+
+			// HttpResponse hit = this.cache$name$hash.hit(client(), uri, handler);
+			impl.visitVarInsn(ALOAD, 0);
+			impl.visitFieldInsn(GETFIELD, generatedName, cacheField(method), HTTP_CACHE_DESCRIPTOR);
+			writeClient(impl, generatedName, method, detached);
+			impl.visitVarInsn(ALOAD, max + 3);
+			impl.visitVarInsn(ALOAD, max + 2);
+			String future = Type.getDescriptor(CompletableFuture.class);
+			impl.visitMethodInsn(INVOKEVIRTUAL, HTTP_CACHE_INTERNAL, async ? "hitAsync" : "hit", '(' + CLIENT_DESCRIPTOR + STRING_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + (async ? future : RESPONSE_DESCRIPTOR), false);
+			Label miss = new Label();
+			impl.visitInsn(DUP);
+			impl.visitJumpInsn(IFNULL, miss);
+			if (async) {
+				impl.visitInsn(ARETURN);
+			} else {
+				writeSyncReturn(impl, method, response, responseType);
+			}
+			impl.visitLabel(miss);
+			impl.visitInsn(POP);
+			if (!constant) {
+				impl.visitVarInsn(ALOAD, max + 3);
+			}
+		}
+
+		if (constant) {
+			impl.visitVarInsn(ALOAD, 0);
+			impl.visitFieldInsn(GETFIELD, generatedName, uriField(method), URI_DESCRIPTOR);
 		} else {
-			// If we've gotten here, then we're targeting a completely static url, with no query parameters.
-			// That means we can just hard-load the path and save constructing a StringBuilder and all of that jazz...
-			impl.visitLdcInsn(path);
+			UriCache cache = method.getDeclaredAnnotation(UriCache.class);
+			if (cache != null) {
+				// [String] -> [Cache, String]
+				impl.visitLdcInsn(new ConstantDynamic("uris", Type.getDescriptor(Uris.Cache.class), URI_CACHE, cache.value()));
+				impl.visitInsn(SWAP);
+				impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Uris.Cache.class), "get", '(' + STRING_DESCRIPTOR + ')' + URI_DESCRIPTOR, false);
+			} else {
+				impl.visitMethodInsn(INVOKESTATIC, URI_INTERNAL, "create", '(' + STRING_DESCRIPTOR + ')' + URI_DESCRIPTOR, false);
+			}
 		}
-		impl.visitMethodInsn(INVOKEVIRTUAL, URI_INTERNAL, "resolve", "(Ljava/lang/String;)" + URI_DESCRIPTOR, false);
 
 		// %request%
 		impl.visitMethodInsn(INVOKESTATIC, REQUEST_INTERNAL, "newBuilder", '(' + URI_DESCRIPTOR + ')' + REQUEST_BUILDER_DESCRIPTOR, false);
@@ -459,6 +1313,25 @@ public final class RestBolt {
 			impl.visitLdcInsn(header.data());
 			impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "header", '(' + STRING_DESCRIPTOR + STRING_DESCRIPTOR + ')' + REQUEST_BUILDER_DESCRIPTOR, true);
 		}
+		if (events != null) {
+			boolean accepts = false;
+			for (Header header : headers) {
+				accepts |= "Accept".equalsIgnoreCase(header.value());
+			}
+			if (!accepts) {
+				impl.visitLdcInsn("Accept");
+				impl.visitLdcInsn("text/event-stream");
+				impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "header", '(' + STRING_DESCRIPTOR + STRING_DESCRIPTOR + ')' + REQUEST_BUILDER_DESCRIPTOR, true);
+			}
+			impl.visitLdcInsn("Cache-Control");
+			impl.visitLdcInsn("no-cache");
+			impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "header", '(' + STRING_DESCRIPTOR + STRING_DESCRIPTOR + ')' + REQUEST_BUILDER_DESCRIPTOR, true);
+		}
+		if (compress != null && acceptsCompressed(method)) {
+			impl.visitLdcInsn("Accept-Encoding");
+			impl.visitLdcInsn(Compression.ACCEPT);
+			impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "header", '(' + STRING_DESCRIPTOR + STRING_DESCRIPTOR + ')' + REQUEST_BUILDER_DESCRIPTOR, true);
+		}
 
 		// Dynamic headers
 		for (int i = 0, l = types.length; i < l; i++) {
@@ -492,24 +1365,20 @@ public final class RestBolt {
 		//
 		// Any other state is undefined behaviour. (As of the time of writing this, it will crash. The builder itself is the receiver, so if you fuck with that... Welp, your own fault.)
 
-		{
-			// Pull apart the publisher string into the component parts:
-			String owner;
-			String methodName;
-
-			int methodStart = publisher.lastIndexOf('.');
-			owner = publisher.substring(0, methodStart).replace('/', '.');
-			methodName = publisher.substring(methodStart + 1);
+		try {
+			publisher(lookup, publisher).invokeExact(method, impl, names, types, max);
+		} catch (Throwable t) {
+			throw new IllegalStateException(t);
+		}
 
-			try {
-				// @MAYBE Jezza - 27 Nov. 2018: I think I've forgotten something here with module access...
-				Class<?> target = lookup.findClass(owner);
-				Lookup bypass = MethodHandles.privateLookupIn(target, lookup);
-				MethodHandle handle = bypass.findStatic(target, methodName, PUBLISHER_FACTORY_SIGNATURE);
-				handle.invokeExact(method, impl, names, types, max);
-			} catch (Throwable t) {
-				throw new IllegalStateException(t);
-			}
+		if (compress != null && compress.threshold() >= 0) {
+			// [builder, publisher] -> [builder, publisher, builder, publisher] -> [builder, publisher, publisher'] -> [builder, publisher']
+			impl.visitInsn(DUP2);
+			impl.visitLdcInsn(compress.threshold());
+			impl.visitLdcInsn(compress.encoding());
+			impl.visitMethodInsn(INVOKESTATIC, COMPRESSION_INTERNAL, "body", '(' + REQUEST_BUILDER_DESCRIPTOR + PUBLISHER_DESCRIPTOR + 'I' + STRING_DESCRIPTOR + ')' + PUBLISHER_DESCRIPTOR, false);
+			impl.visitInsn(SWAP);
+			impl.visitInsn(POP);
 		}
 
 		// At this point, there should be a builder and a publisher sitting on the stack:
@@ -531,73 +1400,182 @@ public final class RestBolt {
 		impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "build", "()" + REQUEST_DESCRIPTOR, true);
 		impl.visitVarInsn(ASTORE, max + 1);
 
+		if (events != null) {
+			// return EventSource.publisher(client(), request, retry, reconnects);
+			writeClient(impl, generatedName, method, detached);
+			impl.visitVarInsn(ALOAD, max + 1);
+			impl.visitLdcInsn(events.retry());
+			impl.visitLdcInsn(events.reconnects());
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(EventSource.class), "publisher", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + "JI)" + Type.getDescriptor(Flow.Publisher.class), false);
+			impl.visitInsn(ARETURN);
+			impl.visitMaxs(0, 0);
+			return;
+		}
+
+		if (paginated != null) {
+			// return Pages.spec(...).stream(client(), request);
+			Label catchStart = new Label();
+			impl.visitLabel(catchStart);
+			impl.visitLdcInsn(new ConstantDynamic(method.getName(), Type.getDescriptor(Pages.Spec.class), PAGES, Type.getType(method.getDeclaringClass()), Type.getMethodDescriptor(method)));
+			writeClient(impl, generatedName, method, detached);
+			impl.visitVarInsn(ALOAD, max + 1);
+			if (inspection.elements == Stream.class) {
+				impl.visitMethodInsn(INVOKEVIRTUAL, PAGES_SPEC_INTERNAL, "stream", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + ')' + Type.getDescriptor(Stream.class), false);
+			} else {
+				impl.visitMethodInsn(INVOKEVIRTUAL, PAGES_SPEC_INTERNAL, "iterator", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + ')' + Type.getDescriptor(Iterator.class), false);
+			}
+			Label catchEnd = new Label();
+			impl.visitLabel(catchEnd);
+			impl.visitInsn(ARETURN);
+			writeSyncHandler(impl, catchStart, catchEnd);
+			impl.visitMaxs(0, 0);
+			return;
+		}
+
 		// Do handler shit...
-		if (responseType == String.class) {
-			impl.visitFieldInsn(GETSTATIC, Type.getInternalName(StandardCharsets.class), "UTF_8", Type.getDescriptor(Charset.class));
-			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "ofString", '(' + Type.getDescriptor(Charset.class) + ')' + HANDLER_DESCRIPTOR, false);
-		} else if (responseType != null) {
-			throw new IllegalStateException("Not yet supported: " + responseType.getTypeName());
-		} else {
-			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyHandlers.class), "discarding", "()" + HANDLER_DESCRIPTOR, false);
+		if (download != null) {
+			// Downloads deal with the body themselves.
+		} else if (!cached) {
+			// (The cached methods already needed it for the hit)
+			writeHandler(lookup, impl, method, responseType, destination);
+			if (compress != null) {
+				impl.visitMethodInsn(INVOKESTATIC, COMPRESSION_INTERNAL, "decoding", '(' + HANDLER_DESCRIPTOR + ')' + HANDLER_DESCRIPTOR, false);
+			}
+			impl.visitVarInsn(ASTORE, max + 2);
 		}
-		impl.visitVarInsn(ASTORE, max + 2);
 
-		impl.visitVarInsn(ALOAD, 0);
-		impl.visitMethodInsn(INVOKESPECIAL, generatedName, "client", "()" + CLIENT_DESCRIPTOR, false);
+		if (shared) {
+			// this.flights$name$hash.send(client(), request, handler);
+			impl.visitVarInsn(ALOAD, 0);
+			impl.visitFieldInsn(GETFIELD, generatedName, flightsField(method), FLIGHTS_DESCRIPTOR);
+		} else if (cached) {
+			// this.cache$name$hash.send(client(), uri, request, handler);
+			impl.visitVarInsn(ALOAD, 0);
+			impl.visitFieldInsn(GETFIELD, generatedName, cacheField(method), HTTP_CACHE_DESCRIPTOR);
+		} else if (attempted) {
+			// this.attempts$name$hash.send(client(), request, handler);
+			impl.visitVarInsn(ALOAD, 0);
+			impl.visitFieldInsn(GETFIELD, generatedName, attemptsField(method), ATTEMPTS_DESCRIPTOR);
+		}
+		writeClient(impl, generatedName, method, detached);
+		if (cached) {
+			impl.visitVarInsn(ALOAD, max + 3);
+		}
 		impl.visitVarInsn(ALOAD, max + 1);
-		impl.visitVarInsn(ALOAD, max + 2);
 
-		if (async) {
-			impl.visitMethodInsn(INVOKEVIRTUAL, CLIENT_INTERNAL, "sendAsync", '(' + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + Type.getDescriptor(CompletableFuture.class), false);
+		if (download != null) {
+			// Downloads.download(client, request, destination, chunkSize, parallelism, retries);
+			Label catchStart = new Label();
+			impl.visitLabel(catchStart);
+			if (destination != -1) {
+				impl.visitVarInsn(ALOAD, destination);
+			} else {
+				impl.visitInsn(ACONST_NULL);
+			}
+			impl.visitLdcInsn(download.chunkSize());
+			impl.visitLdcInsn(download.parallelism());
+			impl.visitLdcInsn(download.retries());
+			impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Downloads.class), "download", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + "Ljava/nio/file/Path;JII)Ljava/nio/file/Path;", false);
+			Label catchEnd = new Label();
+			impl.visitLabel(catchEnd);
+			impl.visitInsn(ARETURN);
+			writeSyncHandler(impl, catchStart, catchEnd);
+		} else if (async) {
+			impl.visitVarInsn(ALOAD, max + 2);
+			if (shared) {
+				impl.visitMethodInsn(INVOKEVIRTUAL, FLIGHTS_INTERNAL, "sendAsync", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + Type.getDescriptor(CompletableFuture.class), false);
+			} else if (cached) {
+				impl.visitMethodInsn(INVOKEVIRTUAL, HTTP_CACHE_INTERNAL, "sendAsync", '(' + CLIENT_DESCRIPTOR + STRING_DESCRIPTOR + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + Type.getDescriptor(CompletableFuture.class), false);
+			} else if (attempted) {
+				impl.visitMethodInsn(INVOKEVIRTUAL, ATTEMPTS_INTERNAL, "sendAsync", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + Type.getDescriptor(CompletableFuture.class), false);
+			} else {
+				impl.visitMethodInsn(INVOKEVIRTUAL, CLIENT_INTERNAL, "sendAsync", '(' + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + Type.getDescriptor(CompletableFuture.class), false);
+			}
 			impl.visitInsn(ARETURN);
 		} else {
+			impl.visitVarInsn(ALOAD, max + 2);
 			Label catchStart = new Label();
 			impl.visitLabel(catchStart);
-			impl.visitMethodInsn(INVOKEVIRTUAL, CLIENT_INTERNAL, "send", '(' + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + RESPONSE_DESCRIPTOR, false);
+			if (shared) {
+				impl.visitMethodInsn(INVOKEVIRTUAL, FLIGHTS_INTERNAL, "send", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + RESPONSE_DESCRIPTOR, false);
+			} else if (cached) {
+				impl.visitMethodInsn(INVOKEVIRTUAL, HTTP_CACHE_INTERNAL, "send", '(' + CLIENT_DESCRIPTOR + STRING_DESCRIPTOR + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + RESPONSE_DESCRIPTOR, false);
+			} else if (attempted) {
+				impl.visitMethodInsn(INVOKEVIRTUAL, ATTEMPTS_INTERNAL, "send", '(' + CLIENT_DESCRIPTOR + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + RESPONSE_DESCRIPTOR, false);
+			} else {
+				impl.visitMethodInsn(INVOKEVIRTUAL, CLIENT_INTERNAL, "send", '(' + REQUEST_DESCRIPTOR + HANDLER_DESCRIPTOR + ')' + RESPONSE_DESCRIPTOR, false);
+			}
 			Label catchEnd = new Label();
 			impl.visitLabel(catchEnd);
-			if (response) {
-				impl.visitInsn(ARETURN);
-			} else if (responseType != null) {
-				impl.visitMethodInsn(INVOKEINTERFACE, RESPONSE_INTERNAL, "body", "()Ljava/lang/Object;", true);
-				impl.visitTypeInsn(CHECKCAST, responseType.getTypeName().replace('.', '/'));
-				impl.visitInsn(ARETURN);
+			writeSyncReturn(impl, method, response, responseType);
+
+			writeSyncHandler(impl, catchStart, catchEnd);
+		}
+		impl.visitMaxs(0, 0);
+	}
+
+	/**
+	 * Returns whatever the method wants out of the response that's sitting on the stack.
+	 */
+	private static void writeSyncReturn(MethodVisitor impl, Method method, boolean response, java.lang.reflect.Type responseType) {
+		if (response) {
+			impl.visitInsn(ARETURN);
+		} else if (responseType != null) {
+			Class<?> returnType = method.getReturnType();
+			if (returnType.isPrimitive()) {
+				// A null can't be unboxed, so that has to be turned into a SyncException first.
+				impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Handlers.class), "primitive", '(' + RESPONSE_DESCRIPTOR + ")Ljava/lang/Object;", false);
+				// The decoders only deal in objects, so unbox it.
+				Class<?> boxed = methodType(returnType).wrap().returnType();
+				impl.visitTypeInsn(CHECKCAST, Type.getInternalName(boxed));
+				impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(boxed), returnType.getName() + "Value", "()" + Type.getDescriptor(returnType), false);
 			} else {
-				impl.visitInsn(RETURN);
+				impl.visitMethodInsn(INVOKEINTERFACE, RESPONSE_INTERNAL, "body", "()Ljava/lang/Object;", true);
+				// The erasure, as we could be returning something like a List<User>.
+				impl.visitTypeInsn(CHECKCAST, Type.getInternalName(returnType));
 			}
+			impl.visitInsn(Type.getReturnType(method).getOpcode(IRETURN));
+		} else {
+			impl.visitInsn(RETURN);
+		}
+	}
 
-			Label catchHandler = new Label();
-			impl.visitLabel(catchHandler);
-			// Yes, I know, stomping locals, we're not gonna need them where we're going...
-			impl.visitVarInsn(ASTORE, 0);
-			impl.visitTypeInsn(NEW, EXCEPTION_INTERNAL);
-			impl.visitInsn(DUP);
-			impl.visitVarInsn(ALOAD, 0);
-			impl.visitMethodInsn(INVOKESPECIAL, EXCEPTION_INTERNAL, "<init>", "(Ljava/lang/Throwable;)V", false);
-			impl.visitInsn(ATHROW);
+	/**
+	 * Wraps anything the client throws between the two labels into a {@link SyncException}.
+	 */
+	private static void writeSyncHandler(MethodVisitor impl, Label catchStart, Label catchEnd) {
+		Label catchHandler = new Label();
+		impl.visitLabel(catchHandler);
+		// Yes, I know, stomping locals, we're not gonna need them where we're going...
+		impl.visitVarInsn(ASTORE, 0);
+		impl.visitTypeInsn(NEW, EXCEPTION_INTERNAL);
+		impl.visitInsn(DUP);
+		impl.visitVarInsn(ALOAD, 0);
+		impl.visitMethodInsn(INVOKESPECIAL, EXCEPTION_INTERNAL, "<init>", "(Ljava/lang/Throwable;)V", false);
+		impl.visitInsn(ATHROW);
 
-			impl.visitTryCatchBlock(catchStart, catchEnd, catchHandler, Type.getInternalName(IOException.class));
-			impl.visitTryCatchBlock(catchStart, catchEnd, catchHandler, Type.getInternalName(InterruptedException.class));
-		}
-		impl.visitMaxs(0, 0);
+		impl.visitTryCatchBlock(catchStart, catchEnd, catchHandler, Type.getInternalName(IOException.class));
+		impl.visitTryCatchBlock(catchStart, catchEnd, catchHandler, Type.getInternalName(InterruptedException.class));
 	}
 
-	private static void buildClient(ClassWriter writer, String generatedName, boolean visible) {
+	private static void buildClient(ClassWriter writer, String generatedName, boolean visible, boolean lazy) {
 		//	private HttpClient client() {
 		//		HttpClient client = this.client;
 		//		if (client == null) {
 		//			synchronized (this) {
 		//				client = this.client;
 		//				if (client == null) {
-		//					client = HttpClient.newBuilder()
-		//							.build();
+		//					client = transport.client();
 		//					this.client = client;
 		//				}
 		//			}
 		//		}
 		//		return client;
 		//	}
-		MethodVisitor client = writer.visitMethod(visible ? Modifier.PUBLIC | Modifier.FINAL : Modifier.PRIVATE, "client", "()" + CLIENT_DESCRIPTOR, null, null);
+		int access = visible
+				? Modifier.PUBLIC | Modifier.FINAL
+				: lazy ? Modifier.FINAL : Modifier.PRIVATE;
+		MethodVisitor client = writer.visitMethod(access, "client", "()" + CLIENT_DESCRIPTOR, null, null);
 		client.visitVarInsn(ALOAD, 0);
 		client.visitFieldInsn(GETFIELD, generatedName, "client", CLIENT_DESCRIPTOR);
 		client.visitVarInsn(ASTORE, 1);
@@ -618,8 +1596,9 @@ public final class RestBolt {
 		Label slowExit = new Label();
 		client.visitJumpInsn(IFNONNULL, slowExit);
 
-		client.visitMethodInsn(INVOKESTATIC, CLIENT_INTERNAL, "newBuilder", "()" + CLIENT_BUILDER_DESCRIPTOR, false);
-		client.visitMethodInsn(INVOKEINTERFACE, CLIENT_BUILDER_INTERNAL, "build", "()" + CLIENT_DESCRIPTOR, true);
+		client.visitVarInsn(ALOAD, 0);
+		client.visitFieldInsn(GETFIELD, generatedName, "transport", TRANSPORT_DESCRIPTOR);
+		client.visitMethodInsn(INVOKEVIRTUAL, TRANSPORT_INTERNAL, "client", "()" + CLIENT_DESCRIPTOR, false);
 
 		client.visitVarInsn(ASTORE, 1);
 		client.visitVarInsn(ALOAD, 0);
@@ -0,0 +1,195 @@
+package me.jezza.restbolt;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import me.jezza.restbolt.annotations.Client;
+
+/**
+ * Where a proxy gets its {@link HttpClient} from.
+ * <p>
+ * Every proxy asks for its client once, the first time it needs one.
+ * So, if you bind one interface to a bunch of hosts, and want them all to share a connection pool (and selector thread), give them a {@link #shared(HttpClient)} transport.
+ *
+ * @author Jezza
+ */
+public final class Transport {
+	private static final Logger log = LoggerFactory.getLogger(Transport.class);
+
+	/**
+	 * Set if the client was handed to us, otherwise we build one ourselves with the settings below.
+	 */
+	private final Supplier<HttpClient> clients;
+
+	private final HttpClient.Version version;
+	private final Duration connectTimeout;
+	private final MethodHandle executor;
+	private final boolean virtualThreads;
+
+	/**
+	 * If the proxies should record their {@link Metrics}.
+	 */
+	private final boolean metrics;
+
+	private Transport(Supplier<HttpClient> clients) {
+		this(clients, HttpClient.Version.HTTP_2, null, null, false, false);
+	}
+
+	private Transport(Supplier<HttpClient> clients, HttpClient.Version version, Duration connectTimeout, MethodHandle executor, boolean virtualThreads, boolean metrics) {
+		this.clients = clients;
+		this.version = version;
+		this.connectTimeout = connectTimeout;
+		this.executor = executor;
+		this.virtualThreads = virtualThreads;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Every proxy uses the given client.
+	 */
+	public static Transport shared(HttpClient client) {
+		Objects.requireNonNull(client, "client");
+		return new Transport(() -> client);
+	}
+
+	/**
+	 * Every proxy asks the factory for a client.
+	 * (Whether or not that's a new one is up to the factory.)
+	 */
+	public static Transport factory(Supplier<HttpClient> factory) {
+		Objects.requireNonNull(factory, "factory");
+		return new Transport(factory);
+	}
+
+	/**
+	 * The transport used when nothing is given at bind time.
+	 * Each proxy builds its own client, as described by the interface's {@link Client} annotation. (If there is one...)
+	 */
+	static Transport of(Class<?> type, Lookup lookup) {
+		Client config = type.getDeclaredAnnotation(Client.class);
+		if (config == null) {
+			return new Transport(null);
+		}
+		Duration connectTimeout = config.connectTimeout() > 0
+				? Duration.ofMillis(config.connectTimeout())
+				: null;
+		if (config.virtualThreads() && !config.executor().isEmpty()) {
+			throw new IllegalStateException("@Client on \"" + type.getName() + "\" declares both an executor and virtual threads.");
+		}
+		MethodHandle executor = config.executor().isEmpty()
+				? null
+				: executor(lookup, config.executor());
+		return new Transport(null, config.version(), connectTimeout, executor, config.virtualThreads(), config.metrics());
+	}
+
+	/**
+	 * The same transport, but the clients it builds run on virtual threads.
+	 */
+	Transport virtualThreads() {
+		if (clients != null) {
+			throw new IllegalStateException("The client was provided, so it's up to you to give it a virtual thread executor.");
+		}
+		if (executor != null) {
+			throw new IllegalStateException("@Client already declares an executor, it can't be used with virtual threads as well.");
+		}
+		return new Transport(null, version, connectTimeout, null, true, metrics);
+	}
+
+	/**
+	 * The same transport, but the proxies record their {@link Metrics}, (or don't) as given.
+	 */
+	Transport metrics(boolean metrics) {
+		return this.metrics == metrics
+				? this
+				: new Transport(clients, version, connectTimeout, executor, virtualThreads, metrics);
+	}
+
+	boolean metered() {
+		return metrics;
+	}
+
+	private static MethodHandle executor(Lookup lookup, String executor) {
+		int methodStart = executor.lastIndexOf('.');
+		String owner = executor.substring(0, methodStart).replace('/', '.');
+		String methodName = executor.substring(methodStart + 1);
+		try {
+			Class<?> target = lookup.findClass(owner);
+			Lookup bypass = MethodHandles.privateLookupIn(target, lookup);
+			return bypass.findStatic(target, methodName, methodType(Executor.class));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to locate executor factory: " + executor, e);
+		}
+	}
+
+	/**
+	 * Called by the generated proxies, once, when they're constructed.
+	 */
+	public Metrics metrics() {
+		return new Metrics(metrics);
+	}
+
+	/**
+	 * Called by the generated proxies, once, when they first need a client.
+	 */
+	public HttpClient client() {
+		if (clients == null) {
+			return build();
+		}
+		HttpClient client = clients.get();
+		if (client == null) {
+			throw new IllegalStateException("Transport supplied a null client");
+		}
+		return client;
+	}
+
+	private HttpClient build() {
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(version);
+		if (connectTimeout != null) {
+			builder.connectTimeout(connectTimeout);
+		}
+		if (executor != null) {
+			try {
+				builder.executor((Executor) executor.invokeExact());
+			} catch (Throwable t) {
+				throw new IllegalStateException("Failed to create executor", t);
+			}
+		} else if (virtualThreads) {
+			Executor virtual = VirtualThreads.EXECUTOR;
+			if (virtual != null) {
+				builder.executor(virtual);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Virtual threads only exist on newer runtimes, so we have to go looking for them.
+	 * Every client shares the one executor, as it's just a thread per task anyway.
+	 */
+	static final class VirtualThreads {
+		static final ExecutorService EXECUTOR = find();
+
+		private static ExecutorService find() {
+			try {
+				MethodHandle factory = MethodHandles.publicLookup().findStatic(java.util.concurrent.Executors.class, "newVirtualThreadPerTaskExecutor", methodType(ExecutorService.class));
+				return (ExecutorService) factory.invokeExact();
+			} catch (Throwable t) {
+				log.warn("Virtual threads aren't available on this runtime (" + Runtime.version() + "), falling back to the client's default executor.");
+				return null;
+			}
+		}
+	}
+}
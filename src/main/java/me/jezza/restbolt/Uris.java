@@ -0,0 +1,85 @@
+package me.jezza.restbolt;
+
+import java.lang.invoke.MethodHandles.Lookup;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * How the generated code builds the URI of a request.
+ * <p>
+ * {@code host.resolve(path)} parses the path into a URI of its own, and then builds a third one out of the two of them.
+ * All of the paths are absolute (They have to start with a '/'), so the only things resolve ever takes from the host are the scheme and the authority.
+ * Those are split off once, when the proxy is created, (See {@link #base(URI)}) and the path is just stuck onto the end of them, which leaves a single parse.
+ * <p>
+ * The URIs of the methods that don't have any {@link me.jezza.restbolt.annotations.Path}s or {@link me.jezza.restbolt.annotations.Query}s never change,
+ * so they're built when the proxy is, and kept in a field.
+ *
+ * @author Jezza
+ */
+public final class Uris {
+	private Uris() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * @return the scheme and authority of the host, eg, "http://localhost:8080"
+	 */
+	public static String base(URI host) {
+		String scheme = host.getScheme();
+		if (scheme == null) {
+			throw new IllegalStateException("Host needs to be an absolute URI: " + host);
+		}
+		String authority = host.getRawAuthority();
+		return authority != null
+				? scheme + "://" + authority
+				: scheme + ':';
+	}
+
+	public static URI resolve(String base, String path) {
+		return URI.create(base.concat(path));
+	}
+
+	/**
+	 * The bootstrap for the caches of the methods marked with {@link me.jezza.restbolt.annotations.UriCache}.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 */
+	public static Cache cache(Lookup caller, String name, Class<?> type, int size) {
+		return new Cache(size);
+	}
+
+	public static Cache cache(int size) {
+		return new Cache(size);
+	}
+
+	/**
+	 * Remembers the last few URIs that were built, so the hot ones don't need to be parsed again.
+	 * <p>
+	 * It's direct mapped, (Each URI can only ever live in one slot) so there's no eviction to speak of, a new URI just replaces whatever was in its slot.
+	 * A URI keeps the String it was parsed from, so that's all that's needed to check if it's the one we're after.
+	 */
+	public static final class Cache {
+		private final AtomicReferenceArray<URI> table;
+		private final int mask;
+
+		Cache(int size) {
+			if (size <= 0) {
+				throw new IllegalStateException("Cache size must be positive: " + size);
+			}
+			int capacity = size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+			table = new AtomicReferenceArray<>(capacity);
+			mask = capacity - 1;
+		}
+
+		public URI get(String uri) {
+			int hash = uri.hashCode();
+			int index = (hash ^ (hash >>> 16)) & mask;
+			URI cached = table.get(index);
+			if (cached != null && cached.toString().equals(uri)) {
+				return cached;
+			}
+			URI created = URI.create(uri);
+			table.lazySet(index, created);
+			return created;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Merges the calls that come in at around the same time into a single request against a bulk endpoint.
+ * <p>
+ * The method needs to be a {@link GET} with a single {@link Path} or {@link Query} parameter, which is the key, and it needs to return the decoded value,
+ * either as is, or as a {@code CompletableFuture<T>}. (There's no single HttpResponse to hand out, so that's not an option.)
+ * <p>
+ * The keys are sent to the bulk endpoint as a repeated query parameter, which needs to respond with a JSON array of whatever the method returns.
+ * Each element is matched back to its caller through its {@link #key()} property, anything that doesn't come back resolves to null. (Same as a 404 would)
+ * The key property needs to be the same type as the key parameter, (A primitive can be widened, so an int property works for a long key) as that's what they're compared as.
+ * Even a batch of one goes to the bulk endpoint, the path on the method is only there to describe it, but any {@link Header}s on it are sent along with it.
+ *
+ * <pre>
+ * &#64;GET("/users/{id}")
+ * &#64;Batch("/users")
+ * CompletableFuture&lt;User&gt; user(&#64;Path("id") long id);
+ * </pre>
+ * With a few calls at the same time, that sends "/users?id=1&amp;id=2&amp;id=3", and expects something like "[{"id": 1, ...}, {"id": 3, ...}]" back.
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batch {
+	/**
+	 * The path of the bulk endpoint.
+	 */
+	String value();
+
+	/**
+	 * The name of the query parameter the keys are sent as. (Defaults to the name of the key parameter)
+	 */
+	String query() default "";
+
+	/**
+	 * The property on each of the returned elements that holds its key. (Defaults to the name of the key parameter)
+	 */
+	String key() default "";
+
+	/**
+	 * How long (in milliseconds) the first call of a batch waits for others to join it.
+	 */
+	long window() default 2;
+
+	/**
+	 * The most keys that are sent in a single request. A full batch is sent straight away.
+	 */
+	int max() default 100;
+}
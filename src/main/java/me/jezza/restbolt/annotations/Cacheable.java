@@ -0,0 +1,38 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the responses around for as long as the server says they're good for, (Cache-Control's max-age, or Expires) and hands them out without going to the network.
+ * <p>
+ * Once they're stale, they're revalidated with a conditional request, (If-None-Match/If-Modified-Since, from the ETag/Last-Modified it came with) so a 304 just freshens up what we already have.
+ * A stale-while-revalidate window hands out the stale response straight away, and revalidates it in the background.
+ * <p>
+ * The cache is checked as soon as the URI is built, so a hit never builds a request at all.
+ * The body is kept as the raw bytes, and is decoded again for every hit, so nobody shares the same body.
+ * <p>
+ * Only works on a {@link GET} without any dynamic {@link Header}s, (They'd need to be part of the key) and a body that can be read from memory.
+ * (Nothing, a String, a byte[], or JSON)
+ *
+ * <pre>
+ * &#64;GET("/countries/{code}")
+ * &#64;Cacheable
+ * Country country(&#64;Path("code") String code) throws SyncException;
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+	/**
+	 * "owner.method", a static method that returns the {@link me.jezza.restbolt.cache.ResponseCache} to keep them in.
+	 * It's called when the proxy's class is generated, and not for every proxy, but there's no promise it's only ever called once, so if you want them to share, hand out the same one.
+	 * <p>
+	 * Defaults to {@link me.jezza.restbolt.cache.ResponseCache#shared()}.
+	 */
+	String store() default "";
+}
@@ -0,0 +1,55 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.http.HttpClient.Version;
+
+/**
+ * Describes the {@link java.net.http.HttpClient} the proxies build for themselves.
+ * <p>
+ * This only applies when nothing else was given at bind time.
+ * If you hand the binder a client (or a factory), that's what gets used, and this is ignored.
+ * <p>
+ * Note: There's no way to ask the JDK client for HTTP/2 with prior knowledge, it always tries to upgrade over plain text.
+ *
+ * @author Jezza
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Client {
+	Version version() default Version.HTTP_2;
+
+	/**
+	 * In milliseconds, anything below 1 means there's no timeout.
+	 */
+	long connectTimeout() default 0;
+
+	/**
+	 * Same format as the publishers, "owner.method".
+	 * The method should be static, take no parameters, and return an {@link java.util.concurrent.Executor}.
+	 * It's called for every client that gets built, so it's up to you whether or not they share one.
+	 * <p>
+	 * Empty means the client's default executor.
+	 */
+	String executor() default "";
+
+	/**
+	 * Runs the client on virtual threads (one per task), so you can have tens of thousands of blocking calls in flight without sizing a pool.
+	 * Can't be combined with {@link #executor()}.
+	 * <p>
+	 * The synchronous methods block on {@link java.net.http.HttpClient#send}, which happily parks a virtual thread, so call them from virtual threads as well, and you're set.
+	 * If the runtime doesn't have virtual threads, this is just ignored (with a warning).
+	 */
+	boolean virtualThreads() default false;
+
+	/**
+	 * Records how many requests each method sends, how many of them fail, the bytes going each way, and how long they take.
+	 * They can be read through {@link RestService#metrics()}.
+	 * (See {@link me.jezza.restbolt.Metrics})
+	 * <p>
+	 * Unlike the rest of these, this still applies if the binder was given a client.
+	 */
+	boolean metrics() default false;
+}
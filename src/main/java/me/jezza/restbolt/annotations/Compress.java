@@ -0,0 +1,38 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Asks the server for a compressed response, (gzip or deflate) and compresses the request body, if it's worth it.
+ * <p>
+ * The responses are inflated as they arrive, so the handler (and whatever the method returns) only ever sees the decompressed body.
+ * (The headers are left alone though, so the response will still say it was compressed)
+ * A body with a known length under the {@link #threshold()} is sent as is, as the headers would cost more than it saves.
+ * The ones that don't know their length up front (streams, and most custom publishers) are always compressed.
+ * <p>
+ * It can go on the interface, which covers every method, or on a method, which replaces whatever was on the interface.
+ *
+ * <pre>
+ * &#64;POST("/events")
+ * &#64;Compress(threshold = 512)
+ * CompletableFuture&lt;HttpResponse&lt;Void&gt;&gt; publish(&#64;Body("application/json") String events);
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Compress {
+	/**
+	 * The smallest body (in bytes) that's compressed, a negative number only ever compresses the responses.
+	 */
+	int threshold() default 1024;
+
+	/**
+	 * What the request bodies are compressed with, either "gzip" or "deflate".
+	 */
+	String encoding() default "gzip";
+}
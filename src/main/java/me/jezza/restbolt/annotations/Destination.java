@@ -0,0 +1,23 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the {@link java.nio.file.Path} the body should be written to, for methods that return a Path.
+ * <p>
+ * Without one, the body ends up in a temp file, and it's up to you to clean it up.
+ *
+ * <pre>
+ * &#64;GET("/artifacts/{name}")
+ * Path download(&#64;Path("name") String name, &#64;Destination java.nio.file.Path file) throws SyncException;
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Destination {
+}
@@ -0,0 +1,43 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Downloads the body in parallel, as a bunch of ranged requests, straight into a file.
+ * <p>
+ * A HEAD request is sent first to find out how big it is, and whether or not the server even supports ranges.
+ * If it doesn't (or the whole thing fits into a single chunk), it's just a normal GET into the file.
+ * <p>
+ * Only works on a synchronous {@link GET} that returns a {@link java.nio.file.Path}.
+ * The file is the {@link Destination} if there is one, otherwise a temp file.
+ *
+ * <pre>
+ * &#64;GET("/artifacts/{name}")
+ * &#64;Download(chunkSize = 16 &lt;&lt; 20, parallelism = 8)
+ * Path artifact(&#64;Path("name") String name, &#64;Destination java.nio.file.Path file) throws SyncException;
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Download {
+	/**
+	 * The size of each range, in bytes.
+	 */
+	long chunkSize() default 8 << 20;
+
+	/**
+	 * How many ranges can be in flight at the same time.
+	 */
+	int parallelism() default 4;
+
+	/**
+	 * How many times a single range is retried before the whole download is given up on.
+	 * A retry only asks for what's left of the range, so anything that was already written is kept.
+	 */
+	int retries() default 3;
+}
@@ -0,0 +1,38 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * If the request takes longer than most of them do, a second one is sent, and whichever comes back first wins. The other one is cancelled.
+ * <p>
+ * "Most of them" is the {@link #percentile()} of the method's recent latencies, so only the slowest few percent are ever doubled up.
+ * Nothing is hedged until there's been enough requests to know what normal looks like.
+ * <p>
+ * Only works on the idempotent verbs, ({@link GET}, {@link HEAD}, {@link PUT}, {@link DELETE}, {@link OPTIONS} and {@link TRACE})
+ * and the body can't be an InputStream, as that can only be sent once.
+ * It can be used with {@link Retry}, in which case every attempt is hedged, and the hedges are paid for out of its budget.
+ *
+ * <pre>
+ * &#64;GET("/search")
+ * &#64;Hedge(percentile = 99)
+ * CompletableFuture&lt;HttpResponse&lt;String&gt;&gt; search(&#64;Query("q") String query);
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Hedge {
+	/**
+	 * The latency percentile, (0, 100) after which the second request is sent.
+	 */
+	double percentile() default 95;
+
+	/**
+	 * The least (in milliseconds) it'll wait before sending the second request, no matter how fast the method usually is.
+	 */
+	long delay() default 1;
+}
@@ -0,0 +1,21 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Defers generating the methods on the interface until they're first called.
+ * <p>
+ * The proxy is still created up front, but each method is just an invokedynamic stub, that generates and links the real implementation when it's first hit.
+ * Useful for those massive interfaces where you only ever call a handful of the methods.
+ * <p>
+ * Note: This does mean mistakes in the method declarations show up on the first call, instead of when you bind the interface.
+ *
+ * @author Jezza
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Lazy {
+}
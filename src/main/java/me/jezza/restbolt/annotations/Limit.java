@@ -0,0 +1,43 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caps how many requests the method can have in flight at once, and works out what that cap should be from how long they take.
+ * <p>
+ * The limit keeps growing while the latency stays where it usually is, and shrinks once it starts climbing, (ie, the server's started to queue them up)
+ * or the requests start failing. (Connection failures, a 429 or a 503)
+ * Anything past the limit waits for a slot, and once {@link #queue()} calls are waiting, the rest are rejected straight away with a {@link me.jezza.restbolt.LimitExceededException}.
+ * (Which is an IOException, so a synchronous method throws it as a {@link me.jezza.restbolt.SyncException}, and an asynchronous one fails its future with it)
+ * <p>
+ * Every proxy has its own limit for the method, it can be read through {@link me.jezza.restbolt.Metrics#limiter(String)}.
+ * It's applied to every request the method sends, so retries, hedges, batches and download ranges all need a slot of their own.
+ *
+ * <pre>
+ * &#64;GET("/search")
+ * &#64;Limit(initial = 50, max = 500)
+ * CompletableFuture&lt;HttpResponse&lt;String&gt;&gt; search(&#64;Query("q") String query);
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Limit {
+	/**
+	 * The limit it starts with, before it's seen anything.
+	 */
+	int initial() default 20;
+
+	int min() default 1;
+
+	int max() default 1000;
+
+	/**
+	 * How many calls can be waiting for a slot, 0 rejects everything that doesn't get one straight away.
+	 */
+	int queue() default 100;
+}
@@ -0,0 +1,49 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Walks every page of a cursor-paginated GET, and hands back the items of all of them as a single Stream or Iterator.
+ * <p>
+ * The next page is found with the page's Link header, (rel="next") or if there isn't one, the {@link #next()} field of the page.
+ * It's then fetched in the background while the current one's being consumed, so a full scan isn't waiting on a round trip per page.
+ * Once there's no next page, (or the cursor is null or empty) that's the end of it.
+ * <p>
+ * The first page is fetched before the method returns, so if that fails, it's thrown like any other synchronous method.
+ * The pages after that can only fail while you're iterating, so they come out as an {@link java.io.UncheckedIOException}.
+ * If you don't get to the end of a Stream, close it, so whatever's been fetched ahead is dropped.
+ *
+ * <pre>
+ * &#64;GET("/users")
+ * &#64;Paginated(items = "data", next = "meta.next_cursor", prefetch = 2)
+ * Stream&lt;User&gt; users(&#64;Query("limit") int limit) throws SyncException;
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Paginated {
+	/**
+	 * The query parameter the cursor is sent back as.
+	 */
+	String cursor() default "cursor";
+
+	/**
+	 * Where the items are in the page, (a dot steps into a nested object) or an empty string, if the page is just the array.
+	 */
+	String items() default "items";
+
+	/**
+	 * Where the next cursor is in the page, same as {@link #items()}.
+	 */
+	String next() default "next";
+
+	/**
+	 * How many pages can be fetched ahead of the one that's being consumed.
+	 */
+	int prefetch() default 1;
+}
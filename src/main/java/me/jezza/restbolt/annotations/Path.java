@@ -6,10 +6,14 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Arrays and lists are joined with the {@link #separator()}. ("/users/{ids}" -&gt; "/users/1,2,3")
+ *
  * @author Jezza
  */
 @Target({ElementType.TYPE, ElementType.PARAMETER})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Path {
 	String value();
+
+	String separator() default ",";
 }
@@ -6,10 +6,20 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Arrays and lists are written out as the same parameter, repeated for each element. (?id=1&amp;id=2)
+ * Give it a {@link #separator()}, and they're joined into a single value instead. (?id=1,2)
+ * <p>
+ * A map is written out as one parameter per entry, so it doesn't need a name.
+ *
  * @author Jezza
  */
 @Target(ElementType.PARAMETER)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Query {
-	String value();
+	String value() default "";
+
+	/**
+	 * Written as is, so it needs to be something that's fine in a query string. (',' or ';' are)
+	 */
+	String separator() default "";
 }
@@ -2,9 +2,17 @@ package me.jezza.restbolt.annotations;
 
 import java.net.http.HttpClient;
 
+import me.jezza.restbolt.Metrics;
+
 /**
  * @author Jezza
  */
 public interface RestService {
 	HttpClient client();
+
+	/**
+	 * What the proxy's methods have been up to, and where their {@link Limit}s are at.
+	 * There's only anything recorded if it was bound with metrics. (See {@link me.jezza.restbolt.Binder#metrics()} and {@link Client#metrics()})
+	 */
+	Metrics metrics();
 }
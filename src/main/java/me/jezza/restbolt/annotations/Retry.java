@@ -0,0 +1,59 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sends the request again if it fails with an IOException, (The connection dropped, it timed out, etc) or comes back with one of the {@link #statuses()}.
+ * <p>
+ * There's a (random) wait between each attempt, up to {@link #backoff()} for the first retry, doubling for every one after that, up to {@link #maxBackoff()}.
+ * Every request adds {@link #budget()} of a token to a bucket, (which holds up to {@link #burst()} of them) and every retry takes a whole one,
+ * so when everything's failing, we only add a bit more load, instead of multiplying it.
+ * If there's no token to take, the last failure is what you get.
+ * <p>
+ * Only works on the idempotent verbs, ({@link GET}, {@link HEAD}, {@link PUT}, {@link DELETE}, {@link OPTIONS} and {@link TRACE})
+ * and the body can't be an InputStream, as that can only be sent once.
+ *
+ * <pre>
+ * &#64;GET("/users/{id}")
+ * &#64;Retry(attempts = 3, backoff = 20)
+ * User user(&#64;Path("id") long id) throws SyncException;
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Retry {
+	/**
+	 * How many times the request can be sent in total, including the first.
+	 */
+	int attempts() default 3;
+
+	/**
+	 * The most (in milliseconds) the first retry waits.
+	 */
+	long backoff() default 50;
+
+	/**
+	 * The most (in milliseconds) any retry waits.
+	 */
+	long maxBackoff() default 1000;
+
+	/**
+	 * The statuses that are worth another go.
+	 */
+	int[] statuses() default {502, 503, 504};
+
+	/**
+	 * How many tokens every request adds to the bucket. (So, roughly how many retries there can be per request)
+	 */
+	double budget() default 0.1;
+
+	/**
+	 * The most tokens the bucket can hold. It starts off full.
+	 */
+	int burst() default 10;
+}
@@ -0,0 +1,38 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Turns the method into a subscription to a stream of Server-Sent Events. (text/event-stream)
+ * <p>
+ * The method has to return a Flow.Publisher&lt;{@link me.jezza.restbolt.Event}&gt;, and nothing is sent until something subscribes to it.
+ * Every subscriber gets its own connection, and the events are parsed as they arrive, but only as fast as the subscriber asks for them.
+ * (Once it stops asking, we stop reading, and the connection's flow control takes care of the rest)
+ * <p>
+ * If the connection drops, or the server closes it, it reconnects, and picks up where it left off with a Last-Event-ID.
+ * A 204 ends the stream, and anything else that isn't a 200 with a text/event-stream fails it, unless it's a 429 or a 5xx, which are just retried.
+ *
+ * <pre>
+ * &#64;GET("/changes")
+ * &#64;SSE
+ * Flow.Publisher&lt;Event&gt; changes(&#64;Query("since") long since);
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SSE {
+	/**
+	 * How long (in milliseconds) it waits before reconnecting, until the server says otherwise. (A "retry:" field)
+	 */
+	long retry() default 3000;
+
+	/**
+	 * How many times in a row it can fail to connect, before it gives up and fails the stream.
+	 */
+	int reconnects() default 10;
+}
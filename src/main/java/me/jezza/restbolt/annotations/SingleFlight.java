@@ -0,0 +1,29 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * While a request is in flight, any identical calls just wait for its response, instead of sending one of their own.
+ * <p>
+ * Calls are identical if they build the same request, (Same verb, URI and headers) on the same proxy.
+ * Nothing is kept once the response is in, so a call that comes in after that sends a new request, it's not a cache.
+ * <p>
+ * Only works on a {@link GET} or {@link HEAD}, and everyone gets the same response, so the body needs to be something that can be shared.
+ * (Nothing, a String, a byte[], or JSON. Streams, buffers and files are all consumed by whoever gets them first.)
+ * It's the same instance, so if it's mutable, (eg, a byte[]) don't.
+ *
+ * <pre>
+ * &#64;GET("/config/{name}")
+ * &#64;SingleFlight
+ * CompletableFuture&lt;Config&gt; config(&#64;Path("name") String name);
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SingleFlight {
+}
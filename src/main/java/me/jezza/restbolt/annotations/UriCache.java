@@ -0,0 +1,30 @@
+package me.jezza.restbolt.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the URIs the method builds around, so they don't have to be parsed again when the same values come back.
+ * <p>
+ * Only really worth it when the {@link Path} and {@link Query} values come from a small set. (eg, a handful of ids that get hammered)
+ * If every call is unique, it's just a bunch of misses.
+ * Methods without any path or query parameters don't need it, their URI is only ever built once anyway.
+ *
+ * <pre>
+ * &#64;GET("/regions/{region}/status")
+ * &#64;UriCache(16)
+ * String status(&#64;Path("region") String region) throws SyncException;
+ * </pre>
+ *
+ * @author Jezza
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface UriCache {
+	/**
+	 * Roughly how many URIs are kept. (It's rounded up to a power of two)
+	 */
+	int value() default 64;
+}
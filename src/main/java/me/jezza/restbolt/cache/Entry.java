@@ -0,0 +1,202 @@
+package me.jezza.restbolt.cache;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A response, as it was received, along with how long it can be used for.
+ * <p>
+ * The times are all from {@link System#nanoTime()}, so they only make sense in the JVM that made them.
+ *
+ * @author Jezza
+ */
+public final class Entry {
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * A rough guess at what everything other than the body costs, so a store full of tiny bodies still has a limit.
+	 */
+	private static final int OVERHEAD = 256;
+
+	/**
+	 * The request it was originally sent with. (Without any of the conditional headers)
+	 */
+	final HttpRequest request;
+	final int status;
+	final HttpHeaders headers;
+	final HttpClient.Version version;
+	private final ByteBuffer body;
+
+	/**
+	 * Up until when it can be used as is.
+	 */
+	final long fresh;
+
+	/**
+	 * Up until when it can be used while it's revalidated in the background. (stale-while-revalidate)
+	 */
+	final long stale;
+
+	final String etag;
+	final String lastModified;
+
+	/**
+	 * If it's worth keeping at all.
+	 */
+	final boolean storable;
+
+	private Entry(HttpRequest request, int status, HttpHeaders headers, HttpClient.Version version, ByteBuffer body, long fresh, long stale, String etag, String lastModified, boolean storable) {
+		this.request = request;
+		this.status = status;
+		this.headers = headers;
+		this.version = version;
+		this.body = body;
+		this.fresh = fresh;
+		this.stale = stale;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.storable = storable;
+	}
+
+	/**
+	 * Works out how long the response can be used for from its Cache-Control (or Expires) header.
+	 */
+	static Entry of(HttpRequest request, int status, HttpHeaders headers, HttpClient.Version version, ByteBuffer body, long now) {
+		long maxAge = -1;
+		long staleWhileRevalidate = 0;
+		boolean noStore = false;
+		boolean noCache = false;
+		boolean mustRevalidate = false;
+		for (String value : headers.allValues("Cache-Control")) {
+			for (String directive : value.split(",")) {
+				directive = directive.trim().toLowerCase(Locale.ROOT);
+				int equals = directive.indexOf('=');
+				String name = equals == -1 ? directive : directive.substring(0, equals).trim();
+				String argument = equals == -1 ? null : unquote(directive.substring(equals + 1).trim());
+				switch (name) {
+					case "no-store":
+						noStore = true;
+						break;
+					case "no-cache":
+						// Can be kept, but has to be checked every time.
+						noCache = true;
+						break;
+					case "must-revalidate":
+						mustRevalidate = true;
+						break;
+					case "max-age":
+						maxAge = seconds(argument, maxAge);
+						break;
+					case "stale-while-revalidate":
+						staleWhileRevalidate = seconds(argument, 0);
+						break;
+					default:
+						break;
+				}
+			}
+		}
+		if (noCache) {
+			maxAge = 0;
+		} else if (maxAge < 0) {
+			maxAge = expires(headers);
+		}
+		maxAge -= seconds(headers.firstValue("Age").orElse(null), 0);
+		if (noCache || mustRevalidate) {
+			staleWhileRevalidate = 0;
+		}
+		String etag = headers.firstValue("ETag").orElse(null);
+		String lastModified = headers.firstValue("Last-Modified").orElse(null);
+		boolean storable = status == 200 && !noStore && (maxAge > 0 || etag != null || lastModified != null);
+		long fresh = now + Math.max(maxAge, 0) * SECOND;
+		long stale = fresh + staleWhileRevalidate * SECOND;
+		return new Entry(request, status, headers, version, body, fresh, stale, etag, lastModified, storable);
+	}
+
+	private static String unquote(String value) {
+		return value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"'
+				? value.substring(1, value.length() - 1)
+				: value;
+	}
+
+	private static long seconds(String value, long otherwise) {
+		if (value == null) {
+			return otherwise;
+		}
+		try {
+			return Math.max(Long.parseLong(value), 0);
+		} catch (NumberFormatException e) {
+			return otherwise;
+		}
+	}
+
+	/**
+	 * @return how many seconds the Expires header gives it, relative to its Date header, (or now, if there isn't one) or 0, if there isn't one, or it's garbage.
+	 */
+	private static long expires(HttpHeaders headers) {
+		String expires = headers.firstValue("Expires").orElse(null);
+		if (expires == null) {
+			return 0;
+		}
+		try {
+			long until = ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+			String date = headers.firstValue("Date").orElse(null);
+			long from = date != null
+					? ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond()
+					: System.currentTimeMillis() / 1000;
+			return Math.max(until - from, 0);
+		} catch (DateTimeParseException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * The entry a 304 turns this into: the same body, but the headers (and so the freshness) it was sent back with.
+	 */
+	Entry revalidated(HttpHeaders update, long now) {
+		Map<String, List<String>> merged = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		merged.putAll(headers.map());
+		update.map().forEach((name, values) -> {
+			// These describe the 304 itself, and not the body we already have.
+			if (!name.equalsIgnoreCase("Content-Length") && !name.equalsIgnoreCase("Transfer-Encoding") && !name.equalsIgnoreCase("Content-Encoding")) {
+				merged.put(name, values);
+			}
+		});
+		return of(request, status, HttpHeaders.of(merged, (name, value) -> true), version, body, now);
+	}
+
+	/**
+	 * @return a copy of this entry, with its body moved into a direct buffer.
+	 */
+	Entry offHeap() {
+		if (body.isDirect()) {
+			return this;
+		}
+		ByteBuffer direct = ByteBuffer.allocateDirect(body.remaining());
+		direct.put(body.duplicate()).flip();
+		return new Entry(request, status, headers, version, direct.asReadOnlyBuffer(), fresh, stale, etag, lastModified, storable);
+	}
+
+	/**
+	 * @return a view of the body, which can be read without disturbing anyone else.
+	 */
+	public ByteBuffer body() {
+		return body.duplicate();
+	}
+
+	/**
+	 * @return roughly how many bytes it takes up.
+	 */
+	public int weight() {
+		return body.remaining() + OVERHEAD;
+	}
+}
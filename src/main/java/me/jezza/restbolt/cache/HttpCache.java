@@ -0,0 +1,339 @@
+package me.jezza.restbolt.cache;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * The runtime half of {@link me.jezza.restbolt.annotations.Cacheable}.
+ * <p>
+ * Every proxy gets one of these per cached method, the generated code asks it for a {@link #hit(HttpClient, String, BodyHandler)} as soon as the URI has been built,
+ * and only if there isn't one does it bother building the request, and hand it over to {@link #send(HttpClient, String, HttpRequest, BodyHandler)}.
+ * <p>
+ * The network only ever gives us the raw bytes, which are then fed through the method's handler, just like they would've been, had they come straight from the client.
+ * That way, everyone gets their own body, and it's the same no matter where it came from.
+ * The misses are shared, (Just like {@link me.jezza.restbolt.annotations.SingleFlight}) as the bytes are decoded separately for every caller anyway.
+ * Not really API, it just needs to be public so the generated classes can see it.
+ *
+ * @author Jezza
+ */
+public final class HttpCache {
+	private static final Flow.Subscription NOTHING = new Flow.Subscription() {
+		@Override
+		public void request(long n) {
+		}
+
+		@Override
+		public void cancel() {
+		}
+	};
+
+	private final ResponseCache store;
+
+	/**
+	 * The static headers of the method, as they change the response just as much as the URI does.
+	 */
+	private final String headers;
+
+	private final ConcurrentMap<String, CompletableFuture<Entry>> flights = new ConcurrentHashMap<>();
+
+	public HttpCache(ResponseCache store, String headers) {
+		this.store = store;
+		this.headers = headers;
+	}
+
+	/**
+	 * The bootstrap for the stores of the cached methods.
+	 *
+	 * @param factory - "owner.method", a static method that returns the {@link ResponseCache}, or an empty string for the {@link ResponseCache#shared()} one.
+	 */
+	public static ResponseCache store(Lookup caller, String name, Class<?> type, String factory) {
+		if (factory.isEmpty()) {
+			return ResponseCache.shared();
+		}
+		int methodStart = factory.lastIndexOf('.');
+		String owner = factory.substring(0, methodStart).replace('/', '.');
+		String methodName = factory.substring(methodStart + 1);
+		try {
+			Class<?> target = caller.findClass(owner);
+			Lookup bypass = MethodHandles.privateLookupIn(target, caller);
+			MethodHandle handle = bypass.findStatic(target, methodName, methodType(ResponseCache.class));
+			ResponseCache store = (ResponseCache) handle.invokeExact();
+			if (store == null) {
+				throw new IllegalStateException("Response cache factory returned null: " + factory);
+			}
+			return store;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to locate response cache factory: " + factory, e);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException("Response cache factory failed: " + factory, t);
+		}
+	}
+
+	private String key(String uri) {
+		return headers.isEmpty() ? uri : uri.concat(headers);
+	}
+
+	/**
+	 * @return the response, if there's one that can be used, otherwise null.
+	 */
+	public HttpResponse<?> hit(HttpClient client, String uri, BodyHandler<?> handler) {
+		CompletableFuture<? extends HttpResponse<?>> hit = hitAsync(client, uri, handler);
+		if (hit == null) {
+			return null;
+		}
+		try {
+			return hit.join();
+		} catch (CompletionException e) {
+			// The body didn't decode, so let the network have a go at it, and it can fail properly.
+			return null;
+		}
+	}
+
+	/**
+	 * The same as {@link #hit(HttpClient, String, BodyHandler)}, but it doesn't wait for the body to be decoded.
+	 */
+	public CompletableFuture<HttpResponse<?>> hitAsync(HttpClient client, String uri, BodyHandler<?> handler) {
+		String key = key(uri);
+		Entry entry = store.get(key);
+		if (entry == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		if (now - entry.fresh < 0) {
+			return decode(entry, handler);
+		}
+		if (now - entry.stale < 0) {
+			// Still good enough to hand out, but someone needs to go and check on it.
+			fetch(client, key, entry.request);
+			return decode(entry, handler);
+		}
+		return null;
+	}
+
+	public HttpResponse<?> send(HttpClient client, String uri, HttpRequest request, BodyHandler<?> handler) throws IOException, InterruptedException {
+		Entry entry = await(fetch(client, key(uri), request));
+		return await(decode(entry, handler));
+	}
+
+	public CompletableFuture<HttpResponse<?>> sendAsync(HttpClient client, String uri, HttpRequest request, BodyHandler<?> handler) {
+		return fetch(client, key(uri), request).thenCompose(entry -> decode(entry, handler));
+	}
+
+	private static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CompletionException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Goes to the network, with a conditional request, if there's something to validate.
+	 */
+	private CompletableFuture<Entry> fetch(HttpClient client, String key, HttpRequest request) {
+		CompletableFuture<Entry> existing = flights.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		CompletableFuture<Entry> created = new CompletableFuture<>();
+		existing = flights.putIfAbsent(key, created);
+		if (existing != null) {
+			return existing;
+		}
+		Entry previous = store.get(key);
+		HttpRequest sent = previous != null && (previous.etag != null || previous.lastModified != null)
+				? conditional(request, previous)
+				: request;
+		try {
+			client.sendAsync(sent, BodyHandlers.ofByteArray()).whenComplete((response, t) -> {
+				flights.remove(key, created);
+				if (t != null) {
+					created.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+					return;
+				}
+				try {
+					created.complete(update(key, request, previous, response));
+				} catch (RuntimeException e) {
+					created.completeExceptionally(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			flights.remove(key, created);
+			created.completeExceptionally(e);
+		}
+		return created;
+	}
+
+	private Entry update(String key, HttpRequest request, Entry previous, HttpResponse<byte[]> response) {
+		long now = System.nanoTime();
+		Entry entry = response.statusCode() == 304 && previous != null
+				? previous.revalidated(response.headers(), now)
+				: Entry.of(request, response.statusCode(), response.headers(), response.version(), ByteBuffer.wrap(response.body()), now);
+		if (entry.storable) {
+			store.put(key, entry);
+		} else if (previous != null) {
+			// Whatever we had is no good anymore.
+			store.remove(key);
+		}
+		return entry;
+	}
+
+	private static HttpRequest conditional(HttpRequest request, Entry previous) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+				.expectContinue(request.expectContinue());
+		request.timeout().ifPresent(builder::timeout);
+		request.version().ifPresent(builder::version);
+		request.headers().map().forEach((name, values) -> {
+			for (String value : values) {
+				builder.header(name, value);
+			}
+		});
+		if (previous.etag != null) {
+			builder.header("If-None-Match", previous.etag);
+		}
+		if (previous.lastModified != null) {
+			builder.header("If-Modified-Since", previous.lastModified);
+		}
+		return builder.method(request.method(), HttpRequest.BodyPublishers.noBody()).build();
+	}
+
+	/**
+	 * Feeds the body through the handler, the same way the client would have.
+	 */
+	@SuppressWarnings("unchecked")
+	private static CompletableFuture<HttpResponse<?>> decode(Entry entry, BodyHandler<?> handler) {
+		BodySubscriber<Object> subscriber;
+		try {
+			subscriber = (BodySubscriber<Object>) handler.apply(new Info(entry));
+			subscriber.onSubscribe(NOTHING);
+			ByteBuffer body = entry.body();
+			if (body.hasRemaining()) {
+				subscriber.onNext(List.of(body));
+			}
+			subscriber.onComplete();
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return subscriber.getBody()
+				.toCompletableFuture()
+				.thenApply(value -> new CachedResponse(entry, value));
+	}
+
+	private static final class Info implements ResponseInfo {
+		private final Entry entry;
+
+		Info(Entry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public int statusCode() {
+			return entry.status;
+		}
+
+		@Override
+		public HttpHeaders headers() {
+			return entry.headers;
+		}
+
+		@Override
+		public HttpClient.Version version() {
+			return entry.version;
+		}
+	}
+
+	/**
+	 * The request is the one the body was originally fetched with, as this one never needed one.
+	 */
+	private static final class CachedResponse implements HttpResponse<Object> {
+		private final Entry entry;
+		private final Object body;
+
+		CachedResponse(Entry entry, Object body) {
+			this.entry = entry;
+			this.body = body;
+		}
+
+		@Override
+		public int statusCode() {
+			return entry.status;
+		}
+
+		@Override
+		public HttpRequest request() {
+			return entry.request;
+		}
+
+		@Override
+		public Optional<HttpResponse<Object>> previousResponse() {
+			return Optional.empty();
+		}
+
+		@Override
+		public HttpHeaders headers() {
+			return entry.headers;
+		}
+
+		@Override
+		public Object body() {
+			return body;
+		}
+
+		@Override
+		public Optional<SSLSession> sslSession() {
+			return Optional.empty();
+		}
+
+		@Override
+		public URI uri() {
+			return entry.request.uri();
+		}
+
+		@Override
+		public HttpClient.Version version() {
+			return entry.version;
+		}
+
+		@Override
+		public String toString() {
+			return '(' + entry.request.method() + ' ' + entry.request.uri() + ") " + entry.status;
+		}
+	}
+}
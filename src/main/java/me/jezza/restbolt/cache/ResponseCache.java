@@ -0,0 +1,46 @@
+package me.jezza.restbolt.cache;
+
+/**
+ * Where the responses of the {@link me.jezza.restbolt.annotations.Cacheable} methods are kept.
+ * <p>
+ * It only ever sees raw bodies, the proxies decode them again on every hit, so a single store can be shared by any number of methods, proxies, and interfaces.
+ * The keys are the full URI, (and the static headers of the method, if there are any) so two methods that send the same request share the same entry.
+ * <p>
+ * Implementations need to be thread safe.
+ * The freshness is dealt with by the proxies, so all a store needs to do is keep hold of the entries, and drop them when it's full.
+ *
+ * @author Jezza
+ */
+public interface ResponseCache {
+	/**
+	 * @return the entry, or null if there isn't one.
+	 */
+	Entry get(String key);
+
+	void put(String key, Entry entry);
+
+	void remove(String key);
+
+	/**
+	 * A store that holds up to roughly the given number of bytes, and decides what to keep with a W-TinyLFU policy.
+	 * (New entries need to have been asked for more often than whatever they'd replace, so a burst of one-offs can't flush out the hot ones)
+	 */
+	static ResponseCache memory(long maximumSize) {
+		return new TinyLfu(maximumSize, false);
+	}
+
+	/**
+	 * The same as {@link #memory(long)}, but the bodies are copied into direct buffers, so they don't count towards the heap.
+	 * Only really worth it for big caches, as every hit has to be copied back out again when it's decoded.
+	 */
+	static ResponseCache offHeap(long maximumSize) {
+		return new TinyLfu(maximumSize, true);
+	}
+
+	/**
+	 * The store the methods use if they don't name one. (32 MiB, on the heap)
+	 */
+	static ResponseCache shared() {
+		return TinyLfu.SHARED;
+	}
+}
@@ -0,0 +1,310 @@
+package me.jezza.restbolt.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A size aware W-TinyLFU store.
+ * <p>
+ * New entries land in a small LRU window, (1% of the space) so a burst of new keys still gets a chance to prove itself.
+ * Once they fall out of the window, they have to beat whatever they'd push out of the main space, by how often they've been asked for.
+ * The main space is a segmented LRU, (Anything that's hit while on probation is promoted to the protected segment, which gets 80% of it)
+ * and "how often" comes from a count-min sketch that's halved every so often, so it forgets the keys that used to be hot.
+ * <p>
+ * Everything is behind a single lock, the lists are intrusive, so every operation is a few pointer swaps.
+ *
+ * @author Jezza
+ */
+final class TinyLfu implements ResponseCache {
+	static final ResponseCache SHARED = new TinyLfu(32 << 20, false);
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	private final long maximum;
+	private final long windowMaximum;
+	private final long protectedMaximum;
+	private final boolean offHeap;
+
+	private final Map<String, Node> nodes = new HashMap<>();
+	private final Queue window = new Queue();
+	private final Queue probation = new Queue();
+	private final Queue protect = new Queue();
+	private final Sketch sketch;
+
+	TinyLfu(long maximum, boolean offHeap) {
+		if (maximum <= 0) {
+			throw new IllegalStateException("Cache size must be positive: " + maximum);
+		}
+		this.maximum = maximum;
+		this.offHeap = offHeap;
+		windowMaximum = Math.max(maximum / 100, 1);
+		protectedMaximum = (maximum - windowMaximum) * 8 / 10;
+		// Roughly one counter per entry, assuming they're a few KiB each.
+		sketch = new Sketch((int) Math.min(Math.max(maximum >>> 12, 64), 1 << 22));
+	}
+
+	private static final class Node {
+		final String key;
+		Entry entry;
+		int weight;
+		int queue;
+		Node previous;
+		Node next;
+
+		Node(String key, Entry entry, int weight) {
+			this.key = key;
+			this.entry = entry;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * The head is the most recently used, the tail is the next to go.
+	 */
+	private static final class Queue {
+		Node head;
+		Node tail;
+		long weight;
+
+		void addFirst(Node node) {
+			node.previous = null;
+			node.next = head;
+			if (head != null) {
+				head.previous = node;
+			} else {
+				tail = node;
+			}
+			head = node;
+			weight += node.weight;
+		}
+
+		void remove(Node node) {
+			if (node.previous != null) {
+				node.previous.next = node.next;
+			} else {
+				head = node.next;
+			}
+			if (node.next != null) {
+				node.next.previous = node.previous;
+			} else {
+				tail = node.previous;
+			}
+			node.previous = null;
+			node.next = null;
+			weight -= node.weight;
+		}
+
+		void moveToFirst(Node node) {
+			if (head != node) {
+				remove(node);
+				addFirst(node);
+			}
+		}
+	}
+
+	@Override
+	public synchronized Entry get(String key) {
+		int hash = spread(key.hashCode());
+		sketch.increment(hash);
+		Node node = nodes.get(key);
+		if (node == null) {
+			return null;
+		}
+		switch (node.queue) {
+			case WINDOW:
+				window.moveToFirst(node);
+				break;
+			case PROBATION:
+				// It's been hit while on probation, so it's earned its place.
+				probation.remove(node);
+				node.queue = PROTECTED;
+				protect.addFirst(node);
+				demote();
+				break;
+			default:
+				protect.moveToFirst(node);
+				break;
+		}
+		return node.entry;
+	}
+
+	@Override
+	public synchronized void put(String key, Entry entry) {
+		if (offHeap) {
+			entry = entry.offHeap();
+		}
+		int weight = entry.weight() + (key.length() << 1);
+		Node node = nodes.get(key);
+		if (node != null) {
+			// Just a refresh, so it stays wherever it is.
+			Queue queue = queue(node.queue);
+			queue.remove(node);
+			node.entry = entry;
+			node.weight = weight;
+			queue.addFirst(node);
+		} else {
+			if (weight > maximum - windowMaximum) {
+				// It'd never fit, so don't bother flushing everything else out for it.
+				return;
+			}
+			// It was already counted when it was missed.
+			node = new Node(key, entry, weight);
+			node.queue = WINDOW;
+			nodes.put(key, node);
+			window.addFirst(node);
+		}
+		while (window.weight > windowMaximum && window.tail != null) {
+			Node candidate = window.tail;
+			window.remove(candidate);
+			admit(candidate);
+		}
+		demote();
+		// Anything that grew in place can still push us over.
+		while (weight() > maximum) {
+			Node victim = probation.tail != null ? probation.tail : protect.tail != null ? protect.tail : window.tail;
+			evict(victim);
+		}
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		Node node = nodes.get(key);
+		if (node != null) {
+			evict(node);
+		}
+	}
+
+	/**
+	 * The candidate just fell out of the window, so it only gets into the main space if it's been asked for more often than everything it'd push out.
+	 */
+	private void admit(Node candidate) {
+		long available = maximum - windowMaximum - probation.weight - protect.weight;
+		if (candidate.weight > available) {
+			int frequency = sketch.frequency(spread(candidate.key.hashCode()));
+			long freed = 0;
+			Node victim = probation.tail != null ? probation.tail : protect.tail;
+			Node last = null;
+			while (victim != null && available + freed < candidate.weight) {
+				if (sketch.frequency(spread(victim.key.hashCode())) >= frequency) {
+					break;
+				}
+				freed += victim.weight;
+				last = victim;
+				victim = victim.previous != null ? victim.previous : victim.queue == PROBATION ? protect.tail : null;
+			}
+			if (available + freed < candidate.weight) {
+				nodes.remove(candidate.key);
+				return;
+			}
+			// Everything from the tail up to the last one we looked at goes.
+			while (true) {
+				Node next = probation.tail != null ? probation.tail : protect.tail;
+				evict(next);
+				if (next == last) {
+					break;
+				}
+			}
+		}
+		candidate.queue = PROBATION;
+		probation.addFirst(candidate);
+	}
+
+	/**
+	 * Keeps the protected segment within its share, by pushing its oldest entries back onto probation.
+	 */
+	private void demote() {
+		while (protect.weight > protectedMaximum && protect.tail != null) {
+			Node node = protect.tail;
+			protect.remove(node);
+			node.queue = PROBATION;
+			probation.addFirst(node);
+		}
+	}
+
+	private void evict(Node node) {
+		queue(node.queue).remove(node);
+		nodes.remove(node.key);
+	}
+
+	private Queue queue(int queue) {
+		switch (queue) {
+			case WINDOW:
+				return window;
+			case PROBATION:
+				return probation;
+			default:
+				return protect;
+		}
+	}
+
+	private long weight() {
+		return window.weight + probation.weight + protect.weight;
+	}
+
+	private static int spread(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * A count-min sketch of 4-bit counters, packed 16 to a long. (Each key is spread over 4 of them, and its frequency is the smallest)
+	 * <p>
+	 * Once it's seen ten times as many increments as it has counters, every counter is halved, so old popularity fades.
+	 */
+	private static final class Sketch {
+		private static final int[] SEEDS = {0x97CB3127, 0xB5E7B7C5, 0x8F2D9DB3, 0xC3A5C85C};
+
+		private final long[] table;
+		private final int mask;
+		private final int sample;
+		private int additions;
+
+		Sketch(int counters) {
+			int size = Integer.highestOneBit(Math.max(counters, 16) - 1) << 1;
+			// Each long holds 16 counters.
+			table = new long[Math.max(size >>> 4, 1)];
+			mask = table.length - 1;
+			sample = size * 10;
+		}
+
+		void increment(int hash) {
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				int h = (hash ^ SEEDS[i]) * SEEDS[i];
+				h ^= h >>> 15;
+				int index = h & mask;
+				int shift = ((h >>> 24) & 15) << 2;
+				long counter = (table[index] >>> shift) & 0xF;
+				if (counter < 15) {
+					table[index] += 1L << shift;
+					added = true;
+				}
+			}
+			if (added && ++additions >= sample) {
+				reset();
+			}
+		}
+
+		int frequency(int hash) {
+			int frequency = 15;
+			for (int i = 0; i < 4; i++) {
+				int h = (hash ^ SEEDS[i]) * SEEDS[i];
+				h ^= h >>> 15;
+				int index = h & mask;
+				int shift = ((h >>> 24) & 15) << 2;
+				frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 0xF));
+			}
+			return frequency;
+		}
+
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				// Halve all 16 counters at once, dropping the bit that would've leaked into the counter below.
+				table[i] = (table[i] >>> 1) & 0x7777_7777_7777_7777L;
+			}
+			additions >>>= 1;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package me.jezza.restbolt.form;
+
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Percent-encodes straight into a byte array, the same way {@link java.net.URLEncoder} does with UTF-8.
+ * <p>
+ * {@link java.net.URLEncoder} creates a new String for every value, which we then copied into a StringBuilder, which was turned into another String,
+ * which {@link BodyPublishers#ofString(String)} then encoded <i>again</i>.
+ * This just writes the bytes, and hands the array straight to {@link BodyPublishers#ofByteArray(byte[], int, int)}.
+ * <p>
+ * The generated code encodes the names when the method is generated, so they're just written as is. (See {@link #raw(String)})
+ *
+ * @author Jezza
+ */
+public final class FormEncoder {
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * The characters that are left alone. (Everything else in ASCII is escaped)
+	 */
+	private static final boolean[] SAFE = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			SAFE[c] = true;
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			SAFE[c] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			SAFE[c] = true;
+		}
+		SAFE['.'] = true;
+		SAFE['-'] = true;
+		SAFE['*'] = true;
+		SAFE['_'] = true;
+	}
+
+	private byte[] buffer;
+	private int count;
+
+	public FormEncoder(int capacity) {
+		buffer = new byte[capacity];
+	}
+
+	private byte[] ensure(int extra) {
+		byte[] buffer = this.buffer;
+		int required = count + extra;
+		if (required > buffer.length) {
+			buffer = this.buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, required));
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes something that's already been encoded, so it has to be ASCII.
+	 */
+	public FormEncoder raw(String value) {
+		int length = value.length();
+		byte[] buffer = ensure(length);
+		int count = this.count;
+		for (int i = 0; i < length; i++) {
+			buffer[count++] = (byte) value.charAt(i);
+		}
+		this.count = count;
+		return this;
+	}
+
+	public FormEncoder encode(String value) {
+		int length = value.length();
+		int safe = safePrefix(value);
+		byte[] buffer = ensure(length);
+		int count = this.count;
+		for (int i = 0; i < safe; i++) {
+			buffer[count++] = (byte) value.charAt(i);
+		}
+		this.count = count;
+		// Fast path: Nothing needed to be escaped, which is the case most of the time.
+		if (safe == length) {
+			return this;
+		}
+		for (int i = safe; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				if (SAFE[c]) {
+					ensure(1)[this.count++] = (byte) c;
+				} else if (c == ' ') {
+					ensure(1)[this.count++] = '+';
+				} else {
+					escape(c);
+				}
+			} else if (c < 0x800) {
+				escape(0xC0 | (c >> 6));
+				escape(0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				escape(0xF0 | (codePoint >> 18));
+				escape(0x80 | ((codePoint >> 12) & 0x3F));
+				escape(0x80 | ((codePoint >> 6) & 0x3F));
+				escape(0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// A broken pair, the charset encoder URLEncoder uses replaces them with a '?'.
+				escape('?');
+			} else {
+				escape(0xE0 | (c >> 12));
+				escape(0x80 | ((c >> 6) & 0x3F));
+				escape(0x80 | (c & 0x3F));
+			}
+		}
+		return this;
+	}
+
+	private void escape(int b) {
+		byte[] buffer = ensure(3);
+		int count = this.count;
+		buffer[count] = '%';
+		buffer[count + 1] = (byte) HEX[(b >> 4) & 0xF];
+		buffer[count + 2] = (byte) HEX[b & 0xF];
+		this.count = count + 3;
+	}
+
+	public FormEncoder append(boolean value) {
+		return raw(value ? "true" : "false");
+	}
+
+	public FormEncoder append(char value) {
+		return encode(String.valueOf(value));
+	}
+
+	public FormEncoder append(byte value) {
+		return append((long) value);
+	}
+
+	public FormEncoder append(short value) {
+		return append((long) value);
+	}
+
+	public FormEncoder append(int value) {
+		return append((long) value);
+	}
+
+	public FormEncoder append(long value) {
+		byte[] buffer = ensure(20);
+		int count = this.count;
+		// Work with negative numbers, so MIN_VALUE doesn't need special casing.
+		if (value < 0) {
+			buffer[count++] = '-';
+		} else {
+			value = -value;
+		}
+		int start = count;
+		do {
+			buffer[count++] = (byte) ('0' - (value % 10));
+			value /= 10;
+		} while (value != 0);
+		for (int i = start, j = count - 1; i < j; i++, j--) {
+			byte b = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = b;
+		}
+		this.count = count;
+		return this;
+	}
+
+	public FormEncoder append(float value) {
+		// Only ever digits, '-', '.', 'E', or "NaN"/"Infinity", none of which need to be escaped.
+		return raw(Float.toString(value));
+	}
+
+	public FormEncoder append(double value) {
+		return raw(Double.toString(value));
+	}
+
+	public BodyPublisher publisher() {
+		return BodyPublishers.ofByteArray(buffer, 0, count);
+	}
+
+	@Override
+	public String toString() {
+		return new String(buffer, 0, count, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * The query string equivalent of {@link #encode(String)}, as the URI is still built up as a String.
+	 */
+	public static StringBuilder encode(StringBuilder b, String value) {
+		int length = value.length();
+		int safe = safePrefix(value);
+		if (safe == length) {
+			return b.append(value);
+		}
+		b.append(value, 0, safe);
+		for (int i = safe; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				if (SAFE[c]) {
+					b.append(c);
+				} else if (c == ' ') {
+					b.append('+');
+				} else {
+					escape(b, c);
+				}
+			} else if (c < 0x800) {
+				escape(b, 0xC0 | (c >> 6));
+				escape(b, 0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				escape(b, 0xF0 | (codePoint >> 18));
+				escape(b, 0x80 | ((codePoint >> 12) & 0x3F));
+				escape(b, 0x80 | ((codePoint >> 6) & 0x3F));
+				escape(b, 0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				escape(b, '?');
+			} else {
+				escape(b, 0xE0 | (c >> 12));
+				escape(b, 0x80 | ((c >> 6) & 0x3F));
+				escape(b, 0x80 | (c & 0x3F));
+			}
+		}
+		return b;
+	}
+
+	private static void escape(StringBuilder b, int value) {
+		b.append('%').append(HEX[(value >> 4) & 0xF]).append(HEX[value & 0xF]);
+	}
+
+	/**
+	 * @return the length of the prefix that can be copied as is.
+	 */
+	private static int safePrefix(String value) {
+		boolean[] safe = SAFE;
+		for (int i = 0, l = value.length(); i < l; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80 || !safe[c]) {
+				return i;
+			}
+		}
+		return value.length();
+	}
+}
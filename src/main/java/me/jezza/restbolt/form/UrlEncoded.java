@@ -1,18 +1,15 @@
 package me.jezza.restbolt.form;
 
 import static org.objectweb.asm.Opcodes.DUP;
-import static org.objectweb.asm.Opcodes.GETSTATIC;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
-import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 import static org.objectweb.asm.Opcodes.NEW;
 import static me.jezza.restbolt.Internals.*;
 
 import java.lang.reflect.Method;
 import java.net.URLEncoder;
-import java.net.http.HttpRequest.BodyPublishers;
 import java.nio.charset.StandardCharsets;
 
 import org.objectweb.asm.MethodVisitor;
@@ -28,6 +25,9 @@ public final class UrlEncoded {
 
 	public static final String PUBLISHER_PATH = "me.jezza.restbolt.form.UrlEncoded.buildURLEncoded";
 
+	private static final String ENCODER_INTERNAL = Type.getInternalName(FormEncoder.class);
+	private static final String ENCODER_DESCRIPTOR = Type.getDescriptor(FormEncoder.class);
+
 	private UrlEncoded() {
 		throw new IllegalStateException();
 	}
@@ -41,12 +41,12 @@ public final class UrlEncoded {
 
 		impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "header", "(Ljava/lang/String;Ljava/lang/String;)" + REQUEST_BUILDER_DESCRIPTOR, true);
 
-		// new StringBuilder(32)
-		impl.visitTypeInsn(NEW, Type.getInternalName(StringBuilder.class));
+		// new FormEncoder(64)
+		impl.visitTypeInsn(NEW, ENCODER_INTERNAL);
 		impl.visitInsn(DUP);
-		impl.visitLdcInsn(32);
-		impl.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(StringBuilder.class), "<init>", "(I)V", false);
-		// [Builder, StringBuilder]
+		impl.visitLdcInsn(64);
+		impl.visitMethodInsn(INVOKESPECIAL, ENCODER_INTERNAL, "<init>", "(I)V", false);
+		// [Builder, FormEncoder]
 
 		for (int i = 0, l = types.length; i < l; i++) {
 			int type = types[i];
@@ -60,25 +60,20 @@ public final class UrlEncoded {
 				}
 				// We abuse that form body parsers split on ampersands. (That way we don't have to track which body part is the last...)
 				impl.visitLdcInsn('&' + URLEncoder.encode(names[i], StandardCharsets.UTF_8) + '=');
-				impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(StringBuilder.class), "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+				impl.visitMethodInsn(INVOKEVIRTUAL, ENCODER_INTERNAL, "raw", "(Ljava/lang/String;)" + ENCODER_DESCRIPTOR, false);
 
 				impl.visitVarInsn(op(ILOAD, sort), slot);
 				if (sort == STRING) {
-					impl.visitFieldInsn(GETSTATIC, STANDARD_CHARSETS_INTERNAL, "UTF_8", CHARSET_DESCRIPTOR);
-					impl.visitMethodInsn(INVOKESTATIC, URL_ENCODER_INTERNAL, "encode", "(Ljava/lang/String;Ljava/nio/charset/Charset;)Ljava/lang/String;", false);
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(StringBuilder.class), "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, ENCODER_INTERNAL, "encode", "(Ljava/lang/String;)" + ENCODER_DESCRIPTOR, false);
 				} else {
 					char character = PRIMITIVE_DESCRIPTORS.charAt(sort);
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(StringBuilder.class), "append", "(" + character + ")Ljava/lang/StringBuilder;", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, ENCODER_INTERNAL, "append", "(" + character + ")" + ENCODER_DESCRIPTOR, false);
 				}
 			}
 		}
 
-		// [Builder, StringBuilder]
-		impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(StringBuilder.class), "toString", "()Ljava/lang/String;", false);
-		// [Builder, String]
-
-		impl.visitMethodInsn(INVOKESTATIC, Type.getInternalName(BodyPublishers.class), "ofString", "(Ljava/lang/String;)" + PUBLISHER_DESCRIPTOR, false);
+		// [Builder, FormEncoder]
+		impl.visitMethodInsn(INVOKEVIRTUAL, ENCODER_INTERNAL, "publisher", "()" + PUBLISHER_DESCRIPTOR, false);
 		// [Builder, Publisher]
 	}
 }
@@ -0,0 +1,18 @@
+package me.jezza.restbolt.form.multipart;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The Content-Type of a file/stream part.
+ * Without it, files are guessed from their name, and everything else is "application/octet-stream".
+ *
+ * @author Jezza
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ContentType {
+	String value();
+}
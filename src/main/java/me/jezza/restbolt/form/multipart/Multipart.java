@@ -1,17 +1,26 @@
 package me.jezza.restbolt.form.multipart;
 
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
 import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
 import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.SWAP;
 import static me.jezza.restbolt.Internals.*;
 
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.function.Function;
 
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 
@@ -21,17 +30,23 @@ import org.objectweb.asm.Type;
 public final class Multipart {
 	public static final String PUBLISHER_PATH = "me.jezza.restbolt.form.multipart.Multipart.buildMultipart";
 
+	private static final String BUILDER_INTERNAL = Type.getInternalName(MultipartBuilder.class);
+
+	private static final Handle HEADER = new Handle(H_INVOKESTATIC, Type.getInternalName(Multipart.class), "header", MethodType.methodType(byte[].class, Lookup.class, String.class, Class.class, String.class).toMethodDescriptorString(), false);
+
 	private Multipart() {
 		throw new IllegalStateException();
 	}
 
-	public static void buildMultipart(Method method, MethodVisitor impl, String[] names, int[] types, int max) {
-		impl.visitInsn(DUP);
-		impl.visitLdcInsn("Content-Type");
-		impl.visitLdcInsn("multipart/form-data; boundary=boundary");
-
-		impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "header", "(Ljava/lang/String;Ljava/lang/String;)" + REQUEST_BUILDER_DESCRIPTOR, true);
+	/**
+	 * The bootstrap for the part header constants.
+	 * Not really API, it just needs to be public so the generated classes can see it.
+	 */
+	public static byte[] header(Lookup caller, String name, Class<?> type, String field) {
+		return MultipartBuilder.header(field);
+	}
 
+	public static void buildMultipart(Method method, MethodVisitor impl, String[] names, int[] types, int max) {
 		int count = 0;
 		for (int i = 0, l = types.length; i < l; i++) {
 			int type = types[i];
@@ -40,10 +55,19 @@ public final class Multipart {
 			}
 		}
 
-		impl.visitTypeInsn(NEW, Type.getInternalName(MultipartBuilder.class));
+		impl.visitTypeInsn(NEW, BUILDER_INTERNAL);
 		impl.visitInsn(DUP);
 		impl.visitLdcInsn(count);
-		impl.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(MultipartBuilder.class), "<init>", "(I)V", false);
+		impl.visitMethodInsn(INVOKESPECIAL, BUILDER_INTERNAL, "<init>", "(I)V", false);
+
+		// The boundary is picked by the builder, so the header has to come after it.
+		// [request builder, multipart builder]
+		impl.visitInsn(DUP2);
+		impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "contentType", "()Ljava/lang/String;", false);
+		impl.visitLdcInsn("Content-Type");
+		impl.visitInsn(SWAP);
+		impl.visitMethodInsn(INVOKEINTERFACE, REQUEST_BUILDER_INTERNAL, "header", "(Ljava/lang/String;Ljava/lang/String;)" + REQUEST_BUILDER_DESCRIPTOR, true);
+		impl.visitInsn(POP);
 
 		Charset defaultCharset = method.getDeclaredAnnotation(Charset.class);
 		
@@ -64,32 +88,53 @@ public final class Multipart {
 				int slot = (type & SLOT_MASK) >> SLOT_SHIFT;
 				String charset = fetchCharset.apply(parameters[i].getDeclaredAnnotation(Charset.class));
 
+				boolean path = sort == OBJECT && java.nio.file.Path.class.isAssignableFrom(parameters[i].getType());
+				// Anything that isn't supported yet just goes through the old name based methods.
+				boolean constant = sort != ARRAY && sort != MAP && sort != LIST && (sort != OBJECT || path);
+
 				impl.visitInsn(DUP);
-				impl.visitLdcInsn(i);
-				impl.visitLdcInsn(names[i]);
+				if (constant) {
+					// The header is only ever built once, the first time the method is called.
+					impl.visitLdcInsn(new ConstantDynamic("header", "[B", HEADER, names[i]));
+				} else {
+					impl.visitLdcInsn(i);
+					impl.visitLdcInsn(names[i]);
+				}
 				impl.visitVarInsn(op(ILOAD, sort), slot);
 
+				// Files and streams are read as the request is sent, and get a filename and a Content-Type.
+				ContentType contentType = parameters[i].getDeclaredAnnotation(ContentType.class);
+				if (sort == FILE || sort == INPUT_STREAM || path) {
+					if (contentType != null) {
+						impl.visitLdcInsn(contentType.value());
+					} else {
+						impl.visitInsn(ACONST_NULL);
+					}
+				}
+
 				if (sort == ARRAY) {
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;[Ljava/lang/Object;)V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "(ILjava/lang/String;[Ljava/lang/Object;)V", false);
+				} else if (path) {
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "([BLjava/nio/file/Path;Ljava/lang/String;)V", false);
 				} else if (sort == OBJECT) {
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;Ljava/lang/Object;)V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "(ILjava/lang/String;Ljava/lang/Object;)V", false);
 				} else if (sort == STRING) {
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;Ljava/lang/String;)V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "([BLjava/lang/String;)V", false);
 				} else if (sort == MAP) {
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;Ljava/util/Map;)V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "(ILjava/lang/String;Ljava/util/Map;)V", false);
 				} else if (sort == LIST) {
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;Ljava/util/List;)V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "(ILjava/lang/String;Ljava/util/List;)V", false);
 				} else if (sort == FILE) {
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;Ljava/io/File;)V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "([BLjava/io/File;Ljava/lang/String;)V", false);
 				} else if (sort == INPUT_STREAM) {
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;Ljava/io/InputStream;)V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "([BLjava/io/InputStream;Ljava/lang/String;)V", false);
 				} else {
 					char character = PRIMITIVE_DESCRIPTORS.charAt(sort);
-					impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "add", "(ILjava/lang/String;" + character + ")V", false);
+					impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "add", "([B" + character + ")V", false);
 				}
 			}
 		}
 
-		impl.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MultipartBuilder.class), "build", "()" + PUBLISHER_DESCRIPTOR, false);
+		impl.visitMethodInsn(INVOKEVIRTUAL, BUILDER_INTERNAL, "build", "()" + PUBLISHER_DESCRIPTOR, false);
 	}
 }
@@ -4,28 +4,56 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.http.HttpRequest.BodyPublisher;
-import java.net.http.HttpRequest.BodyPublishers;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Consumer;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
+ * Each part is laid out as:
+ * <pre>
+ * --boundary\r\n                                  (per request, shared by every part)
+ * Content-Disposition: form-data; name="field"    (constant, see {@link #header(String)})
+ * \r\n\r\n                                        (constant, or the filename and Content-Type for files/streams)
+ * value                                           (the only thing that actually needs encoding)
+ * \r\n                                            (constant)
+ * </pre>
+ * None of them are ever copied into one big array, they're just handed off to the publisher as is.
+ * <p>
+ * The generated code hands over the headers as constants, (See {@link Multipart#header}) so the only per-request work is the boundary and the values.
+ *
  * @author Jezza
  */
 public final class MultipartBuilder {
-	private final Object[] parts;
+	private static final String MIME = "Content-Disposition: form-data; name=\"";
+	private static final String OCTET_STREAM = "application/octet-stream";
+
+	private static final byte[] CR_LF = {'\r', '\n'};
+	private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+	/**
+	 * Either the raw bytes of a part (or the bits around one), or a {@link MultipartSegment} that's read as the request is sent.
+	 */
+	private final List<Object> parts;
 	private final String boundary;
 
+	/**
+	 * "--boundary\r\n"
+	 */
+	private final byte[] delimiter;
+
 	public MultipartBuilder(int count) {
 		this(count, generateBoundary());
 	}
 
 	public MultipartBuilder(int count, String boundary) {
-		System.out.println("Count: " + count);
-		parts = new Object[count + 1];
+		// Every part is a delimiter, a header, the end of the header, the value, and a trailing CRLF, and then there's the closing delimiter.
+		parts = new ArrayList<>(count * 5 + 1);
 		this.boundary = boundary;
+		delimiter = ("--" + boundary + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
 	}
 
 	public String contentType() {
@@ -36,232 +64,196 @@ public final class MultipartBuilder {
 		return boundary;
 	}
 
-	private static final char[] FIELD_SEP = {':', ' '};
-	private static final char[] CR_LF = {'\r', '\n'};
-	private static final char[] TWO_DASHES = {'-', '-'};
-	private static final String MIME = "Content-Disposition: form-data; name=\"";
+	/**
+	 * The constant start of a part's header, which only depends on the name of the field.
+	 */
+	public static byte[] header(String name) {
+		return (MIME + escape(name) + '"').getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void writeField(byte[] header, byte[] value) {
+		List<Object> parts = this.parts;
+		parts.add(delimiter);
+		parts.add(header);
+		parts.add(HEADER_END);
+		parts.add(value);
+		parts.add(CR_LF);
+	}
+
+	private static byte[] ascii(String value) {
+		return value.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	public void add(byte[] header, boolean value) {
+		writeField(header, ascii(String.valueOf(value)));
+	}
+
+	public void add(byte[] header, char value) {
+		writeField(header, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void add(byte[] header, byte value) {
+		writeField(header, ascii(Byte.toString(value)));
+	}
+
+	public void add(byte[] header, short value) {
+		writeField(header, ascii(Short.toString(value)));
+	}
+
+	public void add(byte[] header, int value) {
+		writeField(header, ascii(Integer.toString(value)));
+	}
 
-	private StringBuilder writeFieldHeader(String name) {
-		StringBuilder b = new StringBuilder(32);
-		b.append(TWO_DASHES);
-		b.append(boundary);
-		b.append(CR_LF);
+	public void add(byte[] header, float value) {
+		writeField(header, ascii(Float.toString(value)));
+	}
 
-		b.append(MIME);
-		b.append(name);
-		b.append('"');
+	public void add(byte[] header, long value) {
+		writeField(header, ascii(Long.toString(value)));
+	}
 
-		return b;
+	public void add(byte[] header, double value) {
+		writeField(header, ascii(Double.toString(value)));
 	}
 
-	private byte[] writeField(String name, Consumer<StringBuilder> content) {
-		StringBuilder b = writeFieldHeader(name);
-		b.append(CR_LF);
-		b.append(CR_LF);
+	public void add(byte[] header, String value) {
+		writeField(header, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void add(byte[] header, File value, String contentType) {
+		if (value != null) {
+			add(header, value.toPath(), contentType);
+		}
+	}
+
+	/**
+	 * @param contentType - null, if it should be guessed from the file name.
+	 */
+	public void add(byte[] header, Path value, String contentType) {
+		if (value == null) {
+			return;
+		}
+		if (contentType == null) {
+			try {
+				contentType = Files.probeContentType(value);
+			} catch (IOException e) {
+				// Not the end of the world, it'll just be sent as a bunch of bytes.
+			}
+		}
+		Path filename = value.getFileName();
+		writeSegment(header, filename != null ? filename.toString() : "file", contentType, MultipartSegment.of(value));
+	}
 
-		content.accept(b);
-		b.append(CR_LF);
+	/**
+	 * There's no name to go off, so the filename is just "stream".
+	 */
+	public void add(byte[] header, InputStream value, String contentType) {
+		if (value != null) {
+			writeSegment(header, "stream", contentType, MultipartSegment.of(value));
+		}
+	}
 
-		return b.toString().getBytes(StandardCharsets.UTF_8);
+	private void writeSegment(byte[] header, String filename, String contentType, MultipartSegment segment) {
+		String rest = "; filename=\"" + escape(filename) + "\"\r\nContent-Type: " + (contentType != null ? contentType : OCTET_STREAM) + "\r\n\r\n";
+		List<Object> parts = this.parts;
+		parts.add(delimiter);
+		parts.add(header);
+		parts.add(rest.getBytes(StandardCharsets.UTF_8));
+		parts.add(segment);
+		parts.add(CR_LF);
 	}
 
+	// The name based versions, for anyone building these by hand.
+
 	public void add(int index, String name, boolean value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, char value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, byte value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, short value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, int value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, float value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, long value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, double value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, Object[] value) {
-		System.out.println(name + ':' + Arrays.toString(value));
+		// Not yet supported. (A warning is logged when the method is generated)
 	}
 
 	public void add(int index, String name, Object value) {
-		System.out.println(name + ':' + value);
+		// Not yet supported. (A warning is logged when the method is generated)
 	}
 
 	public void add(int index, String name, String value) {
-		System.out.println(name + ':' + value);
-		parts[index] = writeField(name, b -> b.append(value));
+		add(header(name), value);
 	}
 
 	public void add(int index, String name, Map<?, ?> value) {
-		System.out.println(name + ':' + value);
+		// Not yet supported. (A warning is logged when the method is generated)
 	}
 
 	public void add(int index, String name, List<?> value) {
-		System.out.println(name + ':' + value);
+		// Not yet supported. (A warning is logged when the method is generated)
 	}
 
 	public void add(int index, String name, File value) {
-		System.out.println(name + ':' + value);
+		add(header(name), value, null);
 	}
 
-	public void add(int index, String name, InputStream value) {
-		System.out.println(name + ':' + value);
+	public void add(int index, String name, Path value) {
+		add(header(name), value, null);
 	}
 
-	public BodyPublisher build() {
-		System.out.println("Build");
-		Object[] parts = this.parts;
-		StringBuilder b = new StringBuilder();
-		b.append(TWO_DASHES);
-		b.append(boundary);
-		b.append(TWO_DASHES);
-		b.append(CR_LF);
-		parts[parts.length - 1] = b.toString().getBytes(StandardCharsets.UTF_8);
-
-		int count = 0;
-		for (Object part : parts) {
-			if (part instanceof byte[]) {
-				count += ((byte[]) part).length;
-			}
-		}
-
-		byte[] data = new byte[count];
-		int index = 0;
-		for (Object part : parts) {
-			if (part instanceof byte[]) {
-				byte[] array = (byte[]) part;
-				int length = array.length;
-				System.arraycopy(array, 0, data, index, length);
-				index += length;
-			}
-		}
-//		return BodyPublishers.ofByteArray(data);
-		return BodyPublishers.ofInputStream(() -> new MultipartStream(parts));
+	public void add(int index, String name, InputStream value) {
+		add(header(name), value, null);
 	}
 
-	private static final class MultipartStream extends InputStream {
-		private final Object[] parts;
-
-		private Object active;
-		private int index;
-		private int bufferIndex;
-
-		public MultipartStream(Object[] parts) {
-			this.parts = parts;
-			active = nextPair();
-		}
-
-		private Object nextPair() {
-			int index = this.index;
-			Object[] parts = this.parts;
-			if (index >= parts.length) {
-				return null;
-			}
-			this.index++;
-			return parts[index];
-		}
-
-		@Override
-		public int read() throws IOException {
-			// So the reason I throw an exception here, and don't use the code below is because I can't
-			// communicate all of the states of the code with this method.
-			// 
-			// All of the information that I can return amounts to:
-			// 
-			// This read method returns a byte that was read or -1.
-			// The other read method returns a int that was the number of bytes read.
-			//
-			// The mistake is that in the second method read method.
-			// The one with the byte array can return a 0.
-
-			throw new IOException("Cannot chunk input...");
-//			byte[] single = this.single;
-//			if (single == null) {
-//				single = new byte[1];
-//				this.single = single;
-//			}
-//			return read(single, 0, 1) != -1
-//					? single[0]
-//					: -1;
-		}
-
-		@Override
-		public int read(byte[] b, int off, int len) throws IOException {
-			Object active = this.active;
-			if (active == null) {
-				return -1;
-			}
-			int count;
-			if (active instanceof byte[]) {
-				byte[] data = (byte[]) active;
-				int l = data.length;
-				int src;
-				if (l < len) {
-					src = 0;
-					count = l;
-				} else {
-					src = bufferIndex;
-					if (l - len >= src) {
-						count = l - src;
-					} else {
-						count = len;
-						this.bufferIndex = src + len;
-					}
-				}
-				System.arraycopy(data, src, b, off, count);
-			} else if (active instanceof MultipartSegment) {
-				count = ((MultipartSegment) active).read(b, off, len);
-			} else {
-				System.out.println("[ERROR] Unknown part type: " + active);
-				return -1;
-			}
-			if (count == -1) {
-				Object next = nextPair();
-				this.active = next;
-				bufferIndex = 0;
-				return next != null
-						? 0
-						: -1;
-			} else if (count != len) {
-				this.active = nextPair();
-				bufferIndex = 0;
-			}
-			return count;
-		}
+	/**
+	 * The same escaping the browsers do, as there's no way to escape a quote (or a newline) in a header value.
+	 */
+	private static String escape(String value) {
+		return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+	}
 
-		@Override
-		public void close() {
-			active = null;
-		}
+	public BodyPublisher build() {
+		List<Object> parts = this.parts;
+		parts.add(("--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+		return new MultipartPublisher(parts.toArray());
 	}
 
+	private static final char[] BOUNDARY_CHARS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+	/**
+	 * 24 random characters (~142 bits), which is more than enough to never show up in any of the content.
+	 */
 	public static String generateBoundary() {
-		return "boundary";
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		char[] chars = new char[32];
+		"RestBolt".getChars(0, 8, chars, 0);
+		for (int i = 8; i < chars.length; i++) {
+			chars[i] = BOUNDARY_CHARS[random.nextInt(BOUNDARY_CHARS.length)];
+		}
+		return new String(chars);
 	}
 }
@@ -0,0 +1,193 @@
+package me.jezza.restbolt.form.multipart;
+
+import java.io.IOException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the parts as they're asked for, one buffer per request.
+ * <p>
+ * The raw parts are just wrapped (no copying), and segments are read a chunk at a time, so at most one chunk of a file is ever in memory per request.
+ * If every segment knows how big it is, so do we, and the request gets a proper Content-Length instead of being chunked.
+ *
+ * @author Jezza
+ */
+final class MultipartPublisher implements BodyPublisher {
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Either a byte[] or a {@link MultipartSegment}.
+	 */
+	private final Object[] parts;
+	private final long length;
+
+	MultipartPublisher(Object[] parts) {
+		this.parts = parts;
+		long length = 0;
+		for (Object part : parts) {
+			if (part instanceof byte[]) {
+				length += ((byte[]) part).length;
+			} else {
+				long size = ((MultipartSegment) part).length();
+				if (size < 0) {
+					length = -1;
+					break;
+				}
+				length += size;
+			}
+		}
+		this.length = length;
+	}
+
+	@Override
+	public long contentLength() {
+		return length;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+		MultipartSubscription subscription = new MultipartSubscription(subscriber, parts);
+		subscriber.onSubscribe(subscription);
+	}
+
+	private static final class MultipartSubscription implements Flow.Subscription {
+		private final Flow.Subscriber<? super ByteBuffer> subscriber;
+		private final Object[] parts;
+
+		private final AtomicLong demand = new AtomicLong();
+
+		/**
+		 * Makes sure only one thread is ever draining, no matter who calls request. (Including the subscriber, from inside of onNext)
+		 */
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile boolean done;
+
+		// Only touched while draining.
+		private int index;
+		private ReadableByteChannel channel;
+
+		MultipartSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, Object[] parts) {
+			this.subscriber = subscriber;
+			this.parts = parts;
+		}
+
+		@Override
+		public void request(long n) {
+			if (done) {
+				return;
+			}
+			if (n <= 0) {
+				// Let the drain loop close up anything that's open.
+				done = true;
+				subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+				drain();
+				return;
+			}
+			long current;
+			long next;
+			do {
+				current = demand.get();
+				next = current + n;
+				if (next < 0) {
+					// Overflow, which means they basically want everything.
+					next = Long.MAX_VALUE;
+				}
+			} while (!demand.compareAndSet(current, next));
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			done = true;
+			drain();
+		}
+
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				while (!done && demand.get() > 0) {
+					ByteBuffer buffer;
+					try {
+						buffer = next();
+					} catch (IOException e) {
+						fail(e);
+						break;
+					}
+					if (buffer == null) {
+						done = true;
+						subscriber.onComplete();
+						break;
+					}
+					demand.decrementAndGet();
+					subscriber.onNext(buffer);
+				}
+				if (done) {
+					close();
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * @return the next non-empty buffer, or null if there's nothing left.
+		 */
+		private ByteBuffer next() throws IOException {
+			Object[] parts = this.parts;
+			while (index < parts.length) {
+				Object part = parts[index];
+				if (part instanceof byte[]) {
+					index++;
+					byte[] data = (byte[]) part;
+					if (data.length != 0) {
+						return ByteBuffer.wrap(data).asReadOnlyBuffer();
+					}
+					continue;
+				}
+				ReadableByteChannel channel = this.channel;
+				if (channel == null) {
+					channel = ((MultipartSegment) part).open();
+					this.channel = channel;
+				}
+				// A fresh buffer every time, as the client is free to hang onto it until it's been written out.
+				ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+				int count = channel.read(buffer);
+				if (count == -1) {
+					channel.close();
+					this.channel = null;
+					index++;
+					continue;
+				}
+				if (count != 0) {
+					return buffer.flip();
+				}
+			}
+			return null;
+		}
+
+		private void fail(Throwable t) {
+			done = true;
+			close();
+			subscriber.onError(t);
+		}
+
+		private void close() {
+			ReadableByteChannel channel = this.channel;
+			if (channel != null) {
+				this.channel = null;
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// Nothing we can do about it, and we're already finished with it.
+				}
+			}
+		}
+	}
+}
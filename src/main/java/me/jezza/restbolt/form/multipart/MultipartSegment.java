@@ -1,70 +1,67 @@
 package me.jezza.restbolt.form.multipart;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * The content of a part that's too big to hold onto, so it's read as the request is being sent.
+ *
  * @author Jezza
  */
 public interface MultipartSegment {
-	int read(byte[] b, int off, int len) throws IOException;
+	/**
+	 * @return the exact number of bytes {@link #open()} will produce, or -1 if there's no way of knowing up front.
+	 */
+	long length();
 
-//	static MultipartPair create(String name, boolean value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, char value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, byte value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, short value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, int value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, float value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, long value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, double value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, Object[] value) {
-//		System.out.println(name + ':' + Arrays.toString(value));
-//	}
-//
-//	static MultipartPair create(String name, Object value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, String value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, Map<?, ?> value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, List<?> value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, File value) {
-//		System.out.println(name + ':' + value);
-//	}
-//
-//	static MultipartPair create(String name, InputStream value) {
-//		System.out.println(name + ':' + value);
-//	}
+	/**
+	 * Every call should start from the beginning, as the client is free to send the body more than once. (eg, redirects)
+	 */
+	ReadableByteChannel open() throws IOException;
+
+	static MultipartSegment of(Path path) {
+		return new MultipartSegment() {
+			@Override
+			public long length() {
+				try {
+					return Files.size(path);
+				} catch (IOException e) {
+					return -1;
+				}
+			}
+
+			@Override
+			public ReadableByteChannel open() throws IOException {
+				return FileChannel.open(path, StandardOpenOption.READ);
+			}
+		};
+	}
+
+	/**
+	 * Note: A stream can only be read once, so if the client needs to send it again, it'll fail.
+	 */
+	static MultipartSegment of(InputStream in) {
+		AtomicBoolean opened = new AtomicBoolean();
+		return new MultipartSegment() {
+			@Override
+			public long length() {
+				return -1;
+			}
+
+			@Override
+			public ReadableByteChannel open() throws IOException {
+				if (!opened.compareAndSet(false, true)) {
+					throw new IOException("An InputStream part can only be sent once");
+				}
+				return Channels.newChannel(in);
+			}
+		};
+	}
 }
@@ -0,0 +1,61 @@
+package me.jezza.restbolt.json;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Reads over the buffers the client has already handed us, so unlike the client's own stream, it never blocks.
+ * When it runs out it just says so, and it can be topped back up later. (Which is how a {@link JsonReader} is reused across elements)
+ *
+ * @author Jezza
+ */
+final class BufferStream extends InputStream {
+	private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+	void add(ByteBuffer buffer) {
+		if (buffer.hasRemaining()) {
+			buffers.add(buffer);
+		}
+	}
+
+	void clear() {
+		buffers.clear();
+	}
+
+	@Override
+	public int read() {
+		ByteBuffer buffer = buffers.peek();
+		if (buffer == null) {
+			return -1;
+		}
+		int b = buffer.get() & 0xFF;
+		if (!buffer.hasRemaining()) {
+			buffers.poll();
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = buffers.peek();
+		if (buffer == null) {
+			return -1;
+		}
+		int read = Math.min(len, buffer.remaining());
+		buffer.get(b, off, read);
+		if (!buffer.hasRemaining()) {
+			buffers.poll();
+		}
+		return read;
+	}
+
+	@Override
+	public int available() {
+		ByteBuffer buffer = buffers.peek();
+		return buffer != null ? buffer.remaining() : 0;
+	}
+}
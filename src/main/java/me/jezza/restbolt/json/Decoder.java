@@ -0,0 +1,20 @@
+package me.jezza.restbolt.json;
+
+import java.io.IOException;
+
+/**
+ * Turns the next value in the reader into a T.
+ * <p>
+ * Most of these are generated by {@link Decoders}, the same way the proxies are, so there's no reflection involved once they exist.
+ *
+ * @author Jezza
+ */
+public abstract class Decoder<T> {
+	protected Decoder() {
+	}
+
+	/**
+	 * @return the decoded value, or null if the value was a JSON null.
+	 */
+	public abstract T decode(JsonReader reader) throws IOException;
+}
@@ -0,0 +1,601 @@
+package me.jezza.restbolt.json;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.objectweb.asm.ClassWriter.COMPUTE_FRAMES;
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a {@link Decoder} for a plain class or a record.
+ * <p>
+ * The class is generated once per raw type, and is defined right next to the type it decodes, so it can just read/write the members directly.
+ * The decoders for any nested types are handed to the constructor, which means Page&lt;User&gt; and Page&lt;Order&gt; share the same class, but not the same instance.
+ * <p>
+ * Roughly, for a class:
+ * <pre>
+ * public Object decode(JsonReader reader) {
+ *     if (reader.nextNull()) return null;
+ *     User value = new User();
+ *     reader.beginObject();
+ *     while (reader.hasNext()) {
+ *         String name = reader.nextName();
+ *         switch (name) {
+ *             case "id": value.id = reader.nextInt(); continue;
+ *             case "name": value.setName(reader.nextString()); continue;
+ *             case "address": value.address = (Address) nested[0].decode(reader); continue;
+ *         }
+ *         reader.skipValue();
+ *     }
+ *     reader.endObject();
+ *     return value;
+ * }
+ * </pre>
+ * Records are the same, except everything goes into locals, and the canonical constructor is called at the end.
+ *
+ * @author Jezza
+ */
+final class DecoderWriter {
+	private static final Logger log = LoggerFactory.getLogger(DecoderWriter.class);
+
+	private static final String DECODER_INTERNAL = Type.getInternalName(Decoder.class);
+	private static final String DECODERS_DESCRIPTOR = Type.getDescriptor(Decoder[].class);
+	private static final String READER_INTERNAL = Type.getInternalName(JsonReader.class);
+	private static final String READER_DESCRIPTOR = Type.getDescriptor(JsonReader.class);
+	private static final String HANDLE_INTERNAL = Type.getInternalName(MethodHandle.class);
+	private static final String HANDLES_DESCRIPTOR = Type.getDescriptor(MethodHandle[].class);
+	private static final String STRING_INTERNAL = "java/lang/String";
+
+	private static final int READER = 1;
+
+	private DecoderWriter() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * A single JSON member, and how it ends up in the object.
+	 */
+	private static final class Property {
+		final String name;
+		final Class<?> type;
+		final java.lang.reflect.Type genericType;
+
+		/**
+		 * The field or setter to write to, if the decoder can access it directly.
+		 * Null for record components.
+		 */
+		Field field;
+		Method setter;
+
+		/**
+		 * Only used for private fields that don't have a setter.
+		 */
+		MethodHandle handle;
+		int handleIndex;
+
+		/**
+		 * The index into the nested decoders, or -1 if it's read straight off the reader.
+		 */
+		int nested = -1;
+
+		Property(String name, Class<?> type, java.lang.reflect.Type genericType) {
+			this.name = name;
+			this.type = type;
+			this.genericType = genericType;
+		}
+	}
+
+	/**
+	 * Everything that only depends on the raw type.
+	 */
+	private static final class Layout {
+		final Property[] properties;
+		final MethodHandle[] handles;
+		final MethodHandle constructor;
+
+		Layout(Property[] properties, MethodHandle[] handles, MethodHandle constructor) {
+			this.properties = properties;
+			this.handles = handles;
+			this.constructor = constructor;
+		}
+	}
+
+	private static final ClassValue<Layout[]> LAYOUTS = new ClassValue<>() {
+		@Override
+		protected Layout[] computeValue(Class<?> type) {
+			return new Layout[1];
+		}
+	};
+
+	/**
+	 * Only called by {@link Decoders}, while it's holding the lock.
+	 */
+	static Decoder<?> write(java.lang.reflect.Type type, Class<?> raw, Lookup lookup) {
+		Layout[] holder = LAYOUTS.get(raw);
+		Layout layout = holder[0];
+		if (layout == null) {
+			long start = System.nanoTime();
+			layout = holder[0] = layout(raw, lookup);
+			log.debug((System.nanoTime() - start) + " ns = " + raw.getName() + " (decoder)");
+		}
+
+		Property[] properties = layout.properties;
+		List<Decoder<?>> nested = new ArrayList<>();
+		for (Property property : properties) {
+			if (property.nested != -1) {
+				nested.add(Decoders.of(Decoders.resolve(property.genericType, type), lookup));
+			}
+		}
+		try {
+			return (Decoder<?>) layout.constructor.invokeExact(nested.toArray(new Decoder<?>[0]), layout.handles);
+		} catch (Throwable t) {
+			throw new IllegalStateException("Failed to instantiate decoder for " + type.getTypeName(), t);
+		}
+	}
+
+	private static Layout layout(Class<?> raw, Lookup lookup) {
+		if (Modifier.isPrivate(raw.getModifiers())) {
+			throw new IllegalStateException("Can't generate a decoder for a private class: " + raw.getName());
+		}
+		Lookup target;
+		try {
+			target = MethodHandles.privateLookupIn(raw, lookup);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("No access to " + raw.getName() + ", register a decoder with Decoders.register.", e);
+		}
+
+		boolean record = Records.isRecord(raw);
+		Property[] properties = record
+				? Records.components(raw)
+				: properties(raw, lookup, target);
+
+		List<MethodHandle> handles = new ArrayList<>();
+		int nested = 0;
+		for (Property property : properties) {
+			if (!property.type.isPrimitive() && property.type != String.class) {
+				property.nested = nested++;
+			}
+			if (property.handle != null) {
+				property.handleIndex = handles.size();
+				handles.add(property.handle);
+			}
+		}
+
+		String internalName = Type.getInternalName(raw);
+		String generatedName = internalName.concat("$$Decoder");
+
+		ClassWriter writer = new ClassWriter(COMPUTE_FRAMES);
+		writer.visit(V11, Modifier.FINAL | ACC_SYNTHETIC, generatedName, null, DECODER_INTERNAL, null);
+		writer.visitField(Modifier.PRIVATE | Modifier.FINAL, "nested", DECODERS_DESCRIPTOR, null, null);
+		writer.visitField(Modifier.PRIVATE | Modifier.FINAL, "handles", HANDLES_DESCRIPTOR, null, null);
+
+		// Constructor(Decoder[] nested, MethodHandle[] handles);
+		MethodVisitor constructor = writer.visitMethod(Modifier.PUBLIC, "<init>", '(' + DECODERS_DESCRIPTOR + HANDLES_DESCRIPTOR + ")V", null, null);
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitMethodInsn(INVOKESPECIAL, DECODER_INTERNAL, "<init>", "()V", false);
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitVarInsn(ALOAD, 1);
+		constructor.visitFieldInsn(PUTFIELD, generatedName, "nested", DECODERS_DESCRIPTOR);
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitVarInsn(ALOAD, 2);
+		constructor.visitFieldInsn(PUTFIELD, generatedName, "handles", HANDLES_DESCRIPTOR);
+		constructor.visitInsn(RETURN);
+		constructor.visitMaxs(0, 0);
+
+		MethodVisitor decode = writer.visitMethod(Modifier.PUBLIC, "decode", '(' + READER_DESCRIPTOR + ")Ljava/lang/Object;", null, new String[]{"java/io/IOException"});
+		if (record) {
+			writeRecord(decode, generatedName, internalName, raw, properties);
+		} else {
+			writeClass(decode, generatedName, internalName, properties);
+		}
+		decode.visitMaxs(0, 0);
+
+		byte[] classData = writer.toByteArray();
+		try {
+			Class<?> clazz = target.defineClass(classData);
+			MethodHandle handle = target.findConstructor(clazz, methodType(void.class, Decoder[].class, MethodHandle[].class))
+					.asType(methodType(Decoder.class, Decoder[].class, MethodHandle[].class));
+			return new Layout(properties, handles.toArray(new MethodHandle[0]), handle);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to define decoder for " + raw.getName(), e);
+		}
+	}
+
+	/**
+	 * Every non-static, non-transient field, from the top of the hierarchy down.
+	 * Fields are written to directly if we can see them, otherwise through a setter, and as a last resort through a handle.
+	 */
+	private static Property[] properties(Class<?> raw, Lookup lookup, Lookup target) {
+		try {
+			// Just make sure it's there, so we fail now, rather than on the first response.
+			target.findConstructor(raw, methodType(void.class));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(raw.getName() + " needs a no-args constructor to be decoded.", e);
+		}
+
+		List<Class<?>> hierarchy = new ArrayList<>();
+		for (Class<?> c = raw; c != null && c != Object.class; c = c.getSuperclass()) {
+			hierarchy.add(0, c);
+		}
+
+		Map<String, Property> properties = new LinkedHashMap<>();
+		for (Class<?> declaring : hierarchy) {
+			for (Field field : declaring.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+					continue;
+				}
+				Property property = new Property(field.getName(), field.getType(), field.getGenericType());
+				if (Modifier.isFinal(modifiers)) {
+					log.debug("Skipping final field: " + declaring.getName() + '.' + field.getName());
+					continue;
+				}
+				if (accessible(raw, declaring, modifiers)) {
+					property.field = field;
+				} else {
+					Method setter = setter(raw, declaring, field);
+					if (setter != null) {
+						property.setter = setter;
+					} else {
+						try {
+							property.handle = MethodHandles.privateLookupIn(declaring, lookup)
+									.unreflectSetter(field)
+									.asType(methodType(void.class, raw, field.getType()));
+						} catch (IllegalAccessException e) {
+							throw new IllegalStateException("Can't write to " + declaring.getName() + '.' + field.getName(), e);
+						}
+					}
+				}
+				// A subclass with a field of the same name wins.
+				properties.put(property.name, property);
+			}
+		}
+		return properties.values().toArray(new Property[0]);
+	}
+
+	/**
+	 * @return true, if code sitting in the same package as the raw type can touch the member.
+	 */
+	private static boolean accessible(Class<?> raw, Class<?> declaring, int modifiers) {
+		if (Modifier.isPrivate(modifiers)) {
+			return false;
+		}
+		if (Modifier.isPublic(modifiers) && Modifier.isPublic(declaring.getModifiers())) {
+			return true;
+		}
+		return declaring.getPackageName().equals(raw.getPackageName());
+	}
+
+	private static Method setter(Class<?> raw, Class<?> declaring, Field field) {
+		String name = field.getName();
+		String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		for (Method method : declaring.getDeclaredMethods()) {
+			int modifiers = method.getModifiers();
+			if (method.getName().equals(setter)
+					&& !Modifier.isStatic(modifiers)
+					&& method.getParameterCount() == 1
+					&& method.getParameterTypes()[0] == field.getType()
+					&& accessible(raw, declaring, modifiers)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private static void writeClass(MethodVisitor decode, String generatedName, String internalName, Property[] properties) {
+		int value = 2;
+		int name = 3;
+
+		decode.visitVarInsn(ALOAD, READER);
+		decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextNull", "()Z", false);
+		Label notNull = new Label();
+		decode.visitJumpInsn(IFEQ, notNull);
+		decode.visitInsn(ACONST_NULL);
+		decode.visitInsn(ARETURN);
+		decode.visitLabel(notNull);
+
+		decode.visitTypeInsn(NEW, internalName);
+		decode.visitInsn(DUP);
+		decode.visitMethodInsn(INVOKESPECIAL, internalName, "<init>", "()V", false);
+		decode.visitVarInsn(ASTORE, value);
+
+		writeLoop(decode, generatedName, name, properties, (property, next) -> {
+			if (property.handle != null) {
+				decode.visitVarInsn(ALOAD, 0);
+				decode.visitFieldInsn(GETFIELD, generatedName, "handles", HANDLES_DESCRIPTOR);
+				decode.visitLdcInsn(property.handleIndex);
+				decode.visitInsn(AALOAD);
+			}
+			decode.visitVarInsn(ALOAD, value);
+			if (property.type.isPrimitive()) {
+				// Leave the default alone if they gave us a null.
+				Label present = new Label();
+				decode.visitVarInsn(ALOAD, READER);
+				decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextNull", "()Z", false);
+				decode.visitJumpInsn(IFEQ, present);
+				decode.visitInsn(POP);
+				if (property.handle != null) {
+					decode.visitInsn(POP);
+				}
+				decode.visitJumpInsn(GOTO, next);
+				decode.visitLabel(present);
+			}
+			read(decode, generatedName, property);
+			if (property.field != null) {
+				Field field = property.field;
+				decode.visitFieldInsn(PUTFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(), Type.getDescriptor(field.getType()));
+			} else if (property.setter != null) {
+				Method setter = property.setter;
+				decode.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(setter.getDeclaringClass()), setter.getName(), Type.getMethodDescriptor(setter), false);
+				Class<?> returnType = setter.getReturnType();
+				if (returnType != void.class) {
+					// Probably a builder style setter.
+					decode.visitInsn(returnType == long.class || returnType == double.class ? POP2 : POP);
+				}
+			} else {
+				String descriptor = "(L" + internalName + ';' + Type.getDescriptor(property.type) + ")V";
+				decode.visitMethodInsn(INVOKEVIRTUAL, HANDLE_INTERNAL, "invokeExact", descriptor, false);
+			}
+		});
+
+		decode.visitVarInsn(ALOAD, value);
+		decode.visitInsn(ARETURN);
+	}
+
+	private static void writeRecord(MethodVisitor decode, String generatedName, String internalName, Class<?> raw, Property[] properties) {
+		int name = 2;
+		int[] slots = new int[properties.length];
+		int slot = 3;
+
+		decode.visitVarInsn(ALOAD, READER);
+		decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextNull", "()Z", false);
+		Label notNull = new Label();
+		decode.visitJumpInsn(IFEQ, notNull);
+		decode.visitInsn(ACONST_NULL);
+		decode.visitInsn(ARETURN);
+		decode.visitLabel(notNull);
+
+		// Everything starts off as the default, in case it's missing from the JSON.
+		StringBuilder descriptor = new StringBuilder("(");
+		for (int i = 0; i < properties.length; i++) {
+			Type type = Type.getType(properties[i].type);
+			descriptor.append(type.getDescriptor());
+			switch (type.getSort()) {
+				case Type.LONG:
+					decode.visitInsn(LCONST_0);
+					break;
+				case Type.FLOAT:
+					decode.visitInsn(FCONST_0);
+					break;
+				case Type.DOUBLE:
+					decode.visitInsn(DCONST_0);
+					break;
+				case Type.OBJECT:
+				case Type.ARRAY:
+					decode.visitInsn(ACONST_NULL);
+					break;
+				default:
+					decode.visitInsn(ICONST_0);
+			}
+			decode.visitVarInsn(type.getOpcode(ISTORE), slot);
+			slots[i] = slot;
+			slot += type.getSize();
+		}
+		descriptor.append(")V");
+
+		writeLoop(decode, generatedName, name, properties, (property, next) -> {
+			int index = indexOf(properties, property);
+			if (property.type.isPrimitive()) {
+				decode.visitVarInsn(ALOAD, READER);
+				decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextNull", "()Z", false);
+				decode.visitJumpInsn(IFNE, next);
+			}
+			read(decode, generatedName, property);
+			decode.visitVarInsn(Type.getType(property.type).getOpcode(ISTORE), slots[index]);
+		});
+
+		decode.visitTypeInsn(NEW, internalName);
+		decode.visitInsn(DUP);
+		for (int i = 0; i < properties.length; i++) {
+			decode.visitVarInsn(Type.getType(properties[i].type).getOpcode(ILOAD), slots[i]);
+		}
+		decode.visitMethodInsn(INVOKESPECIAL, internalName, "<init>", descriptor.toString(), false);
+		decode.visitInsn(ARETURN);
+	}
+
+	private static int indexOf(Property[] properties, Property property) {
+		for (int i = 0; i < properties.length; i++) {
+			if (properties[i] == property) {
+				return i;
+			}
+		}
+		throw new AssertionError();
+	}
+
+	interface Store {
+		/**
+		 * Writes the code that reads the value and puts it wherever it needs to go.
+		 *
+		 * @param next - Where to jump to if there's nothing to store.
+		 */
+		void write(Property property, Label next);
+	}
+
+	/**
+	 * The "while (reader.hasNext())" loop, with a string switch over the member names.
+	 */
+	private static void writeLoop(MethodVisitor decode, String generatedName, int name, Property[] properties, Store store) {
+		decode.visitVarInsn(ALOAD, READER);
+		decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "beginObject", "()V", false);
+
+		Label loop = new Label();
+		Label end = new Label();
+		Label skip = new Label();
+		decode.visitLabel(loop);
+		decode.visitVarInsn(ALOAD, READER);
+		decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "hasNext", "()Z", false);
+		decode.visitJumpInsn(IFEQ, end);
+
+		decode.visitVarInsn(ALOAD, READER);
+		decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextName", "()Ljava/lang/String;", false);
+		decode.visitVarInsn(ASTORE, name);
+
+		if (properties.length != 0) {
+			// Same as what javac does for a string switch, group them up by hash, and then check them with equals.
+			TreeMap<Integer, List<Property>> buckets = new TreeMap<>();
+			for (Property property : properties) {
+				buckets.computeIfAbsent(property.name.hashCode(), k -> new ArrayList<>()).add(property);
+			}
+			int[] keys = new int[buckets.size()];
+			Label[] labels = new Label[buckets.size()];
+			int i = 0;
+			for (Integer key : buckets.keySet()) {
+				keys[i] = key;
+				labels[i++] = new Label();
+			}
+
+			decode.visitVarInsn(ALOAD, name);
+			decode.visitMethodInsn(INVOKEVIRTUAL, STRING_INTERNAL, "hashCode", "()I", false);
+			decode.visitLookupSwitchInsn(skip, keys, labels);
+
+			i = 0;
+			for (List<Property> bucket : buckets.values()) {
+				decode.visitLabel(labels[i++]);
+				for (Property property : bucket) {
+					Label miss = new Label();
+					decode.visitVarInsn(ALOAD, name);
+					decode.visitLdcInsn(property.name);
+					decode.visitMethodInsn(INVOKEVIRTUAL, STRING_INTERNAL, "equals", "(Ljava/lang/Object;)Z", false);
+					decode.visitJumpInsn(IFEQ, miss);
+					store.write(property, loop);
+					decode.visitJumpInsn(GOTO, loop);
+					decode.visitLabel(miss);
+				}
+				decode.visitJumpInsn(GOTO, skip);
+			}
+		}
+
+		// Something we don't know about, so just ignore it.
+		decode.visitLabel(skip);
+		decode.visitVarInsn(ALOAD, READER);
+		decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "skipValue", "()V", false);
+		decode.visitJumpInsn(GOTO, loop);
+
+		decode.visitLabel(end);
+		decode.visitVarInsn(ALOAD, READER);
+		decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "endObject", "()V", false);
+	}
+
+	/**
+	 * Leaves the value of the property on the stack.
+	 * Primitives and strings come straight off the reader, everything else goes through one of the nested decoders.
+	 */
+	private static void read(MethodVisitor decode, String generatedName, Property property) {
+		Class<?> type = property.type;
+		if (property.nested != -1) {
+			decode.visitVarInsn(ALOAD, 0);
+			decode.visitFieldInsn(GETFIELD, generatedName, "nested", DECODERS_DESCRIPTOR);
+			decode.visitLdcInsn(property.nested);
+			decode.visitInsn(AALOAD);
+			decode.visitVarInsn(ALOAD, READER);
+			decode.visitMethodInsn(INVOKEVIRTUAL, DECODER_INTERNAL, "decode", '(' + READER_DESCRIPTOR + ")Ljava/lang/Object;", false);
+			decode.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+			return;
+		}
+		decode.visitVarInsn(ALOAD, READER);
+		if (type == String.class) {
+			decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextString", "()Ljava/lang/String;", false);
+		} else if (type == boolean.class) {
+			decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextBoolean", "()Z", false);
+		} else if (type == long.class) {
+			decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextLong", "()J", false);
+		} else if (type == double.class) {
+			decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextDouble", "()D", false);
+		} else if (type == float.class) {
+			decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextDouble", "()D", false);
+			decode.visitInsn(D2F);
+		} else if (type == char.class) {
+			decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextString", "()Ljava/lang/String;", false);
+			decode.visitInsn(ICONST_0);
+			decode.visitMethodInsn(INVOKEVIRTUAL, STRING_INTERNAL, "charAt", "(I)C", false);
+		} else {
+			decode.visitMethodInsn(INVOKEVIRTUAL, READER_INTERNAL, "nextInt", "()I", false);
+			if (type == short.class) {
+				decode.visitInsn(I2S);
+			} else if (type == byte.class) {
+				decode.visitInsn(I2B);
+			}
+		}
+	}
+
+	/**
+	 * Records only exist from 16 onwards, so we have to go the long way around to find out about them.
+	 */
+	private static final class Records {
+		private static final Method IS_RECORD;
+		private static final Method COMPONENTS;
+
+		static {
+			Method isRecord;
+			Method components;
+			try {
+				isRecord = Class.class.getMethod("isRecord");
+				components = Class.class.getMethod("getRecordComponents");
+			} catch (NoSuchMethodException e) {
+				isRecord = null;
+				components = null;
+			}
+			IS_RECORD = isRecord;
+			COMPONENTS = components;
+		}
+
+		static boolean isRecord(Class<?> type) {
+			if (IS_RECORD == null) {
+				return false;
+			}
+			try {
+				return (boolean) IS_RECORD.invoke(type);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		static Property[] components(Class<?> type) {
+			try {
+				Object[] components = (Object[]) COMPONENTS.invoke(type);
+				Property[] properties = new Property[components.length];
+				if (components.length == 0) {
+					return properties;
+				}
+				Class<?> component = components.getClass().getComponentType();
+				Method getName = component.getMethod("getName");
+				Method getType = component.getMethod("getType");
+				Method getGenericType = component.getMethod("getGenericType");
+				for (int i = 0; i < components.length; i++) {
+					Object c = components[i];
+					properties[i] = new Property((String) getName.invoke(c), (Class<?>) getType.invoke(c), (java.lang.reflect.Type) getGenericType.invoke(c));
+				}
+				return properties;
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,581 @@
+package me.jezza.restbolt.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The registry of decoders, keyed by the full generic type. (So List&lt;User&gt; and List&lt;Order&gt; are two different decoders.)
+ * <p>
+ * They're hung off of the class that owns the type, (See {@link #owner(Type)}) and not kept in one big static map,
+ * so when the class loader that defined the type goes away, its decoders (and the classes generated for them) can go with it.
+ * <p>
+ * Anything that isn't built in gets a class generated for it by {@link DecoderWriter}.
+ * That's done the first time the type is seen, which is normally when the interface that returns it is bound.
+ *
+ * @author Jezza
+ */
+public final class Decoders {
+	private static final ClassValue<Map<Type, Decoder<?>>> DECODERS = new ClassValue<>() {
+		@Override
+		protected Map<Type, Decoder<?>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/**
+	 * Held while building, so types that refer to each other don't end up fighting over who gets to generate what.
+	 */
+	private static final Object LOCK = new Object();
+
+	/**
+	 * Everything that's being built, (or was built) under the outermost call. (Guarded by LOCK)
+	 * Nobody else gets to see any of it, until all of it was built, so there's never a half-built decoder in {@link #DECODERS}.
+	 */
+	private static final Map<Type, Decoder<?>> BUILDING = new HashMap<>();
+
+	static {
+		register(String.class, new Decoder<String>() {
+			@Override
+			public String decode(JsonReader reader) throws IOException {
+				return reader.nextString();
+			}
+		});
+		register(Object.class, new Decoder<>() {
+			@Override
+			public Object decode(JsonReader reader) throws IOException {
+				return reader.nextValue();
+			}
+		});
+		Decoder<Boolean> booleans = new Decoder<>() {
+			@Override
+			public Boolean decode(JsonReader reader) throws IOException {
+				return reader.nextNull() ? null : reader.nextBoolean();
+			}
+		};
+		register(Boolean.class, booleans);
+		register(boolean.class, booleans);
+		Decoder<Integer> ints = new Decoder<>() {
+			@Override
+			public Integer decode(JsonReader reader) throws IOException {
+				return reader.nextNull() ? null : reader.nextInt();
+			}
+		};
+		register(Integer.class, ints);
+		register(int.class, ints);
+		Decoder<Long> longs = new Decoder<>() {
+			@Override
+			public Long decode(JsonReader reader) throws IOException {
+				return reader.nextNull() ? null : reader.nextLong();
+			}
+		};
+		register(Long.class, longs);
+		register(long.class, longs);
+		Decoder<Double> doubles = new Decoder<>() {
+			@Override
+			public Double decode(JsonReader reader) throws IOException {
+				return reader.nextNull() ? null : reader.nextDouble();
+			}
+		};
+		register(Double.class, doubles);
+		register(double.class, doubles);
+		Decoder<Float> floats = new Decoder<>() {
+			@Override
+			public Float decode(JsonReader reader) throws IOException {
+				return reader.nextNull() ? null : (float) reader.nextDouble();
+			}
+		};
+		register(Float.class, floats);
+		register(float.class, floats);
+		Decoder<Short> shorts = new Decoder<>() {
+			@Override
+			public Short decode(JsonReader reader) throws IOException {
+				return reader.nextNull() ? null : (short) reader.nextInt();
+			}
+		};
+		register(Short.class, shorts);
+		register(short.class, shorts);
+		Decoder<Byte> bytes = new Decoder<>() {
+			@Override
+			public Byte decode(JsonReader reader) throws IOException {
+				return reader.nextNull() ? null : (byte) reader.nextInt();
+			}
+		};
+		register(Byte.class, bytes);
+		register(byte.class, bytes);
+		Decoder<Character> chars = new Decoder<>() {
+			@Override
+			public Character decode(JsonReader reader) throws IOException {
+				String value = reader.nextString();
+				if (value == null) {
+					return null;
+				}
+				if (value.length() != 1) {
+					throw new JsonException("Expected a single character, but got \"" + value + '"');
+				}
+				return value.charAt(0);
+			}
+		};
+		register(Character.class, chars);
+		register(char.class, chars);
+		register(BigDecimal.class, new Decoder<BigDecimal>() {
+			@Override
+			public BigDecimal decode(JsonReader reader) throws IOException {
+				String value = number(reader);
+				try {
+					return value != null ? new BigDecimal(value) : null;
+				} catch (NumberFormatException e) {
+					throw new JsonException("Invalid number: " + value);
+				}
+			}
+		});
+		register(BigInteger.class, new Decoder<BigInteger>() {
+			@Override
+			public BigInteger decode(JsonReader reader) throws IOException {
+				String value = number(reader);
+				try {
+					return value != null ? new BigInteger(value) : null;
+				} catch (NumberFormatException e) {
+					throw new JsonException("Invalid number: " + value);
+				}
+			}
+		});
+	}
+
+	private Decoders() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Big numbers are quite often sent as strings, to stop anything that reads them as a double from mangling them, so either is taken.
+	 */
+	private static String number(JsonReader reader) throws IOException {
+		if (reader.nextNull()) {
+			return null;
+		}
+		return reader.peek() == JsonReader.STRING
+				? reader.nextString()
+				: reader.nextNumber();
+	}
+
+	/**
+	 * Registers a decoder for the exact type given, replacing whatever might have been there before.
+	 * Mainly for types that can't be generated, such as the ones that live in the JDK. (eg, java.time.Instant)
+	 * <p>
+	 * Note: Decoders that have already been generated hold onto the decoders they were given, so this should be done before anything is bound.
+	 */
+	public static <T> void register(Class<T> type, Decoder<? extends T> decoder) {
+		DECODERS.get(owner(type)).put(type, decoder);
+	}
+
+	/**
+	 * @param lookup - Used to define any generated decoders, so it needs to be able to see the type being decoded. (Normally the lookup the interface was bound with)
+	 */
+	public static Decoder<?> of(Type type, Lookup lookup) {
+		Map<Type, Decoder<?>> decoders = DECODERS.get(owner(type));
+		Decoder<?> decoder = decoders.get(type);
+		if (decoder != null) {
+			return decoder;
+		}
+		synchronized (LOCK) {
+			decoder = decoders.get(type);
+			if (decoder == null) {
+				decoder = BUILDING.get(type);
+			}
+			if (decoder != null) {
+				return decoder;
+			}
+			boolean outermost = BUILDING.isEmpty();
+			// Put a placeholder in, so anything that refers back to this type (eg, a tree) gets pointed at the decoder we're about to make.
+			Deferred deferred = new Deferred();
+			BUILDING.put(type, deferred);
+			try {
+				decoder = create(type, lookup);
+				deferred.delegate = decoder;
+				BUILDING.put(type, decoder);
+				if (outermost) {
+					for (Map.Entry<Type, Decoder<?>> entry : BUILDING.entrySet()) {
+						DECODERS.get(owner(entry.getKey())).put(entry.getKey(), entry.getValue());
+					}
+				}
+				return decoder;
+			} finally {
+				// If anything failed, everything built along with it goes, as it could be pointing at a placeholder that'll never be filled in.
+				if (outermost) {
+					BUILDING.clear();
+				}
+			}
+		}
+	}
+
+	private static Decoder<?> create(Type type, Lookup lookup) {
+		if (type instanceof WildcardType) {
+			return of(((WildcardType) type).getUpperBounds()[0], lookup);
+		}
+		if (type instanceof TypeVariable) {
+			return of(((TypeVariable<?>) type).getBounds()[0], lookup);
+		}
+		if (type instanceof GenericArrayType) {
+			Type component = ((GenericArrayType) type).getGenericComponentType();
+			return new ArrayDecoder(raw(component), of(component, lookup));
+		}
+		Class<?> raw = raw(type);
+		if (raw.isArray()) {
+			Class<?> component = raw.getComponentType();
+			return new ArrayDecoder(component, of(component, lookup));
+		}
+		if (raw.isEnum()) {
+			return new EnumDecoder(raw);
+		}
+		if (raw == List.class || raw == Collection.class || raw == Iterable.class || raw == ArrayList.class) {
+			return new CollectionDecoder(ArrayList::new, of(argument(type, 0), lookup));
+		}
+		if (raw == Set.class || raw == LinkedHashSet.class) {
+			return new CollectionDecoder(LinkedHashSet::new, of(argument(type, 0), lookup));
+		}
+		if (raw == Map.class || raw == LinkedHashMap.class || raw == HashMap.class) {
+			Type key = argument(type, 0);
+			if (key != String.class && key != Object.class) {
+				throw new IllegalStateException("JSON object keys are always strings, so " + type.getTypeName() + " can't be decoded.");
+			}
+			return new MapDecoder(of(argument(type, 1), lookup));
+		}
+		if (raw.isInterface() || raw.isPrimitive() || java.lang.reflect.Modifier.isAbstract(raw.getModifiers())) {
+			throw new IllegalStateException("No decoder for \"" + type.getTypeName() + "\", register one with Decoders.register.");
+		}
+		return DecoderWriter.write(type, raw, lookup);
+	}
+
+	/**
+	 * The class the decoder for the type is kept on.
+	 * <p>
+	 * That's whichever class in the type has the "deepest" class loader, as that's the one that has to be around for the type to mean anything.
+	 * eg, Map&lt;String, List&lt;User&gt;&gt; is kept on User, and not on Map, which would keep User's loader around forever.
+	 * (If two of them have loaders that don't know about each other, the first one wins, and it keeps the other around for as long as it's around)
+	 */
+	static Class<?> owner(Type type) {
+		return owner(type, null);
+	}
+
+	private static Class<?> owner(Type type, Class<?> best) {
+		if (type instanceof Class) {
+			Class<?> owner = (Class<?>) type;
+			while (owner.isArray()) {
+				owner = owner.getComponentType();
+			}
+			return best == null || visible(best.getClassLoader(), owner.getClassLoader())
+					? owner
+					: best;
+		}
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterised = (ParameterizedType) type;
+			best = owner(parameterised.getRawType(), best);
+			for (Type argument : parameterised.getActualTypeArguments()) {
+				best = owner(argument, best);
+			}
+			return best;
+		}
+		if (type instanceof GenericArrayType) {
+			return owner(((GenericArrayType) type).getGenericComponentType(), best);
+		}
+		if (type instanceof WildcardType) {
+			WildcardType wildcard = (WildcardType) type;
+			for (Type bound : wildcard.getUpperBounds()) {
+				best = owner(bound, best);
+			}
+			for (Type bound : wildcard.getLowerBounds()) {
+				best = owner(bound, best);
+			}
+			return best;
+		}
+		// Type variables can refer back to themselves, (eg, T extends Comparable<T>) so they just go by their raw type.
+		return owner(raw(type), best);
+	}
+
+	/**
+	 * @return true, if the classes of the "from" loader can be seen from the "to" loader, but not the other way around.
+	 */
+	private static boolean visible(ClassLoader from, ClassLoader to) {
+		if (from == to) {
+			return false;
+		}
+		if (from == null) {
+			return true;
+		}
+		for (ClassLoader loader = to; loader != null; loader = loader.getParent()) {
+			if (loader == from) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static Class<?> raw(Type type) {
+		if (type instanceof Class) {
+			return (Class<?>) type;
+		}
+		if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		if (type instanceof GenericArrayType) {
+			return Array.newInstance(raw(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+		}
+		if (type instanceof WildcardType) {
+			return raw(((WildcardType) type).getUpperBounds()[0]);
+		}
+		if (type instanceof TypeVariable) {
+			return raw(((TypeVariable<?>) type).getBounds()[0]);
+		}
+		throw new IllegalStateException("Unknown type: " + type);
+	}
+
+	/**
+	 * @return the type argument at the given index, or Object if the type was used raw.
+	 */
+	private static Type argument(Type type, int index) {
+		return type instanceof ParameterizedType
+				? ((ParameterizedType) type).getActualTypeArguments()[index]
+				: Object.class;
+	}
+
+	/**
+	 * Swaps out any of the type variables with what they were given in the owning type.
+	 * <p>
+	 * eg, "List&lt;T&gt; items" inside of a "Page&lt;User&gt;" becomes "List&lt;User&gt;".
+	 */
+	static Type resolve(Type type, Type owner) {
+		if (!(owner instanceof ParameterizedType)) {
+			return type;
+		}
+		if (type instanceof TypeVariable) {
+			TypeVariable<?>[] variables = raw(owner).getTypeParameters();
+			for (int i = 0; i < variables.length; i++) {
+				if (variables[i].equals(type)) {
+					return ((ParameterizedType) owner).getActualTypeArguments()[i];
+				}
+			}
+			return type;
+		}
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterised = (ParameterizedType) type;
+			Type[] arguments = parameterised.getActualTypeArguments();
+			Type[] resolved = new Type[arguments.length];
+			boolean changed = false;
+			for (int i = 0; i < arguments.length; i++) {
+				resolved[i] = resolve(arguments[i], owner);
+				changed |= resolved[i] != arguments[i];
+			}
+			return changed
+					? new Parameterised((Class<?>) parameterised.getRawType(), resolved, parameterised.getOwnerType())
+					: type;
+		}
+		if (type instanceof GenericArrayType) {
+			Type component = resolve(((GenericArrayType) type).getGenericComponentType(), owner);
+			return component instanceof Class
+					? Array.newInstance((Class<?>) component, 0).getClass()
+					: type;
+		}
+		return type;
+	}
+
+	/**
+	 * Stands in for a type that's still being built.
+	 */
+	private static final class Deferred extends Decoder<Object> {
+		private volatile Decoder<?> delegate;
+
+		@Override
+		public Object decode(JsonReader reader) throws IOException {
+			return delegate.decode(reader);
+		}
+	}
+
+	private static final class CollectionDecoder extends Decoder<Collection<Object>> {
+		private final Supplier<Collection<Object>> factory;
+		private final Decoder<?> element;
+
+		CollectionDecoder(Supplier<Collection<Object>> factory, Decoder<?> element) {
+			this.factory = factory;
+			this.element = element;
+		}
+
+		@Override
+		public Collection<Object> decode(JsonReader reader) throws IOException {
+			if (reader.nextNull()) {
+				return null;
+			}
+			Collection<Object> collection = factory.get();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				collection.add(element.decode(reader));
+			}
+			reader.endArray();
+			return collection;
+		}
+	}
+
+	private static final class MapDecoder extends Decoder<Map<String, Object>> {
+		private final Decoder<?> value;
+
+		MapDecoder(Decoder<?> value) {
+			this.value = value;
+		}
+
+		@Override
+		public Map<String, Object> decode(JsonReader reader) throws IOException {
+			if (reader.nextNull()) {
+				return null;
+			}
+			Map<String, Object> map = new LinkedHashMap<>();
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				map.put(name, value.decode(reader));
+			}
+			reader.endObject();
+			return map;
+		}
+	}
+
+	private static final class ArrayDecoder extends Decoder<Object> {
+		private final Class<?> component;
+		private final Decoder<?> element;
+
+		ArrayDecoder(Class<?> component, Decoder<?> element) {
+			this.component = component;
+			this.element = element;
+		}
+
+		@Override
+		public Object decode(JsonReader reader) throws IOException {
+			if (reader.nextNull()) {
+				return null;
+			}
+			Object[] values = new Object[16];
+			int size = 0;
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (size == values.length) {
+					values = Arrays.copyOf(values, size << 1);
+				}
+				values[size++] = element.decode(reader);
+			}
+			reader.endArray();
+			// Array.set unboxes for us, so this works for the primitive arrays too.
+			Object array = Array.newInstance(component, size);
+			for (int i = 0; i < size; i++) {
+				Array.set(array, i, values[i]);
+			}
+			return array;
+		}
+	}
+
+	private static final class EnumDecoder extends Decoder<Object> {
+		private final Class<?> type;
+		private final Map<String, Object> constants;
+
+		EnumDecoder(Class<?> type) {
+			this.type = type;
+			Object[] values = type.getEnumConstants();
+			constants = new HashMap<>(values.length << 1);
+			for (Object value : values) {
+				constants.put(((Enum<?>) value).name(), value);
+			}
+		}
+
+		@Override
+		public Object decode(JsonReader reader) throws IOException {
+			String name = reader.nextString();
+			if (name == null) {
+				return null;
+			}
+			Object value = constants.get(name);
+			if (value == null) {
+				throw new JsonException("Unknown constant \"" + name + "\" for " + type.getName());
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Matches the JDK's own equals/hashCode, so these can be used as keys alongside the ones that come out of reflection.
+	 */
+	private static final class Parameterised implements ParameterizedType {
+		private final Class<?> raw;
+		private final Type[] arguments;
+		private final Type owner;
+
+		Parameterised(Class<?> raw, Type[] arguments, Type owner) {
+			this.raw = raw;
+			this.arguments = arguments;
+			this.owner = owner;
+		}
+
+		@Override
+		public Type[] getActualTypeArguments() {
+			return arguments.clone();
+		}
+
+		@Override
+		public Type getRawType() {
+			return raw;
+		}
+
+		@Override
+		public Type getOwnerType() {
+			return owner;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof ParameterizedType)) {
+				return false;
+			}
+			ParameterizedType other = (ParameterizedType) o;
+			return raw.equals(other.getRawType())
+					&& Objects.equals(owner, other.getOwnerType())
+					&& Arrays.equals(arguments, other.getActualTypeArguments());
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(arguments) ^ Objects.hashCode(owner) ^ raw.hashCode();
+		}
+
+		@Override
+		public String getTypeName() {
+			StringBuilder b = new StringBuilder(raw.getTypeName()).append('<');
+			for (int i = 0; i < arguments.length; i++) {
+				if (i != 0) {
+					b.append(", ");
+				}
+				b.append(arguments[i].getTypeName());
+			}
+			return b.append('>').toString();
+		}
+
+		@Override
+		public String toString() {
+			return getTypeName();
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package me.jezza.restbolt.json;
+
+import java.io.IOException;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The handlers that turn a JSON body into an object, or into a sequence of them.
+ * <p>
+ * None of them block the client's threads, or park threads of their own to wait on the body.
+ * (Blocking on the client's threads is a very quick way to deadlock it, and parking threads of our own just moves the problem somewhere else)
+ * <ul>
+ * <li>A single value is decoded the moment its last buffer comes in, on the thread that delivered it, straight from the buffers the client handed over.
+ * The decoders pull, so they can't be stopped half way through a value to wait for the next buffer, which means the value's raw bytes are held until then.
+ * (They're never copied into one big array, or a String, though)</li>
+ * <li>A {@link Flow.Publisher} decodes each element as soon as its last byte is in, and only asks for more of the body when the subscriber does.</li>
+ * <li>A {@link Stream} or {@link Iterator} is pulled by the caller, so the caller's thread is the one that blocks while it waits for the next element.</li>
+ * </ul>
+ *
+ * @author Jezza
+ */
+public final class Json {
+	private Json() {
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Anything outside of the 2xx range most likely isn't what we were told we'd get, so it's discarded and the body is null.
+	 * (The status is still there if you asked for the HttpResponse)
+	 */
+	public static <T> BodyHandler<T> handler(Decoder<T> decoder) {
+		return info -> {
+			int status = info.statusCode();
+			return status >= 200 && status < 300
+					? subscriber(decoder)
+					: BodySubscribers.replacing(null);
+		};
+	}
+
+	/**
+	 * For when the body is all the caller gets back, so there's no status for them to check.
+	 * Anything outside of the 2xx range fails the body, (with the status) instead of handing back a null nobody was expecting.
+	 * (It comes out of the synchronous methods as a {@link me.jezza.restbolt.SyncException})
+	 */
+	public static <T> BodyHandler<T> required(BodyHandler<T> handler) {
+		return info -> {
+			int status = info.statusCode();
+			return status >= 200 && status < 300
+					? handler.apply(info)
+					: new Failed<>(status);
+		};
+	}
+
+	public static <T> BodySubscriber<T> subscriber(Decoder<T> decoder) {
+		return new JsonSubscriber<>(decoder);
+	}
+
+	/**
+	 * The elements of a top-level array, or of a sequence of values, (NDJSON) decoded one at a time as the stream pulls them.
+	 * The stream has to be closed (or run to the end) to let go of the connection.
+	 */
+	public static <T> BodyHandler<Stream<T>> stream(Decoder<T> decoder) {
+		return elements(decoder, elements -> StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false).onClose(elements::close));
+	}
+
+	/**
+	 * Same as {@link #stream(Decoder)}, the iterator is also {@link java.io.Closeable}, if you're not going to run it to the end.
+	 */
+	public static <T> BodyHandler<Iterator<T>> iterator(Decoder<T> decoder) {
+		return elements(decoder, elements -> elements);
+	}
+
+	/**
+	 * Same as {@link #stream(Decoder)}, but the elements are pushed to the subscriber as it asks for them. (The nulls are skipped)
+	 * The elements are decoded on the client's threads as the body comes in, and the subscriber's demand decides how much of it comes in.
+	 */
+	public static <T> BodyHandler<Flow.Publisher<T>> publisher(Decoder<T> decoder) {
+		return info -> {
+			int status = info.statusCode();
+			return status >= 200 && status < 300
+					? new JsonPublisher<>(decoder, sequence(info))
+					: BodySubscribers.replacing(null);
+		};
+	}
+
+	private static <T, R> BodyHandler<R> elements(Decoder<T> decoder, Function<JsonElements<T>, R> container) {
+		return info -> {
+			int status = info.statusCode();
+			if (status < 200 || status >= 300) {
+				return BodySubscribers.replacing(null);
+			}
+			boolean sequence = sequence(info);
+			// The stream is handed over as soon as the headers are in, nothing is read until the first element is asked for.
+			return BodySubscribers.mapping(BodySubscribers.ofInputStream(), in -> container.apply(new JsonElements<>(in, decoder, sequence)));
+		};
+	}
+
+	/**
+	 * If they've told us it's a sequence, then it is, even if the first element happens to be an array.
+	 */
+	private static boolean sequence(ResponseInfo info) {
+		String type = info.headers().firstValue("Content-Type").orElse("");
+		return type.contains("ndjson") || type.contains("jsonl") || type.contains("x-json-stream");
+	}
+
+	/**
+	 * Throws the body away, and then fails with the status.
+	 * (It's still read to the end, so the connection can be reused)
+	 */
+	private static final class Failed<T> implements BodySubscriber<T> {
+		private final CompletableFuture<T> body = new CompletableFuture<>();
+		private final int status;
+
+		Failed(int status) {
+			this.status = status;
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> item) {
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			body.completeExceptionally(new IOException("Request failed with status " + status));
+		}
+	}
+
+	/**
+	 * Holds onto the buffers as they come in, and decodes the lot once the last one has.
+	 */
+	private static final class JsonSubscriber<T> implements BodySubscriber<T> {
+		private final CompletableFuture<T> body = new CompletableFuture<>();
+		private final BufferStream buffers = new BufferStream();
+		private final Decoder<T> decoder;
+
+		JsonSubscriber(Decoder<T> decoder) {
+			this.decoder = decoder;
+		}
+
+		@Override
+		public CompletionStage<T> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> item) {
+			for (ByteBuffer buffer : item) {
+				buffers.add(buffer);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			buffers.clear();
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			try {
+				JsonReader reader = new JsonReader(buffers);
+				T value = decoder.decode(reader);
+				if (reader.peek() != JsonReader.END) {
+					throw new JsonException("Trailing data after JSON value");
+				}
+				body.complete(value);
+			} catch (Throwable t) {
+				body.completeExceptionally(t);
+			} finally {
+				buffers.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package me.jezza.restbolt.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes the elements of a body one at a time, as they're asked for.
+ * <p>
+ * The body can either be a top-level array, or a sequence of values, (NDJSON, or anything else that just separates them with whitespace)
+ * and which one it is is worked out from the first byte, unless the Content-Type already said it's a sequence.
+ * (Otherwise a stream of arrays would be read as one big array)
+ * <p>
+ * Nothing is read until the next element is asked for, and the stream only asks the client for more of the body once it's been read,
+ * so the consumer sets the pace, and there's only ever a buffer or two in memory.
+ * The body is closed once the last element has been read, or as soon as anything goes wrong.
+ *
+ * @author Jezza
+ */
+final class JsonElements<T> implements Iterator<T>, Closeable {
+	private static final int START = 0;
+	private static final int ARRAY = 1;
+	private static final int SEQUENCE = 2;
+	private static final int DONE = 3;
+
+	private final InputStream in;
+	private final JsonReader reader;
+	private final Decoder<T> decoder;
+
+	private int state;
+
+	JsonElements(InputStream in, Decoder<T> decoder, boolean sequence) {
+		this.in = in;
+		this.reader = new JsonReader(in);
+		this.decoder = decoder;
+		state = sequence ? SEQUENCE : START;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (state == DONE) {
+			return false;
+		}
+		try {
+			if (state == START) {
+				if (reader.peek() == JsonReader.BEGIN_ARRAY) {
+					reader.beginArray();
+					state = ARRAY;
+				} else {
+					state = SEQUENCE;
+				}
+			}
+			if (state == ARRAY ? reader.hasNext() : reader.peek() != JsonReader.END) {
+				return true;
+			}
+			if (state == ARRAY) {
+				reader.endArray();
+				if (reader.peek() != JsonReader.END) {
+					throw new JsonException("Trailing data after JSON array");
+				}
+			}
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException(e);
+		}
+		close();
+		return false;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		try {
+			return decoder.decode(reader);
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Gives up on the rest of the body. (The client stops receiving it)
+	 */
+	@Override
+	public void close() {
+		state = DONE;
+		try {
+			in.close();
+		} catch (IOException e) {
+			// Nothing we can do about it, and we're done with it anyway.
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package me.jezza.restbolt.json;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the body isn't what we were told it would be.
+ * <p>
+ * It's an {@link IOException}, so it comes out of the synchronous methods as a {@link me.jezza.restbolt.SyncException}, just like any other failure with the body.
+ *
+ * @author Jezza
+ */
+public final class JsonException extends IOException {
+	private static final long serialVersionUID = 6214365290158207811L;
+
+	public JsonException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,236 @@
+package me.jezza.restbolt.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the elements of a body, as the subscriber asks for them.
+ * <p>
+ * It sits between the two: it's the client's subscriber to the body, and the publisher that's handed back to the caller.
+ * The buffers are split up as they come in, (See {@link JsonSplitter}) and each element is decoded on whichever thread delivered the buffer it ended in.
+ * Nothing ever blocks, so there's no threads parked on any of this.
+ * <p>
+ * The client is only asked for the next buffer when every element that's already been decoded has been handed out, and the subscriber still wants more.
+ * So the subscriber sets the pace, and there's never more than a buffer's worth of elements waiting around.
+ * The body can only be read the once, so there's only ever one subscriber.
+ *
+ * @author Jezza
+ */
+final class JsonPublisher<T> implements BodySubscriber<Flow.Publisher<T>>, Flow.Publisher<T>, Flow.Subscription, JsonSplitter.Sink {
+	private final Decoder<T> decoder;
+	private final JsonSplitter splitter;
+
+	/**
+	 * Reused for every element, as the stream it's given is.
+	 */
+	private JsonReader reader;
+
+	private final Queue<T> decoded = new ConcurrentLinkedQueue<>();
+	private final AtomicLong demand = new AtomicLong();
+	private final AtomicInteger wip = new AtomicInteger();
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	private volatile Flow.Subscription upstream;
+	private volatile Flow.Subscriber<? super T> subscriber;
+
+	/**
+	 * true, if the client's been asked for a buffer, and it hasn't turned up yet.
+	 */
+	private volatile boolean requested;
+
+	/**
+	 * true, once the body's been read, (or failed) so whatever's left in {@link #decoded} is all there is.
+	 */
+	private volatile boolean done;
+	private volatile Throwable error;
+
+	/**
+	 * true, once the subscriber's cancelled, or been told it's over.
+	 */
+	private volatile boolean cancelled;
+
+	JsonPublisher(Decoder<T> decoder, boolean sequence) {
+		this.decoder = decoder;
+		splitter = new JsonSplitter(sequence);
+	}
+
+	// The client's side.
+
+	@Override
+	public CompletionStage<Flow.Publisher<T>> getBody() {
+		// Handed over as soon as the headers are in, nothing is read until the subscriber asks for something.
+		return CompletableFuture.completedStage(this);
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		upstream = subscription;
+		if (cancelled) {
+			subscription.cancel();
+		}
+		drain();
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> item) {
+		requested = false;
+		if (!done) {
+			try {
+				for (ByteBuffer buffer : item) {
+					splitter.split(buffer, this);
+				}
+			} catch (IOException | RuntimeException e) {
+				fail(e);
+			}
+		}
+		drain();
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		if (!done) {
+			error = throwable;
+			done = true;
+		}
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		if (!done) {
+			try {
+				splitter.finish(this);
+				done = true;
+			} catch (IOException | RuntimeException e) {
+				fail(e);
+			}
+		}
+		drain();
+	}
+
+	@Override
+	public void element(InputStream element) throws IOException {
+		if (cancelled) {
+			return;
+		}
+		JsonReader reader = this.reader;
+		if (reader == null) {
+			reader = this.reader = new JsonReader(element);
+		}
+		T value = decoder.decode(reader);
+		if (reader.peek() != JsonReader.END) {
+			throw new JsonException("Trailing data after JSON value");
+		}
+		// Flow doesn't allow nulls, so a JSON null is just skipped.
+		if (value != null) {
+			decoded.offer(value);
+		}
+	}
+
+	private void fail(Throwable t) {
+		error = t;
+		done = true;
+		upstream.cancel();
+	}
+
+	// The caller's side.
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("The body has already been subscribed to."));
+			return;
+		}
+		this.subscriber = subscriber;
+		subscriber.onSubscribe(this);
+		drain();
+	}
+
+	@Override
+	public void request(long n) {
+		if (cancelled) {
+			return;
+		}
+		if (n <= 0) {
+			cancel();
+			subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+			return;
+		}
+		demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+		drain();
+	}
+
+	@Override
+	public void cancel() {
+		cancelled = true;
+		Flow.Subscription upstream = this.upstream;
+		if (upstream != null) {
+			upstream.cancel();
+		}
+		drain();
+	}
+
+	/**
+	 * Hands out what's been decoded, and asks for more if there's still demand.
+	 * Whoever gets here first does the work for anyone else that turns up while they're at it, so the subscriber only ever sees one thread at a time.
+	 */
+	private void drain() {
+		if (wip.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			Flow.Subscriber<? super T> subscriber = this.subscriber;
+			if (cancelled) {
+				decoded.clear();
+			} else if (subscriber != null) {
+				T value;
+				while (demand.get() > 0 && (value = decoded.poll()) != null) {
+					demand.decrementAndGet();
+					subscriber.onNext(value);
+					if (cancelled) {
+						break;
+					}
+				}
+				if (!cancelled && decoded.isEmpty()) {
+					if (done) {
+						cancelled = true;
+						Throwable error = this.error;
+						if (error != null) {
+							subscriber.onError(error);
+						} else {
+							subscriber.onComplete();
+						}
+					} else if (demand.get() > 0 && !requested) {
+						Flow.Subscription upstream = this.upstream;
+						if (upstream != null) {
+							requested = true;
+							upstream.request(1);
+						}
+					}
+				}
+			}
+			missed = wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+}
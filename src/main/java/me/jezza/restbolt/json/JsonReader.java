@@ -0,0 +1,705 @@
+package me.jezza.restbolt.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pull parser that works straight off the bytes, as they come in.
+ * <p>
+ * It only ever needs to look one byte ahead, so it doesn't care how the body was chunked up, and never needs the whole thing in memory.
+ * It's strict about the syntax, (commas, names, numbers and strings) as anything it let through would just turn into a confusing value later on.
+ * It also won't go more than {@link #MAX_DEPTH} arrays/objects deep, as the decoders recurse, and a body shouldn't be able to blow the stack.
+ *
+ * @author Jezza
+ */
+public final class JsonReader {
+	public static final int END = 0;
+	public static final int BEGIN_OBJECT = 1;
+	public static final int END_OBJECT = 2;
+	public static final int BEGIN_ARRAY = 3;
+	public static final int END_ARRAY = 4;
+	public static final int STRING = 5;
+	public static final int NUMBER = 6;
+	public static final int BOOLEAN = 7;
+	public static final int NULL = 8;
+
+	/**
+	 * How deep the arrays and objects can be nested.
+	 */
+	public static final int MAX_DEPTH = 512;
+
+	// What's open at each level of nesting.
+	private static final int EMPTY_ARRAY = 1;
+	private static final int ARRAY = 2;
+	private static final int EMPTY_OBJECT = 3;
+	private static final int OBJECT = 4;
+	/**
+	 * An object that's had a name read, and is waiting on its value.
+	 */
+	private static final int NAME = 5;
+
+	private final InputStream in;
+	private final byte[] buffer;
+	private int pos;
+	private int limit;
+
+	/**
+	 * Scratch space for strings and numbers.
+	 */
+	private char[] chars = new char[64];
+
+	private int[] scopes = new int[16];
+	private int depth;
+
+	/**
+	 * true, if the comma in front of the next element has already been consumed. (By {@link #hasNext()})
+	 */
+	private boolean separated;
+
+	public JsonReader(InputStream in) {
+		this(in, 8192);
+	}
+
+	public JsonReader(InputStream in, int bufferSize) {
+		this.in = in;
+		this.buffer = new byte[bufferSize];
+	}
+
+	private boolean fill() throws IOException {
+		int read;
+		do {
+			read = in.read(buffer, 0, buffer.length);
+		} while (read == 0);
+		if (read == -1) {
+			pos = limit = 0;
+			return false;
+		}
+		pos = 0;
+		limit = read;
+		return true;
+	}
+
+	private int readByte() throws IOException {
+		if (pos == limit && !fill()) {
+			throw new JsonException("Unexpected end of input");
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * Skips any whitespace, and returns the next byte without consuming it, or -1 if there isn't one.
+	 */
+	private int peekByte() throws IOException {
+		while (true) {
+			if (pos == limit && !fill()) {
+				return -1;
+			}
+			int b = buffer[pos];
+			if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+				pos++;
+				continue;
+			}
+			return b;
+		}
+	}
+
+	private void expect(char c) throws IOException {
+		int b = peekByte();
+		if (b != c) {
+			throw unexpected(b, "'" + c + '\'');
+		}
+		pos++;
+	}
+
+	/**
+	 * {@link #peekByte()}, but if we're part way through an array, the comma in front of the next element is consumed first.
+	 */
+	private int peekValue() throws IOException {
+		if (depth != 0 && scopes[depth - 1] == ARRAY && !separated) {
+			comma();
+		}
+		return peekByte();
+	}
+
+	private void comma() throws IOException {
+		int b = peekByte();
+		if (b != ',') {
+			throw unexpected(b, "','");
+		}
+		pos++;
+		b = peekByte();
+		if (b == ']' || b == '}') {
+			throw new JsonException("Trailing comma");
+		}
+		separated = true;
+	}
+
+	/**
+	 * Marks the value in the current array/object as read. (Called right before it's actually consumed)
+	 */
+	private void consume() throws JsonException {
+		if (depth == 0) {
+			return;
+		}
+		switch (scopes[depth - 1]) {
+			case EMPTY_ARRAY:
+			case ARRAY:
+				scopes[depth - 1] = ARRAY;
+				separated = false;
+				return;
+			case NAME:
+				scopes[depth - 1] = OBJECT;
+				return;
+			default:
+				throw new JsonException("Expected a name");
+		}
+	}
+
+	private void push(int scope) throws JsonException {
+		if (depth == MAX_DEPTH) {
+			throw new JsonException("Nested deeper than " + MAX_DEPTH);
+		}
+		if (depth == scopes.length) {
+			scopes = Arrays.copyOf(scopes, depth << 1);
+		}
+		scopes[depth++] = scope;
+	}
+
+	private void pop(int empty, int full, char c) throws IOException {
+		int scope = depth == 0 ? 0 : scopes[depth - 1];
+		if (scope != empty && scope != full) {
+			throw new JsonException(scope == NAME
+					? "Expected a value"
+					: "Unexpected '" + c + '\'');
+		}
+		expect(c);
+		depth--;
+		separated = false;
+	}
+
+	private void literal(String literal) throws IOException {
+		for (int i = 0, l = literal.length(); i < l; i++) {
+			if (readByte() != literal.charAt(i)) {
+				throw new JsonException("Expected \"" + literal + '"');
+			}
+		}
+	}
+
+	private static JsonException unexpected(int b, String expected) {
+		return new JsonException(b == -1
+				? "Unexpected end of input, expected " + expected
+				: "Unexpected '" + (char) b + "', expected " + expected);
+	}
+
+	/**
+	 * @return the kind of the next value. (One of the constants on this class)
+	 */
+	public int peek() throws IOException {
+		int b = peekValue();
+		switch (b) {
+			case -1:
+				return END;
+			case '{':
+				return BEGIN_OBJECT;
+			case '}':
+				return END_OBJECT;
+			case '[':
+				return BEGIN_ARRAY;
+			case ']':
+				return END_ARRAY;
+			case '"':
+				return STRING;
+			case 't':
+			case 'f':
+				return BOOLEAN;
+			case 'n':
+				return NULL;
+			default:
+				if (b == '-' || (b >= '0' && b <= '9')) {
+					return NUMBER;
+				}
+				throw unexpected(b, "a value");
+		}
+	}
+
+	public void beginObject() throws IOException {
+		int b = peekValue();
+		if (b != '{') {
+			throw unexpected(b, "'{'");
+		}
+		consume();
+		pos++;
+		push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		pop(EMPTY_OBJECT, OBJECT, '}');
+	}
+
+	public void beginArray() throws IOException {
+		int b = peekValue();
+		if (b != '[') {
+			throw unexpected(b, "'['");
+		}
+		consume();
+		pos++;
+		push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		pop(EMPTY_ARRAY, ARRAY, ']');
+	}
+
+	/**
+	 * @return true, if there's another element in the current array/object. (Consumes the separating comma)
+	 */
+	public boolean hasNext() throws IOException {
+		if (separated) {
+			return true;
+		}
+		int b = peekByte();
+		if (b == '}' || b == ']' || b == -1) {
+			return false;
+		}
+		if (depth != 0 && (scopes[depth - 1] == ARRAY || scopes[depth - 1] == OBJECT)) {
+			comma();
+		}
+		return true;
+	}
+
+	public String nextName() throws IOException {
+		beginName();
+		String name = readString();
+		endName();
+		return name;
+	}
+
+	private void beginName() throws IOException {
+		int scope = depth == 0 ? 0 : scopes[depth - 1];
+		if (scope == OBJECT && !separated) {
+			comma();
+		} else if (scope != EMPTY_OBJECT && scope != OBJECT) {
+			throw new JsonException(scope == NAME ? "Expected a value" : "Not in an object");
+		}
+		separated = false;
+		expect('"');
+	}
+
+	private void endName() throws IOException {
+		expect(':');
+		scopes[depth - 1] = NAME;
+	}
+
+	/**
+	 * Consumes a null if that's what's next.
+	 *
+	 * @return true, if the next value was a null.
+	 */
+	public boolean nextNull() throws IOException {
+		if (peekValue() != 'n') {
+			return false;
+		}
+		consume();
+		literal("null");
+		return true;
+	}
+
+	/**
+	 * A number isn't a string, so it's not read as one. (See {@link #nextNumber()})
+	 */
+	public String nextString() throws IOException {
+		if (nextNull()) {
+			return null;
+		}
+		int b = peekValue();
+		if (b != '"') {
+			throw unexpected(b, "a string");
+		}
+		consume();
+		pos++;
+		return readString();
+	}
+
+	/**
+	 * @return the number exactly as it was written, for when a double won't do. (eg, BigDecimal)
+	 */
+	public String nextNumber() throws IOException {
+		return new String(chars, 0, readNumber());
+	}
+
+	public boolean nextBoolean() throws IOException {
+		int b = peekValue();
+		if (b == 't') {
+			consume();
+			literal("true");
+			return true;
+		}
+		if (b == 'f') {
+			consume();
+			literal("false");
+			return false;
+		}
+		throw unexpected(b, "a boolean");
+	}
+
+	public int nextInt() throws IOException {
+		long value = nextLong();
+		if ((int) value != value) {
+			throw new JsonException("Number out of range for an int: " + value);
+		}
+		return (int) value;
+	}
+
+	public long nextLong() throws IOException {
+		int length = readNumber();
+		char[] chars = this.chars;
+		int i = 0;
+		boolean negative = chars[0] == '-';
+		if (negative) {
+			i++;
+		}
+		if (i == length) {
+			throw new JsonException("Invalid number: " + new String(chars, 0, length));
+		}
+		long value = 0;
+		for (; i < length; i++) {
+			char c = chars[i];
+			if (c < '0' || c > '9') {
+				// Something like 1.0 or 1e3, just go the long way around.
+				double d = Double.parseDouble(new String(chars, 0, length));
+				if ((long) d != d) {
+					throw new JsonException("Not a whole number: " + new String(chars, 0, length));
+				}
+				return (long) d;
+			}
+			long next = value * 10 - (c - '0');
+			if (value < Long.MIN_VALUE / 10 || next > value) {
+				throw new JsonException("Number out of range for a long: " + new String(chars, 0, length));
+			}
+			value = next;
+		}
+		if (!negative) {
+			if (value == Long.MIN_VALUE) {
+				throw new JsonException("Number out of range for a long: " + new String(chars, 0, length));
+			}
+			return -value;
+		}
+		return value;
+	}
+
+	public double nextDouble() throws IOException {
+		int length = readNumber();
+		try {
+			return Double.parseDouble(new String(chars, 0, length));
+		} catch (NumberFormatException e) {
+			throw new JsonException("Invalid number: " + new String(chars, 0, length));
+		}
+	}
+
+	/**
+	 * Reads whatever the next value is into plain Java types.
+	 * Objects become a {@link LinkedHashMap}, arrays become an {@link ArrayList}, numbers become a Long if they're whole, otherwise a Double.
+	 */
+	public Object nextValue() throws IOException {
+		switch (peek()) {
+			case BEGIN_OBJECT: {
+				beginObject();
+				Map<String, Object> map = new LinkedHashMap<>();
+				while (hasNext()) {
+					String name = nextName();
+					map.put(name, nextValue());
+				}
+				endObject();
+				return map;
+			}
+			case BEGIN_ARRAY: {
+				beginArray();
+				List<Object> list = new ArrayList<>();
+				while (hasNext()) {
+					list.add(nextValue());
+				}
+				endArray();
+				return list;
+			}
+			case STRING:
+				return nextString();
+			case BOOLEAN:
+				return nextBoolean();
+			case NULL:
+				nextNull();
+				return null;
+			case NUMBER: {
+				int length = readNumber();
+				String number = new String(chars, 0, length);
+				for (int i = 0; i < length; i++) {
+					char c = chars[i];
+					if (c == '.' || c == 'e' || c == 'E') {
+						return Double.parseDouble(number);
+					}
+				}
+				try {
+					return Long.parseLong(number);
+				} catch (NumberFormatException e) {
+					return Double.parseDouble(number);
+				}
+			}
+			default:
+				throw unexpected(peekByte(), "a value");
+		}
+	}
+
+	public void skipValue() throws IOException {
+		// Same as reading it, just without keeping any of it around. (And without recursing, so it's only ever the one frame)
+		int target = depth;
+		do {
+			if (depth > target) {
+				int scope = scopes[depth - 1];
+				boolean array = scope == EMPTY_ARRAY || scope == ARRAY;
+				if (!hasNext()) {
+					if (array) {
+						endArray();
+					} else {
+						endObject();
+					}
+					continue;
+				}
+				if (!array) {
+					beginName();
+					skipString();
+					endName();
+				}
+			}
+			switch (peek()) {
+				case BEGIN_OBJECT:
+					beginObject();
+					break;
+				case BEGIN_ARRAY:
+					beginArray();
+					break;
+				case STRING:
+					consume();
+					pos++;
+					skipString();
+					break;
+				case NUMBER:
+					readNumber();
+					break;
+				case BOOLEAN:
+					nextBoolean();
+					break;
+				case NULL:
+					nextNull();
+					break;
+				default:
+					throw unexpected(peekByte(), "a value");
+			}
+		} while (depth > target);
+	}
+
+	private void skipString() throws IOException {
+		while (true) {
+			int b = readByte();
+			if (b == '"') {
+				return;
+			}
+			if (b == '\\') {
+				int escaped = readByte();
+				if (escaped == 'u') {
+					for (int i = 0; i < 4; i++) {
+						if (Character.digit(readByte(), 16) == -1) {
+							throw new JsonException("Invalid unicode escape");
+						}
+					}
+				} else if ("\"\\/bfnrt".indexOf(escaped) == -1) {
+					throw unexpected(escaped, "an escape character");
+				}
+			} else if (b >= 0 && b < 0x20) {
+				throw new JsonException("Unescaped control character in a string");
+			}
+		}
+	}
+
+	/**
+	 * Reads the number into the scratch buffer.
+	 *
+	 * @return the length of the number.
+	 */
+	private int readNumber() throws IOException {
+		int b = peekValue();
+		if (b != '-' && (b < '0' || b > '9')) {
+			throw unexpected(b, "a number");
+		}
+		consume();
+		int length = 0;
+		while (true) {
+			if (pos == limit && !fill()) {
+				break;
+			}
+			b = buffer[pos];
+			if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+				if (length == chars.length) {
+					chars = Arrays.copyOf(chars, length << 1);
+				}
+				chars[length++] = (char) b;
+				pos++;
+			} else {
+				break;
+			}
+		}
+		if (!valid(chars, length)) {
+			throw new JsonException("Invalid number: " + new String(chars, 0, length));
+		}
+		return length;
+	}
+
+	/**
+	 * -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+	 */
+	private static boolean valid(char[] chars, int length) {
+		int i = 0;
+		if (i < length && chars[i] == '-') {
+			i++;
+		}
+		if (i == length) {
+			return false;
+		}
+		if (chars[i] == '0') {
+			i++;
+		} else {
+			int start = i;
+			i = digits(chars, i, length);
+			if (i == start) {
+				return false;
+			}
+		}
+		if (i < length && chars[i] == '.') {
+			int start = ++i;
+			i = digits(chars, i, length);
+			if (i == start) {
+				return false;
+			}
+		}
+		if (i < length && (chars[i] == 'e' || chars[i] == 'E')) {
+			i++;
+			if (i < length && (chars[i] == '+' || chars[i] == '-')) {
+				i++;
+			}
+			int start = i;
+			i = digits(chars, i, length);
+			if (i == start) {
+				return false;
+			}
+		}
+		return i == length;
+	}
+
+	private static int digits(char[] chars, int i, int length) {
+		while (i < length && chars[i] >= '0' && chars[i] <= '9') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Reads the rest of a string, the opening quote has already been consumed.
+	 */
+	private String readString() throws IOException {
+		// Fast path: The whole thing is sitting in the buffer, and it's just plain ASCII.
+		byte[] buffer = this.buffer;
+		for (int i = pos, l = limit; i < l; i++) {
+			int b = buffer[i];
+			if (b == '"') {
+				String value = new String(buffer, pos, i - pos, StandardCharsets.ISO_8859_1);
+				pos = i + 1;
+				return value;
+			}
+			if (b == '\\' || b < 0x20) {
+				// Escapes, control characters, and anything that isn't ASCII.
+				break;
+			}
+		}
+
+		char[] chars = this.chars;
+		int length = 0;
+		while (true) {
+			int b = readByte();
+			if (b == '"') {
+				break;
+			}
+			if (length + 2 > chars.length) {
+				chars = this.chars = Arrays.copyOf(chars, chars.length << 1);
+			}
+			if (b == '\\') {
+				int escaped = readByte();
+				switch (escaped) {
+					case '"':
+					case '\\':
+					case '/':
+						chars[length++] = (char) escaped;
+						break;
+					case 'b':
+						chars[length++] = '\b';
+						break;
+					case 'f':
+						chars[length++] = '\f';
+						break;
+					case 'n':
+						chars[length++] = '\n';
+						break;
+					case 'r':
+						chars[length++] = '\r';
+						break;
+					case 't':
+						chars[length++] = '\t';
+						break;
+					case 'u': {
+						int value = 0;
+						for (int i = 0; i < 4; i++) {
+							int digit = Character.digit(readByte(), 16);
+							if (digit == -1) {
+								throw new JsonException("Invalid unicode escape");
+							}
+							value = value << 4 | digit;
+						}
+						chars[length++] = (char) value;
+						break;
+					}
+					default:
+						throw unexpected(escaped, "an escape character");
+				}
+			} else if (b >= 0x20) {
+				chars[length++] = (char) b;
+			} else if (b >= 0) {
+				throw new JsonException("Unescaped control character in a string");
+			} else {
+				// Multi-byte UTF-8 sequence.
+				int codePoint;
+				if ((b & 0xE0) == 0xC0) {
+					codePoint = (b & 0x1F) << 6 | continuation();
+				} else if ((b & 0xF0) == 0xE0) {
+					codePoint = (b & 0x0F) << 12 | continuation() << 6 | continuation();
+				} else if ((b & 0xF8) == 0xF0) {
+					codePoint = (b & 0x07) << 18 | continuation() << 12 | continuation() << 6 | continuation();
+				} else {
+					throw new JsonException("Invalid UTF-8 sequence");
+				}
+				length += Character.toChars(codePoint, chars, length);
+			}
+		}
+		return new String(chars, 0, length);
+	}
+
+	private int continuation() throws IOException {
+		int b = readByte();
+		if ((b & 0xC0) != 0x80) {
+			throw new JsonException("Invalid UTF-8 sequence");
+		}
+		return b & 0x3F;
+	}
+}
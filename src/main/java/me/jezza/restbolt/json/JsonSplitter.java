@@ -0,0 +1,182 @@
+package me.jezza.restbolt.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Works out where each element of a body starts and ends, as the buffers come in, without decoding any of it.
+ * <p>
+ * Just like {@link JsonElements}, the body is either a top-level array, or a sequence of values. (NDJSON, or anything else that separates them with whitespace)
+ * Every element is handed over as soon as its last byte is in, as a stream over the slices of the buffers it's made of, so nothing is copied.
+ * It only looks at the structure, (brackets, strings, and the commas of the array) so it's up to whoever reads the element to make sure the rest of it is valid.
+ *
+ * @author Jezza
+ */
+final class JsonSplitter {
+	private static final int START = 0;
+	private static final int ARRAY = 1;
+	private static final int SEQUENCE = 2;
+	private static final int DONE = 3;
+
+	interface Sink {
+		/**
+		 * Called with each element, which needs to be read before this returns, as the stream is reused for the next one.
+		 */
+		void element(InputStream element) throws IOException;
+	}
+
+	private final BufferStream element = new BufferStream();
+	private int mode;
+
+	/**
+	 * In an array, true if the next thing needs to be a ',' or the ']'.
+	 */
+	private boolean separator;
+
+	/**
+	 * In an array, true if there's been a ',' and the next thing needs to be an element.
+	 */
+	private boolean required;
+
+	// The element that's being read.
+	private boolean inside;
+	private int depth;
+	private boolean string;
+	private boolean escaped;
+	/**
+	 * A number or a literal, which only ends when something else starts.
+	 */
+	private boolean scalar;
+
+	JsonSplitter(boolean sequence) {
+		mode = sequence ? SEQUENCE : START;
+	}
+
+	void split(ByteBuffer buffer, Sink sink) throws IOException {
+		int start = buffer.position();
+		for (int i = start, l = buffer.limit(); i < l; i++) {
+			int b = buffer.get(i);
+			if (inside) {
+				if (string) {
+					if (escaped) {
+						escaped = false;
+					} else if (b == '\\') {
+						escaped = true;
+					} else if (b == '"') {
+						string = false;
+						if (depth == 0) {
+							end(buffer, start, i + 1, sink);
+						}
+					}
+					continue;
+				}
+				if (!scalar) {
+					if (b == '"') {
+						string = true;
+					} else if (b == '{' || b == '[') {
+						depth++;
+					} else if ((b == '}' || b == ']') && --depth == 0) {
+						end(buffer, start, i + 1, sink);
+					}
+					continue;
+				}
+				if (!delimiter(b)) {
+					continue;
+				}
+				// The delimiter isn't part of the scalar, so it's looked at again below.
+				end(buffer, start, i, sink);
+			}
+			if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+				continue;
+			}
+			if (mode == START) {
+				if (b == '[') {
+					mode = ARRAY;
+					continue;
+				}
+				mode = SEQUENCE;
+			} else if (mode == DONE) {
+				throw new JsonException("Trailing data after JSON array");
+			} else if (mode == ARRAY) {
+				if (b == ']') {
+					if (required) {
+						throw new JsonException("Trailing comma");
+					}
+					mode = DONE;
+					continue;
+				}
+				if (b == ',') {
+					if (!separator) {
+						throw new JsonException("Unexpected ','");
+					}
+					separator = false;
+					required = true;
+					continue;
+				}
+				if (separator) {
+					throw new JsonException("Unexpected '" + (char) b + "', expected ',' or ']'");
+				}
+			}
+			if (b == '}' || b == ']') {
+				throw new JsonException("Unexpected '" + (char) b + "', expected a value");
+			}
+			start = i;
+			inside = true;
+			required = false;
+			separator = mode == ARRAY;
+			if (b == '"') {
+				string = true;
+			} else if (b == '{' || b == '[') {
+				depth = 1;
+			} else {
+				scalar = true;
+			}
+		}
+		if (inside) {
+			element.add(slice(buffer, start, buffer.limit()));
+		}
+	}
+
+	/**
+	 * The body's done, so if there's a scalar that was still going, it's over now.
+	 */
+	void finish(Sink sink) throws IOException {
+		if (inside) {
+			if (!scalar) {
+				throw new JsonException("Unexpected end of input");
+			}
+			inside = scalar = false;
+			try {
+				sink.element(element);
+			} finally {
+				element.clear();
+			}
+		}
+		if (mode == ARRAY) {
+			throw new JsonException("Unexpected end of input, expected ']'");
+		}
+	}
+
+	private void end(ByteBuffer buffer, int start, int end, Sink sink) throws IOException {
+		inside = scalar = false;
+		depth = 0;
+		element.add(slice(buffer, start, end));
+		try {
+			sink.element(element);
+		} finally {
+			element.clear();
+		}
+	}
+
+	private static boolean delimiter(int b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t'
+				|| b == ',' || b == ']' || b == '}' || b == '[' || b == '{' || b == '"';
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(end).position(start);
+		return slice;
+	}
+}
@@ -0,0 +1,77 @@
+package me.jezza.restbolt.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * Writes out the "*Proxy" classes at compile time, so {@link me.jezza.restbolt.RestBolt} can just pick them up, instead of having to spin up ASM at runtime.
+ * <p>
+ * This only understands the core set of features (The verbs, the standard publishers, and String/discarded bodies).
+ * If an interface uses anything else, it's just left alone, and the runtime generator will deal with it like it always has.
+ * <p>
+ * Just put RestBolt on the annotation processor path, and it'll do the rest.
+ *
+ * @author Jezza
+ */
+@SupportedAnnotationTypes({
+		"me.jezza.restbolt.annotations.GET",
+		"me.jezza.restbolt.annotations.HEAD",
+		"me.jezza.restbolt.annotations.POST",
+		"me.jezza.restbolt.annotations.PUT",
+		"me.jezza.restbolt.annotations.DELETE",
+		"me.jezza.restbolt.annotations.OPTIONS",
+		"me.jezza.restbolt.annotations.TRACE",
+		"me.jezza.restbolt.annotations.CUSTOM",
+})
+public final class ProxyProcessor extends AbstractProcessor {
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<TypeElement> services = new LinkedHashSet<>();
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				Element owner = element.getEnclosingElement();
+				if (owner.getKind() == ElementKind.INTERFACE) {
+					services.add((TypeElement) owner);
+				}
+			}
+		}
+
+		for (TypeElement service : services) {
+			ProxySource source = new ProxySource(processingEnv, service);
+			String content;
+			try {
+				content = source.write();
+			} catch (ProxySource.Unsupported e) {
+				processingEnv.getMessager().printMessage(Kind.NOTE, "Leaving \"" + service.getQualifiedName() + "\" to the runtime generator: " + e.getMessage(), e.element);
+				continue;
+			} catch (IllegalStateException e) {
+				processingEnv.getMessager().printMessage(Kind.ERROR, e.getMessage(), service);
+				continue;
+			}
+
+			try (Writer writer = processingEnv.getFiler().createSourceFile(source.qualifiedName(), service).openWriter()) {
+				writer.write(content);
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Kind.ERROR, "Failed to write \"" + source.qualifiedName() + "\": " + e.getMessage(), service);
+			}
+		}
+		return false;
+	}
+}
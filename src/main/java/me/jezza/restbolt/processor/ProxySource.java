@@ -0,0 +1,719 @@
+package me.jezza.restbolt.processor;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+
+import me.jezza.restbolt.RestBolt;
+import me.jezza.restbolt.annotations.Body;
+import me.jezza.restbolt.annotations.CUSTOM;
+import me.jezza.restbolt.annotations.Cacheable;
+import me.jezza.restbolt.annotations.DELETE;
+import me.jezza.restbolt.annotations.Destination;
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.HEAD;
+import me.jezza.restbolt.annotations.Header;
+import me.jezza.restbolt.annotations.OPTIONS;
+import me.jezza.restbolt.annotations.POST;
+import me.jezza.restbolt.annotations.PUT;
+import me.jezza.restbolt.annotations.Path;
+import me.jezza.restbolt.annotations.Query;
+import me.jezza.restbolt.annotations.SingleFlight;
+import me.jezza.restbolt.annotations.TRACE;
+import me.jezza.restbolt.annotations.UriCache;
+
+/**
+ * The source equivalent of what RestBolt writes out with ASM.
+ * <p>
+ * If you change the shape of the generated bytecode, change this as well, otherwise the two will start to drift.
+ * (The hand-written sketch in {@link me.jezza.restbolt.Main.ServiceImpl} is what both of these are based off.)
+ *
+ * @author Jezza
+ */
+final class ProxySource {
+	private static final String SYNC_EXCEPTION = "me.jezza.restbolt.SyncException";
+	private static final String HTTP_RESPONSE = "java.net.http.HttpResponse";
+	private static final String COMPLETABLE_FUTURE = "java.util.concurrent.CompletableFuture";
+	private static final String REST_SERVICE = "me.jezza.restbolt.annotations.RestService";
+
+	private static final String ROOT_PACKAGE = "me.jezza.restbolt.";
+	private static final String ANNOTATIONS_PACKAGE = "me.jezza.restbolt.annotations.";
+
+	/**
+	 * Thrown when the interface uses something this doesn't know how to write.
+	 * Not an error, the runtime generator just gets to deal with it instead.
+	 */
+	static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = -2304728339023914376L;
+
+		final transient Element element;
+
+		Unsupported(String message, Element element) {
+			super(message, null, false, false);
+			this.element = element;
+		}
+	}
+
+	private final ProcessingEnvironment env;
+	private final Elements elements;
+	private final TypeElement service;
+
+	private final String packageName;
+	private final String simpleName;
+
+	/**
+	 * Used to name the constants that are written out, so overloads can't clash.
+	 */
+	private int constants;
+
+	/**
+	 * Anything the methods need set up in the constructor.
+	 */
+	private final StringBuilder init = new StringBuilder();
+
+	ProxySource(ProcessingEnvironment env, TypeElement service) {
+		this.env = env;
+		this.elements = env.getElementUtils();
+		this.service = service;
+		packageName = elements.getPackageOf(service).getQualifiedName().toString();
+		String binaryName = elements.getBinaryName(service).toString();
+		simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).concat("Proxy");
+	}
+
+	String qualifiedName() {
+		return packageName.isEmpty() ? simpleName : packageName + '.' + simpleName;
+	}
+
+	String write() {
+		if (service.getModifiers().contains(Modifier.PRIVATE)) {
+			throw new Unsupported("private interface", service);
+		}
+		if (!service.getTypeParameters().isEmpty()) {
+			throw new Unsupported("generic interface", service);
+		}
+		for (TypeMirror parent : service.getInterfaces()) {
+			String name = ((TypeElement) env.getTypeUtils().asElement(parent)).getQualifiedName().toString();
+			if (!name.equals(REST_SERVICE)) {
+				throw new Unsupported("extends " + name, service);
+			}
+		}
+		// Neither of these change what we write:
+		// Lazy linking is only about dodging the runtime generation cost, which a pregenerated proxy doesn't have anyway.
+		// @Client is read when the interface is bound.
+		known(service, "Lazy", "Client");
+		boolean visible = env.getTypeUtils().isAssignable(service.asType(), elements.getTypeElement(REST_SERVICE).asType());
+
+		StringBuilder b = new StringBuilder(4096);
+		if (!packageName.isEmpty()) {
+			b.append("package ").append(packageName).append(";\n\n");
+		}
+		b.append("// Generated by RestBolt. Do not edit.\n");
+		b.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+		b.append("public final class ").append(simpleName).append(" implements ").append(service.getQualifiedName()).append(" {\n");
+		b.append("\tprivate final java.net.URI host;\n");
+		b.append("\tprivate final me.jezza.restbolt.Transport transport;\n");
+		b.append("\tprivate volatile java.net.http.HttpClient client;\n");
+		b.append("\tprivate final String base;\n");
+		b.append("\tprivate final me.jezza.restbolt.Metrics metrics;\n\n");
+
+		// The methods are written first, as the constructor needs to know what fields they want.
+		StringBuilder methods = new StringBuilder(4096);
+		for (ExecutableElement method : ElementFilter.methodsIn(service.getEnclosedElements())) {
+			methods.append('\n');
+			writeMethod(methods, method);
+		}
+
+		b.append("\tpublic ").append(simpleName).append("(java.net.URI host, me.jezza.restbolt.Transport transport) {\n");
+		b.append("\t\tthis.host = host;\n");
+		b.append("\t\tthis.transport = transport;\n");
+		b.append("\t\tthis.base = me.jezza.restbolt.Uris.base(host);\n");
+		b.append("\t\tthis.metrics = transport.metrics();\n");
+		b.append(init);
+		b.append("\t}\n\n");
+
+		b.append('\t').append(visible ? "public final" : "private").append(" java.net.http.HttpClient client() {\n");
+		b.append("\t\tjava.net.http.HttpClient client = this.client;\n");
+		b.append("\t\tif (client == null) {\n");
+		b.append("\t\t\tsynchronized (this) {\n");
+		b.append("\t\t\t\tclient = this.client;\n");
+		b.append("\t\t\t\tif (client == null) {\n");
+		b.append("\t\t\t\t\tthis.client = client = transport.client();\n");
+		b.append("\t\t\t\t}\n");
+		b.append("\t\t\t}\n");
+		b.append("\t\t}\n");
+		b.append("\t\treturn client;\n");
+		b.append("\t}\n");
+
+		if (visible) {
+			b.append("\n\tpublic final me.jezza.restbolt.Metrics metrics() {\n");
+			b.append("\t\treturn metrics;\n");
+			b.append("\t}\n");
+		}
+
+		b.append(methods);
+		b.append("}\n");
+		return b.toString();
+	}
+
+	private void writeMethod(StringBuilder b, ExecutableElement method) {
+		String verb;
+		String path;
+		String publisher;
+
+		GET get;
+		HEAD head;
+		POST post;
+		PUT put;
+		DELETE delete;
+		OPTIONS options;
+		TRACE trace;
+		CUSTOM custom;
+		if ((get = method.getAnnotation(GET.class)) != null) {
+			verb = "GET";
+			path = get.value();
+			publisher = RestBolt.PUBLISHER_NO_BODY;
+		} else if ((head = method.getAnnotation(HEAD.class)) != null) {
+			verb = "HEAD";
+			path = head.value();
+			publisher = RestBolt.PUBLISHER_NO_BODY;
+		} else if ((post = method.getAnnotation(POST.class)) != null) {
+			verb = "POST";
+			path = post.value();
+			publisher = post.publisher();
+		} else if ((put = method.getAnnotation(PUT.class)) != null) {
+			verb = "PUT";
+			path = put.value();
+			publisher = put.publisher();
+		} else if ((delete = method.getAnnotation(DELETE.class)) != null) {
+			verb = "DELETE";
+			path = delete.value();
+			publisher = RestBolt.PUBLISHER_NO_BODY;
+		} else if ((options = method.getAnnotation(OPTIONS.class)) != null) {
+			verb = "OPTIONS";
+			path = options.value();
+			publisher = options.publisher();
+		} else if ((trace = method.getAnnotation(TRACE.class)) != null) {
+			verb = "TRACE";
+			path = trace.value();
+			publisher = RestBolt.PUBLISHER_NO_BODY;
+		} else if ((custom = method.getAnnotation(CUSTOM.class)) != null) {
+			verb = custom.verb();
+			path = custom.value();
+			publisher = custom.publisher();
+		} else {
+			throw new IllegalStateException("Unknown method on interface: " + method.getSimpleName());
+		}
+
+		// Anything we don't explicitly know about could change the generated code, so we just back off.
+		known(method, "GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "TRACE", "CUSTOM", "Header", "Headers", "UriCache", "SingleFlight", "Cacheable");
+
+		if (path.charAt(0) != '/') {
+			throw new IllegalStateException("Path must start with a '/'");
+		}
+		if (!method.getTypeParameters().isEmpty()) {
+			throw new Unsupported("generic method", method);
+		}
+
+		String description = method.getSimpleName().toString() + method.asType();
+
+		// Mirrors MethodDetails.discover
+		boolean async;
+		boolean response;
+		TypeMirror responseType;
+
+		TypeMirror returnType = method.getReturnType();
+		if (returnType.getKind() == TypeKind.VOID) {
+			async = false;
+			response = false;
+			responseType = null;
+		} else if (returnType.getKind() == TypeKind.DECLARED && !((DeclaredType) returnType).getTypeArguments().isEmpty()) {
+			DeclaredType declared = (DeclaredType) returnType;
+			String raw = qualifiedName(declared);
+			if (raw.equals(COMPLETABLE_FUTURE)) {
+				async = true;
+				response = false;
+				TypeMirror argument = declared.getTypeArguments().get(0);
+				if (isUnboundedWildcard(argument)) {
+					responseType = null;
+				} else if (argument.getKind() == TypeKind.DECLARED && qualifiedName((DeclaredType) argument).equals(HTTP_RESPONSE)) {
+					responseType = bodyType((DeclaredType) argument);
+				} else {
+					throw new IllegalStateException("[ERROR] Return type must be of CompletableFuture<HttpResponse<_>> on \"" + description + "\".");
+				}
+			} else if (raw.equals(HTTP_RESPONSE)) {
+				async = false;
+				response = true;
+				responseType = bodyType(declared);
+			} else {
+				async = false;
+				response = false;
+				responseType = returnType;
+			}
+		} else {
+			async = false;
+			response = false;
+			responseType = returnType;
+		}
+
+		boolean declared = false;
+		for (TypeMirror thrown : method.getThrownTypes()) {
+			if (thrown.toString().equals(SYNC_EXCEPTION)) {
+				declared = true;
+				break;
+			}
+		}
+		if (!declared && !async) {
+			throw new IllegalStateException("[ERROR] " + SYNC_EXCEPTION + " is not declared on \"" + description + "\".");
+		}
+		if ("HEAD".equals(verb) && responseType != null) {
+			throw new IllegalStateException("[ERROR] A \"HEAD\" request will never return a body with \"" + description + "\".");
+		}
+
+		if (!publisher.equals(RestBolt.PUBLISHER_NO_BODY) && !publisher.equals(RestBolt.PUBLISHER_URL_ENCODED) && !publisher.equals(RestBolt.PUBLISHER_MULTIPART)) {
+			throw new Unsupported("publisher " + publisher, method);
+		}
+
+		List<? extends VariableElement> params = method.getParameters();
+		int count = params.size();
+		String[] names = new String[count];
+		int[] kinds = new int[count];
+		int destination = -1;
+		for (int i = 0; i < count; i++) {
+			VariableElement param = params.get(i);
+			int kind = UNUSED;
+			Path segment = param.getAnnotation(Path.class);
+			Query query = param.getAnnotation(Query.class);
+			Header header = param.getAnnotation(Header.class);
+			Body body = param.getAnnotation(Body.class);
+			if (segment != null) {
+				names[i] = segment.value();
+				kind |= PATH;
+			}
+			if (query != null) {
+				names[i] = query.value();
+				kind |= QUERY;
+			}
+			if (header != null) {
+				names[i] = header.value();
+				kind |= HEADER;
+				if (!header.data().isEmpty()) {
+					throw new IllegalStateException("Dynamic @Header with static \"data\" in " + description);
+				}
+			}
+			if (body != null) {
+				names[i] = body.value();
+				kind |= BODY;
+			}
+			boolean needed = kind == PATH || kind == QUERY || kind == HEADER || (kind == BODY && !publisher.equals(RestBolt.PUBLISHER_NO_BODY));
+			if (needed && !isString(param.asType()) && !param.asType().getKind().isPrimitive()) {
+				throw new Unsupported("parameter type " + param.asType(), param);
+			}
+			if (param.getAnnotation(Destination.class) != null) {
+				if (!param.asType().toString().equals("java.nio.file.Path") || responseType == null || !responseType.toString().equals("java.nio.file.Path")) {
+					throw new IllegalStateException("@Destination needs to be a Path, on a method that returns a Path: " + description);
+				}
+				destination = i;
+			}
+			known(param, "Path", "Query", "Header", "Body", "Destination");
+			kinds[i] = kind;
+		}
+
+		// Mirrors the handlers picked in RestBolt.writeMethod
+		String handler;
+		if (responseType == null) {
+			handler = "java.net.http.HttpResponse.BodyHandlers.discarding()";
+		} else if (isString(responseType)) {
+			handler = "java.net.http.HttpResponse.BodyHandlers.ofString(java.nio.charset.StandardCharsets.UTF_8)";
+		} else {
+			switch (responseType.toString()) {
+				case "byte[]":
+					handler = "java.net.http.HttpResponse.BodyHandlers.ofByteArray()";
+					break;
+				case "java.nio.ByteBuffer":
+					handler = "me.jezza.restbolt.Handlers.ofByteBuffer()";
+					break;
+				case "java.io.InputStream":
+					handler = "java.net.http.HttpResponse.BodyHandlers.ofInputStream()";
+					break;
+				case "java.nio.file.Path":
+					handler = destination != -1
+							? "java.net.http.HttpResponse.BodyHandlers.ofFile(p" + destination + ')'
+							: "me.jezza.restbolt.Handlers.ofTempFile()";
+					break;
+				case "java.util.concurrent.Flow.Publisher<java.util.List<java.nio.ByteBuffer>>":
+					handler = "java.net.http.HttpResponse.BodyHandlers.ofPublisher()";
+					break;
+				default:
+					throw new Unsupported("response type " + responseType, method);
+			}
+		}
+
+		// Mirrors RestBolt.writeClient, every method gets a meter, which is null if the metrics are disabled.
+		String meter = "meter" + constants++;
+		b.append("\tprivate final me.jezza.restbolt.Metrics.Meter ").append(meter).append(";\n\n");
+		init.append("\t\tthis.").append(meter).append(" = metrics.meter(").append(literal(method.getSimpleName().toString())).append(");\n");
+		String client = "me.jezza.restbolt.Metrics.client(" + meter + ", client())";
+
+		// Mirrors the checks in RestBolt.writeMethod
+		String send = client + ".send(request, ";
+		String sendAsync = client + ".sendAsync(request, ";
+		if (method.getAnnotation(SingleFlight.class) != null) {
+			if (!verb.equals("GET") && !verb.equals("HEAD")) {
+				throw new IllegalStateException("@SingleFlight only works on a GET or HEAD: " + description);
+			}
+			if (!handler.startsWith("java.net.http.HttpResponse.BodyHandlers.discarding") && !handler.startsWith("java.net.http.HttpResponse.BodyHandlers.ofString") && !handler.startsWith("java.net.http.HttpResponse.BodyHandlers.ofByteArray")) {
+				throw new IllegalStateException("@SingleFlight can't share the body of " + description);
+			}
+			String field = "flights" + constants++;
+			b.append("	private final me.jezza.restbolt.Flights ").append(field).append(" = new me.jezza.restbolt.Flights();\n\n");
+			send = field + ".send(" + client + ", request, ";
+			sendAsync = field + ".sendAsync(" + client + ", request, ";
+		}
+		String responses = null;
+		Cacheable cacheable = method.getAnnotation(Cacheable.class);
+		if (cacheable != null) {
+			if (!verb.equals("GET")) {
+				throw new IllegalStateException("@Cacheable only works on a GET: " + description);
+			}
+			if (method.getAnnotation(SingleFlight.class) != null) {
+				throw new IllegalStateException("@Cacheable already shares its misses, so @SingleFlight isn't needed on " + description);
+			}
+			for (int kind : kinds) {
+				if (kind == HEADER) {
+					throw new IllegalStateException("@Cacheable can't key on the dynamic headers of " + description);
+				}
+			}
+			if (!handler.startsWith("java.net.http.HttpResponse.BodyHandlers.discarding") && !handler.startsWith("java.net.http.HttpResponse.BodyHandlers.ofString") && !handler.startsWith("java.net.http.HttpResponse.BodyHandlers.ofByteArray")) {
+				throw new IllegalStateException("@Cacheable can't keep the body of " + description);
+			}
+			String store = "me.jezza.restbolt.cache.ResponseCache.shared()";
+			if (!cacheable.store().isEmpty()) {
+				// The factory could be private, so it goes through the same bootstrap the generated classes use.
+				store = "STORE_" + constants++;
+				b.append("\tprivate static final me.jezza.restbolt.cache.ResponseCache ").append(store).append(" = me.jezza.restbolt.cache.HttpCache.store(java.lang.invoke.MethodHandles.lookup(), \"store\", me.jezza.restbolt.cache.ResponseCache.class, ").append(literal(cacheable.store())).append(");\n");
+			}
+			StringBuilder staticHeaders = new StringBuilder();
+			for (Header header : method.getAnnotationsByType(Header.class)) {
+				staticHeaders.append('\n').append(header.value()).append(": ").append(header.data());
+			}
+			responses = "cache" + constants++;
+			b.append("\tprivate final me.jezza.restbolt.cache.HttpCache ").append(responses).append(" = new me.jezza.restbolt.cache.HttpCache(").append(store).append(", ").append(literal(staticHeaders.toString())).append(");\n\n");
+			send = responses + ".send(" + client + ", key, request, ";
+			sendAsync = responses + ".sendAsync(" + client + ", key, request, ";
+		}
+
+		// The multipart headers only depend on the names, so they're only ever built once.
+		String[] headers = new String[count];
+		if (publisher.equals(RestBolt.PUBLISHER_MULTIPART)) {
+			for (int i = 0; i < count; i++) {
+				if (kinds[i] == BODY) {
+					headers[i] = "PART_" + constants++;
+					b.append("\tprivate static final byte[] ").append(headers[i]).append(" = me.jezza.restbolt.form.multipart.MultipartBuilder.header(").append(literal(names[i])).append(");\n");
+				}
+			}
+			b.append('\n');
+		}
+
+		// Mirrors RestBolt.constantUri
+		boolean constantUri = path.indexOf('{') == -1;
+		for (int kind : kinds) {
+			if (kind == QUERY) {
+				constantUri = false;
+				break;
+			}
+		}
+		String uriField = null;
+		String cacheField = null;
+		UriCache cache = method.getAnnotation(UriCache.class);
+		if (constantUri) {
+			uriField = "uri" + constants++;
+			b.append("\tprivate final java.net.URI ").append(uriField).append(";\n\n");
+			init.append("\t\tthis.").append(uriField).append(" = me.jezza.restbolt.Uris.resolve(base, ").append(literal(path)).append(");\n");
+		} else if (cache != null) {
+			cacheField = "URIS_" + constants++;
+			b.append("\tprivate static final me.jezza.restbolt.Uris.Cache ").append(cacheField).append(" = me.jezza.restbolt.Uris.cache(").append(cache.value()).append(");\n\n");
+		}
+
+		// Signature
+		b.append("\t@Override\n");
+		b.append("\tpublic final ").append(returnType).append(' ').append(method.getSimpleName()).append('(');
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				b.append(", ");
+			}
+			b.append(params.get(i).asType()).append(" p").append(i);
+		}
+		b.append(')');
+		List<? extends TypeMirror> thrownTypes = method.getThrownTypes();
+		for (int i = 0, l = thrownTypes.size(); i < l; i++) {
+			b.append(i == 0 ? " throws " : ", ").append(thrownTypes.get(i));
+		}
+		b.append(" {\n");
+
+		// %path% + %query%
+		boolean firstQuerySegment = path.indexOf('?') == -1;
+		StringBuilder uri = new StringBuilder();
+		boolean dynamic = path.indexOf('{') != -1;
+		if (dynamic) {
+			int start = 0;
+			int end;
+			while ((end = path.indexOf('{', start)) != -1) {
+				if (end != start) {
+					uri.append("\t\tb.append(").append(literal(path.substring(start, end))).append(");\n");
+				}
+				start = end + 1;
+				end = path.indexOf('}', start);
+				if (end == -1) {
+					throw new IllegalStateException("Unclosed '{' at position " + start);
+				}
+				String param = path.substring(start, end);
+				int index = -1;
+				for (int i = 0; i < count; i++) {
+					if (kinds[i] == PATH && param.equals(names[i])) {
+						index = i;
+						break;
+					}
+				}
+				if (index == -1) {
+					throw new IllegalStateException("Unknown path segment \"" + param + "\" on \"" + description + "\".");
+				}
+				uri.append("\t\tb.append(p").append(index).append(");\n");
+				start = end + 1;
+			}
+			if (start != path.length()) {
+				uri.append("\t\tb.append(").append(literal(path.substring(start))).append(");\n");
+			}
+		} else {
+			uri.append("\t\tb.append(").append(literal(path)).append(");\n");
+		}
+		for (int i = 0; i < count; i++) {
+			if (kinds[i] != QUERY) {
+				continue;
+			}
+			char queryChar;
+			if (firstQuerySegment) {
+				firstQuerySegment = false;
+				queryChar = '?';
+			} else {
+				queryChar = '&';
+			}
+			dynamic = true;
+			uri.append("\t\tb.append(").append(literal(queryChar + URLEncoder.encode(names[i], StandardCharsets.UTF_8) + '=')).append(");\n");
+			if (isString(params.get(i).asType())) {
+				uri.append("\t\tme.jezza.restbolt.form.FormEncoder.encode(b, p").append(i).append(");\n");
+			} else {
+				uri.append("\t\tb.append(p").append(i).append(");\n");
+			}
+		}
+		if (constantUri) {
+			if (responses != null) {
+				b.append("\t\tString key = ").append(uriField).append(".toString();\n");
+			}
+		} else {
+			b.append("\t\tStringBuilder b = new StringBuilder(base);\n");
+			b.append(uri);
+			if (responses != null) {
+				b.append("\t\tString key = b.toString();\n");
+			}
+		}
+		if (responses != null) {
+			// Mirrors the hit in RestBolt.writeMethod, it's checked before the request is built.
+			b.append("\t\tjava.net.http.HttpResponse.BodyHandler<?> handler = ").append(handler).append(";\n");
+			if (async) {
+				b.append("\t\tjava.util.concurrent.CompletableFuture<java.net.http.HttpResponse<?>> hit = ").append(responses).append(".hitAsync(").append(client).append(", key, handler);\n");
+				b.append("\t\tif (hit != null) {\n");
+				b.append("\t\t\treturn (").append(returnType).append(") (java.util.concurrent.CompletableFuture) hit;\n");
+			} else {
+				b.append("\t\tjava.net.http.HttpResponse<?> hit = ").append(responses).append(".hit(").append(client).append(", key, handler);\n");
+				b.append("\t\tif (hit != null) {\n");
+				if (response) {
+					b.append("\t\t\treturn (").append(returnType).append(") (java.net.http.HttpResponse) hit;\n");
+				} else if (responseType != null) {
+					b.append("\t\t\treturn (").append(returnType).append(") hit.body();\n");
+				} else {
+					b.append("\t\t\treturn;\n");
+				}
+			}
+			b.append("\t\t}\n");
+			handler = "handler";
+		}
+		if (constantUri) {
+			b.append("\t\tjava.net.URI uri = ").append(uriField).append(";\n");
+		} else {
+			String string = responses != null ? "key" : "b.toString()";
+			b.append("\t\tjava.net.URI uri = ").append(cacheField != null ? cacheField + ".get(" + string + ')' : "java.net.URI.create(" + string + ')').append(";\n");
+		}
+
+		// %request%
+		b.append("\t\tjava.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri);\n");
+
+		// %header%
+		for (Header header : method.getAnnotationsByType(Header.class)) {
+			b.append("\t\tbuilder.header(").append(literal(header.value())).append(", ").append(literal(header.data())).append(");\n");
+		}
+		for (int i = 0; i < count; i++) {
+			if (kinds[i] == HEADER) {
+				b.append("\t\tbuilder.header(").append(literal(names[i]));
+				if (isString(params.get(i).asType())) {
+					b.append(", p").append(i).append(");\n");
+				} else {
+					b.append(", String.valueOf(p").append(i).append("));\n");
+				}
+			}
+		}
+
+		// %publisher%
+		String body;
+		if (publisher.equals(RestBolt.PUBLISHER_URL_ENCODED)) {
+			b.append("\t\tbuilder.header(\"Content-Type\", \"application/x-www-form-urlencoded\");\n");
+			b.append("\t\tme.jezza.restbolt.form.FormEncoder form = new me.jezza.restbolt.form.FormEncoder(64);\n");
+			for (int i = 0; i < count; i++) {
+				if (kinds[i] != BODY) {
+					continue;
+				}
+				b.append("\t\tform.raw(").append(literal('&' + URLEncoder.encode(names[i], StandardCharsets.UTF_8) + '=')).append(");\n");
+				if (isString(params.get(i).asType())) {
+					b.append("\t\tform.encode(p").append(i).append(");\n");
+				} else {
+					b.append("\t\tform.append(p").append(i).append(");\n");
+				}
+			}
+			body = "form.publisher()";
+		} else if (publisher.equals(RestBolt.PUBLISHER_MULTIPART)) {
+			int parts = 0;
+			for (int kind : kinds) {
+				if (kind == BODY) {
+					parts++;
+				}
+			}
+			b.append("\t\tme.jezza.restbolt.form.multipart.MultipartBuilder multipart = new me.jezza.restbolt.form.multipart.MultipartBuilder(").append(parts).append(");\n");
+			b.append("\t\tbuilder.header(\"Content-Type\", multipart.contentType());\n");
+			for (int i = 0; i < count; i++) {
+				if (kinds[i] == BODY) {
+					b.append("\t\tmultipart.add(").append(headers[i]).append(", p").append(i).append(");\n");
+				}
+			}
+			body = "multipart.build()";
+		} else {
+			body = "java.net.http.HttpRequest.BodyPublishers.noBody()";
+		}
+		b.append("\t\tbuilder.method(").append(literal(verb)).append(", ").append(body).append(");\n");
+		b.append("\t\tjava.net.http.HttpRequest request = builder.build();\n");
+
+		// %return%
+		if (async) {
+			b.append("\t\treturn (").append(returnType).append(") (java.util.concurrent.CompletableFuture) ").append(sendAsync).append(handler).append(");\n");
+		} else {
+			b.append("\t\ttry {\n");
+			if (response) {
+				b.append("\t\t\treturn (").append(returnType).append(") (java.net.http.HttpResponse) ").append(send).append(handler).append(");\n");
+			} else if (responseType != null) {
+				// The flights only deal in wildcards, so it needs a cast. (It's a no-op otherwise)
+				b.append("\t\t\treturn (").append(returnType).append(") ").append(send).append(handler).append(").body();\n");
+			} else {
+				b.append("\t\t\t").append(send).append(handler).append(");\n");
+			}
+			b.append("\t\t} catch (java.io.IOException | InterruptedException e) {\n");
+			b.append("\t\t\tthrow new me.jezza.restbolt.SyncException(e);\n");
+			b.append("\t\t}\n");
+		}
+		b.append("\t}\n");
+	}
+
+	private static final int UNUSED = 0;
+	private static final int PATH = 0b1;
+	private static final int QUERY = 0b10;
+	private static final int HEADER = 0b100;
+	private static final int BODY = 0b1000;
+
+	private static void known(Element element, String... allowed) {
+		for (var mirror : element.getAnnotationMirrors()) {
+			String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+			if (!name.startsWith(ROOT_PACKAGE)) {
+				continue;
+			}
+			if (name.startsWith(ANNOTATIONS_PACKAGE) && Arrays.asList(allowed).contains(name.substring(ANNOTATIONS_PACKAGE.length()))) {
+				continue;
+			}
+			throw new Unsupported("@" + name, element);
+		}
+	}
+
+	private TypeMirror bodyType(DeclaredType response) {
+		TypeMirror argument = response.getTypeArguments().get(0);
+		if (isUnboundedWildcard(argument)) {
+			return null;
+		}
+		if (argument.getKind() == TypeKind.DECLARED && qualifiedName((DeclaredType) argument).equals("java.lang.Void")) {
+			return null;
+		}
+		return argument;
+	}
+
+	private boolean isString(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED && qualifiedName((DeclaredType) type).equals("java.lang.String");
+	}
+
+	private static boolean isUnboundedWildcard(TypeMirror type) {
+		if (type.getKind() != TypeKind.WILDCARD) {
+			return false;
+		}
+		WildcardType wildcard = (WildcardType) type;
+		return wildcard.getExtendsBound() == null && wildcard.getSuperBound() == null;
+	}
+
+	private static String qualifiedName(DeclaredType type) {
+		Element element = type.asElement();
+		if (element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.INTERFACE) {
+			return element.getSimpleName().toString();
+		}
+		return ((TypeElement) element).getQualifiedName().toString();
+	}
+
+	private static String literal(String value) {
+		StringBuilder b = new StringBuilder(value.length() + 2);
+		b.append('"');
+		for (int i = 0, l = value.length(); i < l; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					b.append("\\\"");
+					break;
+				case '\\':
+					b.append("\\\\");
+					break;
+				case '\n':
+					b.append("\\n");
+					break;
+				case '\r':
+					b.append("\\r");
+					break;
+				case '\t':
+					b.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c > 0x7E) {
+						b.append(String.format("\\u%04x", (int) c));
+					} else {
+						b.append(c);
+					}
+			}
+		}
+		return b.append('"').toString();
+	}
+}
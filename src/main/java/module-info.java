@@ -2,10 +2,17 @@
  * @author Jezza
  */
 module rest.bolt {
-	requires java.net.http;
-	requires org.objectweb.asm;
+	requires transitive java.net.http;
+	requires static transitive org.objectweb.asm;
 	requires slf4j.api;
+	requires static java.compiler;
 
 	exports me.jezza.restbolt;
 	exports me.jezza.restbolt.annotations;
+	exports me.jezza.restbolt.cache;
+	exports me.jezza.restbolt.form;
+	exports me.jezza.restbolt.form.multipart;
+	exports me.jezza.restbolt.json;
+
+	provides javax.annotation.processing.Processor with me.jezza.restbolt.processor.ProxyProcessor;
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package me.jezza.restbolt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.invoke.MethodHandles;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.Hedge;
+import me.jezza.restbolt.annotations.Query;
+import me.jezza.restbolt.annotations.Retry;
+
+/**
+ * @author Jezza
+ */
+class AttemptsTest {
+	private static Loopback server;
+
+	/**
+	 * How many times each "path?query" has been asked for.
+	 */
+	private static final Map<String, AtomicInteger> seen = new ConcurrentHashMap<>();
+
+	public interface Flaky {
+		@GET("/flaky")
+		@Retry(attempts = 3, backoff = 1)
+		HttpResponse<String> flaky(@Query("k") String key, @Query("fails") int fails) throws SyncException;
+
+		@GET("/flaky")
+		@Retry(attempts = 5, backoff = 1, budget = 0.1, burst = 2)
+		HttpResponse<String> budgeted(@Query("k") String key, @Query("fails") int fails) throws SyncException;
+
+		@GET("/hedged")
+		@Hedge(percentile = 50, delay = 1)
+		HttpResponse<String> hedged(@Query("k") String key) throws SyncException;
+	}
+
+	@BeforeAll
+	static void start() {
+		server = Loopback.start(exchange -> {
+			String query = exchange.getRequestURI().getQuery();
+			String path = exchange.getRequestURI().getPath();
+			int count = seen.computeIfAbsent(path + '?' + query, k -> new AtomicInteger()).incrementAndGet();
+			if (path.equals("/flaky")) {
+				// It fails the first "fails" times it's asked.
+				int fails = Integer.parseInt(query.substring(query.indexOf("fails=") + 6));
+				Loopback.respond(exchange, count <= fails ? 503 : 200, "text/plain", String.valueOf(count));
+			} else {
+				if (query.startsWith("k=slow") && count == 1) {
+					try {
+						Thread.sleep(2000);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				Loopback.respond(exchange, 200, "text/plain", String.valueOf(count));
+			}
+		});
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@BeforeEach
+	void clear() {
+		seen.clear();
+		server.requests.clear();
+	}
+
+	@Test
+	void retriesTheStatuses() throws Exception {
+		Flaky flaky = RestBolt.bind(server.uri(), Flaky.class, MethodHandles.lookup());
+		HttpResponse<String> response = flaky.flaky("a", 2);
+		assertEquals(200, response.statusCode());
+		assertEquals("3", response.body());
+
+		// Out of attempts, so the last one is what you get, body and all.
+		response = flaky.flaky("b", 10);
+		assertEquals(503, response.statusCode());
+		assertEquals("3", response.body());
+		assertEquals(6, server.requests.size());
+	}
+
+	@Test
+	void retriesComeOutOfTheBudget() throws Exception {
+		Flaky flaky = RestBolt.bind(server.uri(), Flaky.class, MethodHandles.lookup());
+		// The bucket starts off with 2 tokens, so that's 2 retries, and then it's empty.
+		assertEquals(503, flaky.budgeted("0", 100).statusCode());
+		assertEquals(3, server.requests.size());
+		// Every call puts a tenth of a token back, so it's another 10 before there's one to spend.
+		for (int i = 1; i < 20; i++) {
+			assertEquals(503, flaky.budgeted(String.valueOf(i), 100).statusCode());
+		}
+		// 20 calls, 2 retries from the burst, and 1 from the deposits.
+		assertEquals(23, server.requests.size());
+		assertEquals(2, seen.get("/flaky?k=10&fails=100").get());
+	}
+
+	@Test
+	void hedgesTheSlowOnes() throws Exception {
+		Flaky flaky = RestBolt.bind(server.uri(), Flaky.class, MethodHandles.lookup());
+		// Nothing's hedged until it knows what normal looks like, which it works out every 32 requests, once it's seen at least 100.
+		for (int i = 0; i < 200; i++) {
+			assertEquals(200, flaky.hedged("fast" + i).statusCode());
+		}
+
+		long start = System.nanoTime();
+		HttpResponse<String> response = flaky.hedged("slow");
+		long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		// The first is still asleep, so it's the hedge that came back.
+		assertEquals("2", response.body());
+		assertTrue(took < 1500, "Took " + took + "ms");
+		assertEquals(2, seen.get("/hedged?k=slow").get());
+	}
+}
@@ -0,0 +1,163 @@
+package me.jezza.restbolt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import me.jezza.restbolt.annotations.Batch;
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.Header;
+import me.jezza.restbolt.annotations.Path;
+import me.jezza.restbolt.annotations.Query;
+
+/**
+ * @author Jezza
+ */
+class BatcherTest {
+	private static Loopback server;
+	private static final List<String> tokens = new CopyOnWriteArrayList<>();
+
+	public static final class User {
+		public int id;
+		public String name;
+	}
+
+	public static final class Measurement {
+		public double id;
+	}
+
+	public interface Users {
+		@GET("/users/{id}")
+		@Batch(value = "/users", window = 50)
+		@Header(value = "X-Token", data = "secret")
+		CompletableFuture<User> user(@Path("id") long id);
+
+		@GET("/users/{id}")
+		@Batch(value = "/users", window = 50, max = 3)
+		User small(@Path("id") int id) throws SyncException;
+	}
+
+	public interface Names {
+		@GET("/users")
+		@Batch(value = "/users", query = "id", key = "id")
+		CompletableFuture<User> user(@Query("name") String name);
+	}
+
+	public interface Measurements {
+		@GET("/measurements/{id}")
+		@Batch("/measurements")
+		CompletableFuture<Measurement> measurement(@Path("id") long id);
+	}
+
+	@BeforeAll
+	static void start() {
+		server = Loopback.start(exchange -> {
+			tokens.add(String.valueOf(exchange.getRequestHeaders().getFirst("X-Token")));
+			String query = exchange.getRequestURI().getQuery();
+			StringBuilder b = new StringBuilder("[");
+			for (String pair : query.split("&")) {
+				String value = pair.substring(pair.indexOf('=') + 1);
+				// Only the first hundred users exist, and the names are just the ids.
+				if (value.matches("[0-9]+") && Integer.parseInt(value) < 100) {
+					b.append(b.length() == 1 ? "" : ",").append("{\"id\":").append(value).append(",\"name\":\"").append(value).append("\"}");
+				}
+			}
+			Loopback.respond(exchange, 200, "application/json", b.append(']').toString());
+		});
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@BeforeEach
+	void clear() {
+		server.requests.clear();
+		tokens.clear();
+	}
+
+	@Test
+	void mergesCalls() {
+		Users users = RestBolt.bind(server.uri(), Users.class, MethodHandles.lookup());
+		CompletableFuture<User> one = users.user(1);
+		CompletableFuture<User> two = users.user(2);
+		CompletableFuture<User> again = users.user(2);
+		CompletableFuture<User> missing = users.user(404);
+
+		// The int on the element is widened to match the long key.
+		assertEquals("1", one.join().name);
+		assertEquals("2", two.join().name);
+		assertNull(missing.join());
+		// Same key, same result, but everyone gets their own future.
+		assertNotSame(two, again);
+		assertEquals("2", again.join().name);
+
+		assertEquals(List.of("GET /users?id=1&id=2&id=404"), server.requests);
+	}
+
+	@Test
+	void sendsTheStaticHeaders() {
+		Users users = RestBolt.bind(server.uri(), Users.class, MethodHandles.lookup());
+		assertEquals(7, users.user(7).join().id);
+		assertEquals(List.of("secret"), tokens);
+	}
+
+	@Test
+	void fullBatchesAreSentStraightAway() throws Exception {
+		Users users = RestBolt.bind(server.uri(), Users.class, MethodHandles.lookup());
+		List<CompletableFuture<User>> futures = new ArrayList<>();
+		for (int i = 0; i < 7; i++) {
+			int id = i;
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return users.small(id);
+				} catch (SyncException e) {
+					throw new IllegalStateException(e);
+				}
+			}));
+		}
+		for (int i = 0; i < 7; i++) {
+			assertEquals(i, futures.get(i).join().id);
+		}
+		// At most 3 keys to a request.
+		int keys = 0;
+		for (String request : server.requests) {
+			int count = request.split("id=").length - 1;
+			assertTrue(count <= 3, request);
+			keys += count;
+		}
+		assertEquals(7, keys);
+	}
+
+	@Test
+	void keysThatCantMatchFailOnBind() {
+		// A double is never going to be equal to a long, (5.0 vs 5) and neither is an int to a String.
+		for (Class<?> service : List.of(Measurements.class, Names.class)) {
+			Throwable t = assertThrows(Throwable.class, () -> RestBolt.bind(server.uri(), service, MethodHandles.lookup()));
+			Throwable root = root(t);
+			assertTrue(root instanceof IllegalStateException, String.valueOf(root));
+			assertTrue(root.getMessage().contains("can't be matched"), root.getMessage());
+		}
+	}
+
+	private static Throwable root(Throwable t) {
+		while (t.getCause() != null && t.getCause() != t) {
+			t = t.getCause();
+		}
+		return t;
+	}
+}
@@ -0,0 +1,93 @@
+package me.jezza.restbolt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.invoke.MethodHandles;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.Path;
+
+/**
+ * @author Jezza
+ */
+class JsonTest {
+	private static Loopback server;
+	private static Users users;
+
+	public static final class User {
+		public int id;
+		public String name;
+	}
+
+	public interface Users {
+		@GET("/users/{id}")
+		User user(@Path("id") int id) throws SyncException;
+
+		@GET("/users/{id}")
+		HttpResponse<User> response(@Path("id") int id) throws SyncException;
+
+		@GET("/users/{id}")
+		CompletableFuture<HttpResponse<User>> async(@Path("id") int id);
+
+		@GET("/users")
+		List<User> all() throws SyncException;
+	}
+
+	@BeforeAll
+	static void start() {
+		server = Loopback.start(exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/users")) {
+				Loopback.respond(exchange, 200, "application/json", "[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]");
+			} else if (path.equals("/users/1")) {
+				Loopback.respond(exchange, 200, "application/json", "{\"id\":1,\"name\":\"jez\",\"extra\":[1,{\"x\":null}]}");
+			} else {
+				Loopback.respond(exchange, 404, "application/json", "{\"error\":\"not found\"}");
+			}
+		});
+		users = RestBolt.bind(server.uri(), Users.class, MethodHandles.lookup());
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@Test
+	void decodes() throws Exception {
+		User user = users.user(1);
+		assertEquals(1, user.id);
+		assertEquals("jez", user.name);
+
+		List<User> all = users.all();
+		assertEquals(2, all.size());
+		assertEquals("b", all.get(1).name);
+	}
+
+	@Test
+	void bodyOnlyFailsOutsideOf2xx() {
+		SyncException e = assertThrows(SyncException.class, () -> users.user(404));
+		assertTrue(String.valueOf(e.getCause()).contains("404"), String.valueOf(e.getCause()));
+	}
+
+	@Test
+	void responseKeepsTheStatus() throws Exception {
+		HttpResponse<User> response = users.response(404);
+		assertEquals(404, response.statusCode());
+		assertNull(response.body());
+
+		response = users.async(404).join();
+		assertEquals(404, response.statusCode());
+		assertNull(response.body());
+	}
+}
@@ -0,0 +1,122 @@
+package me.jezza.restbolt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.Lazy;
+import me.jezza.restbolt.annotations.Path;
+
+/**
+ * @author Jezza
+ */
+class LazyTest {
+	private static final int THREADS = 32;
+
+	private static Loopback server;
+
+	@Lazy
+	public interface Names {
+		@GET("/names/a")
+		String a() throws SyncException;
+
+		@GET("/names/b")
+		String b() throws SyncException;
+
+		@GET("/names/{id}")
+		String id(@Path("id") int id) throws SyncException;
+	}
+
+	@Lazy
+	public interface Others {
+		@GET("/others/a")
+		String a() throws SyncException;
+
+		@GET("/others/b")
+		String b() throws SyncException;
+	}
+
+	@BeforeAll
+	static void start() {
+		server = Loopback.start(exchange -> Loopback.respond(exchange, 200, "text/plain", exchange.getRequestURI().getPath()));
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@Test
+	void linksOnFirstCall() throws Exception {
+		Names names = RestBolt.bind(server.uri(), Names.class, MethodHandles.lookup());
+		assertEquals("/names/a", names.a());
+		assertEquals("/names/a", names.a());
+		assertEquals("/names/7", names.id(7));
+	}
+
+	@Test
+	void concurrentFirstCalls() throws Exception {
+		// Every thread hits every call site for the first time at once, through a couple of proxies of each interface.
+		Names first = RestBolt.bind(server.uri(), Names.class, MethodHandles.lookup());
+		Names second = RestBolt.bind(server.uri(), Names.class, MethodHandles.lookup());
+		Others others = RestBolt.bind(server.uri(), Others.class, MethodHandles.lookup());
+		race(i -> {
+			Names names = i % 2 == 0 ? first : second;
+			return names.b() + names.id(i) + others.a() + others.b();
+		}, i -> "/names/b/names/" + i + "/others/a/others/b");
+	}
+
+	@Test
+	void linkingTwiceGivesTheSameMethod() throws Throwable {
+		Names names = RestBolt.bind(server.uri(), Names.class, MethodHandles.lookup());
+		Lookup caller = MethodHandles.privateLookupIn(names.getClass(), MethodHandles.lookup());
+		MethodType type = MethodType.methodType(String.class, names.getClass());
+		CallSite first = RestBolt.link(caller, "a", type);
+		CallSite second = RestBolt.link(caller, "a", type);
+		assertSame(first.getTarget(), second.getTarget());
+		assertEquals("/names/a", (String) first.getTarget().invoke(names));
+	}
+
+	private interface Call {
+		String call(int index) throws Exception;
+	}
+
+	private static void race(Call call, Function<Integer, String> expected) throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(THREADS);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				int index = i;
+				results.add(executor.submit(() -> {
+					barrier.await();
+					return call.call(index);
+				}));
+			}
+			for (int i = 0; i < THREADS; i++) {
+				assertEquals(expected.apply(i), results.get(i).get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		}
+	}
+}
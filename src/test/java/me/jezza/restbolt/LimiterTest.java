@@ -0,0 +1,115 @@
+package me.jezza.restbolt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jezza
+ */
+class LimiterTest {
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/**
+	 * Keeps every slot busy, and gives one back that took the given time, over and over again.
+	 */
+	private static void saturate(Limiter limiter, long rtt, int outcome, int times) {
+		for (int i = 0; i < times; i++) {
+			while (limiter.acquire() == Limiter.GRANTED) {
+				// Filling it up.
+			}
+			limiter.release(System.nanoTime() - rtt, outcome);
+		}
+	}
+
+	@Test
+	void growsWhileTheLatencyHolds() {
+		Limiter limiter = new Limiter("test", 10, 1, 100, 0);
+		saturate(limiter, FAST, Limiter.SAMPLE, 50);
+		int grown = limiter.limit();
+		assertTrue(grown > 20, "Only grew to " + grown);
+		saturate(limiter, FAST, Limiter.SAMPLE, 1000);
+		assertEquals(100, limiter.limit());
+	}
+
+	@Test
+	void shrinksWhenTheLatencyClimbs() {
+		Limiter limiter = new Limiter("test", 50, 5, 100, 0);
+		saturate(limiter, FAST, Limiter.SAMPLE, 20);
+		int before = limiter.limit();
+		// Ten times slower, so something's queueing them up.
+		saturate(limiter, SLOW, Limiter.SAMPLE, 20);
+		int after = limiter.limit();
+		assertTrue(after < before, before + " -> " + after);
+		// Scaled down by how far off it is, but it can't go below the minimum.
+		saturate(limiter, SLOW * 10, Limiter.SAMPLE, 100);
+		assertEquals(5, limiter.limit());
+		// If it stays there, that's just what normal is now, and it's allowed to grow again.
+		saturate(limiter, SLOW * 10, Limiter.SAMPLE, 1000);
+		assertEquals(100, limiter.limit());
+	}
+
+	@Test
+	void droppedRequestsBackOff() {
+		Limiter limiter = new Limiter("test", 50, 40, 100, 0);
+		assertSame(Limiter.GRANTED, limiter.acquire());
+		limiter.release(System.nanoTime(), Limiter.DROPPED);
+		assertEquals(45, limiter.limit());
+		saturate(limiter, FAST, Limiter.DROPPED, 10);
+		assertEquals(40, limiter.limit());
+
+		assertEquals(Limiter.DROPPED, Limiter.outcome(429));
+		assertEquals(Limiter.DROPPED, Limiter.outcome(503));
+		assertEquals(Limiter.SAMPLE, Limiter.outcome(500));
+	}
+
+	@Test
+	void anIdleLimitDoesNotGrow() {
+		Limiter limiter = new Limiter("test", 10, 1, 100, 0);
+		for (int i = 0; i < 100; i++) {
+			assertSame(Limiter.GRANTED, limiter.acquire());
+			limiter.release(System.nanoTime() - FAST, Limiter.SAMPLE);
+		}
+		assertEquals(10, limiter.limit());
+	}
+
+	@Test
+	void ignoredSlotsTeachItNothing() {
+		Limiter limiter = new Limiter("test", 10, 1, 100, 0);
+		saturate(limiter, SLOW * 100, Limiter.IGNORED, 100);
+		assertEquals(10, limiter.limit());
+	}
+
+	@Test
+	void queuesInOrder() {
+		Limiter limiter = new Limiter("test", 1, 1, 1, 2);
+		assertSame(Limiter.GRANTED, limiter.acquire());
+		CompletableFuture<Void> first = limiter.acquire();
+		CompletableFuture<Void> second = limiter.acquire();
+		assertFalse(first.isDone());
+		assertEquals(2, limiter.queued());
+		// Queue's full.
+		assertNull(limiter.acquire());
+
+		limiter.release(System.nanoTime(), Limiter.IGNORED);
+		assertTrue(first.isDone());
+		assertFalse(second.isDone());
+		assertEquals(1, limiter.inFlight());
+
+		// Gave up waiting, so it never gets the slot.
+		assertTrue(limiter.withdraw(second));
+		assertEquals(0, limiter.queued());
+		// Already granted, so it's too late to withdraw it.
+		assertFalse(limiter.withdraw(first));
+		limiter.release(System.nanoTime(), Limiter.IGNORED);
+		assertEquals(0, limiter.inFlight());
+	}
+}
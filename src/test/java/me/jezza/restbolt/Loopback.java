@@ -0,0 +1,85 @@
+package me.jezza.restbolt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A server on the loopback, for the tests that need something to talk to.
+ * It remembers every request it's seen, so the tests can check what was actually sent.
+ *
+ * @author Jezza
+ */
+public final class Loopback implements AutoCloseable {
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * "METHOD /path?query", in the order they came in.
+	 */
+	public final List<String> requests = new CopyOnWriteArrayList<>();
+
+	private Loopback(HttpHandler handler) {
+		try {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "Loopback");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", exchange -> {
+			URI uri = exchange.getRequestURI();
+			requests.add(exchange.getRequestMethod() + ' ' + uri.getPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : ""));
+			try {
+				exchange.getRequestBody().readAllBytes();
+				handler.handle(exchange);
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+
+	public static Loopback start(HttpHandler handler) {
+		return new Loopback(handler);
+	}
+
+	public String uri() {
+		return "http://" + server.getAddress().getHostString() + ':' + server.getAddress().getPort();
+	}
+
+	public static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] data = body.getBytes(StandardCharsets.UTF_8);
+		if (contentType != null) {
+			exchange.getResponseHeaders().set("Content-Type", contentType);
+		}
+		exchange.sendResponseHeaders(status, data.length == 0 ? -1 : data.length);
+		if (data.length != 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(data);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,98 @@
+package me.jezza.restbolt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.invoke.MethodHandles;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.Path;
+import me.jezza.restbolt.annotations.RestService;
+
+/**
+ * @author Jezza
+ */
+class MetricsTest {
+	private static final String BODY = "0123456789";
+
+	private static Loopback server;
+
+	public interface Things extends RestService {
+		@GET("/things/{id}")
+		String thing(@Path("id") int id) throws SyncException;
+
+		@GET("/things/{id}")
+		CompletableFuture<HttpResponse<String>> async(@Path("id") int id);
+
+		@GET("/broken")
+		String broken() throws SyncException;
+	}
+
+	@BeforeAll
+	static void start() {
+		server = Loopback.start(exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/things/1")) {
+				Loopback.respond(exchange, 200, "text/plain", BODY);
+			} else if (!path.equals("/broken")) {
+				Loopback.respond(exchange, 404, "text/plain", BODY);
+			}
+			// Otherwise, the connection is just closed without a response.
+		});
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@Test
+	void recordsEveryExchange() throws Exception {
+		Things things = RestBolt.binder(Things.class, MethodHandles.lookup()).metrics().bind(server.uri());
+		assertEquals(BODY, things.thing(1));
+		// A plain String doesn't care about the status, but the meter does.
+		assertEquals(BODY, things.thing(2));
+		Metrics.Snapshot thing = await(() -> things.metrics().snapshot("thing"), 2);
+		assertEquals(2, thing.requests());
+		assertEquals(1, thing.errors());
+		assertEquals(BODY.length() * 2, thing.bytesIn());
+
+		assertEquals(200, things.async(1).join().statusCode());
+		assertEquals(404, things.async(2).join().statusCode());
+		Metrics.Snapshot async = await(() -> things.metrics().snapshot("async"), 2);
+		assertEquals(2, async.requests());
+		assertEquals(1, async.errors());
+		assertEquals(BODY.length() * 2, async.bytesIn());
+	}
+
+	@Test
+	void recordsFailures() throws Exception {
+		Things things = RestBolt.binder(Things.class, MethodHandles.lookup()).metrics().bind(server.uri());
+		assertThrows(SyncException.class, things::broken);
+		Metrics.Snapshot broken = await(() -> things.metrics().snapshot("broken"), 1);
+		assertEquals(1, broken.requests());
+		assertEquals(1, broken.errors());
+		assertEquals(0, broken.bytesIn());
+	}
+
+	/**
+	 * The futures are handed back before they're recorded, so it could be a moment before they turn up.
+	 */
+	private static Metrics.Snapshot await(Supplier<Metrics.Snapshot> snapshot, long count) throws InterruptedException {
+		Metrics.Snapshot current = snapshot.get();
+		for (int i = 0; i < 100 && current.count() < count; i++) {
+			Thread.sleep(10);
+			current = snapshot.get();
+		}
+		assertTrue(current.count() >= count, current::toString);
+		return current;
+	}
+}
@@ -0,0 +1,123 @@
+package me.jezza.restbolt.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jezza
+ */
+class EntryTest {
+	private static final long NOW = 1_000_000;
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("http://localhost/things")).build();
+
+	/**
+	 * @param headers - name, value, name, value...
+	 */
+	private static HttpHeaders headers(String... headers) {
+		Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (int i = 0; i < headers.length; i += 2) {
+			map.computeIfAbsent(headers[i], k -> new ArrayList<>()).add(headers[i + 1]);
+		}
+		return HttpHeaders.of(map, (name, value) -> true);
+	}
+
+	private static Entry entry(int status, String... headers) {
+		return Entry.of(REQUEST, status, headers(headers), HttpClient.Version.HTTP_1_1, ByteBuffer.wrap(new byte[] {1, 2, 3}), NOW);
+	}
+
+	@Test
+	void maxAge() {
+		Entry entry = entry(200, "Cache-Control", "public, max-age=60");
+		assertTrue(entry.storable);
+		assertEquals(NOW + 60 * SECOND, entry.fresh);
+		assertEquals(entry.fresh, entry.stale);
+
+		// Whatever time it's already spent in other caches is taken off.
+		entry = entry(200, "Cache-Control", "max-age=60", "Age", "15");
+		assertEquals(NOW + 45 * SECOND, entry.fresh);
+
+		entry = entry(200, "cache-control", "MAX-AGE=\"10\"");
+		assertEquals(NOW + 10 * SECOND, entry.fresh);
+	}
+
+	@Test
+	void expires() {
+		ZonedDateTime date = ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+		DateTimeFormatter format = DateTimeFormatter.RFC_1123_DATE_TIME;
+		Entry entry = entry(200, "Date", format.format(date), "Expires", format.format(date.plusSeconds(30)));
+		assertTrue(entry.storable);
+		assertEquals(NOW + 30 * SECOND, entry.fresh);
+
+		// max-age wins.
+		entry = entry(200, "Cache-Control", "max-age=5", "Date", format.format(date), "Expires", format.format(date.plusSeconds(30)));
+		assertEquals(NOW + 5 * SECOND, entry.fresh);
+
+		entry = entry(200, "Expires", "whenever");
+		assertFalse(entry.storable);
+	}
+
+	@Test
+	void staleWhileRevalidate() {
+		Entry entry = entry(200, "Cache-Control", "max-age=10, stale-while-revalidate=20");
+		assertEquals(NOW + 10 * SECOND, entry.fresh);
+		assertEquals(NOW + 30 * SECOND, entry.stale);
+
+		entry = entry(200, "Cache-Control", "max-age=10, stale-while-revalidate=20, must-revalidate");
+		assertEquals(entry.fresh, entry.stale);
+	}
+
+	@Test
+	void validators() {
+		// Never fresh, but worth keeping around to revalidate.
+		Entry entry = entry(200, "Cache-Control", "no-cache, max-age=60", "ETag", "\"v1\"");
+		assertTrue(entry.storable);
+		assertEquals(NOW, entry.fresh);
+		assertEquals("\"v1\"", entry.etag);
+
+		entry = entry(200, "Last-Modified", "Wed, 01 Jan 2020 00:00:00 GMT");
+		assertTrue(entry.storable);
+		assertEquals(NOW, entry.fresh);
+		assertEquals("Wed, 01 Jan 2020 00:00:00 GMT", entry.lastModified);
+	}
+
+	@Test
+	void notStorable() {
+		assertFalse(entry(200).storable);
+		assertFalse(entry(200, "Cache-Control", "no-store, max-age=60", "ETag", "\"v1\"").storable);
+		assertFalse(entry(200, "Cache-Control", "max-age=0").storable);
+		assertFalse(entry(404, "Cache-Control", "max-age=60").storable);
+		assertFalse(entry(200, "Cache-Control", "max-age=nope").storable);
+	}
+
+	@Test
+	void revalidatedTakesTheNewHeaders() {
+		Entry entry = entry(200, "Cache-Control", "no-cache", "ETag", "\"v1\"", "Content-Length", "3", "X-Thing", "old");
+		Entry revalidated = entry.revalidated(headers("Cache-Control", "max-age=60", "Content-Length", "0", "X-Thing", "new"), NOW + SECOND);
+		assertTrue(revalidated.storable);
+		assertEquals(NOW + 61 * SECOND, revalidated.fresh);
+		// The validator wasn't sent again, so it's the one we already had.
+		assertEquals("\"v1\"", revalidated.etag);
+		assertEquals("new", revalidated.headers.firstValue("X-Thing").orElse(null));
+		// That's the length of the 304, not the body.
+		assertEquals("3", revalidated.headers.firstValue("Content-Length").orElse(null));
+		assertEquals(entry.body(), revalidated.body());
+	}
+}
@@ -0,0 +1,173 @@
+package me.jezza.restbolt.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.invoke.MethodHandles;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import me.jezza.restbolt.Loopback;
+import me.jezza.restbolt.RestBolt;
+import me.jezza.restbolt.SyncException;
+import me.jezza.restbolt.annotations.Cacheable;
+import me.jezza.restbolt.annotations.GET;
+import me.jezza.restbolt.annotations.Path;
+
+/**
+ * @author Jezza
+ */
+class HttpCacheTest {
+	private static final ResponseCache STORE = ResponseCache.memory(1 << 20);
+
+	private static Loopback server;
+
+	/**
+	 * How many times each path has been served with a body, which is what the bodies are.
+	 */
+	private static final Map<String, AtomicInteger> versions = new ConcurrentHashMap<>();
+
+	static ResponseCache store() {
+		return STORE;
+	}
+
+	public interface Things {
+		@GET("/{kind}")
+		@Cacheable(store = "me.jezza.restbolt.cache.HttpCacheTest.store")
+		String thing(@Path("kind") String kind) throws SyncException;
+
+		@GET("/{kind}")
+		@Cacheable(store = "me.jezza.restbolt.cache.HttpCacheTest.store")
+		CompletableFuture<HttpResponse<String>> async(@Path("kind") String kind);
+	}
+
+	@BeforeAll
+	static void start() {
+		server = Loopback.start(exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+			String since = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			AtomicInteger version = versions.computeIfAbsent(path, k -> new AtomicInteger());
+			var headers = exchange.getResponseHeaders();
+			switch (path) {
+				case "/fresh":
+					headers.set("Cache-Control", "max-age=60");
+					break;
+				case "/etag":
+					headers.set("Cache-Control", "no-cache");
+					// It never changes, so every revalidation is a 304.
+					headers.set("ETag", "\"v1\"");
+					if ("\"v1\"".equals(etag)) {
+						Loopback.respond(exchange, 304, null, "");
+						return;
+					}
+					break;
+				case "/modified":
+					headers.set("Last-Modified", "Wed, 01 Jan 2020 00:00:00 GMT");
+					if (since != null) {
+						Loopback.respond(exchange, 304, null, "");
+						return;
+					}
+					break;
+				case "/swr":
+					headers.set("Cache-Control", "max-age=1, stale-while-revalidate=60");
+					break;
+				default:
+					headers.set("Cache-Control", "no-store");
+					break;
+			}
+			Loopback.respond(exchange, 200, "text/plain", String.valueOf(version.incrementAndGet()));
+		});
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@BeforeEach
+	void clear() {
+		for (String path : Arrays.asList("/fresh", "/etag", "/modified", "/swr", "/none")) {
+			STORE.remove(server.uri() + path);
+		}
+		versions.clear();
+		server.requests.clear();
+	}
+
+	private static Things bind() {
+		return RestBolt.bind(server.uri(), Things.class, MethodHandles.lookup());
+	}
+
+	@Test
+	void freshHitsSkipTheNetwork() throws Exception {
+		Things things = bind();
+		assertEquals("1", things.thing("fresh"));
+		assertEquals("1", things.thing("fresh"));
+		assertEquals("1", things.async("fresh").join().body());
+		// Another proxy, same store.
+		assertEquals("1", bind().thing("fresh"));
+		assertEquals(List.of("GET /fresh"), server.requests);
+	}
+
+	@Test
+	void revalidatesWithTheETag() throws Exception {
+		Things things = bind();
+		assertEquals("1", things.thing("etag"));
+		// The server's still on v1, so it's a 304, and the body's the one we already had.
+		assertEquals("1", things.thing("etag"));
+		HttpResponse<String> response = things.async("etag").join();
+		assertEquals(200, response.statusCode());
+		assertEquals("1", response.body());
+		assertEquals(3, server.requests.size());
+		assertEquals(1, versions.get("/etag").get());
+	}
+
+	@Test
+	void revalidatesWithLastModified() throws Exception {
+		Things things = bind();
+		assertEquals("1", things.thing("modified"));
+		assertEquals("1", things.thing("modified"));
+		assertEquals(2, server.requests.size());
+		assertEquals(1, versions.get("/modified").get());
+	}
+
+	@Test
+	void staleWhileRevalidate() throws Exception {
+		Things things = bind();
+		assertEquals("1", things.thing("swr"));
+		Thread.sleep(1100);
+		// Stale, so it's handed out as is, and checked on in the background.
+		assertEquals("1", things.thing("swr"));
+		for (int i = 0; i < 100 && server.requests.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, server.requests.size());
+		String body = things.thing("swr");
+		for (int i = 0; i < 100 && !body.equals("2"); i++) {
+			// The background request might've been seen by the server, but not made it into the store just yet.
+			Thread.sleep(10);
+			body = things.thing("swr");
+		}
+		assertEquals("2", body);
+		assertEquals(2, server.requests.size());
+	}
+
+	@Test
+	void noStoreIsNeverKept() throws Exception {
+		Things things = bind();
+		assertEquals("1", things.thing("none"));
+		assertEquals("2", things.thing("none"));
+		assertEquals(2, server.requests.size());
+		assertNull(STORE.get(server.uri() + "/none"));
+	}
+}
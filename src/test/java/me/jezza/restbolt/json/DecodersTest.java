@@ -0,0 +1,92 @@
+package me.jezza.restbolt.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.objectweb.asm.Opcodes.*;
+
+import java.io.ByteArrayInputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * @author Jezza
+ */
+class DecodersTest {
+	private static final String THROWAWAY = "throwaway.Thing";
+
+	public static final class Holder {
+		public List<Map<String, DecodersTest.Holder[]>> nested;
+	}
+
+	@Test
+	void ownedByTheDeepestClass() throws Exception {
+		assertSame(String.class, Decoders.owner(String.class));
+		assertSame(int.class, Decoders.owner(int[][].class));
+		assertSame(Holder.class, Decoders.owner(Holder.class.getField("nested").getGenericType()));
+
+		Class<?> thing = throwaway();
+		assertSame(thing, Decoders.owner(Array.newInstance(thing, 0).getClass()));
+	}
+
+	@Test
+	void doesNotPinTheClassLoader() throws Exception {
+		WeakReference<ClassLoader> loader = decodeInThrowawayLoader();
+		for (int i = 0; i < 100 && loader.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(loader.get(), "The decoders are keeping the class loader around.");
+	}
+
+	private static WeakReference<ClassLoader> decodeInThrowawayLoader() throws Exception {
+		Class<?> thing = throwaway();
+		Lookup lookup = MethodHandles.lookup();
+		Object value = Decoders.of(thing, lookup).decode(reader("{\"name\": \"jez\"}"));
+		assertEquals("jez", thing.getField("name").get(value));
+		Object array = Decoders.of(Array.newInstance(thing, 0).getClass(), lookup).decode(reader("[{\"name\": \"a\"}, null]"));
+		assertEquals(2, Array.getLength(array));
+		return new WeakReference<>(thing.getClassLoader());
+	}
+
+	private static JsonReader reader(String json) {
+		return new JsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * A fresh "public final class Thing { public String name; }" in its own class loader.
+	 */
+	private static Class<?> throwaway() throws ClassNotFoundException {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(V11, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, THROWAWAY.replace('.', '/'), null, "java/lang/Object", null);
+		writer.visitField(ACC_PUBLIC, "name", "Ljava/lang/String;", null, null).visitEnd();
+		MethodVisitor init = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		init.visitCode();
+		init.visitVarInsn(ALOAD, 0);
+		init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		init.visitInsn(RETURN);
+		init.visitMaxs(1, 1);
+		init.visitEnd();
+		writer.visitEnd();
+		byte[] data = writer.toByteArray();
+		ClassLoader loader = new ClassLoader(DecodersTest.class.getClassLoader()) {
+			@Override
+			protected Class<?> findClass(String name) throws ClassNotFoundException {
+				if (name.equals(THROWAWAY)) {
+					return defineClass(name, data, 0, data.length);
+				}
+				throw new ClassNotFoundException(name);
+			}
+		};
+		return loader.loadClass(THROWAWAY);
+	}
+}
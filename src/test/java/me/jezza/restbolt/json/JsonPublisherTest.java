@@ -0,0 +1,219 @@
+package me.jezza.restbolt.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jezza
+ */
+class JsonPublisherTest {
+	/**
+	 * Plays the part of the client, handing over the body a few bytes at a time, and only when it's asked to.
+	 */
+	private static final class Body implements Flow.Subscription {
+		private final JsonPublisher<?> publisher;
+		private final byte[] data;
+		private final int size;
+		private int pos;
+		int requests;
+		boolean cancelled;
+
+		Body(JsonPublisher<?> publisher, String body, int size) {
+			this.publisher = publisher;
+			this.data = body.getBytes(StandardCharsets.UTF_8);
+			this.size = size;
+			publisher.onSubscribe(this);
+		}
+
+		@Override
+		public void request(long n) {
+			requests++;
+			if (cancelled) {
+				return;
+			}
+			if (pos == data.length) {
+				publisher.onComplete();
+				return;
+			}
+			// Split over a couple of buffers, so the elements are split across those as well.
+			int end = Math.min(data.length, pos + size);
+			int middle = pos + (end - pos) / 2;
+			List<ByteBuffer> item = Arrays.asList(ByteBuffer.wrap(data, pos, middle - pos).slice(), ByteBuffer.wrap(data, middle, end - middle).slice());
+			pos = end;
+			publisher.onNext(item);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+
+	private static final class Collector<T> implements Flow.Subscriber<T> {
+		final List<T> values = new ArrayList<>();
+		Flow.Subscription subscription;
+		Throwable error;
+		boolean complete;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(T item) {
+			values.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			complete = true;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Decoder<T> decoder(Class<T> type) {
+		return (Decoder<T>) Decoders.of(type, null);
+	}
+
+	private static Collector<Object> all(String body, boolean sequence, int size) {
+		JsonPublisher<Object> publisher = new JsonPublisher<>(decoder(Object.class), sequence);
+		new Body(publisher, body, size);
+		Collector<Object> collector = new Collector<>();
+		publisher.subscribe(collector);
+		collector.subscription.request(Long.MAX_VALUE);
+		return collector;
+	}
+
+	private static void elements(String body, boolean sequence, List<Object> expected) {
+		for (int size = 1; size <= body.length() + 1; size++) {
+			Collector<Object> collector = all(body, sequence, size);
+			assertNull(collector.error, () -> body + " in " + collector.error);
+			assertTrue(collector.complete, body);
+			assertEquals(expected, collector.values, body);
+		}
+	}
+
+	private static void invalid(String body, boolean sequence) {
+		for (int size = 1; size <= body.length() + 1; size++) {
+			Collector<Object> collector = all(body, sequence, size);
+			assertTrue(collector.error instanceof JsonException, () -> body + " gave " + collector.error);
+			assertFalse(collector.complete, body);
+		}
+	}
+
+	@Test
+	void splitsArrays() {
+		elements("[]", false, List.of());
+		elements(" [ 1 , \"a]\\\"}\" , {\"b\": [1, {\"c\": \"]\"}]}, [], true, null, -2.5e3 ] ", false,
+				Arrays.asList(1L, "a]\"}", Map.of("b", List.of(1L, Map.of("c", "]"))), List.of(), true, -2500.0));
+	}
+
+	@Test
+	void splitsSequences() {
+		elements("", true, List.of());
+		elements("{\"a\":1}\n{\"a\":2}\n", true, List.of(Map.of("a", 1L), Map.of("a", 2L)));
+		elements("1 2\n3", true, List.of(1L, 2L, 3L));
+		elements("\"x\"\"y\"[1][2]", true, List.of("x", "y", List.of(1L), List.of(2L)));
+		// Told it's a sequence, so the array is just an element.
+		elements("[1, 2]\n[3]", true, List.of(List.of(1L, 2L), List.of(3L)));
+		// Otherwise, it's worked out from the first byte.
+		elements("{\"a\":1} {\"a\":2}", false, List.of(Map.of("a", 1L), Map.of("a", 2L)));
+	}
+
+	@Test
+	void rejectsInvalidBodies() {
+		invalid("[1,]", false);
+		invalid("[1 2]", false);
+		invalid("[,1]", false);
+		invalid("[1,,2]", false);
+		invalid("[1, 2", false);
+		invalid("[{\"a\": 1]", false);
+		invalid("[1] 2", false);
+		invalid("[007]", false);
+		invalid("[{\"a\" 1}]", false);
+		invalid("{\"a\": 1", true);
+		invalid("truex", true);
+	}
+
+	@Test
+	void followsDemand() {
+		StringBuilder b = new StringBuilder("[");
+		for (int i = 0; i < 1000; i++) {
+			b.append(i == 0 ? "" : ",").append(i);
+		}
+		String body = b.append(']').toString();
+
+		JsonPublisher<Object> publisher = new JsonPublisher<>(decoder(Object.class), false);
+		Body upstream = new Body(publisher, body, 16);
+		assertEquals(0, upstream.requests, "Nothing should be read until there's a subscriber asking for something.");
+
+		Collector<Object> collector = new Collector<>();
+		publisher.subscribe(collector);
+		assertEquals(0, upstream.requests);
+
+		collector.subscription.request(3);
+		assertEquals(List.of(0L, 1L, 2L), collector.values);
+		int requests = upstream.requests;
+		// A 16 byte buffer has more than enough in it for 3 elements.
+		assertEquals(1, requests);
+
+		// What's already been decoded is handed out first.
+		collector.subscription.request(2);
+		assertEquals(List.of(0L, 1L, 2L, 3L, 4L), collector.values);
+		assertEquals(requests, upstream.requests);
+
+		collector.subscription.request(Long.MAX_VALUE);
+		assertTrue(collector.complete);
+		assertEquals(1000, collector.values.size());
+		assertEquals(999L, collector.values.get(999));
+	}
+
+	@Test
+	void cancelStopsTheBody() {
+		JsonPublisher<Object> publisher = new JsonPublisher<>(decoder(Object.class), true);
+		Body upstream = new Body(publisher, "1\n2\n3\n4\n5\n6\n7\n8\n9\n", 4);
+		Collector<Object> collector = new Collector<>();
+		publisher.subscribe(collector);
+		collector.subscription.request(1);
+		collector.subscription.cancel();
+		assertTrue(upstream.cancelled);
+		int requests = upstream.requests;
+		collector.subscription.request(10);
+		assertEquals(requests, upstream.requests);
+		assertEquals(List.of(1L), collector.values);
+		assertFalse(collector.complete);
+	}
+
+	@Test
+	void nullsAreSkipped() {
+		elements("[null, 1, null]", false, List.of(1L));
+	}
+
+	@Test
+	void onlyOneSubscriber() {
+		JsonPublisher<Object> publisher = new JsonPublisher<>(decoder(Object.class), false);
+		new Body(publisher, "[]", 4);
+		publisher.subscribe(new Collector<>());
+		Collector<Object> second = new Collector<>();
+		publisher.subscribe(second);
+		assertTrue(second.error instanceof IllegalStateException);
+	}
+}
@@ -0,0 +1,222 @@
+package me.jezza.restbolt.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jezza
+ */
+class JsonReaderTest {
+	public static final class Node {
+		public Node next;
+	}
+
+	private static JsonReader reader(String json) {
+		return new JsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Hands the body over a byte at a time, so every value ends up split across reads.
+	 */
+	private static JsonReader trickle(String json) {
+		byte[] data = json.getBytes(StandardCharsets.UTF_8);
+		return new JsonReader(new InputStream() {
+			private int pos;
+
+			@Override
+			public int read() {
+				return pos < data.length ? data[pos++] & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (pos == data.length) {
+					return -1;
+				}
+				b[off] = data[pos++];
+				return 1;
+			}
+		}, 4);
+	}
+
+	private static Object value(String json) throws IOException {
+		JsonReader reader = reader(json);
+		Object value = reader.nextValue();
+		if (reader.peek() != JsonReader.END) {
+			throw new JsonException("Trailing data");
+		}
+		return value;
+	}
+
+	private static void invalid(String json) {
+		assertThrows(JsonException.class, () -> {
+			JsonReader reader = reader(json);
+			reader.skipValue();
+			if (reader.peek() != JsonReader.END) {
+				throw new JsonException("Trailing data");
+			}
+		}, json);
+		assertThrows(JsonException.class, () -> value(json), json);
+	}
+
+	@Test
+	void values() throws IOException {
+		Object value = value("{\"a\": [1, 2.5, -3e2, true, false, null, \"x\\n\\u00e9\"], \"b\": {}, \"c\": [], \"\u00fc\": \"\u2603\"}");
+		Map<?, ?> map = (Map<?, ?>) value;
+		assertEquals(Arrays.asList(1L, 2.5, -300.0, true, false, null, "x\n\u00e9"), map.get("a"));
+		assertEquals(Map.of(), map.get("b"));
+		assertEquals(List.of(), map.get("c"));
+		assertEquals("\u2603", map.get("\u00fc"));
+	}
+
+	@Test
+	void splitAcrossReads() throws IOException {
+		String json = "{\"name\": \"caf\u00e9 \u2603\", \"values\": [12345, -0.5e-3, true], \"skip\": {\"x\": [1, {\"y\": \"z\"}]}}";
+		JsonReader reader = trickle(json);
+		reader.beginObject();
+		assertEquals("name", reader.nextName());
+		assertEquals("caf\u00e9 \u2603", reader.nextString());
+		assertEquals("values", reader.nextName());
+		reader.beginArray();
+		assertTrue(reader.hasNext());
+		assertEquals(12345, reader.nextInt());
+		assertTrue(reader.hasNext());
+		assertEquals(-0.5e-3, reader.nextDouble());
+		assertTrue(reader.hasNext());
+		assertTrue(reader.nextBoolean());
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertTrue(reader.hasNext());
+		assertEquals("skip", reader.nextName());
+		reader.skipValue();
+		assertFalse(reader.hasNext());
+		reader.endObject();
+		assertEquals(JsonReader.END, reader.peek());
+	}
+
+	@Test
+	void hasNextCanBeAskedTwice() throws IOException {
+		JsonReader reader = reader("[1, 2]");
+		reader.beginArray();
+		assertTrue(reader.hasNext());
+		assertTrue(reader.hasNext());
+		assertEquals(1, reader.nextInt());
+		assertTrue(reader.hasNext());
+		assertTrue(reader.hasNext());
+		assertEquals(2, reader.nextInt());
+		assertFalse(reader.hasNext());
+		reader.endArray();
+	}
+
+	@Test
+	void numbers() throws IOException {
+		assertEquals(Long.MAX_VALUE, reader(String.valueOf(Long.MAX_VALUE)).nextLong());
+		assertEquals(Long.MIN_VALUE, reader(String.valueOf(Long.MIN_VALUE)).nextLong());
+		assertEquals(0, reader("0").nextInt());
+		assertEquals(-0.0, reader("-0.0").nextDouble());
+		assertEquals(1000, reader("1e3").nextLong());
+		assertThrows(JsonException.class, () -> reader("9223372036854775808").nextLong());
+		assertThrows(JsonException.class, () -> reader("2147483648").nextInt());
+		assertThrows(JsonException.class, () -> reader("1.5").nextLong());
+		assertEquals("12345678901234567890.5", reader("12345678901234567890.5").nextNumber());
+	}
+
+	@Test
+	void numbersAreNotStrings() throws IOException {
+		assertThrows(JsonException.class, () -> reader("5").nextString());
+		assertThrows(JsonException.class, () -> reader("true").nextString());
+		assertThrows(JsonException.class, () -> reader("\"5\"").nextInt());
+
+		@SuppressWarnings("unchecked")
+		Decoder<BigDecimal> decimals = (Decoder<BigDecimal>) Decoders.of(BigDecimal.class, null);
+		assertEquals(new BigDecimal("0.10"), decimals.decode(reader("0.10")));
+		assertEquals(new BigDecimal("0.10"), decimals.decode(reader("\"0.10\"")));
+	}
+
+	@Test
+	void rejectsTrailingCommas() {
+		invalid("{\"n\":1,}");
+		invalid("[1,]");
+		invalid("[1,,2]");
+		invalid("[,1]");
+		invalid("{,\"n\":1}");
+	}
+
+	@Test
+	void rejectsMissingCommas() {
+		invalid("[1 2]");
+		invalid("{\"a\":1 \"b\":2}");
+		invalid("[{} {}]");
+	}
+
+	@Test
+	void rejectsBadStructure() {
+		invalid("{\"a\"}");
+		invalid("{\"a\":}");
+		invalid("{1:2}");
+		invalid("[1}");
+		invalid("{\"a\":1]");
+		invalid("[");
+		invalid("]");
+		invalid("[1] 2");
+		invalid("nul");
+		invalid("tru");
+	}
+
+	@Test
+	void rejectsBadNumbers() {
+		invalid("007");
+		invalid("-01");
+		invalid("01.5");
+		invalid("1.");
+		invalid(".5");
+		invalid("-");
+		invalid("1e");
+		invalid("1e+");
+		invalid("+1");
+		invalid("1-2");
+		invalid("[1.2.3]");
+	}
+
+	@Test
+	void rejectsControlCharacters() {
+		invalid("\"a\nb\"");
+		invalid("\"a\tb\"");
+		invalid("\"caf\u00e9\u0001\"");
+		invalid("[\"a\u0000\"]");
+		invalid("\"\\x\"");
+		invalid("\"\\u12g4\"");
+	}
+
+	@Test
+	void capsTheDepth() throws IOException {
+		int depth = JsonReader.MAX_DEPTH;
+		String fits = "[".repeat(depth) + "]".repeat(depth);
+		value(fits);
+		reader(fits).skipValue();
+
+		// Way past anything the stack could take, if it was recursing all the way down.
+		String deep = "[".repeat(100_000) + "]".repeat(100_000);
+		invalid(deep);
+		String objects = "{\"a\":".repeat(100_000) + "1" + "}".repeat(100_000);
+		invalid(objects);
+		assertThrows(JsonException.class, () -> Decoders.of(Object.class, null).decode(reader(deep)));
+		// The generated decoders recurse once per level too.
+		String nodes = "{\"next\":".repeat(100_000) + "null" + "}".repeat(100_000);
+		assertThrows(JsonException.class, () -> Decoders.of(Node.class, MethodHandles.lookup()).decode(reader(nodes)));
+	}
+}